@@ -0,0 +1,87 @@
+package com.tempmonitor.bench;
+
+import com.tempmonitor.alert.AlertKind;
+import com.tempmonitor.alert.AlertRuleIndex;
+import com.tempmonitor.dto.AlertDto;
+import com.tempmonitor.entity.AlertRule;
+import com.tempmonitor.ingest.StoredReading;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluating stored batches of 500 readings against the alert rules, reported in readings per second; the
+ * ingestion path needs well over 100k. Every thermometer has an ABOVE and a BELOW rule of its own and a
+ * RATE_OF_CHANGE rule of its location, so the cost per reading does not depend on how many rules exist.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(AlertEvaluationBenchmark.BATCH_SIZE)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlertEvaluationBenchmark {
+
+    static final int BATCH_SIZE = 500;
+    private static final int THERMOMETERS_PER_LOCATION = 100;
+
+    @Param({"1000", "100000"})
+    int thermometers;
+
+    private AlertRuleIndex index;
+    private int[] thermometerIds;
+    private double[] values;
+    private long second;
+
+    @Setup
+    public void setup() {
+        List<AlertRule> rules = new ArrayList<>();
+        Map<Integer, List<Integer>> locationThermometers = new HashMap<>();
+        int ruleId = 0;
+        for (int thermometerId = 1; thermometerId <= thermometers; thermometerId++) {
+            rules.add(rule(++ruleId, thermometerId, null, AlertKind.ABOVE, 30));
+            rules.add(rule(++ruleId, thermometerId, null, AlertKind.BELOW, 5));
+            int locationId = (thermometerId - 1) / THERMOMETERS_PER_LOCATION + 1;
+            locationThermometers.computeIfAbsent(locationId, id -> new ArrayList<>()).add(thermometerId);
+        }
+        for (int locationId : locationThermometers.keySet()) {
+            rules.add(rule(++ruleId, null, locationId, AlertKind.RATE_OF_CHANGE, 5));
+        }
+        index = AlertRuleIndex.compile(rules, locationThermometers, AlertRuleIndex.empty(), new ArrayList<>());
+
+        SplittableRandom random = new SplittableRandom(42);
+        thermometerIds = new int[BATCH_SIZE];
+        values = new double[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            thermometerIds[i] = random.nextInt(thermometers) + 1;
+            // now and then past a threshold, so alerts fire and resolve
+            values[i] = random.nextInt(100) == 0 ? 35 : 15 + random.nextDouble(10);
+        }
+        second = Instant.parse("2025-01-01T00:00:00Z").getEpochSecond();
+    }
+
+    @Benchmark
+    public List<AlertDto> evaluate() {
+        // every batch is a minute later than the last, so no reading is skipped as late
+        Instant timestamp = Instant.ofEpochSecond(second += 60);
+        List<StoredReading> readings = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            readings.add(new StoredReading(i, thermometerIds[i], values[i], timestamp));
+        }
+        List<AlertDto> changes = new ArrayList<>();
+        index.evaluate(readings, changes);
+        return changes;
+    }
+
+    private static AlertRule rule(int id, Integer thermometerId, Integer locationId, AlertKind kind, double threshold) {
+        return AlertRule.builder().id(id).name(kind + " " + id).thermometerId(thermometerId).locationId(locationId)
+                .kind(kind).threshold(threshold).hysteresis(1.0).enabled(true).build();
+    }
+}
@@ -0,0 +1,57 @@
+package com.tempmonitor.bench;
+
+import com.tempmonitor.TempMonitorApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Starts the application without the web layer for the benchmarks that need a database. Points at
+ * {@code BENCH_DATABASE_URL} ({@code BENCH_DB_USERNAME}, {@code BENCH_DB_PASSWORD}) when set, otherwise at a
+ * throwaway Testcontainers Postgres.
+ */
+class BenchmarkApplication implements AutoCloseable {
+
+    private final PostgreSQLContainer<?> postgres;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkApplication(PostgreSQLContainer<?> postgres, String url, String username, String password) {
+        this.postgres = postgres;
+        this.context = new SpringApplicationBuilder(TempMonitorApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + url,
+                        "--spring.datasource.username=" + username,
+                        "--spring.datasource.password=" + password,
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.tempmonitor=WARN");
+    }
+
+    static BenchmarkApplication start() {
+        String url = System.getenv("BENCH_DATABASE_URL");
+        if (url != null) {
+            return new BenchmarkApplication(null, url, env("BENCH_DB_USERNAME", "postgres"), env("BENCH_DB_PASSWORD", ""));
+        }
+        PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16.2");
+        postgres.start();
+        return new BenchmarkApplication(postgres, postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    }
+
+    private static String env(String name, String fallback) {
+        String value = System.getenv(name);
+        return value != null ? value : fallback;
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+}
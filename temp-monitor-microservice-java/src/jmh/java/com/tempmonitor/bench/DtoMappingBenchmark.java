@@ -0,0 +1,65 @@
+package com.tempmonitor.bench;
+
+import com.tempmonitor.dto.DtoFactory;
+import com.tempmonitor.dto.TemperatureReadingDto;
+import com.tempmonitor.dto.ThermometerDto;
+import com.tempmonitor.entity.Location;
+import com.tempmonitor.entity.TemperatureReading;
+import com.tempmonitor.entity.Thermometer;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping as done for every reading list the API returns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtoMappingBenchmark {
+
+    @Param({"10", "1000"})
+    int size;
+
+    private List<TemperatureReading> readings;
+    private List<Thermometer> thermometers;
+
+    @Setup
+    public void setup() {
+        Location location = Location.builder().id(1).name("Bench").build();
+        thermometers = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            thermometers.add(Thermometer.builder().id(i + 1).name("T" + i).location(location).build());
+        }
+        Instant now = Instant.now();
+        readings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            readings.add(TemperatureReading.builder()
+                    .id(i + 1)
+                    .thermometer(thermometers.get(i))
+                    .value(20.0 + i % 100 / 10.0)
+                    .timestamp(now.minusSeconds(i))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public List<TemperatureReadingDto> readings() {
+        List<TemperatureReadingDto> result = new ArrayList<>(readings.size());
+        for (TemperatureReading reading : readings) {
+            result.add(DtoFactory.createTemperatureReadingDto(reading));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<ThermometerDto> thermometers() {
+        return thermometers.stream().map(DtoFactory::createThermometerDto).toList();
+    }
+}
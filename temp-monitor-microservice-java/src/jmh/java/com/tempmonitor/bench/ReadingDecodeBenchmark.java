@@ -0,0 +1,70 @@
+package com.tempmonitor.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.tempmonitor.dto.TemperatureReadingCreateDto;
+import com.tempmonitor.ingest.PendingReading;
+import com.tempmonitor.ingest.ReadingFrames;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning a request body into the {@link PendingReading}s the service stores, from JSON the way the batch
+ * endpoint reads it and from binary frames. Even compact JSON takes close to three times the bytes (about 34
+ * per reading against 12).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadingDecodeBenchmark {
+
+    @Param({"1", "500"})
+    int size;
+
+    private ObjectReader reader;
+    private byte[] json;
+    private byte[] frames;
+    private Instant now;
+
+    @Setup
+    public void setup() throws Exception {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        reader = mapper.readerFor(mapper.getTypeFactory().constructCollectionType(List.class, TemperatureReadingCreateDto.class));
+        now = Instant.now();
+        List<TemperatureReadingCreateDto> dtos = new ArrayList<>(size);
+        List<PendingReading> readings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            TemperatureReadingCreateDto dto = new TemperatureReadingCreateDto();
+            dto.setThermometerId(i % 20 + 1);
+            dto.setValue(20.0 + i % 100 / 10.0);
+            dtos.add(dto);
+            readings.add(new PendingReading(dto.getThermometerId(), dto.getValue(), now, true));
+        }
+        json = mapper.writeValueAsBytes(dtos);
+        frames = ReadingFrames.encode(readings, false);
+    }
+
+    @Benchmark
+    public List<PendingReading> json() throws Exception {
+        List<TemperatureReadingCreateDto> dtos = reader.readValue(json);
+        List<PendingReading> readings = new ArrayList<>(dtos.size());
+        for (TemperatureReadingCreateDto dto : dtos) {
+            readings.add(new PendingReading(dto.getThermometerId(), dto.getValue(), now, true));
+        }
+        return readings;
+    }
+
+    @Benchmark
+    public List<PendingReading> binary() {
+        return ReadingFrames.decode(ByteBuffer.wrap(frames), false, now, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,51 @@
+package com.tempmonitor.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.tempmonitor.dto.TemperatureReadingDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing reading lists with a mapper configured the way Spring Boot configures the one behind the controller.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadingJsonBenchmark {
+
+    @Param({"10", "1000"})
+    int size;
+
+    private ObjectWriter writer;
+    private List<TemperatureReadingDto> readings;
+
+    @Setup
+    public void setup() {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        writer = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, TemperatureReadingDto.class));
+        Instant now = Instant.now();
+        readings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            TemperatureReadingDto dto = new TemperatureReadingDto();
+            dto.setId(i + 1);
+            dto.setThermometerId(i % 20 + 1);
+            dto.setValue(20.0 + i % 100 / 10.0);
+            dto.setTimestamp(now.minusSeconds(i));
+            readings.add(dto);
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return writer.writeValueAsBytes(readings);
+    }
+}
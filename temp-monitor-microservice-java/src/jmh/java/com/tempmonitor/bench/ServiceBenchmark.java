@@ -0,0 +1,100 @@
+package com.tempmonitor.bench;
+
+import com.tempmonitor.TempMonitorService;
+import com.tempmonitor.dto.*;
+import com.tempmonitor.ingest.PendingReading;
+import com.tempmonitor.repo.ReadingRow;
+import com.tempmonitor.repo.TemperatureReadingRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service and repository hot paths against a real Postgres, see {@link BenchmarkApplication}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    private static final int THERMOMETERS = 50;
+    private static final int SEEDED_READINGS = 100_000;
+
+    private BenchmarkApplication app;
+    private TempMonitorService service;
+    private TemperatureReadingRepository readingRepo;
+    private Integer locationId;
+    private final List<Integer> thermometerIds = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        app = BenchmarkApplication.start();
+        service = app.getBean(TempMonitorService.class);
+        readingRepo = app.getBean(TemperatureReadingRepository.class);
+
+        LocationDto location = service.createLocation("bench-" + System.nanoTime());
+        locationId = location.getId();
+        for (int i = 0; i < THERMOMETERS; i++) {
+            thermometerIds.add(service.createThermometer("bench-" + i, locationId).getId());
+        }
+        Instant start = Instant.now().minus(1, ChronoUnit.DAYS);
+        List<PendingReading> batch = new ArrayList<>();
+        for (int i = 0; i < SEEDED_READINGS; i++) {
+            batch.add(new PendingReading(thermometerIds.get(i % THERMOMETERS), 15.0 + i % 150 / 10.0,
+                    start.plusMillis(i * 800L), false));
+            if (batch.size() == 5_000) {
+                service.storeReadings(batch);
+                batch = new ArrayList<>();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.close();
+    }
+
+    private Integer randomThermometer() {
+        return thermometerIds.get(ThreadLocalRandom.current().nextInt(THERMOMETERS));
+    }
+
+    @Benchmark
+    public TemperatureReadingDto addReading() {
+        TemperatureReadingCreateDto dto = new TemperatureReadingCreateDto();
+        dto.setThermometerId(randomThermometer());
+        dto.setValue(21.5);
+        return service.addReading(dto);
+    }
+
+    @Benchmark
+    public ThermometerStatsDto thermometerStats() {
+        return service.getThermometerStats(randomThermometer());
+    }
+
+    @Benchmark
+    public LocationStatsDto locationStats() {
+        return service.getLocationStats(locationId);
+    }
+
+    @Benchmark
+    public List<TemperatureReadingDto> latestReadings() {
+        return service.getLatestReadings();
+    }
+
+    /** The query behind {@link #latestReadings()} when the cache is cold. */
+    @Benchmark
+    public List<TemperatureReadingDto> latestReadingsQuery() {
+        return readingRepo.findLatestRowsForAllThermometers().stream()
+                .map(ReadingRow::fromNative)
+                .map(DtoFactory::createTemperatureReadingDto)
+                .toList();
+    }
+}
@@ -0,0 +1,12 @@
+package com.tempmonitor;
+
+/**
+ * A request the client has to change before it can succeed, such as a reading outside the accepted time window;
+ * answered with 400. Other {@link IllegalArgumentException}s are bugs and stay 500.
+ */
+public class InvalidRequestException extends IllegalArgumentException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,225 @@
+package com.tempmonitor;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "tempmonitor")
+public class TempMonitorProperties {
+
+    private Ingest ingest = new Ingest();
+    private History history = new History();
+    private Partitions partitions = new Partitions();
+    private Archive archive = new Archive();
+    private Export export = new Export();
+    private VirtualThreads virtualThreads = new VirtualThreads();
+    private Metrics metrics = new Metrics();
+    private Recent recent = new Recent();
+    private CacheBus cacheBus = new CacheBus();
+    private Stream stream = new Stream();
+    private Stats stats = new Stats();
+    private Alerts alerts = new Alerts();
+
+    @Data
+    public static class Ingest {
+        public enum Mode { SYNC, ASYNC, WAL }
+
+        /**
+         * SYNC writes on the request thread, ASYNC queues readings for background writers, WAL appends them to a
+         * local write-ahead log that is replayed into the database.
+         */
+        private Mode mode = Mode.SYNC;
+        private int queueCapacity = 10_000;
+        private int writerThreads = 1;
+        private int flushBatchSize = 500;
+        private Duration flushInterval = Duration.ofMillis(200);
+        /** Value of the Retry-After header sent when the queue is full. */
+        private Duration retryAfter = Duration.ofSeconds(1);
+        /** Upper bound for draining the queue on shutdown. */
+        private Duration shutdownTimeout = Duration.ofSeconds(30);
+        /** How far behind the server clock a device timestamp may be, e.g. after a gateway was offline. */
+        private Duration maxLateness = Duration.ofDays(7);
+        /** How far ahead of the server clock a device timestamp may be. */
+        private Duration maxClockSkew = Duration.ofMinutes(1);
+        private Listener listener = new Listener();
+        private Wal wal = new Wal();
+
+        /** Plain TCP/UDP ingestion next to HTTP, see {@code IngestListener}. */
+        @Data
+        public static class Listener {
+            public enum Format { LINE, BINARY }
+
+            private boolean enabled = false;
+            /** LINE is the Influx-style line protocol, BINARY the fixed-width frames of the HTTP endpoints. */
+            private Format format = Format.LINE;
+            /** Whether BINARY frames carry a timestamp. */
+            private boolean binaryTimestamps = false;
+            private String bindAddress = "0.0.0.0";
+            private boolean tcpEnabled = true;
+            /** 0 picks a free port. */
+            private int tcpPort = 8094;
+            private boolean udpEnabled = true;
+            /** 0 picks a free port. */
+            private int udpPort = 8094;
+            private int maxConnections = 1_000;
+            /** Receive buffer per TCP connection, which is also the longest accepted line. */
+            private int bufferSize = 16_384;
+            private int batchSize = 500;
+            private Duration flushInterval = Duration.ofMillis(200);
+            /** Batches waiting for the writer; readings are dropped while it is full. */
+            private int writeQueueCapacity = 100;
+        }
+
+        /** The local log behind mode WAL, see {@code ReadingWal}. */
+        @Data
+        public static class Wal {
+            private String directory = "wal";
+            private DataSize segmentSize = DataSize.ofMegabytes(64);
+            /** Readings not yet stored in the database; appends are refused beyond this. */
+            private long maxReadings = 10_000_000;
+            /** Pause before replaying a batch again after the database refused it. */
+            private Duration retryBackoff = Duration.ofSeconds(1);
+        }
+    }
+
+    @Data
+    public static class History {
+        /** Upper bound for the buckets returned when no resolution is requested. */
+        private int maxPoints = 1000;
+        /** Range used when the request has no {@code from}. */
+        private Duration defaultRange = Duration.ofDays(1);
+    }
+
+    @Data
+    public static class Partitions {
+        private boolean enabled = true;
+        /** Months created ahead of the current one. */
+        private int premakeMonths = 2;
+        /** Whole months of raw readings kept before their partition is dropped, 0 keeps everything. */
+        private int retentionMonths = 0;
+        /** When maintenance runs (UTC); it also runs once at startup. */
+        private String cron = "0 15 3 * * *";
+    }
+
+    /** Compressed cold storage of whole months of readings, see {@code ReadingArchiver}. */
+    @Data
+    public static class Archive {
+        /** Drops the partitions of archived months, so it has to be switched on explicitly. */
+        private boolean enabled = false;
+        /** How long after its end a month is archived; must exceed {@code ingest.max-lateness}. */
+        private Duration delay = Duration.ofDays(14);
+        /** Thermometers whose readings of the month are compressed per transaction. */
+        private int batchSize = 100;
+        /** When archiving runs (UTC); it also runs once at startup. */
+        private String cron = "0 45 3 * * *";
+        /** How often the archive boundary is read again, which picks up archiving done by other replicas. */
+        private Duration boundaryRefreshInterval = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Export {
+        /** Rows per keyset page; every page runs in its own short transaction. */
+        private int pageSize = 50_000;
+        /** JDBC fetch size of the cursor within a page. */
+        private int fetchSize = 1_000;
+    }
+
+    @Data
+    public static class VirtualThreads {
+        /** Pinned virtual threads blocked for longer than this are counted, only used with virtual threads on. */
+        private Duration pinnedThreshold = Duration.ofMillis(20);
+    }
+
+    @Data
+    public static class Metrics {
+        /** Distinct thermometer tag values on ingest counters, the rest are tagged "other". */
+        private int maxTaggedThermometers = 200;
+        /** Distinct location tag values on ingest counters, the rest are tagged "other". */
+        private int maxTaggedLocations = 50;
+        private Thermometers thermometers = new Thermometers();
+
+        /** Latest value and reading counts per thermometer, see {@code ThermometerMetricsExporter}. */
+        @Data
+        public static class Thermometers {
+            private boolean enabled = false;
+            /** Thermometers to export; when empty, the topK with the most readings since the last selection are. */
+            private List<Integer> allowlist = new ArrayList<>();
+            private int topK = 50;
+            /** How often the topK are chosen again. */
+            private Duration selectionInterval = Duration.ofMinutes(1);
+            /** Weight of every newer reading in the moving average and variance. */
+            private double ewmaAlpha = 0.1;
+            /** Readings further than this many standard deviations from the moving average count as anomalies. */
+            private double anomalyThreshold = 4.0;
+        }
+    }
+
+    @Data
+    public static class Recent {
+        /** Newest readings kept in memory per thermometer; larger limits are read from the database. */
+        private int window = 100;
+    }
+
+    @Data
+    public static class CacheBus {
+        /**
+         * Share cache invalidations between replicas over Postgres LISTEN/NOTIFY, on a dedicated connection. Only
+         * needed with more than one replica, so it has to be switched on explicitly.
+         */
+        private boolean enabled = false;
+        private String channel = "tempmonitor_cache";
+        /** How long the listener waits for notifications; also the longest a local change waits to be sent. */
+        private Duration pollInterval = Duration.ofMillis(100);
+        /** Readings buffered between polls; beyond this the other replicas are told to reload instead. */
+        private int maxPendingReadings = 20_000;
+        /**
+         * Least time between two reloads of the local caches, and between two reload requests sent to the other
+         * replicas; requests within it are coalesced into one at its end.
+         */
+        private Duration minResyncInterval = Duration.ofSeconds(30);
+        /** Pause before reconnecting after the listener connection failed. */
+        private Duration reconnectBackoff = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Stream {
+        /** Readings buffered per subscriber; a subscriber that falls further behind gets the latest per thermometer. */
+        private int bufferSize = 256;
+        private int maxSubscribers = 10_000;
+        /** Stored batches waiting to be fanned out; further batches are dropped while it is full. */
+        private int dispatchQueueCapacity = 1_000;
+        /** Comment sent to idle subscribers, so dead connections are noticed and proxies keep them open. */
+        private Duration heartbeatInterval = Duration.ofSeconds(15);
+        /** Streams are closed after this long; EventSource clients reconnect on their own. */
+        private Duration timeout = Duration.ofMinutes(30);
+    }
+
+    @Data
+    public static class Stats {
+        /** Percentile queries run at once; each holds a connection, so keep this well below the pool size. */
+        private int percentileParallelism = 4;
+        /** Thermometers or locations per percentile query. */
+        private int percentileBatchSize = 50;
+    }
+
+    @Data
+    public static class Alerts {
+        /** How often rules are reloaded, which picks up changes made through other replicas. */
+        private Duration reloadInterval = Duration.ofMinutes(1);
+        /** Receives alert state changes POSTed as a JSON array; none when empty. */
+        private String webhookUrl = "";
+        private Duration webhookTimeout = Duration.ofSeconds(5);
+        /** Most state changes in one webhook call. */
+        private int webhookBatchSize = 100;
+        /** State changes waiting for delivery; further ones are dropped while it is full. */
+        private int queueCapacity = 10_000;
+        private int maxSubscribers = 100;
+        /** State changes buffered per {@code /alerts/stream} subscriber; further ones are dropped. */
+        private int bufferSize = 256;
+    }
+}
@@ -4,21 +4,47 @@ import com.tempmonitor.dto.*;
 import com.tempmonitor.entity.Location;
 import com.tempmonitor.entity.TemperatureReading;
 import com.tempmonitor.entity.Thermometer;
+import com.tempmonitor.entity.ThermometerStats;
+import com.tempmonitor.cache.LatestReadingCache;
+import com.tempmonitor.cache.MetadataChangedEvent;
+import com.tempmonitor.cache.RecentReadingsStore;
+import com.tempmonitor.ingest.PendingReading;
+import com.tempmonitor.ingest.ReadingTimeWindow;
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.stats.QuantileSketch;
+import com.tempmonitor.stats.ReadingPercentiles;
+import com.tempmonitor.stats.RollupResolution;
 import com.tempmonitor.repo.LocationRepository;
+import com.tempmonitor.repo.LocationRow;
+import com.tempmonitor.repo.ReadingBlockRepository;
+import com.tempmonitor.repo.ReadingRollupRepository;
+import com.tempmonitor.repo.ReadingRow;
+import com.tempmonitor.repo.TemperatureReadingBatchRepository;
 import com.tempmonitor.repo.TemperatureReadingRepository;
 import com.tempmonitor.repo.ThermometerRepository;
+import com.tempmonitor.repo.ThermometerRow;
+import com.tempmonitor.repo.ThermometerStatsRepository;
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.util.List;
-import java.util.NoSuchElementException;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
+@Timed(value = "tempmonitor.service", histogram = true)
 @Slf4j
 public class TempMonitorService {
 
@@ -26,9 +52,22 @@ public class TempMonitorService {
     private static final String LOCATION_NOT_FOUND_WITH_ID = "Location not found with id={}";
     private static final String THERMOMETER_NOT_FOUND = "Thermometer not found";
     private static final String THERMOMETER_NOT_FOUND_WITH_ID = "Thermometer not  with id={}";
+    private static final String READING_FIELDS_REQUIRED = "thermometerId and value are required";
+    public static final String READING_VALUE_NOT_FINITE = "value must be a finite number";
+    public static final int MAX_BATCH_SIZE = 5000;
     private final LocationRepository locationRepo;
     private final ThermometerRepository thermometerRepo;
     private final TemperatureReadingRepository readingRepo;
+    private final TemperatureReadingBatchRepository readingBatchRepo;
+    private final ThermometerStatsRepository statsRepo;
+    private final ReadingRollupRepository rollupRepo;
+    private final ReadingBlockRepository blockRepo;
+    private final ReadingPercentiles readingPercentiles;
+    private final LatestReadingCache latestReadingCache;
+    private final RecentReadingsStore recentReadingsStore;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TempMonitorProperties properties;
+    private final PlatformTransactionManager transactionManager;
 
     public List<LocationDto> getLocations() {
         log.info("Fetching all locations");
@@ -37,7 +76,7 @@ public class TempMonitorService {
 
     public LocationDto getLocation(Integer id) {
         log.info("Fetching location with id {}", id);
-        Location loc = locationRepo.findById(id).orElseThrow(() -> {
+        LocationRow loc = locationRepo.findRowById(id).orElseThrow(() -> {
             log.warn(LOCATION_NOT_FOUND_WITH_ID, id);
             return new NoSuchElementException(LOCATION_NOT_FOUND);
         });
@@ -46,20 +85,27 @@ public class TempMonitorService {
 
     public LocationDto createLocation(String name) {
         log.info("Creating location: {}", name);
-        Location loc = Location.builder().name(name).build();
-        return DtoFactory.createLocationDto(locationRepo.save(loc));
+        Location loc = locationRepo.save(Location.builder().name(name).build());
+        eventPublisher.publishEvent(new MetadataChangedEvent(loc.getId(), null));
+        return DtoFactory.createLocationDto(loc);
     }
 
     public List<ThermometerDto> getThermometers(Integer locationId) {
         log.info("Fetching thermometers for location: {}", locationId);
-        List<Thermometer> therms = (locationId == null) ? thermometerRepo.findAll()
-                : thermometerRepo.findByLocation(locationRepo.getReferenceById(locationId));
-        return therms.stream().map(DtoFactory::createThermometerDto).toList();
+        if (locationId == null) {
+            return thermometerRepo.findAllRows().stream().map(DtoFactory::createThermometerDto).toList();
+        }
+        List<ThermometerRow> rows = thermometerRepo.findRowsByLocationId(locationId);
+        if (rows.isEmpty() && locationRepo.findRowById(locationId).isEmpty()) {
+            log.warn(LOCATION_NOT_FOUND_WITH_ID, locationId);
+            throw new NoSuchElementException(LOCATION_NOT_FOUND);
+        }
+        return rows.stream().map(DtoFactory::createThermometerDto).toList();
     }
 
     public ThermometerDto getThermometer(Integer id) {
         log.info("Fetching thermometer with id {}", id);
-        Thermometer therm = thermometerRepo.findById(id).orElseThrow(() -> {
+        ThermometerRow therm = thermometerRepo.findRowById(id).orElseThrow(() -> {
             log.warn(THERMOMETER_NOT_FOUND_WITH_ID, id);
             return new NoSuchElementException(THERMOMETER_NOT_FOUND);
         });
@@ -68,86 +114,418 @@ public class TempMonitorService {
 
     public ThermometerDto createThermometer(String name, Integer locationId) {
         log.info("Creating thermometer '{}' for location {}", name, locationId);
-        Location loc = locationRepo.findById(locationId).orElseThrow(() -> {
+        if (locationRepo.findRowById(locationId).isEmpty()) {
             log.warn(LOCATION_NOT_FOUND_WITH_ID, locationId);
-            return new NoSuchElementException(LOCATION_NOT_FOUND);
-        });
-        Thermometer therm = Thermometer.builder().name(name).location(loc).build();
-        return DtoFactory.createThermometerDto(thermometerRepo.save(therm));
+            throw new NoSuchElementException(LOCATION_NOT_FOUND);
+        }
+        Thermometer therm = Thermometer.builder().name(name).location(locationRepo.getReferenceById(locationId)).build();
+        therm = thermometerRepo.save(therm);
+        eventPublisher.publishEvent(new MetadataChangedEvent(locationId, therm.getId()));
+        return DtoFactory.createThermometerDto(therm);
     }
 
     public TemperatureReadingDto addReading(TemperatureReadingCreateDto dto) {
-        log.info("Adding temperature reading for thermometer {}", dto.getThermometerId());
-        Thermometer therm = thermometerRepo.findById(dto.getThermometerId()).orElseThrow(() -> {
-            log.warn(THERMOMETER_NOT_FOUND_WITH_ID, dto.getThermometerId());
-            return new NoSuchElementException(THERMOMETER_NOT_FOUND);
-        });
-        TemperatureReading tr = TemperatureReading.builder()
-                .thermometer(therm)
-                .value(dto.getValue())
-                .timestamp(Instant.now())
-                .build();
-        return DtoFactory.createTemperatureReadingDto(readingRepo.save(tr));
+        return addPendingReading(toPending(dto, Instant.now()));
+    }
+
+    public TemperatureReadingDto addPendingReading(PendingReading reading) {
+        log.info("Adding temperature reading for thermometer {}", reading.thermometerId());
+        if (!Double.isFinite(reading.value())) {
+            throw new InvalidRequestException(READING_VALUE_NOT_FINITE);
+        }
+        String timeRejection = ReadingTimeWindow.rejection(reading.timestamp(), Instant.now(), properties);
+        if (timeRejection != null) {
+            throw new InvalidRequestException(timeRejection);
+        }
+        if (thermometerRepo.findRowById(reading.thermometerId()).isEmpty()) {
+            log.warn(THERMOMETER_NOT_FOUND_WITH_ID, reading.thermometerId());
+            throw new NoSuchElementException(THERMOMETER_NOT_FOUND);
+        }
+        ReadingBatchItemDto item = new ReadingBatchItemDto();
+        item.setThermometerId(reading.thermometerId());
+        item.setTimestamp(reading.timestamp().truncatedTo(ChronoUnit.MICROS));
+        List<StoredReading> stored = insertNew(List.of(item), List.of(reading));
+        if (stored.isEmpty()) {
+            // a retry of a reading that is already stored gets the stored reading back
+            log.info("Temperature reading for thermometer {} at {} already stored", item.getThermometerId(), item.getTimestamp());
+            return recentReadingsStore.find(item.getThermometerId(), item.getTimestamp())
+                    .or(() -> readingRepo.findRowByThermometerAndTimestamp(item.getThermometerId(), item.getTimestamp())
+                            .map(DtoFactory::createTemperatureReadingDto))
+                    .orElseThrow();
+        }
+        StoredReading saved = stored.getFirst();
+        return DtoFactory.createTemperatureReadingDto(
+                new ReadingRow(saved.id(), saved.thermometerId(), saved.value(), saved.timestamp()));
+    }
+
+    public ReadingBatchResultDto addReadings(List<TemperatureReadingCreateDto> dtos) {
+        Instant now = Instant.now();
+        List<PendingReading> readings = new ArrayList<>(dtos.size());
+        for (TemperatureReadingCreateDto dto : dtos) {
+            readings.add(dto == null ? new PendingReading(null, null, now, true) : toPending(dto, now));
+        }
+        return addPendingReadings(readings);
+    }
+
+    private static PendingReading toPending(TemperatureReadingCreateDto dto, Instant receivedAt) {
+        if (dto.getTimestamp() != null) {
+            return new PendingReading(dto.getThermometerId(), dto.getValue(), dto.getTimestamp(), false);
+        }
+        return new PendingReading(dto.getThermometerId(), dto.getValue(), receivedAt, true);
+    }
+
+    public ReadingBatchResultDto addPendingReadings(List<PendingReading> readings) {
+        log.info("Adding batch of {} temperature readings", readings.size());
+        if (readings.size() > MAX_BATCH_SIZE) {
+            throw new InvalidRequestException("Batch size exceeds " + MAX_BATCH_SIZE);
+        }
+        return storeReadings(readings);
+    }
+
+    public ReadingBatchResultDto storeReadings(List<PendingReading> readings) {
+        Set<Integer> requestedIds = new HashSet<>();
+        for (PendingReading reading : readings) {
+            if (reading.thermometerId() != null) requestedIds.add(reading.thermometerId());
+        }
+        Set<Integer> knownIds = requestedIds.isEmpty() ? Set.of() : new HashSet<>(thermometerRepo.findExistingIds(requestedIds));
+        Instant now = Instant.now();
+
+        List<ReadingBatchItemDto> items = new ArrayList<>(readings.size());
+        List<ReadingBatchItemDto> accepted = new ArrayList<>(readings.size());
+        for (int i = 0; i < readings.size(); i++) {
+            PendingReading reading = readings.get(i);
+            ReadingBatchItemDto item = new ReadingBatchItemDto();
+            item.setIndex(i);
+            items.add(item);
+            if (reading.thermometerId() == null || reading.value() == null) {
+                item.setStatus(ReadingBatchItemDto.Status.REJECTED);
+                item.setError(READING_FIELDS_REQUIRED);
+                continue;
+            }
+            item.setThermometerId(reading.thermometerId());
+            if (!Double.isFinite(reading.value())) {
+                item.setStatus(ReadingBatchItemDto.Status.REJECTED);
+                item.setError(READING_VALUE_NOT_FINITE);
+                continue;
+            }
+            String timeRejection = ReadingTimeWindow.rejection(reading.timestamp(), now, properties);
+            if (timeRejection != null) {
+                item.setStatus(ReadingBatchItemDto.Status.REJECTED);
+                item.setError(timeRejection);
+                continue;
+            }
+            if (!knownIds.contains(reading.thermometerId())) {
+                log.warn(THERMOMETER_NOT_FOUND_WITH_ID, reading.thermometerId());
+                item.setStatus(ReadingBatchItemDto.Status.REJECTED);
+                item.setError(THERMOMETER_NOT_FOUND);
+                continue;
+            }
+            item.setStatus(ReadingBatchItemDto.Status.ACCEPTED);
+            item.setTimestamp(reading.timestamp().truncatedTo(ChronoUnit.MICROS));
+            accepted.add(item);
+        }
+        List<StoredReading> stored = insertNew(accepted, readings);
+
+        ReadingBatchResultDto result = new ReadingBatchResultDto();
+        result.setAccepted(stored.size());
+        result.setDuplicates(accepted.size() - stored.size());
+        result.setRejected(items.size() - accepted.size());
+        result.setItems(items);
+        log.info("Batch stored: {} accepted, {} duplicates, {} rejected", result.getAccepted(), result.getDuplicates(),
+                result.getRejected());
+        return result;
+    }
+
+    /**
+     * Inserts valid readings, skipping device-stamped ones already stored for the same thermometer and instant:
+     * first the ones {@link RecentReadingsStore} knows, without a round-trip, then the rest through the unique
+     * index. Skipped items become DUPLICATE, the others get their id, and the new readings are published.
+     * A server-stamped reading is never a duplicate: if its instant is taken it is moved past it and inserted again.
+     *
+     * @param items    ACCEPTED items with their thermometer and truncated timestamp, indexing into {@code readings}
+     * @return the readings actually inserted
+     */
+    private List<StoredReading> insertNew(List<ReadingBatchItemDto> items, List<PendingReading> readings) {
+        List<ReadingBatchItemDto> fresh = new ArrayList<>(items.size());
+        for (ReadingBatchItemDto item : items) {
+            Optional<TemperatureReadingDto> known = readings.get(item.getIndex()).serverStamped()
+                    ? Optional.empty()
+                    : recentReadingsStore.find(item.getThermometerId(), item.getTimestamp());
+            if (known.isPresent()) {
+                item.setStatus(ReadingBatchItemDto.Status.DUPLICATE);
+                item.setId(known.get().getId());
+            } else {
+                fresh.add(item);
+            }
+        }
+        // buffered uploads can span days; inserting in time order keeps each partition's rows together
+        fresh.sort(Comparator.comparing(ReadingBatchItemDto::getTimestamp));
+        // a device sending the same instant twice is retrying, e.g. both copies were queued during an outage, so
+        // only the first is kept
+        Map<Integer, Set<Instant>> taken = new HashMap<>();
+        for (Iterator<ReadingBatchItemDto> it = fresh.iterator(); it.hasNext(); ) {
+            ReadingBatchItemDto item = it.next();
+            if (readings.get(item.getIndex()).serverStamped()) continue;
+            if (!taken.computeIfAbsent(item.getThermometerId(), id -> new HashSet<>()).add(item.getTimestamp())) {
+                item.setStatus(ReadingBatchItemDto.Status.DUPLICATE);
+                it.remove();
+            }
+        }
+        // readings stamped with the same receive time are different readings, so they are moved a microsecond
+        // past the instants taken instead of being merged
+        for (ReadingBatchItemDto item : fresh) {
+            if (readings.get(item.getIndex()).serverStamped()) moveToFreeInstant(item, taken);
+        }
+
+        List<StoredReading> stored = new ArrayList<>(fresh.size());
+        List<ReadingBatchItemDto> pending = fresh;
+        while (!pending.isEmpty()) {
+            int[] thermometerIds = new int[pending.size()];
+            double[] values = new double[pending.size()];
+            long[] epochMicros = new long[pending.size()];
+            for (int i = 0; i < pending.size(); i++) {
+                ReadingBatchItemDto item = pending.get(i);
+                thermometerIds[i] = item.getThermometerId();
+                values[i] = readings.get(item.getIndex()).value();
+                epochMicros[i] = ChronoUnit.MICROS.between(Instant.EPOCH, item.getTimestamp());
+            }
+            int[] ids = readingBatchRepo.insertAll(thermometerIds, values, epochMicros);
+            List<ReadingBatchItemDto> conflicting = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                ReadingBatchItemDto item = pending.get(i);
+                if (ids[i] == 0) {
+                    // an earlier batch already stored a reading at this receive time
+                    if (readings.get(item.getIndex()).serverStamped()) {
+                        moveToFreeInstant(item, taken);
+                        conflicting.add(item);
+                    } else {
+                        item.setStatus(ReadingBatchItemDto.Status.DUPLICATE);
+                    }
+                    continue;
+                }
+                item.setId(ids[i]);
+                stored.add(new StoredReading(ids[i], thermometerIds[i], values[i], item.getTimestamp()));
+            }
+            pending = conflicting;
+        }
+        if (!stored.isEmpty()) {
+            eventPublisher.publishEvent(new ReadingsStoredEvent(stored));
+        }
+        return stored;
+    }
+
+    /** Moves the item's timestamp forward, a microsecond at a time, to the first instant not yet taken. */
+    private static void moveToFreeInstant(ReadingBatchItemDto item, Map<Integer, Set<Instant>> taken) {
+        Set<Instant> instants = taken.computeIfAbsent(item.getThermometerId(), id -> new HashSet<>());
+        Instant timestamp = item.getTimestamp();
+        while (!instants.add(timestamp)) {
+            timestamp = timestamp.plus(1, ChronoUnit.MICROS);
+        }
+        item.setTimestamp(timestamp);
     }
 
     public List<TemperatureReadingDto> getLatestReadings() {
         log.info("Fetching latest temperature readings for all thermometers");
-        return readingRepo.findLatestForAllThermometers().stream().map(DtoFactory::createTemperatureReadingDto).toList();
+        Optional<List<TemperatureReadingDto>> cached = latestReadingCache.snapshot();
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        return readingRepo.findLatestRowsForAllThermometers().stream()
+                .map(ReadingRow::fromNative)
+                .map(DtoFactory::createTemperatureReadingDto)
+                .toList();
     }
 
     public List<TemperatureReadingDto> getReadingsForThermometer(Integer thermometerId, int limit) {
         log.info("Fetching latest {} readings for thermometer {}", limit, thermometerId);
-        Thermometer therm = thermometerRepo.findById(thermometerId).orElseThrow(() -> {
+        Optional<List<TemperatureReadingDto>> recent = recentReadingsStore.latest(thermometerId, limit);
+        if (recent.isPresent()) {
+            return recent.get();
+        }
+        List<ReadingRow> rows = readingRepo.findLatestRows(thermometerId, Limit.of(limit));
+        if (rows.size() < limit && mayHaveArchived(rows)) {
+            rows = withArchived(thermometerId, rows, limit);
+        }
+        if (rows.isEmpty() && thermometerRepo.findRowById(thermometerId).isEmpty()) {
             log.warn(THERMOMETER_NOT_FOUND_WITH_ID, thermometerId);
-            return new NoSuchElementException(THERMOMETER_NOT_FOUND);
-        });
-        return readingRepo.findTop10ByThermometerOrderByTimestampDesc(therm).stream().limit(limit).map(DtoFactory::createTemperatureReadingDto).toList();
+            throw new NoSuchElementException(THERMOMETER_NOT_FOUND);
+        }
+        return rows.stream().map(DtoFactory::createTemperatureReadingDto).toList();
     }
 
-    public ThermometerStatsDto getThermometerStats(Integer thermometerId) {
-        log.info("Fetching stats for thermometer {}", thermometerId);
-        Thermometer therm = thermometerRepo.findById(thermometerId)
-                .orElseThrow(() -> {
-                    log.warn(THERMOMETER_NOT_FOUND_WITH_ID, thermometerId);
-                    return new NoSuchElementException(THERMOMETER_NOT_FOUND);
-                });
-        List<Object[]> statsList = readingRepo.statsForThermometer(therm);
-        Object[] stats = statsList.isEmpty() ? new Object[4] : statsList.getFirst();
+    /** Whether readings older than the rows can be in blocks; nothing is while archiving has never run. */
+    private boolean mayHaveArchived(List<ReadingRow> rows) {
+        Instant archivedBefore = blockRepo.knownArchivedBefore();
+        if (!archivedBefore.isAfter(Instant.EPOCH)) return false;
+        return rows.isEmpty() || !rows.getLast().timestamp().isBefore(archivedBefore);
+    }
 
-        ThermometerStatsDto dto = new ThermometerStatsDto();
+    /** Continues the newest rows with archived readings older than the oldest of them, up to {@code limit}. */
+    private List<ReadingRow> withArchived(Integer thermometerId, List<ReadingRow> rows, int limit) {
+        List<ReadingRow> result = new ArrayList<>(rows);
+        ReadingRow oldest = rows.isEmpty() ? null : rows.getLast();
+        Long beforeMicros = oldest == null ? null : ChronoUnit.MICROS.between(Instant.EPOCH, oldest.timestamp());
+        blockRepo.forEachNewestReading(thermometerId, beforeMicros, oldest == null ? 0 : oldest.id(),
+                limit - rows.size(), (id, epochMicros, value) -> result.add(new ReadingRow(id, thermometerId, value,
+                        Instant.EPOCH.plus(epochMicros, ChronoUnit.MICROS))));
+        return result;
+    }
+
+    public ReadingHistoryDto getReadingHistory(Integer thermometerId, Instant from, Instant to, RollupResolution resolution) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(properties.getHistory().getDefaultRange());
+        if (!start.isBefore(end)) {
+            throw new InvalidRequestException("from must be before to");
+        }
+        RollupResolution res = resolution != null ? resolution
+                : RollupResolution.forRange(Duration.between(start, end), properties.getHistory().getMaxPoints());
+        log.info("Fetching {} history for thermometer {} between {} and {}", res, thermometerId, start, end);
+        if (thermometerRepo.findRowById(thermometerId).isEmpty()) {
+            log.warn(THERMOMETER_NOT_FOUND_WITH_ID, thermometerId);
+            throw new NoSuchElementException(THERMOMETER_NOT_FOUND);
+        }
+        ReadingHistoryDto dto = new ReadingHistoryDto();
         dto.setThermometerId(thermometerId);
-        dto.setMin(stats[0] != null ? ((Number) stats[0]).doubleValue() : null);
-        dto.setMax(stats[1] != null ? ((Number) stats[1]).doubleValue() : null);
-        dto.setAvg(stats[2] != null ? ((Number) stats[2]).doubleValue() : null);
-        dto.setCount(stats[3] != null ? ((Number) stats[3]).longValue() : null);
+        dto.setResolution(res);
+        dto.setFrom(start);
+        dto.setTo(end);
+        dto.setBuckets(rollupRepo.findBuckets(thermometerId, res, res.truncate(start), end));
         return dto;
     }
 
+    public ThermometerStatsDto getThermometerStats(Integer thermometerId) {
+        log.info("Fetching stats for thermometer {}", thermometerId);
+        if (thermometerRepo.findRowById(thermometerId).isEmpty()) {
+            log.warn(THERMOMETER_NOT_FOUND_WITH_ID, thermometerId);
+            throw new NoSuchElementException(THERMOMETER_NOT_FOUND);
+        }
+        ThermometerStats stats = statsRepo.findById(thermometerId).orElse(null);
+        if (stats == null) {
+            return toThermometerStats(new Object[]{thermometerId, null, null, null, null, null});
+        }
+        return toThermometerStats(new Object[]{thermometerId, stats.getMinValue(), stats.getMaxValue(),
+                stats.getSumValue(), stats.getCount(), stats.getSketch()});
+    }
+
+    /**
+     * Stats of every thermometer, or of those at one location, from a single grouped query. Percentiles come
+     * from the stored quantile sketches unless {@code exactPercentiles} asks for them to be computed from the raw
+     * readings. The grouped query runs in a transaction of its own that ends before the exact queries start, so
+     * their connections are not taken while this request still holds one.
+     */
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public List<ThermometerStatsDto> getThermometerStatsList(Integer locationId, boolean exactPercentiles) {
+        log.info("Fetching stats for thermometers of location {}", locationId);
+        List<ThermometerStatsDto> result = inReadOnlyTransaction(status -> {
+            List<Object[]> rows = locationId != null
+                    ? statsRepo.thermometerStatsByLocation(locationId)
+                    : statsRepo.allThermometerStats();
+            if (rows.isEmpty() && locationId != null && locationRepo.findRowById(locationId).isEmpty()) {
+                log.warn(LOCATION_NOT_FOUND_WITH_ID, locationId);
+                throw new NoSuchElementException(LOCATION_NOT_FOUND);
+            }
+            return rows.stream().map(TempMonitorService::toThermometerStats).toList();
+        });
+        if (exactPercentiles) {
+            Map<Integer, double[]> byThermometer = readingPercentiles.byThermometer(result.stream()
+                    .filter(dto -> dto.getCount() > 0).map(ThermometerStatsDto::getThermometerId).toList());
+            result.forEach(dto -> setPercentiles(dto, byThermometer.get(dto.getThermometerId())));
+        }
+        return result;
+    }
+
     public LocationStatsDto getLocationStats(Integer locationId) {
         log.info("Fetching stats for location {}", locationId);
-        Location loc = locationRepo.findById(locationId)
-                .orElseThrow(() -> {
-                    log.warn(LOCATION_NOT_FOUND_WITH_ID, locationId);
-                    return new NoSuchElementException(LOCATION_NOT_FOUND);
-                });
-        List<Integer> thermIds = loc.getThermometers().stream().map(Thermometer::getId).toList();
-        if (thermIds.isEmpty()) {
+        List<Object[]> statsList = statsRepo.locationStats(locationId);
+        Object[] stats = statsList.isEmpty() ? new Object[6] : statsList.getFirst();
+        long thermometers = stats[0] != null ? ((Number) stats[0]).longValue() : 0L;
+        if (thermometers == 0) {
+            if (locationRepo.findRowById(locationId).isEmpty()) {
+                log.warn(LOCATION_NOT_FOUND_WITH_ID, locationId);
+                throw new NoSuchElementException(LOCATION_NOT_FOUND);
+            }
             log.info("No thermometers found for location {}", locationId);
-            LocationStatsDto dto = new LocationStatsDto();
-            dto.setLocationId(locationId);
-            return dto;
         }
-        List<Object[]> statsList = readingRepo.statsForLocation(thermIds);
-        Object[] stats = statsList.isEmpty() ? new Object[4] : statsList.getFirst();
+        return toLocationStats(locationId, stats);
+    }
+
+    /**
+     * Stats of every location from a single grouped query; transaction and percentiles as for
+     * {@link #getThermometerStatsList}.
+     */
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public List<LocationStatsDto> getAllLocationStats(boolean exactPercentiles) {
+        log.info("Fetching stats for all locations");
+        List<LocationStatsDto> result = inReadOnlyTransaction(status -> statsRepo.allLocationStats().stream()
+                .map(row -> toLocationStats(((Number) row[6]).intValue(), row))
+                .toList());
+        if (exactPercentiles) {
+            Map<Integer, double[]> byLocation = readingPercentiles.byLocation(result.stream()
+                    .filter(dto -> dto.getCount() != null && dto.getCount() > 0).map(LocationStatsDto::getLocationId)
+                    .toList());
+            result.forEach(dto -> setPercentiles(dto, byLocation.get(dto.getLocationId())));
+        }
+        return result;
+    }
+
+    /**
+     * Runs {@code action} in a transaction that releases its connection on return; the class-level
+     * {@code @Transactional} would keep one bound until the whole method returns.
+     */
+    private <T> T inReadOnlyTransaction(TransactionCallback<T> action) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate.execute(action);
+    }
+
+    /**
+     * @param row thermometer id followed by MIN, MAX, SUM and COUNT of its readings and its sketch as JSON
+     */
+    private static ThermometerStatsDto toThermometerStats(Object[] row) {
+        ThermometerStatsDto dto = new ThermometerStatsDto();
+        dto.setThermometerId((Integer) row[0]);
+        long count = row[4] != null ? ((Number) row[4]).longValue() : 0L;
+        dto.setCount(count);
+        if (count == 0) return dto;
+        dto.setMin((Double) row[1]);
+        dto.setMax((Double) row[2]);
+        dto.setAvg((Double) row[3] / count);
+        setPercentiles(dto, QuantileSketch.fromJson((String) row[5]).percentiles());
+        return dto;
+    }
+
+    /**
+     * @param stats number of thermometers followed by MIN, MAX, SUM and COUNT of their readings and their merged
+     *              sketch as JSON
+     */
+    private static LocationStatsDto toLocationStats(Integer locationId, Object[] stats) {
         LocationStatsDto dto = new LocationStatsDto();
         dto.setLocationId(locationId);
-        dto.setMin(stats[0] != null ? ((Number) stats[0]).doubleValue() : null);
-        dto.setMax(stats[1] != null ? ((Number) stats[1]).doubleValue() : null);
-        dto.setAvg(stats[2] != null ? ((Number) stats[2]).doubleValue() : null);
-        dto.setCount(stats[3] != null ? ((Number) stats[3]).longValue() : null);
+        long thermometers = stats[0] != null ? ((Number) stats[0]).longValue() : 0L;
+        if (thermometers == 0) return dto;
+        long count = stats[4] != null ? ((Number) stats[4]).longValue() : 0L;
+        dto.setMin(stats[1] != null ? ((Number) stats[1]).doubleValue() : null);
+        dto.setMax(stats[2] != null ? ((Number) stats[2]).doubleValue() : null);
+        dto.setAvg(count > 0 ? ((Number) stats[3]).doubleValue() / count : null);
+        dto.setCount(count);
+        setPercentiles(dto, QuantileSketch.fromJson((String) stats[5]).percentiles());
         return dto;
     }
 
+    private static void setPercentiles(ThermometerStatsDto dto, double[] percentiles) {
+        if (percentiles == null) return;
+        dto.setP50(percentiles[0]);
+        dto.setP90(percentiles[1]);
+        dto.setP99(percentiles[2]);
+    }
+
+    private static void setPercentiles(LocationStatsDto dto, double[] percentiles) {
+        if (percentiles == null) return;
+        dto.setP50(percentiles[0]);
+        dto.setP90(percentiles[1]);
+        dto.setP99(percentiles[2]);
+    }
+
     public void initDemoData() {
         log.info("Initializing demo data");
         List<String> names = List.of("Living Room", "Kitchen", "Basement");
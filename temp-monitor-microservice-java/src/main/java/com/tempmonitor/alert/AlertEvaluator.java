@@ -0,0 +1,114 @@
+package com.tempmonitor.alert;
+
+import com.tempmonitor.cache.MetadataChangedEvent;
+import com.tempmonitor.dto.AlertDto;
+import com.tempmonitor.entity.AlertRule;
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.repo.AlertRuleRepository;
+import com.tempmonitor.repo.ThermometerRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Evaluates the alert rules against every committed batch of readings, on the thread that stored it, and hands
+ * the state changes to the {@link AlertNotifier}. The rules are compiled into an {@link AlertRuleIndex} on
+ * startup, whenever a rule or a thermometer changes, and every {@code tempmonitor.alerts.reload-interval} to
+ * pick up changes made through other replicas.
+ *
+ * <p>Alert state is kept in memory by the replica that stores the readings: after a restart, an alert that
+ * was firing fires again with the next reading past its threshold.
+ */
+@Component
+@Slf4j
+public class AlertEvaluator {
+
+    private final AlertRuleRepository ruleRepo;
+    private final ThermometerRepository thermometerRepo;
+    private final AlertNotifier notifier;
+    private final Counter firedCounter;
+    private final Counter resolvedCounter;
+    private volatile AlertRuleIndex index = AlertRuleIndex.empty();
+
+    public AlertEvaluator(AlertRuleRepository ruleRepo, ThermometerRepository thermometerRepo, AlertNotifier notifier,
+                          MeterRegistry registry) {
+        this.ruleRepo = ruleRepo;
+        this.thermometerRepo = thermometerRepo;
+        this.notifier = notifier;
+        Gauge.builder("tempmonitor.alerts.rules", this, evaluator -> evaluator.index.ruleCount())
+                .description("Enabled alert rules")
+                .register(registry);
+        this.firedCounter = Counter.builder("tempmonitor.alerts.transitions")
+                .tag("state", AlertState.FIRING.name())
+                .description("Alerts that fired or resolved")
+                .register(registry);
+        this.resolvedCounter = Counter.builder("tempmonitor.alerts.transitions")
+                .tag("state", AlertState.RESOLVED.name())
+                .description("Alerts that fired or resolved")
+                .register(registry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReadingsStored(ReadingsStoredEvent event) {
+        List<AlertDto> changes = new ArrayList<>();
+        index.evaluate(event.readings(), changes);
+        publish(changes);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRulesChanged(AlertRulesChangedEvent event) {
+        reload();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMetadataChanged(MetadataChangedEvent event) {
+        // a new thermometer is covered by the rules of its location
+        if (event.thermometerId() != null) reload();
+    }
+
+    /** Also runs once at startup. */
+    @Scheduled(fixedDelayString = "${tempmonitor.alerts.reload-interval:1m}")
+    public synchronized void reload() {
+        List<AlertRule> rules = ruleRepo.findEnabled();
+        List<Integer> locationIds = rules.stream()
+                .map(AlertRule::getLocationId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<Integer, List<Integer>> locationThermometers = new HashMap<>();
+        if (!locationIds.isEmpty()) {
+            for (Object[] row : thermometerRepo.findIdsByLocationIds(locationIds)) {
+                locationThermometers.computeIfAbsent((Integer) row[1], id -> new ArrayList<>()).add((Integer) row[0]);
+            }
+        }
+        List<AlertDto> resolved = new ArrayList<>();
+        AlertRuleIndex compiled = AlertRuleIndex.compile(rules, locationThermometers, index, resolved);
+        index = compiled;
+        log.debug("Compiled {} alert rules for {} thermometers", compiled.ruleCount(), compiled.thermometerCount());
+        publish(resolved);
+    }
+
+    public List<AlertDto> firing() {
+        return index.firing();
+    }
+
+    private void publish(List<AlertDto> changes) {
+        if (changes.isEmpty()) return;
+        for (AlertDto change : changes) {
+            log.info("Alert {} '{}' {} for thermometer {}: {}", change.getRuleId(), change.getRuleName(),
+                    change.getState(), change.getThermometerId(), change.getValue());
+            (change.getState() == AlertState.FIRING ? firedCounter : resolvedCounter).increment();
+        }
+        notifier.publish(changes);
+    }
+}
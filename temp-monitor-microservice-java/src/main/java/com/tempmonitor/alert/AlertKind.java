@@ -0,0 +1,16 @@
+package com.tempmonitor.alert;
+
+/**
+ * What an alert rule compares with its threshold.
+ */
+public enum AlertKind {
+    /** The reading is above the threshold; resolves at or below {@code threshold - hysteresis}. */
+    ABOVE,
+    /** The reading is below the threshold; resolves at or above {@code threshold + hysteresis}. */
+    BELOW,
+    /**
+     * The change since the previous reading, up or down, is faster than the threshold in degrees per minute;
+     * resolves at or below {@code threshold - hysteresis}.
+     */
+    RATE_OF_CHANGE
+}
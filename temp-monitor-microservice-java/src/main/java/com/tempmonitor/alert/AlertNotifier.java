@@ -0,0 +1,195 @@
+package com.tempmonitor.alert;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.dto.AlertDto;
+import com.tempmonitor.stream.StreamLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers alert state changes to the webhook and to {@code /alerts/stream} subscribers. Changes are handed to
+ * a single notifier thread, so evaluating readings never waits for a slow webhook; it POSTs them in batches and
+ * buffers them for every subscriber, each written by a virtual thread of its own. A failed webhook call is
+ * logged and counted, not retried: the receiver gets the current state with the next change, and
+ * {@code /alerts} lists what is firing.
+ */
+@Component
+@Slf4j
+public class AlertNotifier implements SmartLifecycle {
+
+    /** Wakes a stream writer to close its stream. */
+    private static final AlertDto CLOSE = new AlertDto();
+
+    private final ObjectMapper objectMapper;
+    private final TempMonitorProperties.Alerts config;
+    private final TempMonitorProperties.Stream streamConfig;
+    private final HttpClient httpClient;
+    private final BlockingQueue<AlertDto> inbox;
+    private final Set<BlockingQueue<AlertDto>> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Counter droppedCounter;
+    private final Counter webhookFailureCounter;
+    private Thread notifier;
+    private volatile boolean running;
+
+    public AlertNotifier(ObjectMapper objectMapper, TempMonitorProperties properties, MeterRegistry registry) {
+        this.objectMapper = objectMapper;
+        this.config = properties.getAlerts();
+        this.streamConfig = properties.getStream();
+        this.httpClient = config.getWebhookUrl().isBlank() ? null : HttpClient.newBuilder()
+                .connectTimeout(config.getWebhookTimeout())
+                .build();
+        this.inbox = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        Gauge.builder("tempmonitor.alerts.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open alert streams")
+                .register(registry);
+        this.droppedCounter = Counter.builder("tempmonitor.alerts.dropped")
+                .description("Alert state changes not delivered because a queue was full")
+                .register(registry);
+        this.webhookFailureCounter = Counter.builder("tempmonitor.alerts.webhook.failures")
+                .description("Webhook calls that failed or were answered with an error")
+                .register(registry);
+    }
+
+    public void publish(List<AlertDto> changes) {
+        for (AlertDto change : changes) {
+            if (!inbox.offer(change)) droppedCounter.increment();
+        }
+    }
+
+    /**
+     * Opens a stream of alert state changes, starting with the alerts that are {@code firing}.
+     */
+    public SseEmitter subscribe(List<AlertDto> firing) {
+        if (subscriberCount.incrementAndGet() > config.getMaxSubscribers()) {
+            subscriberCount.decrementAndGet();
+            throw new StreamLimitExceededException("Alert stream", config.getMaxSubscribers());
+        }
+        BlockingQueue<AlertDto> queue = new ArrayBlockingQueue<>(Math.max(config.getBufferSize(), firing.size()));
+        queue.addAll(firing);
+        SseEmitter emitter = new SseEmitter(streamConfig.getTimeout().toMillis());
+        emitter.onCompletion(() -> unsubscribe(queue));
+        emitter.onTimeout(() -> {
+            unsubscribe(queue);
+            emitter.complete();
+        });
+        emitter.onError(e -> unsubscribe(queue));
+        subscribers.add(queue);
+        Thread.ofVirtual().name("alert-stream").start(() -> write(queue, emitter));
+        return emitter;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        notifier = Thread.ofPlatform().daemon().name("alert-notifier").start(this::notifyLoop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (notifier != null) {
+            notifier.interrupt();
+            notifier = null;
+        }
+        for (BlockingQueue<AlertDto> queue : new ArrayList<>(subscribers)) {
+            unsubscribe(queue);
+            queue.clear();
+            queue.offer(CLOSE);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void notifyLoop() {
+        List<AlertDto> batch = new ArrayList<>(config.getWebhookBatchSize());
+        while (running) {
+            try {
+                batch.add(inbox.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            inbox.drainTo(batch, config.getWebhookBatchSize() - 1);
+            for (BlockingQueue<AlertDto> subscriber : subscribers) {
+                for (AlertDto alert : batch) {
+                    if (!subscriber.offer(alert)) droppedCounter.increment();
+                }
+            }
+            if (httpClient != null) postWebhook(batch);
+            batch.clear();
+        }
+    }
+
+    private void postWebhook(List<AlertDto> batch) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(config.getWebhookUrl()))
+                    .timeout(config.getWebhookTimeout())
+                    .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(batch)))
+                    .build();
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 300) {
+                webhookFailureCounter.increment();
+                log.warn("Alert webhook answered {} to {} state changes", response.statusCode(), batch.size());
+            }
+        } catch (IOException | RuntimeException e) {
+            webhookFailureCounter.increment();
+            log.warn("Alert webhook failed for {} state changes: {}", batch.size(), e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(BlockingQueue<AlertDto> queue, SseEmitter emitter) {
+        Duration heartbeat = streamConfig.getHeartbeatInterval();
+        try {
+            while (subscribers.contains(queue)) {
+                AlertDto alert = queue.poll(heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+                if (alert == CLOSE || !subscribers.contains(queue)) break;
+                if (alert == null) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else {
+                    emitter.send(SseEmitter.event().name("alert").data(alert, MediaType.APPLICATION_JSON));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // the client went away or the emitter already completed
+            log.debug("Alert stream closed: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            unsubscribe(queue);
+            if (!running) emitter.complete();
+        }
+    }
+
+    private void unsubscribe(BlockingQueue<AlertDto> queue) {
+        if (subscribers.remove(queue)) subscriberCount.decrementAndGet();
+    }
+}
@@ -0,0 +1,242 @@
+package com.tempmonitor.alert;
+
+import com.tempmonitor.dto.AlertDto;
+import com.tempmonitor.entity.AlertRule;
+import com.tempmonitor.ingest.StoredReading;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Alert rules compiled for evaluation in the ingestion path: every thermometer with rules gets an array of the
+ * rules that apply to it, its own and those of its location, each with its alert state. Evaluating a reading is
+ * one hash lookup by thermometer id and a loop over that short array, however many rules there are in total.
+ *
+ * <p>The index itself never changes; {@link #compile} builds a new one that takes over the alert state of the
+ * previous one, so rules can be reloaded while readings are evaluated. The state of a thermometer is guarded by
+ * its own lock, and a thermometer taken over by a newer index forwards evaluations to it, so none is lost in
+ * between. Readings older than the newest one evaluated for a thermometer are skipped, so a late upload cannot
+ * flip an alert back.
+ */
+public final class AlertRuleIndex {
+
+    /** Rates of change are measured over at least this long; readings closer together would only add noise. */
+    static final long MIN_RATE_INTERVAL_MICROS = 1_000_000;
+
+    private static final AlertRuleIndex EMPTY = new AlertRuleIndex(Map.of(), 0);
+
+    private final Map<Integer, ThermometerRules> byThermometer;
+    private final int ruleCount;
+
+    private AlertRuleIndex(Map<Integer, ThermometerRules> byThermometer, int ruleCount) {
+        this.byThermometer = byThermometer;
+        this.ruleCount = ruleCount;
+    }
+
+    public static AlertRuleIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param rules                the enabled rules
+     * @param locationThermometers ids of the thermometers of every location that has rules
+     * @param previous             the index whose alert state carries over
+     * @param resolved             receives a RESOLVED alert for every alert of {@code previous} that was firing on
+     *                             a rule that no longer applies
+     */
+    public static AlertRuleIndex compile(Collection<AlertRule> rules, Map<Integer, List<Integer>> locationThermometers,
+                                         AlertRuleIndex previous, List<AlertDto> resolved) {
+        Map<Integer, List<RuleState>> grouped = new HashMap<>();
+        for (AlertRule rule : rules) {
+            if (rule.getThermometerId() != null) {
+                grouped.computeIfAbsent(rule.getThermometerId(), id -> new ArrayList<>()).add(new RuleState(rule));
+            } else {
+                for (Integer thermometerId : locationThermometers.getOrDefault(rule.getLocationId(), List.of())) {
+                    grouped.computeIfAbsent(thermometerId, id -> new ArrayList<>()).add(new RuleState(rule));
+                }
+            }
+        }
+        Map<Integer, ThermometerRules> byThermometer = HashMap.newHashMap(grouped.size());
+        grouped.forEach((thermometerId, states) ->
+                byThermometer.put(thermometerId, new ThermometerRules(thermometerId, states.toArray(RuleState[]::new))));
+        for (ThermometerRules old : previous.byThermometer.values()) {
+            old.handOver(byThermometer.get(old.thermometerId), resolved);
+        }
+        return new AlertRuleIndex(byThermometer, rules.size());
+    }
+
+    /**
+     * Evaluates readings in timestamp order, adding every alert that fired or resolved to {@code changes}.
+     */
+    public void evaluate(List<StoredReading> readings, List<AlertDto> changes) {
+        if (byThermometer.isEmpty()) return;
+        for (StoredReading reading : readings) {
+            ThermometerRules rules = byThermometer.get(reading.thermometerId());
+            while (rules != null) {
+                rules = rules.evaluate(reading, changes);
+            }
+        }
+    }
+
+    /** The alerts that are firing, by rule and thermometer. */
+    public List<AlertDto> firing() {
+        List<AlertDto> firing = new ArrayList<>();
+        for (ThermometerRules rules : byThermometer.values()) {
+            rules.firing(firing);
+        }
+        return firing;
+    }
+
+    public int ruleCount() {
+        return ruleCount;
+    }
+
+    public int thermometerCount() {
+        return byThermometer.size();
+    }
+
+    private static final class ThermometerRules {
+        private final int thermometerId;
+        private final RuleState[] states;
+        private long latestMicros = Long.MIN_VALUE;
+        /** The reading the next rate of change is measured from. */
+        private long baseMicros = Long.MIN_VALUE;
+        private double baseValue;
+        private boolean handedOver;
+        /** Where evaluations go once handed over, null if the thermometer no longer has rules. */
+        private ThermometerRules successor;
+
+        ThermometerRules(int thermometerId, RuleState[] states) {
+            this.thermometerId = thermometerId;
+            this.states = states;
+        }
+
+        /**
+         * @return the rules to evaluate the reading with instead, if these were handed over to a newer index
+         */
+        synchronized ThermometerRules evaluate(StoredReading reading, List<AlertDto> changes) {
+            if (handedOver) return successor;
+            long micros = micros(reading.timestamp());
+            if (micros <= latestMicros) return null;
+            latestMicros = micros;
+            double rate = Double.NaN;
+            if (baseMicros == Long.MIN_VALUE) {
+                baseMicros = micros;
+                baseValue = reading.value();
+            } else if (micros - baseMicros >= MIN_RATE_INTERVAL_MICROS) {
+                rate = Math.abs(reading.value() - baseValue) * 60_000_000.0 / (micros - baseMicros);
+                baseMicros = micros;
+                baseValue = reading.value();
+            }
+            for (RuleState state : states) {
+                double observed = state.kind == AlertKind.RATE_OF_CHANGE ? rate : reading.value();
+                if (Double.isNaN(observed)) continue;
+                if (!state.firing && state.breached(observed)) {
+                    state.firing = true;
+                    state.firedValue = observed;
+                    state.firedAt = reading.timestamp();
+                    changes.add(state.alert(thermometerId, AlertState.FIRING, observed, reading.timestamp()));
+                } else if (state.firing && state.cleared(observed)) {
+                    state.firing = false;
+                    changes.add(state.alert(thermometerId, AlertState.RESOLVED, observed, reading.timestamp()));
+                }
+            }
+            return null;
+        }
+
+        synchronized void handOver(ThermometerRules successor, List<AlertDto> resolved) {
+            handedOver = true;
+            this.successor = successor;
+            if (successor != null) {
+                synchronized (successor) {
+                    successor.latestMicros = latestMicros;
+                    successor.baseMicros = baseMicros;
+                    successor.baseValue = baseValue;
+                    for (RuleState state : successor.states) {
+                        RuleState old = find(state.ruleId);
+                        if (old != null && old.firing) {
+                            state.firing = true;
+                            state.firedValue = old.firedValue;
+                            state.firedAt = old.firedAt;
+                        }
+                    }
+                }
+            }
+            for (RuleState old : states) {
+                if (old.firing && (successor == null || successor.find(old.ruleId) == null)) {
+                    resolved.add(old.alert(thermometerId, AlertState.RESOLVED, old.firedValue, old.firedAt));
+                }
+            }
+        }
+
+        synchronized void firing(List<AlertDto> firing) {
+            if (handedOver) {
+                if (successor != null) successor.firing(firing);
+                return;
+            }
+            for (RuleState state : states) {
+                if (state.firing) {
+                    firing.add(state.alert(thermometerId, AlertState.FIRING, state.firedValue, state.firedAt));
+                }
+            }
+        }
+
+        private RuleState find(int ruleId) {
+            for (RuleState state : states) {
+                if (state.ruleId == ruleId) return state;
+            }
+            return null;
+        }
+    }
+
+    private static final class RuleState {
+        private final int ruleId;
+        private final String name;
+        private final AlertKind kind;
+        private final Integer locationId;
+        private final double threshold;
+        private final double hysteresis;
+        private boolean firing;
+        private double firedValue;
+        private Instant firedAt;
+
+        RuleState(AlertRule rule) {
+            this.ruleId = rule.getId();
+            this.name = rule.getName();
+            this.kind = rule.getKind();
+            this.locationId = rule.getLocationId();
+            this.threshold = rule.getThreshold();
+            this.hysteresis = rule.getHysteresis();
+        }
+
+        boolean breached(double observed) {
+            return kind == AlertKind.BELOW ? observed < threshold : observed > threshold;
+        }
+
+        boolean cleared(double observed) {
+            return kind == AlertKind.BELOW ? observed >= threshold + hysteresis : observed <= threshold - hysteresis;
+        }
+
+        AlertDto alert(int thermometerId, AlertState state, double value, Instant timestamp) {
+            AlertDto dto = new AlertDto();
+            dto.setRuleId(ruleId);
+            dto.setRuleName(name);
+            dto.setKind(kind);
+            dto.setThermometerId(thermometerId);
+            dto.setLocationId(locationId);
+            dto.setState(state);
+            dto.setValue(value);
+            dto.setThreshold(threshold);
+            dto.setTimestamp(timestamp);
+            return dto;
+        }
+    }
+
+    private static long micros(Instant timestamp) {
+        return timestamp.getEpochSecond() * 1_000_000 + timestamp.getNano() / 1_000;
+    }
+}
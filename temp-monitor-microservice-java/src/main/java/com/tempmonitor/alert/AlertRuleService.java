@@ -0,0 +1,102 @@
+package com.tempmonitor.alert;
+
+import com.tempmonitor.InvalidRequestException;
+import com.tempmonitor.dto.AlertRuleDto;
+import com.tempmonitor.dto.DtoFactory;
+import com.tempmonitor.entity.AlertRule;
+import com.tempmonitor.repo.AlertRuleRepository;
+import com.tempmonitor.repo.LocationRepository;
+import com.tempmonitor.repo.ThermometerRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Stores alert rules; every change is compiled into the rules evaluated by the {@link AlertEvaluator} once it
+ * has committed.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional
+@Slf4j
+public class AlertRuleService {
+
+    private static final String RULE_NOT_FOUND = "Alert rule not found";
+
+    private final AlertRuleRepository ruleRepo;
+    private final ThermometerRepository thermometerRepo;
+    private final LocationRepository locationRepo;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public List<AlertRuleDto> getRules() {
+        log.info("Fetching all alert rules");
+        return ruleRepo.findAllOrdered().stream().map(DtoFactory::createAlertRuleDto).toList();
+    }
+
+    public AlertRuleDto getRule(Integer id) {
+        log.info("Fetching alert rule with id {}", id);
+        return DtoFactory.createAlertRuleDto(find(id));
+    }
+
+    public AlertRuleDto createRule(AlertRuleDto dto) {
+        log.info("Creating alert rule '{}'", dto.getName());
+        AlertRule rule = ruleRepo.save(apply(new AlertRule(), dto));
+        eventPublisher.publishEvent(new AlertRulesChangedEvent(rule.getId()));
+        return DtoFactory.createAlertRuleDto(rule);
+    }
+
+    public AlertRuleDto updateRule(Integer id, AlertRuleDto dto) {
+        log.info("Updating alert rule {}", id);
+        AlertRule rule = apply(find(id), dto);
+        eventPublisher.publishEvent(new AlertRulesChangedEvent(id));
+        return DtoFactory.createAlertRuleDto(rule);
+    }
+
+    public void deleteRule(Integer id) {
+        log.info("Deleting alert rule {}", id);
+        ruleRepo.delete(find(id));
+        eventPublisher.publishEvent(new AlertRulesChangedEvent(id));
+    }
+
+    private AlertRule find(Integer id) {
+        return ruleRepo.findById(id).orElseThrow(() -> {
+            log.warn("Alert rule not found with id={}", id);
+            return new NoSuchElementException(RULE_NOT_FOUND);
+        });
+    }
+
+    private AlertRule apply(AlertRule rule, AlertRuleDto dto) {
+        if ((dto.getThermometerId() == null) == (dto.getLocationId() == null)) {
+            throw new InvalidRequestException("Set either thermometerId or locationId");
+        }
+        if (dto.getThermometerId() != null && thermometerRepo.findRowById(dto.getThermometerId()).isEmpty()) {
+            throw new InvalidRequestException("Thermometer not found: " + dto.getThermometerId());
+        }
+        if (dto.getLocationId() != null && locationRepo.findRowById(dto.getLocationId()).isEmpty()) {
+            throw new InvalidRequestException("Location not found: " + dto.getLocationId());
+        }
+        if (dto.getThreshold() == null || !Double.isFinite(dto.getThreshold())) {
+            throw new InvalidRequestException("threshold must be a finite number");
+        }
+        if (dto.getKind() == AlertKind.RATE_OF_CHANGE && dto.getThreshold() <= 0) {
+            throw new InvalidRequestException("A rate of change threshold must be positive");
+        }
+        double hysteresis = dto.getHysteresis() != null ? dto.getHysteresis() : 0;
+        if (!(hysteresis >= 0) || Double.isInfinite(hysteresis)) {
+            throw new InvalidRequestException("hysteresis must be a finite number of at least 0");
+        }
+        rule.setName(dto.getName());
+        rule.setThermometerId(dto.getThermometerId());
+        rule.setLocationId(dto.getLocationId());
+        rule.setKind(dto.getKind());
+        rule.setThreshold(dto.getThreshold());
+        rule.setHysteresis(hysteresis);
+        rule.setEnabled(dto.getEnabled() == null || dto.getEnabled());
+        return rule;
+    }
+}
@@ -0,0 +1,7 @@
+package com.tempmonitor.alert;
+
+/**
+ * An alert rule was created, changed or deleted.
+ */
+public record AlertRulesChangedEvent(Integer ruleId) {
+}
@@ -0,0 +1,6 @@
+package com.tempmonitor.alert;
+
+public enum AlertState {
+    FIRING,
+    RESOLVED
+}
@@ -0,0 +1,245 @@
+package com.tempmonitor.archive;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.partition.ReadingPartitionManager;
+import com.tempmonitor.repo.ReadingBlockRepository;
+import com.tempmonitor.repo.ReadingBlockRow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Moves months of readings that ended more than {@code delay} ago out of {@code temperature_readings} into
+ * {@code reading_blocks}, one block per thermometer and UTC day compressed by {@link ReadingBlockCodec}, and
+ * then drops the month's partition, which frees its heap and index pages without any vacuum.
+ *
+ * <p>A month is compressed in transactions of {@code batch-size} thermometers while its rows stay in place, so
+ * readers keep using them and an interrupted run just starts the month over. Once every reading has a block, one
+ * transaction moves {@code reading_archive.archived_before} past the month and drops its rows, so readers see
+ * each reading on exactly one side. The delay must exceed {@code ingest.max-lateness}: no reading can arrive
+ * for a month once it is archived.
+ */
+@Component
+@Slf4j
+public class ReadingArchiver {
+
+    static final long DAY_MICROS = 86_400_000_000L;
+    // arbitrary key so only one replica archives at a time
+    private static final long LOCK_KEY = 0x7465_6d70_6172_6368L;
+    /** Blocks written per upsert; a day of readings every second compresses to around 40 KB. */
+    private static final int BLOCKS_PER_WRITE = 256;
+
+    private static final String MONTH_SQL = """
+            SELECT thermometer_id, id, CAST(EXTRACT(EPOCH FROM "timestamp") * 1000000 AS BIGINT), "value"
+            FROM temperature_readings
+            WHERE thermometer_id = ANY(?) AND "timestamp" >= ? AND "timestamp" < ?
+            ORDER BY thermometer_id, "timestamp", id
+            """;
+
+    // readings normally land in their month's partition, but the default one catches those that had none
+    private static final String DEFAULT_PARTITION_MONTHS_SQL = """
+            SELECT DISTINCT to_char("timestamp" AT TIME ZONE 'UTC', 'YYYY-MM')
+            FROM temperature_readings_default
+            WHERE "timestamp" >= ? AND "timestamp" < ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadingBlockRepository blockRepo;
+    private final ReadingPartitionManager partitionManager;
+    private final TempMonitorProperties.Archive config;
+
+    public ReadingArchiver(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           ReadingBlockRepository blockRepo, ReadingPartitionManager partitionManager,
+                           TempMonitorProperties properties) {
+        this.config = properties.getArchive();
+        if (config.isEnabled() && config.getDelay().compareTo(properties.getIngest().getMaxLateness()) <= 0) {
+            throw new IllegalArgumentException("tempmonitor.archive.delay must exceed tempmonitor.ingest.max-lateness");
+        }
+        if (config.getBatchSize() < 1) {
+            throw new IllegalArgumentException("tempmonitor.archive.batch-size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.blockRepo = blockRepo;
+        this.partitionManager = partitionManager;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        archive();
+    }
+
+    @Scheduled(cron = "${tempmonitor.archive.cron:0 45 3 * * *}", zone = "UTC")
+    public void archive() {
+        if (!config.isEnabled()) return;
+        try {
+            Instant archivedBefore = blockRepo.archivedBefore();
+            Instant cutoff = Instant.now().minus(config.getDelay());
+            List<YearMonth> candidates = new ArrayList<>(partitionManager.partitionMonths());
+            jdbcTemplate.queryForList(DEFAULT_PARTITION_MONTHS_SQL, String.class, utc(archivedBefore), utc(cutoff))
+                    .forEach(month -> candidates.add(YearMonth.parse(month)));
+            for (YearMonth month : monthsToArchive(candidates, archivedBefore, cutoff)) {
+                // later months must wait, archived_before only moves past complete months
+                if (!archiveMonth(month)) return;
+            }
+        } catch (DataAccessException e) {
+            log.error("Archiving readings failed", e);
+        }
+    }
+
+    /** The months after {@code archivedBefore} that ended by {@code cutoff}, oldest first. */
+    static List<YearMonth> monthsToArchive(Collection<YearMonth> candidates, Instant archivedBefore, Instant cutoff) {
+        TreeSet<YearMonth> months = new TreeSet<>();
+        for (YearMonth month : candidates) {
+            Instant end = start(month.plusMonths(1));
+            if (end.isAfter(archivedBefore) && !end.isAfter(cutoff)) months.add(month);
+        }
+        return List.copyOf(months);
+    }
+
+    private boolean archiveMonth(YearMonth month) {
+        Instant from = start(month);
+        Instant to = start(month.plusMonths(1));
+        List<Integer> thermometerIds = jdbcTemplate.queryForList("SELECT id FROM thermometers ORDER BY id", Integer.class);
+        MonthCompressor total = new MonthCompressor(0);
+        for (int i = 0; i < thermometerIds.size(); i += config.getBatchSize()) {
+            List<Integer> batch = thermometerIds.subList(i, Math.min(thermometerIds.size(), i + config.getBatchSize()));
+            MonthCompressor compressed = transactionTemplate.execute(status -> {
+                Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, LOCK_KEY);
+                if (!Boolean.TRUE.equals(locked)) return null;
+                MonthCompressor compressor = new MonthCompressor(BLOCKS_PER_WRITE);
+                jdbcTemplate.query((Connection con) -> {
+                    PreparedStatement ps = con.prepareStatement(MONTH_SQL);
+                    // a cursor instead of a month of readings in memory, works within the transaction
+                    ps.setFetchSize(10_000);
+                    ps.setArray(1, con.createArrayOf("int4", batch.toArray()));
+                    ps.setObject(2, utc(from));
+                    ps.setObject(3, utc(to));
+                    return ps;
+                }, compressor);
+                compressor.finish();
+                return compressor;
+            });
+            if (compressed == null) {
+                log.debug("Archiving already running elsewhere");
+                return false;
+            }
+            total.add(compressed);
+        }
+        Boolean switched = transactionTemplate.execute(status -> switchOver(month, from, to));
+        if (!Boolean.TRUE.equals(switched)) return false;
+        log.info("Archived {} readings of {} into {} blocks of {} KB in total", total.readings, month, total.blocks,
+                total.bytes / 1024);
+        return true;
+    }
+
+    /** Moves archived_before past the month and drops its rows, if every one of them is in a block. */
+    private boolean switchOver(YearMonth month, Instant from, Instant to) {
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", ReadingPartitionManager.LOCK_KEY);
+        Long rows = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM temperature_readings WHERE \"timestamp\" >= ? AND \"timestamp\" < ?",
+                Long.class, utc(from), utc(to));
+        Long archived = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(reading_count), 0) FROM reading_blocks WHERE block_start >= ? AND block_start < ?",
+                Long.class, utc(from), utc(to));
+        if (!rows.equals(archived)) {
+            // only readings written behind the time window's back, e.g. by hand, can get here
+            log.warn("Not archiving {}: {} readings but {} in blocks, retrying on the next run", month, rows, archived);
+            return false;
+        }
+        blockRepo.setArchivedBefore(to);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + ReadingPartitionManager.partitionName(month));
+        jdbcTemplate.update("DELETE FROM temperature_readings WHERE \"timestamp\" >= ? AND \"timestamp\" < ?",
+                utc(from), utc(to));
+        return true;
+    }
+
+    private static Instant start(YearMonth month) {
+        return month.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+
+    private static Instant toInstant(long epochMicros) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L), Math.floorMod(epochMicros, 1_000_000L) * 1_000);
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return OffsetDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    /** Cuts the ordered rows of a month into day blocks and upserts them in groups. */
+    private final class MonthCompressor implements RowCallbackHandler {
+        private final int blocksPerWrite;
+        private final List<ReadingBlockRow> pending = new ArrayList<>();
+        private final ReadingBlock block = new ReadingBlock(1_440);
+        private int thermometerId;
+        private long day;
+        private long readings;
+        private long blocks;
+        private long bytes;
+
+        MonthCompressor(int blocksPerWrite) {
+            this.blocksPerWrite = blocksPerWrite;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            int rowThermometerId = rs.getInt(1);
+            long micros = rs.getLong(3);
+            long rowDay = Math.floorDiv(micros, DAY_MICROS);
+            if (!block.isEmpty() && (rowThermometerId != thermometerId || rowDay != day)) {
+                endBlock();
+            }
+            thermometerId = rowThermometerId;
+            day = rowDay;
+            block.add(rs.getInt(2), micros, rs.getDouble(4));
+        }
+
+        void finish() {
+            if (!block.isEmpty()) endBlock();
+            blockRepo.saveAll(pending);
+            pending.clear();
+        }
+
+        void add(MonthCompressor other) {
+            readings += other.readings;
+            blocks += other.blocks;
+            bytes += other.bytes;
+        }
+
+        private void endBlock() {
+            byte[] data = ReadingBlockCodec.encode(block);
+            int last = block.size() - 1;
+            pending.add(new ReadingBlockRow(thermometerId, toInstant(day * DAY_MICROS), block.size(), block.id(last),
+                    block.value(last), toInstant(block.epochMicros(last)), data));
+            readings += block.size();
+            blocks++;
+            bytes += data.length;
+            block.clear();
+            if (pending.size() >= blocksPerWrite) {
+                blockRepo.saveAll(pending);
+                pending.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.tempmonitor.archive;
+
+import java.util.Arrays;
+
+/**
+ * The readings of one thermometer within one UTC day as columns, in {@code (timestamp, id)} order, which is the
+ * unit {@link ReadingBlockCodec} compresses and {@code reading_blocks} stores.
+ */
+public final class ReadingBlock {
+
+    private int size;
+    private int[] ids;
+    private long[] epochMicros;
+    private double[] values;
+
+    public ReadingBlock() {
+        this(64);
+    }
+
+    public ReadingBlock(int capacity) {
+        ids = new int[Math.max(1, capacity)];
+        epochMicros = new long[ids.length];
+        values = new double[ids.length];
+    }
+
+    /** Appends a reading, which must not sort before the last one. */
+    public void add(int id, long epochMicros, double value) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            this.epochMicros = Arrays.copyOf(this.epochMicros, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        ids[size] = id;
+        this.epochMicros[size] = epochMicros;
+        values[size] = value;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int id(int index) {
+        return ids[index];
+    }
+
+    public long epochMicros(int index) {
+        return epochMicros[index];
+    }
+
+    public double value(int index) {
+        return values[index];
+    }
+
+    /** The first index whose reading sorts after {@code (epochMicros, id)}, or {@link #size()} if none does. */
+    public int indexAfter(long epochMicros, int id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long micros = this.epochMicros[mid];
+            if (micros < epochMicros || micros == epochMicros && ids[mid] <= id) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,263 @@
+package com.tempmonitor.archive;
+
+import java.util.Arrays;
+
+/**
+ * Compresses a {@link ReadingBlock} into the bytes stored in {@code reading_blocks.data}: a small header followed by
+ * the timestamp, id and value columns, each encoded after Facebook's Gorilla. Timestamps are delta-of-deltas, so
+ * a thermometer reporting at a steady rate costs one bit per timestamp; ids are delta-of-deltas too, as the
+ * readings of one thermometer get ids at a fairly steady distance. Values are XORed with their predecessor and
+ * only the bits between the leading and trailing zeros are kept, so an unchanged value costs one bit.
+ *
+ * <p>Sensors mostly report a fixed number of decimals, whose doubles differ in nearly every mantissa bit and
+ * defeat the XOR. When every value of a block is exactly a decimal of at most {@link #MAX_DECIMALS} digits, the
+ * values are stored as deltas of the scaled integers instead, which decode to the very same doubles.
+ *
+ * <p>Timestamps are in microseconds, so the delta-of-delta buckets are wider than Gorilla's, which are sized for
+ * seconds: jitter of a few milliseconds still fits 14 bits.
+ */
+public final class ReadingBlockCodec {
+
+    static final int VERSION = 1;
+    static final int MAX_DECIMALS = 6;
+    /** Scale of a block whose values are XORed doubles. */
+    private static final int XOR_VALUES = 0xFF;
+    private static final double[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+    /** Delta bucket widths in bits, after a prefix of as many 1 bits as the bucket index and a 0. */
+    private static final int[] DELTA_BITS = {7, 14, 20, 32};
+
+    private ReadingBlockCodec() {
+    }
+
+    public static byte[] encode(ReadingBlock block) {
+        if (block.isEmpty()) {
+            throw new IllegalArgumentException("Cannot encode an empty block");
+        }
+        int size = block.size();
+        int decimals = decimals(block);
+        BitWriter out = new BitWriter(16 + size * 4);
+        out.write(VERSION, 8);
+        out.write(size, 32);
+        out.write(decimals < 0 ? XOR_VALUES : decimals, 8);
+
+        out.write(block.epochMicros(0), 64);
+        long previousDelta = 0;
+        for (int i = 1; i < size; i++) {
+            long delta = block.epochMicros(i) - block.epochMicros(i - 1);
+            writeDelta(out, delta - previousDelta);
+            previousDelta = delta;
+        }
+
+        out.write(block.id(0), 32);
+        previousDelta = 0;
+        for (int i = 1; i < size; i++) {
+            long delta = (long) block.id(i) - block.id(i - 1);
+            writeDelta(out, delta - previousDelta);
+            previousDelta = delta;
+        }
+
+        if (decimals >= 0) {
+            double scale = POWERS_OF_TEN[decimals];
+            long previous = Math.round(block.value(0) * scale);
+            out.write(previous, 64);
+            for (int i = 1; i < size; i++) {
+                long scaled = Math.round(block.value(i) * scale);
+                writeDelta(out, scaled - previous);
+                previous = scaled;
+            }
+        } else {
+            writeXorValues(out, block);
+        }
+        return out.toByteArray();
+    }
+
+    public static ReadingBlock decode(byte[] data) {
+        BitReader in = new BitReader(data);
+        int version = (int) in.read(8);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown reading block version " + version);
+        }
+        int size = (int) in.read(32);
+        int decimals = (int) in.read(8);
+
+        long[] micros = new long[size];
+        micros[0] = in.read(64);
+        long delta = 0;
+        for (int i = 1; i < size; i++) {
+            delta += readDelta(in);
+            micros[i] = micros[i - 1] + delta;
+        }
+
+        int[] ids = new int[size];
+        ids[0] = (int) in.read(32);
+        delta = 0;
+        for (int i = 1; i < size; i++) {
+            delta += readDelta(in);
+            ids[i] = (int) (ids[i - 1] + delta);
+        }
+
+        ReadingBlock block = new ReadingBlock(size);
+        if (decimals != XOR_VALUES) {
+            double scale = POWERS_OF_TEN[decimals];
+            long scaled = in.read(64);
+            block.add(ids[0], micros[0], scaled / scale);
+            for (int i = 1; i < size; i++) {
+                scaled += readDelta(in);
+                block.add(ids[i], micros[i], scaled / scale);
+            }
+        } else {
+            long bits = in.read(64);
+            block.add(ids[0], micros[0], Double.longBitsToDouble(bits));
+            int leading = 0;
+            int trailing = 0;
+            for (int i = 1; i < size; i++) {
+                if (in.read(1) == 1) {
+                    if (in.read(1) == 1) {
+                        leading = (int) in.read(5);
+                        trailing = 64 - leading - ((int) in.read(6) + 1);
+                    }
+                    bits ^= in.read(64 - leading - trailing) << trailing;
+                }
+                block.add(ids[i], micros[i], Double.longBitsToDouble(bits));
+            }
+        }
+        return block;
+    }
+
+    /**
+     * The fewest decimals that represent every value exactly, so that scaling back reproduces the same bits, or
+     * -1 if some value needs more than {@link #MAX_DECIMALS}.
+     */
+    static int decimals(ReadingBlock block) {
+        int decimals = 0;
+        for (int i = 0; i < block.size(); i++) {
+            double value = block.value(i);
+            while (!isDecimal(value, decimals)) {
+                if (++decimals > MAX_DECIMALS) return -1;
+            }
+        }
+        return decimals;
+    }
+
+    private static boolean isDecimal(double value, int decimals) {
+        double scale = POWERS_OF_TEN[decimals];
+        double scaled = value * scale;
+        // beyond 2^53 not every integer is a double, and the deltas must not overflow
+        if (!(Math.abs(scaled) < 0x1p53)) return false;
+        return Double.doubleToRawLongBits(Math.round(scaled) / scale) == Double.doubleToRawLongBits(value);
+    }
+
+    private static void writeXorValues(BitWriter out, ReadingBlock block) {
+        long previous = Double.doubleToRawLongBits(block.value(0));
+        out.write(previous, 64);
+        int leading = Integer.MAX_VALUE;
+        int trailing = 0;
+        for (int i = 1; i < block.size(); i++) {
+            long bits = Double.doubleToRawLongBits(block.value(i));
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.write(0, 1);
+                continue;
+            }
+            int newLeading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int newTrailing = Long.numberOfTrailingZeros(xor);
+            if (newLeading >= leading && newTrailing >= trailing) {
+                // fits the window of the previous value
+                out.write(0b10, 2);
+                out.write(xor >>> trailing, 64 - leading - trailing);
+            } else {
+                leading = newLeading;
+                trailing = newTrailing;
+                int meaningful = 64 - leading - trailing;
+                out.write(0b11, 2);
+                out.write(leading, 5);
+                out.write(meaningful - 1, 6);
+                out.write(xor >>> trailing, meaningful);
+            }
+        }
+    }
+
+    private static void writeDelta(BitWriter out, long delta) {
+        if (delta == 0) {
+            out.write(0, 1);
+            return;
+        }
+        for (int bucket = 0; bucket < DELTA_BITS.length; bucket++) {
+            int width = DELTA_BITS[bucket];
+            if (delta >= -(1L << (width - 1)) && delta < 1L << (width - 1)) {
+                // bucket + 1 ones and a zero
+                out.write((1L << (bucket + 2)) - 2, bucket + 2);
+                out.write(delta, width);
+                return;
+            }
+        }
+        out.write((1L << (DELTA_BITS.length + 1)) - 1, DELTA_BITS.length + 1);
+        out.write(delta, 64);
+    }
+
+    private static long readDelta(BitReader in) {
+        int bucket = 0;
+        while (bucket <= DELTA_BITS.length && in.read(1) == 1) {
+            bucket++;
+        }
+        if (bucket == 0) return 0;
+        if (bucket > DELTA_BITS.length) return in.read(64);
+        int width = DELTA_BITS[bucket - 1];
+        return in.read(width) << (64 - width) >> (64 - width);
+    }
+
+    /** Appends bits most significant first. */
+    private static final class BitWriter {
+        private byte[] bytes;
+        private long bitLength;
+
+        BitWriter(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        /** Writes the low {@code count} bits of {@code bits}. */
+        void write(long bits, int count) {
+            while (count > 0) {
+                int index = (int) (bitLength >>> 3);
+                if (index == bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                int free = 8 - (int) (bitLength & 7);
+                int n = Math.min(free, count);
+                int chunk = (int) (bits >>> (count - n)) & ((1 << n) - 1);
+                bytes[index] |= (byte) (chunk << (free - n));
+                bitLength += n;
+                count -= n;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, (int) ((bitLength + 7) >>> 3));
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] bytes;
+        private long position;
+
+        BitReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long read(int count) {
+            long result = 0;
+            while (count > 0) {
+                int index = (int) (position >>> 3);
+                if (index >= bytes.length) {
+                    throw new IllegalArgumentException("Reading block is truncated");
+                }
+                int available = 8 - (int) (position & 7);
+                int n = Math.min(available, count);
+                int chunk = (bytes[index] >>> (available - n)) & ((1 << n) - 1);
+                result = result << n | chunk;
+                position += n;
+                count -= n;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.tempmonitor.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tempmonitor.ingest.StoredReading;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One message on the cache invalidation channel: the metadata ids that changed and the readings that were
+ * stored, so other replicas can evict or update their local caches. {@code resync} asks them to drop and
+ * reload everything instead, used when the sender could not keep up.
+ *
+ * <p>Encoded as compact JSON, e.g. {@code {"s":1735689600000,"l":[1],"t":[4],"r":[[17,4,21.5,1735689599000000]]}},
+ * readings as {@code [id, thermometerId, value, epochMicros]}.
+ */
+public record CacheInvalidation(long sentAtMillis, boolean resync, List<Integer> locationIds,
+                                List<Integer> thermometerIds, List<StoredReading> readings) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Encodes the message as one or more payloads of at most {@code maxBytes} each, splitting the id and
+     * reading lists between them.
+     */
+    public List<String> encode(int maxBytes) {
+        Chunker chunker = new Chunker(maxBytes);
+        for (Integer id : locationIds) chunker.add('l', Integer.toString(id));
+        for (Integer id : thermometerIds) chunker.add('t', Integer.toString(id));
+        for (StoredReading r : readings) {
+            chunker.add('r', "[" + r.id() + "," + r.thermometerId() + "," + r.value() + ","
+                    + ChronoUnit.MICROS.between(Instant.EPOCH, r.timestamp()) + "]");
+        }
+        return chunker.finish();
+    }
+
+    public static CacheInvalidation decode(String payload) {
+        JsonNode root;
+        try {
+            root = MAPPER.readTree(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Malformed cache invalidation payload", e);
+        }
+        List<Integer> locationIds = new ArrayList<>();
+        root.path("l").forEach(n -> locationIds.add(n.asInt()));
+        List<Integer> thermometerIds = new ArrayList<>();
+        root.path("t").forEach(n -> thermometerIds.add(n.asInt()));
+        List<StoredReading> readings = new ArrayList<>();
+        root.path("r").forEach(n -> readings.add(new StoredReading(n.get(0).asInt(), n.get(1).asInt(),
+                n.get(2).asDouble(), Instant.EPOCH.plus(n.get(3).asLong(), ChronoUnit.MICROS))));
+        return new CacheInvalidation(root.path("s").asLong(), root.path("x").asBoolean(),
+                locationIds, thermometerIds, readings);
+    }
+
+    public boolean isEmpty() {
+        return !resync && locationIds.isEmpty() && thermometerIds.isEmpty() && readings.isEmpty();
+    }
+
+    private final class Chunker {
+        private final int maxBytes;
+        private final List<String> payloads = new ArrayList<>();
+        private final StringBuilder sb = new StringBuilder();
+        private char section;
+        private boolean hasItems;
+
+        Chunker(int maxBytes) {
+            this.maxBytes = maxBytes;
+            reset();
+        }
+
+        void add(char name, String item) {
+            if (hasItems && sb.length() + cost(name, item) + 2 > maxBytes) {
+                flush();
+            }
+            if (section == name) {
+                sb.append(',');
+            } else {
+                if (section != 0) sb.append(']');
+                sb.append(",\"").append(name).append("\":[");
+                section = name;
+            }
+            sb.append(item);
+            hasItems = true;
+        }
+
+        List<String> finish() {
+            if (hasItems || (resync && payloads.isEmpty())) flush();
+            return payloads;
+        }
+
+        private int cost(char name, String item) {
+            return (section == name ? 1 : (section != 0 ? 1 : 0) + 6) + item.length();
+        }
+
+        private void flush() {
+            if (section != 0) sb.append(']');
+            payloads.add(sb.append('}').toString());
+            reset();
+        }
+
+        private void reset() {
+            sb.setLength(0);
+            sb.append("{\"s\":").append(sentAtMillis);
+            if (resync) sb.append(",\"x\":true");
+            section = 0;
+            hasItems = false;
+        }
+    }
+}
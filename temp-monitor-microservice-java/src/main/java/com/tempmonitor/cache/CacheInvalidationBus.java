@@ -0,0 +1,313 @@
+package com.tempmonitor.cache;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.stream.ReadingStreamDispatcher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the in-process caches of several replicas consistent through Postgres {@code LISTEN/NOTIFY}, so no
+ * broker is needed. Committed local changes are collected and sent by a single thread on a dedicated
+ * connection, which also receives and applies the other replicas' changes; a change reaches them within about
+ * one {@code poll-interval}. Notifications sent from this connection are skipped by backend pid. The connection
+ * is opened outside the pool, which would hand it back to other users between polls, with the same
+ * {@link JdbcConnectionDetails} as the application's data source.
+ *
+ * <p>If changes may have been missed (the listener reconnected, or the sender dropped readings it could not
+ * buffer) the caches are reloaded from the database instead. Reloads and requests for them are at most one per
+ * {@code min-resync-interval}, so a replica that keeps falling behind cannot keep every replica reloading.
+ */
+@Component
+@ConditionalOnProperty(prefix = "tempmonitor.cache-bus", name = "enabled", havingValue = "true")
+@Slf4j
+public class CacheInvalidationBus implements SmartLifecycle {
+
+    /** NOTIFY payloads must be shorter than 8000 bytes. */
+    static final int MAX_PAYLOAD_BYTES = 7_900;
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    private final JdbcConnectionDetails connectionDetails;
+    private final TempMonitorProperties.CacheBus config;
+    private final MetadataCacheInvalidator metadataInvalidator;
+    private final LatestReadingCache latestReadingCache;
+    private final RecentReadingsStore recentReadingsStore;
+    private final ReadingStreamDispatcher readingStream;
+    private final Timer lagTimer;
+    private final Counter sentCounter;
+    private final Counter receivedCounter;
+    private final Counter resyncCounter;
+
+    private final Set<Integer> pendingLocations = new LinkedHashSet<>();
+    private final Set<Integer> pendingThermometers = new LinkedHashSet<>();
+    private final List<StoredReading> pendingReadings = new ArrayList<>();
+    private final Object pendingLock = new Object();
+    private boolean pendingResync;
+    private long lastResyncRequestNanos;
+
+    // only touched by the listener thread
+    private long lastResyncNanos;
+    private String deferredResync;
+
+    private Connection connection;
+    private int backendPid;
+    private Thread listener;
+    private volatile boolean running;
+
+    public CacheInvalidationBus(JdbcConnectionDetails connectionDetails, TempMonitorProperties properties,
+                                MetadataCacheInvalidator metadataInvalidator, LatestReadingCache latestReadingCache,
+                                RecentReadingsStore recentReadingsStore, ReadingStreamDispatcher readingStream,
+                                MeterRegistry registry) {
+        this.connectionDetails = connectionDetails;
+        this.config = properties.getCacheBus();
+        if (!CHANNEL_NAME.matcher(config.getChannel()).matches()) {
+            throw new IllegalArgumentException("Invalid cache bus channel name: " + config.getChannel());
+        }
+        this.metadataInvalidator = metadataInvalidator;
+        this.latestReadingCache = latestReadingCache;
+        this.recentReadingsStore = recentReadingsStore;
+        this.readingStream = readingStream;
+        this.lagTimer = Timer.builder("tempmonitor.cache.bus.lag")
+                .description("Time from sending a change to applying it on another replica")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.sentCounter = Counter.builder("tempmonitor.cache.bus.messages")
+                .tag("direction", "sent")
+                .register(registry);
+        this.receivedCounter = Counter.builder("tempmonitor.cache.bus.messages")
+                .tag("direction", "received")
+                .register(registry);
+        this.resyncCounter = Counter.builder("tempmonitor.cache.bus.resyncs")
+                .description("Reloads of the local caches because changes may have been missed")
+                .register(registry);
+        // so neither the first reload nor the first request for one waits
+        this.lastResyncNanos = System.nanoTime() - config.getMinResyncInterval().toNanos();
+        this.lastResyncRequestNanos = lastResyncNanos;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMetadataChanged(MetadataChangedEvent event) {
+        synchronized (pendingLock) {
+            if (event.locationId() != null) pendingLocations.add(event.locationId());
+            if (event.thermometerId() != null) pendingThermometers.add(event.thermometerId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReadingsStored(ReadingsStoredEvent event) {
+        synchronized (pendingLock) {
+            if (pendingResync) return;
+            if (pendingReadings.size() + event.readings().size() > config.getMaxPendingReadings()) {
+                log.warn("Cache bus fell behind with {} readings pending, asking other replicas to reload",
+                        pendingReadings.size());
+                pendingReadings.clear();
+                pendingResync = true;
+                return;
+            }
+            pendingReadings.addAll(event.readings());
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        try {
+            listen();
+        } catch (SQLException e) {
+            log.warn("Cache bus could not listen on '{}' yet, retrying in the background", config.getChannel(), e);
+        }
+        listener = Thread.ofPlatform().daemon().name("cache-bus").start(this::run);
+        log.info("Cache bus started on channel '{}'", config.getChannel());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listener != null) {
+            try {
+                listener.join(config.getPollInterval().multipliedBy(2).plusSeconds(5).toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            listener = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // stop after the ingest queue, so readings it flushes on shutdown are still sent
+        return SmartLifecycle.DEFAULT_PHASE - 8192;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (connection == null) {
+                    listen();
+                    resync("reconnected");
+                }
+                receive();
+                if (deferredResync != null) resync(deferredResync);
+                send();
+            } catch (SQLException | RuntimeException e) {
+                if (!running) break;
+                log.warn("Cache bus connection failed, reconnecting in {}", config.getReconnectBackoff(), e);
+                close();
+                sleep(config.getReconnectBackoff());
+            }
+        }
+        try {
+            if (connection != null) send();
+        } catch (SQLException e) {
+            log.warn("Cache bus could not send its last changes", e);
+        }
+        close();
+    }
+
+    private void listen() throws SQLException {
+        Properties info = new Properties();
+        if (connectionDetails.getUsername() != null) info.setProperty("user", connectionDetails.getUsername());
+        if (connectionDetails.getPassword() != null) info.setProperty("password", connectionDetails.getPassword());
+        info.setProperty("ApplicationName", "tempmonitor-cache-bus");
+        Connection conn = DriverManager.getConnection(connectionDetails.getJdbcUrl(), info);
+        try (Statement st = conn.createStatement()) {
+            st.execute("LISTEN " + config.getChannel());
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        backendPid = conn.unwrap(PGConnection.class).getBackendPID();
+        connection = conn;
+    }
+
+    private void receive() throws SQLException {
+        PGNotification[] notifications = connection.unwrap(PGConnection.class)
+                .getNotifications((int) Math.max(1, config.getPollInterval().toMillis()));
+        if (notifications == null) return;
+        for (PGNotification notification : notifications) {
+            if (notification.getPID() == backendPid) continue;
+            try {
+                apply(CacheInvalidation.decode(notification.getParameter()));
+            } catch (RuntimeException e) {
+                log.warn("Ignoring cache invalidation from pid {}: {}", notification.getPID(), e.getMessage());
+            }
+        }
+    }
+
+    void apply(CacheInvalidation message) {
+        receivedCounter.increment();
+        lagTimer.record(Math.max(0, System.currentTimeMillis() - message.sentAtMillis()), TimeUnit.MILLISECONDS);
+        if (message.resync()) {
+            resync("requested by another replica");
+            return;
+        }
+        message.locationIds().forEach(id -> metadataInvalidator.evict(new MetadataChangedEvent(id, null)));
+        message.thermometerIds().forEach(id -> metadataInvalidator.evict(new MetadataChangedEvent(null, id)));
+        if (!message.readings().isEmpty()) {
+            ReadingsStoredEvent event = new ReadingsStoredEvent(message.readings());
+            latestReadingCache.onReadingsStored(event);
+            recentReadingsStore.onReadingsStored(event);
+            readingStream.publish(message.readings());
+        }
+    }
+
+    private void send() throws SQLException {
+        CacheInvalidation message;
+        synchronized (pendingLock) {
+            long now = System.nanoTime();
+            // a reload request within the interval of the last one waits for a later send; readings are still
+            // dropped meanwhile, as the reload it asks for covers them
+            boolean resync = pendingResync && now - lastResyncRequestNanos >= config.getMinResyncInterval().toNanos();
+            message = new CacheInvalidation(System.currentTimeMillis(), resync, List.copyOf(pendingLocations),
+                    List.copyOf(pendingThermometers), List.copyOf(pendingReadings));
+            pendingLocations.clear();
+            pendingThermometers.clear();
+            pendingReadings.clear();
+            if (resync) {
+                pendingResync = false;
+                lastResyncRequestNanos = now;
+            }
+        }
+        if (message.isEmpty()) return;
+        try (PreparedStatement ps = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            for (String payload : message.encode(MAX_PAYLOAD_BYTES)) {
+                ps.setString(1, config.getChannel());
+                ps.setString(2, payload);
+                ps.execute();
+                sentCounter.increment();
+            }
+        } catch (SQLException e) {
+            synchronized (pendingLock) {
+                // some of the message may be lost, so the other replicas have to reload
+                pendingResync = true;
+            }
+            throw e;
+        }
+    }
+
+    private void resync(String reason) {
+        long now = System.nanoTime();
+        if (now - lastResyncNanos < config.getMinResyncInterval().toNanos()) {
+            if (deferredResync == null) {
+                log.info("Deferring reload of local caches ({}), the last one was less than {} ago", reason,
+                        config.getMinResyncInterval());
+            }
+            deferredResync = reason;
+            return;
+        }
+        deferredResync = null;
+        lastResyncNanos = now;
+        log.info("Reloading local caches: {}", reason);
+        resyncCounter.increment();
+        metadataInvalidator.clear();
+        latestReadingCache.warm();
+        recentReadingsStore.warm();
+    }
+
+    private void close() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Closing the cache bus connection failed", e);
+        }
+        connection = null;
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
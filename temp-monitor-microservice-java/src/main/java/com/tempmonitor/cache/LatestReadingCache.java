@@ -0,0 +1,74 @@
+package com.tempmonitor.cache;
+
+import com.tempmonitor.dto.TemperatureReadingDto;
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.repo.TemperatureReadingRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Last known reading per thermometer. Warmed with one query once the application is ready and kept current
+ * from {@link ReadingsStoredEvent}s, so {@code /readings/latest} does not need to aggregate the readings table.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LatestReadingCache {
+
+    private final TemperatureReadingRepository readingRepo;
+    private final ConcurrentMap<Integer, TemperatureReadingDto> latest = new ConcurrentHashMap<>();
+    private volatile boolean warmed;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        List<Object[]> rows = readingRepo.findLatestRowsForAllThermometers();
+        for (Object[] row : rows) {
+            update(((Number) row[0]).intValue(), ((Number) row[1]).intValue(), ((Number) row[2]).doubleValue(),
+                    Instant.EPOCH.plus(((Number) row[3]).longValue(), ChronoUnit.MICROS));
+        }
+        warmed = true;
+        log.info("Latest reading cache warmed with {} thermometers", latest.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReadingsStored(ReadingsStoredEvent event) {
+        for (StoredReading reading : event.readings()) {
+            update(reading.id(), reading.thermometerId(), reading.value(), reading.timestamp());
+        }
+    }
+
+    /**
+     * Latest reading of every thermometer, or empty until the cache has been warmed.
+     */
+    public Optional<List<TemperatureReadingDto>> snapshot() {
+        return warmed ? Optional.of(new ArrayList<>(latest.values())) : Optional.empty();
+    }
+
+    private void update(int id, int thermometerId, double value, Instant timestamp) {
+        TemperatureReadingDto dto = new TemperatureReadingDto();
+        dto.setId(id);
+        dto.setThermometerId(thermometerId);
+        dto.setValue(value);
+        dto.setTimestamp(timestamp);
+        latest.merge(thermometerId, dto, LatestReadingCache::newer);
+    }
+
+    private static TemperatureReadingDto newer(TemperatureReadingDto current, TemperatureReadingDto candidate) {
+        int cmp = candidate.getTimestamp().compareTo(current.getTimestamp());
+        if (cmp == 0) cmp = Integer.compare(candidate.getId(), current.getId());
+        return cmp > 0 ? candidate : current;
+    }
+}
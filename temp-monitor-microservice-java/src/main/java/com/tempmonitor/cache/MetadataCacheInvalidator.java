@@ -0,0 +1,56 @@
+package com.tempmonitor.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+
+/**
+ * Evicts the metadata caches once the change that published the {@link MetadataChangedEvent} has committed,
+ * so no reader can cache the state from before it.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MetadataCacheInvalidator {
+
+    private final CacheManager cacheManager;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMetadataChanged(MetadataChangedEvent event) {
+        evict(event);
+    }
+
+    public void evict(MetadataChangedEvent event) {
+        log.debug("Evicting cached metadata for {}", event);
+        if (event.locationId() != null) {
+            evict(MetadataCaches.LOCATIONS, event.locationId());
+            evict(MetadataCaches.LOCATION_THERMOMETERS, event.locationId());
+        }
+        if (event.thermometerId() != null) {
+            evict(MetadataCaches.THERMOMETERS, event.thermometerId());
+        }
+    }
+
+    public void clear() {
+        log.debug("Clearing cached metadata");
+        for (String cacheName : List.of(MetadataCaches.LOCATIONS, MetadataCaches.THERMOMETERS,
+                MetadataCaches.LOCATION_THERMOMETERS)) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+
+    private void evict(String cacheName, Integer id) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(id);
+        }
+    }
+}
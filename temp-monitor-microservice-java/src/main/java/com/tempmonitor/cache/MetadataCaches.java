@@ -0,0 +1,16 @@
+package com.tempmonitor.cache;
+
+/**
+ * Names of the Caffeine caches in front of the location and thermometer lookups. Sizes and TTL come from
+ * {@code spring.cache.caffeine.spec}; unknown ids are never cached, so creating an entity only has to evict
+ * the per-location thermometer list.
+ */
+public final class MetadataCaches {
+
+    public static final String LOCATIONS = "locations";
+    public static final String THERMOMETERS = "thermometers";
+    public static final String LOCATION_THERMOMETERS = "locationThermometers";
+
+    private MetadataCaches() {
+    }
+}
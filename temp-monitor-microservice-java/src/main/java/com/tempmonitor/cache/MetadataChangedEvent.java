@@ -0,0 +1,7 @@
+package com.tempmonitor.cache;
+
+/**
+ * A location or thermometer was created or changed. Either id may be null.
+ */
+public record MetadataChangedEvent(Integer locationId, Integer thermometerId) {
+}
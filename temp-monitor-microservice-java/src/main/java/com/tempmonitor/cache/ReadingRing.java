@@ -0,0 +1,105 @@
+package com.tempmonitor.cache;
+
+/**
+ * Fixed-capacity window of the newest readings of one thermometer, kept in parallel primitive arrays ordered by
+ * (timestamp, id) so adding a reading allocates nothing. Not thread-safe, callers lock on the ring.
+ */
+final class ReadingRing {
+
+    private final long[] nanos;
+    private final double[] values;
+    private final int[] ids;
+    /** Physical index of the oldest entry. */
+    private int head;
+    private int size;
+
+    ReadingRing(int capacity) {
+        nanos = new long[capacity];
+        values = new double[capacity];
+        ids = new int[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Inserts the reading at its place in time order. When full, the oldest entry makes room, and a reading older
+     * than everything held is ignored. Adding a reading twice is a no-op.
+     */
+    void add(int id, long epochNanos, double value) {
+        int capacity = ids.length;
+        if (size == capacity && compare(epochNanos, id, 0) <= 0) return;
+        // walk back from the newest entry to find the insertion point
+        int pos = size;
+        while (pos > 0) {
+            int cmp = compare(epochNanos, id, pos - 1);
+            if (cmp == 0) return;
+            if (cmp > 0) break;
+            pos--;
+        }
+        if (size == capacity) {
+            head = (head + 1) % capacity;
+            size--;
+            pos--;
+        }
+        for (int i = size; i > pos; i--) {
+            int to = physical(i);
+            int from = physical(i - 1);
+            nanos[to] = nanos[from];
+            values[to] = values[from];
+            ids[to] = ids[from];
+        }
+        int at = physical(pos);
+        nanos[at] = epochNanos;
+        values[at] = value;
+        ids[at] = id;
+        size++;
+    }
+
+    /**
+     * Visits the entry taken at exactly {@code epochNanos}, if held; readings are unique per thermometer and
+     * instant. Scans from the newest entry, where retried readings are found.
+     *
+     * @return whether an entry was found
+     */
+    boolean find(long epochNanos, Visitor visitor) {
+        for (int i = size - 1; i >= 0; i--) {
+            int p = physical(i);
+            if (nanos[p] == epochNanos) {
+                visitor.visit(ids[p], nanos[p], values[p]);
+                return true;
+            }
+            if (nanos[p] < epochNanos) return false;
+        }
+        return false;
+    }
+
+    /** Visits the oldest entry, if any. */
+    void oldest(Visitor visitor) {
+        if (size > 0) visitor.visit(ids[head], nanos[head], values[head]);
+    }
+
+    /** Newest first, at most {@code limit} entries. */
+    void forEachNewest(int limit, Visitor visitor) {
+        for (int i = size - 1; i >= Math.max(0, size - limit); i--) {
+            int p = physical(i);
+            visitor.visit(ids[p], nanos[p], values[p]);
+        }
+    }
+
+    private int compare(long epochNanos, int id, int logical) {
+        int p = physical(logical);
+        int cmp = Long.compare(epochNanos, nanos[p]);
+        return cmp != 0 ? cmp : Integer.compare(id, ids[p]);
+    }
+
+    private int physical(int logical) {
+        return (head + logical) % ids.length;
+    }
+
+    @FunctionalInterface
+    interface Visitor {
+        void visit(int id, long epochNanos, double value);
+    }
+}
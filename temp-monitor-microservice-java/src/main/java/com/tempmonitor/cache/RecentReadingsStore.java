@@ -0,0 +1,145 @@
+package com.tempmonitor.cache;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.dto.TemperatureReadingDto;
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.repo.ReadingBlockRepository;
+import com.tempmonitor.repo.RecentReadingsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The newest {@code tempmonitor.recent.window} readings of every thermometer in {@link ReadingRing}s, so
+ * {@code /readings/{id}?limit=N} is answered from memory. The rings are allocated once per thermometer and
+ * updated in place, the only garbage is the DTOs of a response.
+ */
+@Component
+@Slf4j
+public class RecentReadingsStore {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final RecentReadingsRepository recentRepo;
+    private final ReadingBlockRepository blockRepo;
+    private final int window;
+    private final ConcurrentMap<Integer, ReadingRing> rings = new ConcurrentHashMap<>();
+    private volatile boolean warmed;
+
+    public RecentReadingsStore(RecentReadingsRepository recentRepo, ReadingBlockRepository blockRepo,
+                               TempMonitorProperties properties) {
+        this.recentRepo = recentRepo;
+        this.blockRepo = blockRepo;
+        this.window = properties.getRecent().getWindow();
+    }
+
+    /**
+     * Loads the newest readings of every thermometer into the rings. Rings are merged into rather than replaced,
+     * like {@link LatestReadingCache}, so readings that commit while the query runs and arrive as events are
+     * kept; a reading seen both ways is held once. Rings left short are filled up with archived readings, so
+     * that a short ring always means the thermometer has no more. Called again by {@link CacheInvalidationBus}
+     * on a resync.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        long start = System.nanoTime();
+        int[] rows = new int[1];
+        recentRepo.forEachRecent(window, (id, thermometerId, value, epochMicros) -> {
+            add(thermometerId, id, Math.multiplyExact(epochMicros, 1000L), value);
+            rows[0]++;
+        });
+        for (int thermometerId : blockRepo.thermometerIds()) {
+            ReadingRing ring = rings.computeIfAbsent(thermometerId, k -> new ReadingRing(window));
+            // continue below the oldest reading held, the rest of the ring came from temperature_readings
+            Long[] beforeMicros = new Long[1];
+            int[] beforeId = new int[1];
+            int missing;
+            synchronized (ring) {
+                ring.oldest((id, epochNanos, value) -> {
+                    beforeMicros[0] = Math.floorDiv(epochNanos, 1000L);
+                    beforeId[0] = id;
+                });
+                missing = window - ring.size();
+            }
+            if (missing > 0) {
+                rows[0] += blockRepo.forEachNewestReading(thermometerId, beforeMicros[0], beforeId[0], missing,
+                        (id, epochMicros, value) -> add(thermometerId, id, Math.multiplyExact(epochMicros, 1000L), value));
+            }
+        }
+        warmed = true;
+        log.info("Recent readings store warmed with {} readings of {} thermometers in {}ms", rows[0], rings.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReadingsStored(ReadingsStoredEvent event) {
+        for (StoredReading reading : event.readings()) {
+            add(reading.thermometerId(), reading.id(), toNanos(reading.timestamp()), reading.value());
+        }
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * The newest {@code limit} readings, newest first. Empty when the store cannot answer: before warm-up,
+     * for a limit beyond the window, or for a thermometer it holds nothing for (which may not exist).
+     */
+    public Optional<List<TemperatureReadingDto>> latest(int thermometerId, int limit) {
+        if (!warmed || limit > window) return Optional.empty();
+        ReadingRing ring = rings.get(thermometerId);
+        if (ring == null) return Optional.empty();
+        List<TemperatureReadingDto> result = new ArrayList<>(Math.max(0, Math.min(limit, window)));
+        synchronized (ring) {
+            ring.forEachNewest(limit, (id, epochNanos, value) -> result.add(toDto(id, thermometerId, epochNanos, value)));
+        }
+        return Optional.of(result);
+    }
+
+    /**
+     * The stored reading of a thermometer at exactly {@code timestamp}, if it is among the newest the store
+     * holds. A hit is certain, as only committed readings are added; a miss proves nothing.
+     */
+    public Optional<TemperatureReadingDto> find(int thermometerId, Instant timestamp) {
+        if (!warmed) return Optional.empty();
+        ReadingRing ring = rings.get(thermometerId);
+        if (ring == null) return Optional.empty();
+        TemperatureReadingDto[] found = new TemperatureReadingDto[1];
+        synchronized (ring) {
+            ring.find(toNanos(timestamp), (id, epochNanos, value) -> found[0] = toDto(id, thermometerId, epochNanos, value));
+        }
+        return Optional.ofNullable(found[0]);
+    }
+
+    private void add(int thermometerId, int id, long epochNanos, double value) {
+        ReadingRing ring = rings.computeIfAbsent(thermometerId, k -> new ReadingRing(window));
+        synchronized (ring) {
+            ring.add(id, epochNanos, value);
+        }
+    }
+
+    private static TemperatureReadingDto toDto(int id, int thermometerId, long epochNanos, double value) {
+        TemperatureReadingDto dto = new TemperatureReadingDto();
+        dto.setId(id);
+        dto.setThermometerId(thermometerId);
+        dto.setValue(value);
+        dto.setTimestamp(Instant.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+                Math.floorMod(epochNanos, NANOS_PER_SECOND)));
+        return dto;
+    }
+
+    private static long toNanos(Instant timestamp) {
+        return Math.addExact(Math.multiplyExact(timestamp.getEpochSecond(), NANOS_PER_SECOND), timestamp.getNano());
+    }
+}
@@ -0,0 +1,96 @@
+package com.tempmonitor.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps how many threads may hold or wait for a pooled connection at once. With virtual threads every request
+ * gets its own thread, so without this thousands of them would queue inside the pool; here they park cheaply
+ * on a fair semaphore sized to the pool instead.
+ */
+public class DbConcurrencyLimiter implements MeterBinder {
+
+    private final Semaphore permits;
+    private final int maxPermits;
+    private final Duration acquireTimeout;
+    private final CompositeMeterRegistry meters = new CompositeMeterRegistry();
+    private final Timer waitTimer;
+    private final Counter timeouts;
+
+    public DbConcurrencyLimiter(int maxPermits, Duration acquireTimeout) {
+        if (maxPermits < 1) {
+            throw new IllegalArgumentException("maxPermits must be positive");
+        }
+        this.permits = new Semaphore(maxPermits, true);
+        this.maxPermits = maxPermits;
+        this.acquireTimeout = acquireTimeout;
+        // the datasource is created before the registry, meters are attached once it is bound
+        this.waitTimer = Timer.builder("tempmonitor.db.limiter.wait")
+                .description("Time spent waiting for a database permit")
+                .publishPercentileHistogram()
+                .register(meters);
+        this.timeouts = Counter.builder("tempmonitor.db.limiter.timeouts")
+                .description("Connection requests that gave up waiting for a permit")
+                .register(meters);
+    }
+
+    /**
+     * Blocks until a permit is free or the timeout elapses. Every successful call must be paired with
+     * {@link #release()}.
+     */
+    public void acquire() throws SQLTransientConnectionException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database permit", e);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            timeouts.increment();
+            throw new SQLTransientConnectionException(
+                    "No database permit available within " + acquireTimeout.toMillis() + "ms");
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int getMaxPermits() {
+        return maxPermits;
+    }
+
+    public int inUse() {
+        return maxPermits - permits.availablePermits();
+    }
+
+    public int waiting() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        meters.add(registry);
+        Gauge.builder("tempmonitor.db.limiter.in.use", this, DbConcurrencyLimiter::inUse)
+                .description("Database permits currently held")
+                .register(registry);
+        Gauge.builder("tempmonitor.db.limiter.waiting", this, DbConcurrencyLimiter::waiting)
+                .description("Threads parked waiting for a database permit")
+                .register(registry);
+        Gauge.builder("tempmonitor.db.limiter.max", this, DbConcurrencyLimiter::getMaxPermits)
+                .register(registry);
+    }
+}
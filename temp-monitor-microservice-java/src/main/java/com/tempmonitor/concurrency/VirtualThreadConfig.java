@@ -0,0 +1,72 @@
+package com.tempmonitor.concurrency;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Extras for {@code spring.threads.virtual.enabled=true}. Boot itself moves Tomcat, the MVC async executor and
+ * the scheduler onto virtual threads; this puts a {@link DbConcurrencyLimiter} in front of the Hikari pool and
+ * starts the pinning monitor.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnThreading(Threading.VIRTUAL)
+@Slf4j
+public class VirtualThreadConfig {
+
+    @Bean
+    static BeanPostProcessor dbConcurrencyLimiterPostProcessor() {
+        return new LimiterPostProcessor();
+    }
+
+    @Bean
+    MeterBinder dbConcurrencyLimiterMetrics(ObjectProvider<DataSource> dataSources) {
+        return registry -> dataSources.orderedStream().forEach(ds -> {
+            try {
+                if (ds.isWrapperFor(ConcurrencyLimitedDataSource.class)) {
+                    ds.unwrap(ConcurrencyLimitedDataSource.class).getLimiter().bindTo(registry);
+                }
+            } catch (SQLException e) {
+                log.warn("Could not bind datasource limiter metrics", e);
+            }
+        });
+    }
+
+    @Bean
+    VirtualThreadPinningMonitor virtualThreadPinningMonitor(TempMonitorProperties properties, MeterRegistry registry) {
+        return new VirtualThreadPinningMonitor(properties.getVirtualThreads().getPinnedThreshold(), registry);
+    }
+
+    /** Ordered so it sees the Hikari pool before unordered post processors wrap it. */
+    static class LimiterPostProcessor implements BeanPostProcessor, Ordered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof HikariDataSource hikari) {
+                DbConcurrencyLimiter limiter = new DbConcurrencyLimiter(hikari.getMaximumPoolSize(),
+                        Duration.ofMillis(hikari.getConnectionTimeout()));
+                log.info("Limiting datasource '{}' to {} concurrent connections", beanName, limiter.getMaxPermits());
+                return new ConcurrencyLimitedDataSource(hikari, limiter);
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.tempmonitor.concurrency;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+
+/**
+ * Streams the JFR {@code jdk.VirtualThreadPinned} event into a timer, so blocking inside
+ * {@code synchronized} or native frames, which holds a carrier thread, shows up on the dashboards.
+ */
+@Slf4j
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final Duration threshold;
+    private final Timer pinned;
+    private volatile RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(Duration threshold, MeterRegistry registry) {
+        this.threshold = threshold;
+        this.pinned = Timer.builder("tempmonitor.virtual.threads.pinned")
+                .description("Virtual threads that blocked while pinned to their carrier")
+                .register(registry);
+    }
+
+    void record(RecordedEvent event) {
+        pinned.record(event.getDuration());
+    }
+
+    @Override
+    public void start() {
+        try {
+            RecordingStream rs = new RecordingStream();
+            rs.enable(PINNED_EVENT).withThreshold(threshold);
+            rs.onEvent(PINNED_EVENT, this::record);
+            rs.startAsync();
+            stream = rs;
+            log.info("Watching virtual thread pinning above {}ms", threshold.toMillis());
+        } catch (RuntimeException e) {
+            log.warn("JFR is not available, virtual thread pinning will not be reported", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        RecordingStream rs = stream;
+        stream = null;
+        if (rs != null) {
+            rs.close();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return stream != null;
+    }
+}
@@ -1,23 +1,54 @@
 package com.tempmonitor.controller;
 
+import com.tempmonitor.InvalidRequestException;
 import com.tempmonitor.TempMonitorService;
+import com.tempmonitor.alert.AlertEvaluator;
+import com.tempmonitor.alert.AlertNotifier;
+import com.tempmonitor.alert.AlertRuleService;
 import com.tempmonitor.dto.*;
+import com.tempmonitor.export.ExportFormat;
+import com.tempmonitor.export.ReadingExporter;
+import com.tempmonitor.ingest.IngestQueueFullException;
+import com.tempmonitor.ingest.PendingReading;
+import com.tempmonitor.ingest.ReadingFrames;
+import com.tempmonitor.ingest.ReadingIngestQueue;
+import com.tempmonitor.stats.RollupResolution;
+import com.tempmonitor.stream.ReadingStreamDispatcher;
+import com.tempmonitor.stream.StreamLimitExceededException;
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.ByteBuffer;
+import java.time.Instant;
 import java.util.List;
+import java.util.Locale;
 import java.util.NoSuchElementException;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api")
 @RequiredArgsConstructor
 @Slf4j
 public class TempMonitorController {
+    static final int MAX_READINGS_LIMIT = 1000;
+
     private final TempMonitorService service;
+    private final ReadingIngestQueue ingestQueue;
+    private final ReadingExporter exporter;
+    private final ReadingStreamDispatcher readingStream;
+    private final AlertRuleService alertRules;
+    private final AlertEvaluator alertEvaluator;
+    private final AlertNotifier alertNotifier;
 
     // --- DEMO DATA ---
     @PostMapping("/init-demo-data")
@@ -54,9 +85,50 @@ public class TempMonitorController {
     }
 
     @PostMapping("/readings")
-    public TemperatureReadingDto addReading(@Valid @RequestBody TemperatureReadingCreateDto dto) {
+    public ResponseEntity<TemperatureReadingDto> addReading(@Valid @RequestBody TemperatureReadingCreateDto dto) {
         log.info("POST /readings called for thermometerId={}", dto.getThermometerId());
-        return service.addReading(dto);
+        if (ingestQueue.isEnabled()) {
+            ingestQueue.enqueue(dto);
+            return ResponseEntity.accepted().build();
+        }
+        return ResponseEntity.ok(service.addReading(dto));
+    }
+
+    @PostMapping(path = "/readings", consumes = ReadingFrames.MEDIA_TYPE_VALUE)
+    @Operation(summary = "Store one reading sent as a binary frame, see ReadingFrames")
+    public ResponseEntity<TemperatureReadingDto> addReadingFrame(
+            @RequestBody byte[] body,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType) {
+        List<PendingReading> readings = ReadingFrames.decode(ByteBuffer.wrap(body),
+                ReadingFrames.hasTimestamps(contentType), Instant.now(), 1);
+        if (readings.isEmpty()) {
+            throw new InvalidRequestException("Body holds no frame");
+        }
+        PendingReading reading = readings.getFirst();
+        log.info("POST /readings called with a binary frame for thermometerId={}", reading.thermometerId());
+        if (ingestQueue.isEnabled()) {
+            ingestQueue.enqueuePending(reading);
+            return ResponseEntity.accepted().build();
+        }
+        return ResponseEntity.ok(service.addPendingReading(reading));
+    }
+
+    @PostMapping("/readings/batch")
+    @Operation(summary = "Store a batch of readings, reporting accept/reject per item")
+    public ReadingBatchResultDto addReadings(@RequestBody List<TemperatureReadingCreateDto> dtos) {
+        log.info("POST /readings/batch called with {} readings", dtos.size());
+        return service.addReadings(dtos);
+    }
+
+    @PostMapping(path = "/readings/batch", consumes = ReadingFrames.MEDIA_TYPE_VALUE)
+    @Operation(summary = "Store a batch of readings sent as binary frames, see ReadingFrames")
+    public ReadingBatchResultDto addReadingFrames(
+            @RequestBody byte[] body,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType) {
+        List<PendingReading> readings = ReadingFrames.decode(ByteBuffer.wrap(body),
+                ReadingFrames.hasTimestamps(contentType), Instant.now(), TempMonitorService.MAX_BATCH_SIZE);
+        log.info("POST /readings/batch called with {} binary frames", readings.size());
+        return service.addPendingReadings(readings);
     }
 
     @GetMapping("/readings/latest")
@@ -65,14 +137,102 @@ public class TempMonitorController {
         return service.getLatestReadings();
     }
 
+    @GetMapping(path = "/readings/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Server-Sent Events of new readings, of one thermometer or location or of all")
+    public SseEmitter streamReadings(@RequestParam(required = false) Integer thermometerId,
+                                     @RequestParam(required = false) Integer locationId) {
+        log.info("GET /readings/stream called with thermometerId={}, locationId={}", thermometerId, locationId);
+        if (thermometerId != null && locationId != null) {
+            throw new InvalidRequestException("Filter by thermometerId or locationId, not both");
+        }
+        if (thermometerId != null) service.getThermometer(thermometerId);
+        if (locationId != null) service.getLocation(locationId);
+        return readingStream.subscribe(thermometerId, locationId);
+    }
+
     @GetMapping("/readings/{thermometerId}")
     public List<TemperatureReadingDto> getReadingsForThermometer(
             @PathVariable Integer thermometerId,
             @RequestParam(defaultValue = "10") int limit) {
         log.info("GET /readings/{} called with limit={}", thermometerId, limit);
+        if (limit < 0 || limit > MAX_READINGS_LIMIT) {
+            throw new InvalidRequestException("limit must be between 0 and " + MAX_READINGS_LIMIT);
+        }
         return service.getReadingsForThermometer(thermometerId, limit);
     }
 
+    @GetMapping("/readings/{thermometerId}/history")
+    @Operation(summary = "Downsampled history; picks the resolution from the range when none is given")
+    public ReadingHistoryDto getReadingHistory(
+            @PathVariable Integer thermometerId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) RollupResolution resolution) {
+        log.info("GET /readings/{}/history called with from={}, to={}, resolution={}", thermometerId, from, to, resolution);
+        return service.getReadingHistory(thermometerId, from, to, resolution);
+    }
+
+    @GetMapping("/readings/{thermometerId}/export")
+    @Operation(summary = "Stream raw readings as NDJSON or CSV, gzip-compressed when the client accepts it")
+    public ResponseEntity<StreamingResponseBody> exportReadings(
+            @PathVariable Integer thermometerId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.info("GET /readings/{}/export called with from={}, to={}, format={}", thermometerId, from, to, format);
+        service.getThermometer(thermometerId);
+        Instant start = from != null ? from : Instant.EPOCH;
+        Instant end = to != null ? to : Instant.now();
+        boolean gzip = acceptsGzip(acceptEncoding);
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream gzipOut = new GZIPOutputStream(out, 64 * 1024, true);
+                exporter.export(thermometerId, start, end, format, gzipOut);
+                gzipOut.finish();
+            } else {
+                exporter.export(thermometerId, start, end, format, out);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Whether an {@code Accept-Encoding} header allows gzip: listed by name, or covered by {@code *}, with a
+     * non-zero q-value. A name listed explicitly takes precedence over {@code *}.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        Double gzip = null;
+        Double any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (!name.equals("gzip") && !name.equals("*")) continue;
+            double q = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().toLowerCase(Locale.ROOT);
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0.0;
+                    }
+                }
+            }
+            if (name.equals("gzip")) gzip = q;
+            else any = q;
+        }
+        Double q = gzip != null ? gzip : any;
+        return q != null && q > 0;
+    }
+
     @GetMapping("/stats/thermometer/{thermometerId}")
     public ThermometerStatsDto statsForThermometer(@PathVariable Integer thermometerId) {
         log.info("GET /stats/thermometer/{} called", thermometerId);
@@ -85,9 +245,91 @@ public class TempMonitorController {
         return service.getLocationStats(locationId);
     }
 
+    @GetMapping("/stats/thermometers")
+    @Operation(summary = "Stats of every thermometer, or of those at one location, in one request; "
+            + "exact=true computes percentiles from raw readings instead of sketches")
+    public List<ThermometerStatsDto> statsForThermometers(@RequestParam(required = false) Integer locationId,
+                                                          @RequestParam(defaultValue = "false") boolean exact) {
+        log.info("GET /stats/thermometers called for locationId={}, exact={}", locationId, exact);
+        return service.getThermometerStatsList(locationId, exact);
+    }
+
+    @GetMapping("/stats/locations")
+    @Operation(summary = "Stats of every location in one request; exact=true as for /stats/thermometers")
+    public List<LocationStatsDto> statsForLocations(@RequestParam(defaultValue = "false") boolean exact) {
+        log.info("GET /stats/locations called, exact={}", exact);
+        return service.getAllLocationStats(exact);
+    }
+
+    @GetMapping("/alerts")
+    @Operation(summary = "Alerts that are firing on this replica")
+    public List<AlertDto> getFiringAlerts() {
+        log.info("GET /alerts called");
+        return alertEvaluator.firing();
+    }
+
+    @GetMapping(path = "/alerts/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Server-Sent Events of alerts firing and resolving, starting with those firing")
+    public SseEmitter streamAlerts() {
+        log.info("GET /alerts/stream called");
+        return alertNotifier.subscribe(alertEvaluator.firing());
+    }
+
+    @GetMapping("/alerts/rules")
+    public List<AlertRuleDto> getAlertRules() {
+        log.info("GET /alerts/rules called");
+        return alertRules.getRules();
+    }
+
+    @GetMapping("/alerts/rules/{ruleId}")
+    public AlertRuleDto getAlertRule(@PathVariable Integer ruleId) {
+        log.info("GET /alerts/rules/{} called", ruleId);
+        return alertRules.getRule(ruleId);
+    }
+
+    @PostMapping("/alerts/rules")
+    @Operation(summary = "Create a threshold or rate-of-change rule for a thermometer or a location")
+    public AlertRuleDto createAlertRule(@Valid @RequestBody AlertRuleDto dto) {
+        log.info("POST /alerts/rules called for thermometerId={}, locationId={}", dto.getThermometerId(), dto.getLocationId());
+        return alertRules.createRule(dto);
+    }
+
+    @PutMapping("/alerts/rules/{ruleId}")
+    public AlertRuleDto updateAlertRule(@PathVariable Integer ruleId, @Valid @RequestBody AlertRuleDto dto) {
+        log.info("PUT /alerts/rules/{} called", ruleId);
+        return alertRules.updateRule(ruleId, dto);
+    }
+
+    @DeleteMapping("/alerts/rules/{ruleId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void deleteAlertRule(@PathVariable Integer ruleId) {
+        log.info("DELETE /alerts/rules/{} called", ruleId);
+        alertRules.deleteRule(ruleId);
+    }
+
     @ExceptionHandler(NoSuchElementException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public void handleNotFound() {
         log.warn("Resource not found, returning 404");
     }
+
+    @ExceptionHandler(IngestQueueFullException.class)
+    public ResponseEntity<Void> handleQueueFull(IngestQueueFullException e) {
+        log.warn("Ingest queue full, returning 429");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+                .build();
+    }
+
+    @ExceptionHandler(StreamLimitExceededException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public void handleStreamLimit(StreamLimitExceededException e) {
+        log.warn("{}, returning 503", e.getMessage());
+    }
+
+    @ExceptionHandler(InvalidRequestException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public void handleBadRequest(InvalidRequestException e) {
+        log.warn("Bad request: {}", e.getMessage());
+    }
 }
\ No newline at end of file
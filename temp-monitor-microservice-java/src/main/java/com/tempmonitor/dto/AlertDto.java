@@ -0,0 +1,26 @@
+package com.tempmonitor.dto;
+
+import com.tempmonitor.alert.AlertKind;
+import com.tempmonitor.alert.AlertState;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * A change of alert state, or an alert that is firing.
+ */
+@Data
+public class AlertDto {
+    private Integer ruleId;
+    private String ruleName;
+    private AlertKind kind;
+    private Integer thermometerId;
+    /** Set for rules of a location. */
+    private Integer locationId;
+    private AlertState state;
+    /** The reading, or the rate of change in degrees per minute, that changed the state. */
+    private Double value;
+    private Double threshold;
+    /** Time of the reading that changed the state. */
+    private Instant timestamp;
+}
@@ -0,0 +1,33 @@
+package com.tempmonitor.dto;
+
+import com.tempmonitor.alert.AlertKind;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.Data;
+
+@Data
+public class AlertRuleDto {
+    private Integer id;
+
+    @NotBlank
+    private String name;
+
+    /** Set either this or {@link #locationId}, which applies the rule to every thermometer of the location. */
+    private Integer thermometerId;
+
+    private Integer locationId;
+
+    @NotNull
+    private AlertKind kind;
+
+    /** Degrees, or degrees per minute for RATE_OF_CHANGE. */
+    @NotNull
+    private Double threshold;
+
+    /** How far back past the threshold a firing alert has to go to resolve. */
+    @PositiveOrZero
+    private Double hysteresis = 0.0;
+
+    private Boolean enabled = true;
+}
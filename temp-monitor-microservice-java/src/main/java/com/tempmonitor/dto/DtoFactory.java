@@ -1,8 +1,12 @@
 package com.tempmonitor.dto;
 
+import com.tempmonitor.entity.AlertRule;
 import com.tempmonitor.entity.Location;
 import com.tempmonitor.entity.TemperatureReading;
 import com.tempmonitor.entity.Thermometer;
+import com.tempmonitor.repo.LocationRow;
+import com.tempmonitor.repo.ReadingRow;
+import com.tempmonitor.repo.ThermometerRow;
 
 public class DtoFactory {
 
@@ -18,6 +22,14 @@ public class DtoFactory {
         return dto;
     }
 
+    public static LocationDto createLocationDto(LocationRow row) {
+        if (row == null) return null;
+        LocationDto dto = new LocationDto();
+        dto.setId(row.id());
+        dto.setName(row.name());
+        return dto;
+    }
+
     public static ThermometerDto createThermometerDto(Thermometer t) {
         if (t == null) return null;
         ThermometerDto dto = new ThermometerDto();
@@ -27,6 +39,15 @@ public class DtoFactory {
         return dto;
     }
 
+    public static ThermometerDto createThermometerDto(ThermometerRow row) {
+        if (row == null) return null;
+        ThermometerDto dto = new ThermometerDto();
+        dto.setId(row.id());
+        dto.setName(row.name());
+        dto.setLocationId(row.locationId());
+        return dto;
+    }
+
     public static TemperatureReadingDto createTemperatureReadingDto(TemperatureReading tr) {
         if (tr == null) return null;
         TemperatureReadingDto dto = new TemperatureReadingDto();
@@ -36,4 +57,28 @@ public class DtoFactory {
         dto.setTimestamp(tr.getTimestamp());
         return dto;
     }
-}
\ No newline at end of file
+
+    public static TemperatureReadingDto createTemperatureReadingDto(ReadingRow row) {
+        if (row == null) return null;
+        TemperatureReadingDto dto = new TemperatureReadingDto();
+        dto.setId(row.id());
+        dto.setThermometerId(row.thermometerId());
+        dto.setValue(row.value());
+        dto.setTimestamp(row.timestamp());
+        return dto;
+    }
+
+    public static AlertRuleDto createAlertRuleDto(AlertRule rule) {
+        if (rule == null) return null;
+        AlertRuleDto dto = new AlertRuleDto();
+        dto.setId(rule.getId());
+        dto.setName(rule.getName());
+        dto.setThermometerId(rule.getThermometerId());
+        dto.setLocationId(rule.getLocationId());
+        dto.setKind(rule.getKind());
+        dto.setThreshold(rule.getThreshold());
+        dto.setHysteresis(rule.getHysteresis());
+        dto.setEnabled(rule.getEnabled());
+        return dto;
+    }
+}
@@ -1,5 +1,6 @@
 package com.tempmonitor.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 @Data
@@ -9,4 +10,11 @@ public class LocationStatsDto {
     private Double max;
     private Double avg;
     private Long count;
-}
\ No newline at end of file
+    /** Estimated from quantile sketches within 1%, unless exact percentiles were asked for. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double p50;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double p90;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double p99;
+}
@@ -0,0 +1,18 @@
+package com.tempmonitor.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class ReadingBatchItemDto {
+    /** DUPLICATE means the reading was already stored, by an earlier attempt of the same upload. */
+    public enum Status { ACCEPTED, DUPLICATE, REJECTED }
+
+    private int index;
+    private Status status;
+    private Integer id;
+    private Integer thermometerId;
+    private Instant timestamp;
+    private String error;
+}
@@ -0,0 +1,13 @@
+package com.tempmonitor.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ReadingBatchResultDto {
+    private int accepted;
+    private int duplicates;
+    private int rejected;
+    private List<ReadingBatchItemDto> items;
+}
@@ -0,0 +1,23 @@
+package com.tempmonitor.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class ReadingBucketDto {
+    private Instant bucketStart;
+    private Double min;
+    private Double max;
+    private Double avg;
+    private Long count;
+    /** Estimated from the bucket's quantile sketch, within 1%. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double p50;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double p90;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double p99;
+}
+
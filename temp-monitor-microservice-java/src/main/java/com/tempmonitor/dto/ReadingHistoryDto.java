@@ -0,0 +1,16 @@
+package com.tempmonitor.dto;
+
+import com.tempmonitor.stats.RollupResolution;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+public class ReadingHistoryDto {
+    private Integer thermometerId;
+    private RollupResolution resolution;
+    private Instant from;
+    private Instant to;
+    private List<ReadingBucketDto> buckets;
+}
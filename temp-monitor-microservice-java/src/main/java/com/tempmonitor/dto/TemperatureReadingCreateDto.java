@@ -3,6 +3,8 @@ package com.tempmonitor.dto;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 
+import java.time.Instant;
+
 @Data
 public class TemperatureReadingCreateDto {
     @NotNull
@@ -10,4 +12,7 @@ public class TemperatureReadingCreateDto {
 
     @NotNull
     private Double value;
+
+    /** When the device took the reading; defaults to the time it is received. */
+    private Instant timestamp;
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.tempmonitor.entity;
+
+import com.tempmonitor.alert.AlertKind;
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * A threshold rule for one thermometer, or for every thermometer of one location; exactly one of the two ids
+ * is set.
+ */
+@Entity
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Table(name = "alert_rules")
+public class AlertRule {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(name = "thermometer_id")
+    private Integer thermometerId;
+
+    @Column(name = "location_id")
+    private Integer locationId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private AlertKind kind;
+
+    @Column(nullable = false)
+    private Double threshold;
+
+    @Column(nullable = false)
+    private Double hysteresis;
+
+    @Column(nullable = false)
+    private Boolean enabled;
+}
@@ -12,7 +12,7 @@ public class TemperatureReading {
     @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "thermometer_id", nullable = false)
     private Thermometer thermometer;
 
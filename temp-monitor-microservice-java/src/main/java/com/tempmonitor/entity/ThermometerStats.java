@@ -0,0 +1,35 @@
+package com.tempmonitor.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+/**
+ * Running min/max/sum/count and quantile sketch of all readings of one thermometer, maintained on write.
+ */
+@Entity
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Table(name = "thermometer_stats")
+public class ThermometerStats {
+    @Id
+    @Column(name = "thermometer_id")
+    private Integer thermometerId;
+
+    @Column(name = "min_value", nullable = false)
+    private Double minValue;
+
+    @Column(name = "max_value", nullable = false)
+    private Double maxValue;
+
+    @Column(name = "sum_value", nullable = false)
+    private Double sumValue;
+
+    @Column(name = "reading_count", nullable = false)
+    private Long count;
+
+    /** Bin counts of a {@link com.tempmonitor.stats.QuantileSketch}, as JSON. */
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "sketch", nullable = false)
+    private String sketch;
+}
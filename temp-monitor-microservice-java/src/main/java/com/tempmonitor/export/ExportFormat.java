@@ -0,0 +1,16 @@
+package com.tempmonitor.export;
+
+import lombok.Getter;
+import org.springframework.http.MediaType;
+
+@Getter
+public enum ExportFormat {
+    NDJSON(MediaType.parseMediaType("application/x-ndjson")),
+    CSV(MediaType.parseMediaType("text/csv"));
+
+    private final MediaType mediaType;
+
+    ExportFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+}
@@ -0,0 +1,19 @@
+package com.tempmonitor.export;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Binds the {@code format} request parameter case-insensitively, so {@code ?format=csv} works as well as
+ * {@code ?format=CSV}. Unknown names still fail conversion and come back as 400.
+ */
+@Component
+public class ExportFormatConverter implements Converter<String, ExportFormat> {
+
+    @Override
+    public ExportFormat convert(String source) {
+        return ExportFormat.valueOf(source.trim().toUpperCase(Locale.ROOT));
+    }
+}
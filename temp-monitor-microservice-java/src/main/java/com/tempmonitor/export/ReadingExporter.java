@@ -0,0 +1,202 @@
+package com.tempmonitor.export;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.archive.ReadingBlock;
+import com.tempmonitor.repo.ReadingBlockRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Streams the raw readings of one thermometer in time order. Rows are read in keyset-paginated pages, each page
+ * in its own short read-only transaction through a forward-only cursor, and written straight to the output
+ * without building entities or DTOs, so memory use does not depend on the size of the export.
+ *
+ * <p>Archived readings are decoded from their day blocks a month of blocks per page, ahead of the rows in
+ * {@code temperature_readings}. Every page reads the archive boundary in its own repeatable-read snapshot, so a
+ * month archived while the export runs is picked up from its blocks instead of being skipped.
+ */
+@Component
+@Slf4j
+public class ReadingExporter {
+
+    private static final String PAGE_SQL = """
+            SELECT id, CAST(EXTRACT(EPOCH FROM "timestamp") * 1000000 AS BIGINT), "value"
+            FROM temperature_readings
+            WHERE thermometer_id = ? AND ("timestamp", id) > (?, ?) AND "timestamp" < ?
+            ORDER BY "timestamp", id
+            LIMIT ?
+            """;
+
+    /** Day blocks decoded per page. */
+    private static final int BLOCKS_PER_PAGE = 31;
+    private static final long DAY_MICROS = 86_400_000_000L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadingBlockRepository blockRepo;
+    private final TempMonitorProperties.Export config;
+
+    public ReadingExporter(DataSource dataSource, PlatformTransactionManager transactionManager,
+                           ReadingBlockRepository blockRepo, TempMonitorProperties properties) {
+        this.config = properties.getExport();
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(config.getFetchSize());
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.blockRepo = blockRepo;
+    }
+
+    /**
+     * Writes the readings with {@code from <= timestamp < to}. The stream is flushed after every page but not closed.
+     */
+    public void export(int thermometerId, Instant from, Instant to, ExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        RowWriter rows = new RowWriter(writer, thermometerId, format);
+        rows.lastMicros = toMicros(from);
+        rows.lastId = Integer.MIN_VALUE;
+        long endMicros = toMicros(to);
+        // blocks start at midnight, so the first one may hold readings before from
+        long nextBlockMicros = Math.floorDiv(rows.lastMicros, DAY_MICROS) * DAY_MICROS;
+        long total = 0;
+        try {
+            rows.header();
+            while (true) {
+                rows.pageRows = 0;
+                long blockFrom = nextBlockMicros;
+                Instant archivedBefore = transactionTemplate.execute(status -> {
+                    Instant before = blockRepo.archivedBefore();
+                    if (rows.lastMicros < toMicros(before) && blockFrom < endMicros) {
+                        rows.pageBlocks = blockRepo.forEachBlock(thermometerId, toInstant(blockFrom), to,
+                                BLOCKS_PER_PAGE, (id, block) -> rows.block(block, endMicros));
+                    } else {
+                        rows.pageBlocks = -1;
+                        jdbcTemplate.query(PAGE_SQL, rows, thermometerId, utc(rows.lastMicros), rows.lastId, utc(endMicros),
+                                config.getPageSize());
+                    }
+                    return before;
+                });
+                writer.flush();
+                total += rows.pageRows;
+                if (rows.pageBlocks >= 0) {
+                    if (rows.pageBlocks > 0) nextBlockMicros = rows.lastBlockMicros + DAY_MICROS;
+                    if (rows.pageBlocks < BLOCKS_PER_PAGE) {
+                        // no more blocks, the rest is in temperature_readings
+                        nextBlockMicros = Math.max(nextBlockMicros, toMicros(archivedBefore));
+                        rows.skipTo(toMicros(archivedBefore));
+                    }
+                    continue;
+                }
+                if (rows.pageRows < config.getPageSize()) break;
+            }
+        } catch (UncheckedIOException e) {
+            log.warn("Export of thermometer {} aborted after {} readings: {}", thermometerId, total, e.getMessage());
+            throw e.getCause();
+        }
+        log.info("Exported {} readings of thermometer {} as {}", total, thermometerId, format);
+    }
+
+    private static long toMicros(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000;
+    }
+
+    private static OffsetDateTime utc(long epochMicros) {
+        return OffsetDateTime.ofInstant(toInstant(epochMicros), ZoneOffset.UTC);
+    }
+
+    private static Instant toInstant(long epochMicros) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L), Math.floorMod(epochMicros, 1_000_000L) * 1000L);
+    }
+
+    private static final class RowWriter implements RowCallbackHandler {
+        private final Writer writer;
+        private final String thermometerId;
+        private final ExportFormat format;
+        private long lastMicros;
+        private int lastId;
+        private int pageRows;
+        /** Blocks read by the page, or -1 for a page of rows. */
+        private int pageBlocks;
+        private long lastBlockMicros;
+
+        RowWriter(Writer writer, int thermometerId, ExportFormat format) {
+            this.writer = writer;
+            this.thermometerId = Integer.toString(thermometerId);
+            this.format = format;
+        }
+
+        void header() throws IOException {
+            if (format == ExportFormat.CSV) writer.write("id,thermometer_id,timestamp,value\n");
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            row(rs.getInt(1), rs.getLong(2), rs.getDouble(3));
+        }
+
+        /** Writes the readings of a block after the last one written and before {@code endMicros}. */
+        void block(ReadingBlock block, long endMicros) {
+            lastBlockMicros = Math.floorDiv(block.epochMicros(0), DAY_MICROS) * DAY_MICROS;
+            for (int i = block.indexAfter(lastMicros, lastId); i < block.size() && block.epochMicros(i) < endMicros; i++) {
+                row(block.id(i), block.epochMicros(i), block.value(i));
+            }
+        }
+
+        /** Moves past everything before {@code epochMicros} without writing it. */
+        void skipTo(long epochMicros) {
+            if (epochMicros > lastMicros) {
+                lastMicros = epochMicros;
+                lastId = Integer.MIN_VALUE;
+            }
+        }
+
+        private void row(int id, long epochMicros, double value) {
+            lastId = id;
+            lastMicros = epochMicros;
+            pageRows++;
+            try {
+                write(id, toInstant(epochMicros).toString(), value);
+            } catch (IOException e) {
+                // stops the cursor, e.g. when the client has gone away
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void write(int id, String timestamp, double value) throws IOException {
+            if (format == ExportFormat.CSV) {
+                writer.write(Integer.toString(id));
+                writer.write(',');
+                writer.write(thermometerId);
+                writer.write(',');
+                writer.write(timestamp);
+                writer.write(',');
+                writer.write(Double.toString(value));
+                writer.write('\n');
+            } else {
+                writer.write("{\"id\":");
+                writer.write(Integer.toString(id));
+                writer.write(",\"thermometerId\":");
+                writer.write(thermometerId);
+                writer.write(",\"value\":");
+                writer.write(Double.toString(value));
+                writer.write(",\"timestamp\":\"");
+                writer.write(timestamp);
+                writer.write("\"}\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,462 @@
+package com.tempmonitor.ingest;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.TempMonitorService;
+import com.tempmonitor.dto.ReadingBatchResultDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Accepts readings over plain TCP and UDP for sensors that cannot afford HTTP, in the line protocol of
+ * {@link LineProtocolParser} or the frames of {@link ReadingFrames}. One selector thread reads every socket and
+ * parses straight from its buffer; a TCP connection may carry any number of lines or frames, a datagram only
+ * whole ones. Parsed readings are collected into batches of {@code batch-size}, or whatever arrived within
+ * {@code flush-interval}, and a writer thread stores them through {@link TempMonitorService#storeReadings}, or
+ * appends them to the {@link ReadingWal} in mode WAL.
+ * While the writer is behind, TCP connections are not read, which pushes back on their senders; datagrams
+ * keep being read and are dropped once a full batch is already waiting.
+ *
+ * <p>Like any fire-and-forget transport nothing is acknowledged: readings of unknown thermometers, malformed
+ * lines and dropped readings are only counted.
+ */
+@Component
+@ConditionalOnProperty(prefix = "tempmonitor.ingest.listener", name = "enabled", havingValue = "true")
+@Slf4j
+public class IngestListener implements SmartLifecycle {
+
+    /** Large enough for any UDP datagram. */
+    private static final int DATAGRAM_BUFFER_BYTES = 65_536;
+    /** Datagrams read per wakeup, so a flood on UDP cannot starve the TCP connections. */
+    private static final int MAX_DATAGRAMS_PER_SELECT = 1_024;
+    /** How often a full write queue is retried while connections are paused. */
+    private static final long PAUSED_RETRY_MILLIS = 10;
+
+    private final TempMonitorService service;
+    private final ReadingWal wal;
+    private final TempMonitorProperties.Ingest.Listener config;
+    private final int batchSize;
+    private final BlockingQueue<List<PendingReading>> batches;
+    private final AtomicInteger connections = new AtomicInteger();
+    /** Connections not read from while the writer is behind, so TCP flow control slows their senders down. */
+    private final List<SelectionKey> paused = new ArrayList<>();
+    private final Counter acceptedCounter;
+    private final Counter refusedCounter;
+    private final Counter droppedCounter;
+    private final TransportMeters tcpMeters;
+    private final TransportMeters udpMeters;
+
+    private Selector selector;
+    private ServerSocketChannel tcpChannel;
+    private DatagramChannel udpChannel;
+    private ByteBuffer datagramBuffer;
+    private List<PendingReading> pending;
+    private Thread selectorThread;
+    private Thread writerThread;
+    private volatile boolean running;
+    private volatile boolean writing;
+
+    public IngestListener(TempMonitorService service, ReadingWal wal, TempMonitorProperties properties,
+                          MeterRegistry registry) {
+        this.service = service;
+        this.wal = wal;
+        this.config = properties.getIngest().getListener();
+        this.batchSize = Math.min(config.getBatchSize(), TempMonitorService.MAX_BATCH_SIZE / 2);
+        this.batches = new ArrayBlockingQueue<>(config.getWriteQueueCapacity());
+        Gauge.builder("tempmonitor.ingest.listener.connections", connections, AtomicInteger::get)
+                .description("Open TCP ingestion connections")
+                .register(registry);
+        this.acceptedCounter = Counter.builder("tempmonitor.ingest.listener.accepted")
+                .description("TCP ingestion connections accepted")
+                .register(registry);
+        this.refusedCounter = Counter.builder("tempmonitor.ingest.listener.refused")
+                .description("TCP ingestion connections closed because max-connections was reached")
+                .register(registry);
+        this.droppedCounter = Counter.builder("tempmonitor.ingest.listener.dropped")
+                .description("Parsed readings lost because the write queue was full or their batch failed")
+                .register(registry);
+        this.tcpMeters = new TransportMeters("tcp", registry);
+        this.udpMeters = new TransportMeters("udp", registry);
+    }
+
+    /** The bound TCP port, or -1 if TCP is disabled or the listener is not running. */
+    public int getTcpPort() {
+        return tcpChannel != null ? tcpChannel.socket().getLocalPort() : -1;
+    }
+
+    /** The bound UDP port, or -1 if UDP is disabled or the listener is not running. */
+    public int getUdpPort() {
+        return udpChannel != null ? udpChannel.socket().getLocalPort() : -1;
+    }
+
+    @Override
+    public void start() {
+        try {
+            selector = Selector.open();
+            if (config.isTcpEnabled()) {
+                tcpChannel = ServerSocketChannel.open();
+                tcpChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                tcpChannel.bind(new InetSocketAddress(config.getBindAddress(), config.getTcpPort()));
+                tcpChannel.configureBlocking(false);
+                tcpChannel.register(selector, SelectionKey.OP_ACCEPT);
+            }
+            if (config.isUdpEnabled()) {
+                udpChannel = DatagramChannel.open();
+                udpChannel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * DATAGRAM_BUFFER_BYTES);
+                udpChannel.bind(new InetSocketAddress(config.getBindAddress(), config.getUdpPort()));
+                udpChannel.configureBlocking(false);
+                udpChannel.register(selector, SelectionKey.OP_READ);
+                datagramBuffer = ByteBuffer.allocateDirect(DATAGRAM_BUFFER_BYTES);
+            }
+        } catch (IOException e) {
+            closeChannels();
+            throw new UncheckedIOException("Could not open the ingestion listener on " + config.getBindAddress(), e);
+        }
+        pending = new ArrayList<>(batchSize);
+        running = true;
+        writing = true;
+        writerThread = Thread.ofPlatform().name("ingest-listener-writer").start(this::write);
+        selectorThread = Thread.ofPlatform().name("ingest-listener").start(this::select);
+        log.info("Ingestion listener started: format={}, tcp={}, udp={}", config.getFormat(), getTcpPort(), getUdpPort());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Selector current = selector;
+        if (current != null) current.wakeup();
+        join(selectorThread, 5_000);
+        writing = false;
+        join(writerThread, 30_000);
+        selectorThread = null;
+        writerThread = null;
+        if (!batches.isEmpty()) {
+            log.warn("Ingestion listener stopped with {} batches still queued", batches.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // stop together with the web server, before the ingest queue and the datasource
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
+    private void select() {
+        long flushNanos = config.getFlushInterval().toNanos();
+        long nextFlush = System.nanoTime() + flushNanos;
+        try {
+            while (running) {
+                long waitMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextFlush - System.nanoTime()));
+                if (!paused.isEmpty()) waitMillis = Math.min(waitMillis, PAUSED_RETRY_MILLIS);
+                selector.select(this::handle, waitMillis);
+                if (backlogged() || System.nanoTime() - nextFlush >= 0) {
+                    flush();
+                    nextFlush = System.nanoTime() + flushNanos;
+                }
+                if (!backlogged()) resumePaused();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            log.error("Ingestion listener failed", e);
+        } finally {
+            flushOnStop();
+            for (SelectionKey key : selector.keys()) {
+                if (key.isValid() && key.attachment() instanceof Connection) close(key);
+            }
+            closeChannels();
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (!key.isValid()) return;
+        if (key.isAcceptable()) {
+            accept();
+        } else if (key.channel() == udpChannel) {
+            receiveDatagrams();
+        } else if (backlogged()) {
+            key.interestOps(0);
+            paused.add(key);
+        } else {
+            read(key);
+        }
+        if (pending.size() >= batchSize) flush();
+    }
+
+    /** Whether a full batch is waiting for room in the write queue. */
+    private boolean backlogged() {
+        return pending.size() >= batchSize;
+    }
+
+    private void resumePaused() {
+        for (SelectionKey key : paused) {
+            if (key.isValid()) key.interestOps(SelectionKey.OP_READ);
+        }
+        paused.clear();
+    }
+
+    private void accept() {
+        SocketChannel channel;
+        try {
+            channel = tcpChannel.accept();
+            if (channel == null) return;
+        } catch (IOException e) {
+            log.warn("Accepting an ingestion connection failed: {}", e.getMessage());
+            return;
+        }
+        try {
+            if (connections.get() >= config.getMaxConnections()) {
+                refusedCounter.increment();
+                channel.close();
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new Connection(ByteBuffer.allocate(config.getBufferSize())));
+            connections.incrementAndGet();
+            acceptedCounter.increment();
+        } catch (IOException e) {
+            log.debug("Ingestion connection closed while accepting it: {}", e.getMessage());
+        }
+    }
+
+    private void read(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer buffer = connection.buffer;
+        int read;
+        try {
+            read = ((SocketChannel) key.channel()).read(buffer);
+        } catch (IOException e) {
+            log.debug("Ingestion connection failed: {}", e.getMessage());
+            close(key);
+            return;
+        }
+        boolean endOfInput = read < 0;
+        if (read > 0) tcpMeters.received(read);
+        buffer.flip();
+        if (connection.discarding && !skipLine(buffer, connection)) {
+            buffer.clear();
+        } else {
+            decode(buffer, endOfInput, tcpMeters);
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                // a line longer than the whole buffer: count it once and skip to its end
+                tcpMeters.malformed.increment();
+                connection.discarding = true;
+                buffer.clear();
+            }
+        }
+        if (endOfInput) close(key);
+    }
+
+    /** Moves past the newline ending a discarded line, or returns false if the buffer holds none. */
+    private static boolean skipLine(ByteBuffer buffer, Connection connection) {
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                buffer.position(i + 1);
+                connection.discarding = false;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void receiveDatagrams() {
+        try {
+            for (int i = 0; i < MAX_DATAGRAMS_PER_SELECT; i++) {
+                datagramBuffer.clear();
+                if (udpChannel.receive(datagramBuffer) == null) return;
+                datagramBuffer.flip();
+                udpMeters.received(datagramBuffer.remaining());
+                decode(datagramBuffer, true, udpMeters);
+            }
+        } catch (IOException e) {
+            log.warn("Receiving an ingestion datagram failed: {}", e.getMessage());
+        }
+    }
+
+    /** Parses what is complete in {@code buffer} into {@link #pending}, leaving the position after it. */
+    private void decode(ByteBuffer buffer, boolean endOfInput, TransportMeters meters) {
+        Instant receivedAt = Instant.now();
+        int before = pending.size();
+        int malformed;
+        if (config.getFormat() == TempMonitorProperties.Ingest.Listener.Format.LINE) {
+            malformed = LineProtocolParser.parse(buffer, endOfInput, receivedAt, pending);
+        } else {
+            malformed = decodeFrames(buffer, endOfInput, receivedAt);
+        }
+        meters.parsed.increment(pending.size() - before);
+        if (malformed > 0) meters.malformed.increment(malformed);
+    }
+
+    private int decodeFrames(ByteBuffer buffer, boolean endOfInput, Instant receivedAt) {
+        int malformed = ReadingFrames.decode(buffer, config.isBinaryTimestamps(), receivedAt, pending);
+        if (endOfInput && buffer.hasRemaining()) {
+            // a truncated frame at the end of a datagram or connection
+            buffer.position(buffer.limit());
+            malformed++;
+        }
+        return malformed;
+    }
+
+    /**
+     * Hands the pending readings to the writer. If its queue is full they are kept for the next attempt, up to
+     * the largest batch the service accepts; beyond that, which only datagrams can cause, they are dropped.
+     */
+    private void flush() {
+        if (pending.isEmpty()) return;
+        if (!batches.offer(pending)) {
+            if (pending.size() < TempMonitorService.MAX_BATCH_SIZE) return;
+            droppedCounter.increment(pending.size());
+        }
+        pending = new ArrayList<>(batchSize);
+    }
+
+    private void flushOnStop() {
+        if (pending.isEmpty()) return;
+        try {
+            if (!batches.offer(pending, 5, TimeUnit.SECONDS)) droppedCounter.increment(pending.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedCounter.increment(pending.size());
+        }
+        pending = new ArrayList<>(batchSize);
+    }
+
+    private void write() {
+        while (writing || !batches.isEmpty()) {
+            List<PendingReading> batch;
+            try {
+                batch = batches.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (batch == null) continue;
+            if (wal.isEnabled()) {
+                append(batch);
+                continue;
+            }
+            try {
+                ReadingBatchResultDto result = service.storeReadings(batch);
+                if (result != null && result.getRejected() > 0) {
+                    log.debug("Listener batch of {} readings had {} rejected", batch.size(), result.getRejected());
+                }
+            } catch (RuntimeException e) {
+                droppedCounter.increment(batch.size());
+                log.error("Failed to write listener batch of {} readings", batch.size(), e);
+            }
+        }
+    }
+
+    private void append(List<PendingReading> batch) {
+        try {
+            wal.append(batch);
+        } catch (IngestQueueFullException e) {
+            droppedCounter.increment(batch.size());
+        } catch (RuntimeException e) {
+            droppedCounter.increment(batch.size());
+            log.error("Failed to append listener batch of {} readings to the write-ahead log", batch.size(), e);
+        }
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.debug("Closing an ingestion connection failed", e);
+        }
+        connections.decrementAndGet();
+    }
+
+    private void closeChannels() {
+        for (AutoCloseable closeable : new AutoCloseable[]{tcpChannel, udpChannel, selector}) {
+            if (closeable == null) continue;
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.debug("Closing the ingestion listener failed", e);
+            }
+        }
+        tcpChannel = null;
+        udpChannel = null;
+        selector = null;
+    }
+
+    private static void join(Thread thread, long millis) {
+        if (thread == null) return;
+        try {
+            thread.join(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Connection {
+        final ByteBuffer buffer;
+        /** Whether the rest of an over-long line is being skipped. */
+        boolean discarding;
+
+        Connection(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class TransportMeters {
+        final Counter packets;
+        final Counter bytes;
+        final Counter parsed;
+        final Counter malformed;
+
+        TransportMeters(String transport, MeterRegistry registry) {
+            this.packets = Counter.builder("tempmonitor.ingest.listener.packets")
+                    .description("Datagrams received, or reads from TCP connections")
+                    .tag("transport", transport)
+                    .register(registry);
+            this.bytes = Counter.builder("tempmonitor.ingest.listener.bytes")
+                    .baseUnit("bytes")
+                    .tag("transport", transport)
+                    .register(registry);
+            this.parsed = readings(transport, "parsed", registry);
+            this.malformed = readings(transport, "malformed", registry);
+        }
+
+        void received(int byteCount) {
+            packets.increment();
+            bytes.increment(byteCount);
+        }
+
+        private static Counter readings(String transport, String result, MeterRegistry registry) {
+            return Counter.builder("tempmonitor.ingest.listener.readings")
+                    .tag("transport", transport)
+                    .tag("result", result)
+                    .register(registry);
+        }
+    }
+}
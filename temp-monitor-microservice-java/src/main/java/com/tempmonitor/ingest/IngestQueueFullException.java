@@ -0,0 +1,15 @@
+package com.tempmonitor.ingest;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+@Getter
+public class IngestQueueFullException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public IngestQueueFullException(Duration retryAfter) {
+        super("Ingest queue is full");
+        this.retryAfter = retryAfter;
+    }
+}
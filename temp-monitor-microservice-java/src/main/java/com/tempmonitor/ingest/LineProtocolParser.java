@@ -0,0 +1,181 @@
+package com.tempmonitor.ingest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Parses readings in an Influx-style line protocol straight from a {@link ByteBuffer}, without building
+ * strings for the common case:
+ * <pre>
+ * temperature,thermometer=3 value=21.5 1735689600000000000
+ * </pre>
+ * The measurement name and any other tags and fields are ignored; the {@code thermometer} tag and the
+ * {@code value} field are required. The timestamp is optional, in epoch nanoseconds, and defaults to the time
+ * the data was received. Blank lines and {@code #} comments are skipped. Escaped characters are not
+ * supported.
+ */
+public final class LineProtocolParser {
+
+    private static final byte[] THERMOMETER_TAG = "thermometer".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALUE_FIELD = "value".getBytes(StandardCharsets.US_ASCII);
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private LineProtocolParser() {
+    }
+
+    /**
+     * Parses the complete lines between the buffer's position and limit into {@code out} and moves the position
+     * past them. A trailing line without a newline is left in the buffer, unless {@code endOfInput} says the
+     * data ends there (a datagram, or a closed connection).
+     *
+     * @return the number of lines that could not be parsed
+     */
+    public static int parse(ByteBuffer buffer, boolean endOfInput, Instant receivedAt, List<PendingReading> out) {
+        int malformed = 0;
+        int start = buffer.position();
+        int limit = buffer.limit();
+        for (int i = start; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                if (!parseLine(buffer, start, i, receivedAt, out)) malformed++;
+                start = i + 1;
+            }
+        }
+        if (endOfInput && start < limit) {
+            if (!parseLine(buffer, start, limit, receivedAt, out)) malformed++;
+            start = limit;
+        }
+        buffer.position(start);
+        return malformed;
+    }
+
+    private static boolean parseLine(ByteBuffer buf, int start, int end, Instant receivedAt, List<PendingReading> out) {
+        if (end > start && buf.get(end - 1) == '\r') end--;
+        while (start < end && buf.get(start) == ' ') start++;
+        if (start == end || buf.get(start) == '#') return true;
+
+        int fieldsStart = indexOf(buf, start, end, (byte) ' ');
+        if (fieldsStart < 0) return false;
+        int fieldsEnd = indexOf(buf, fieldsStart + 1, end, (byte) ' ');
+        if (fieldsEnd < 0) fieldsEnd = end;
+
+        long thermometerId = Long.MIN_VALUE;
+        for (int pos = indexOf(buf, start, fieldsStart, (byte) ','); pos >= 0 && pos < fieldsStart; ) {
+            int next = indexOf(buf, pos + 1, fieldsStart, (byte) ',');
+            int pairEnd = next < 0 ? fieldsStart : next;
+            int eq = indexOf(buf, pos + 1, pairEnd, (byte) '=');
+            if (eq > 0 && matches(buf, pos + 1, eq, THERMOMETER_TAG)) {
+                thermometerId = parseLong(buf, eq + 1, pairEnd);
+            }
+            pos = next;
+        }
+
+        double value = Double.NaN;
+        boolean hasValue = false;
+        for (int pos = fieldsStart + 1; pos < fieldsEnd; ) {
+            int next = indexOf(buf, pos, fieldsEnd, (byte) ',');
+            int pairEnd = next < 0 ? fieldsEnd : next;
+            int eq = indexOf(buf, pos, pairEnd, (byte) '=');
+            if (eq > 0 && matches(buf, pos, eq, VALUE_FIELD)) {
+                value = parseDouble(buf, eq + 1, pairEnd);
+                hasValue = !Double.isNaN(value);
+            }
+            pos = pairEnd + 1;
+        }
+
+        Instant timestamp = receivedAt;
+        boolean serverStamped = fieldsEnd >= end;
+        if (!serverStamped) {
+            long nanos = parseLong(buf, fieldsEnd + 1, end);
+            if (nanos == Long.MIN_VALUE) return false;
+            timestamp = Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), Math.floorMod(nanos, 1_000_000_000L));
+        }
+        if (thermometerId < Integer.MIN_VALUE || thermometerId > Integer.MAX_VALUE || !hasValue) return false;
+        out.add(new PendingReading((int) thermometerId, value, timestamp, serverStamped));
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer buf, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) == b) return i;
+        }
+        return -1;
+    }
+
+    private static boolean matches(ByteBuffer buf, int from, int to, byte[] expected) {
+        if (to - from != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (buf.get(from + i) != expected[i]) return false;
+        }
+        return true;
+    }
+
+    /** An integer, optionally with Influx's {@code i} suffix, or {@link Long#MIN_VALUE} if malformed. */
+    private static long parseLong(ByteBuffer buf, int from, int to) {
+        if (to > from && buf.get(to - 1) == 'i') to--;
+        boolean negative = to > from && buf.get(from) == '-';
+        int i = negative ? from + 1 : from;
+        if (i == to || to - i > 19) return Long.MIN_VALUE;
+        long result = 0;
+        for (; i < to; i++) {
+            int digit = buf.get(i) - '0';
+            if (digit < 0 || digit > 9) return Long.MIN_VALUE;
+            result = result * 10 + digit;
+        }
+        // 19 digits can exceed Long.MAX_VALUE, which wraps to a negative number
+        if (result < 0) return Long.MIN_VALUE;
+        return negative ? -result : result;
+    }
+
+    /**
+     * A decimal number, or NaN if malformed. When the digits fit a double's 53-bit mantissa and there are at
+     * most 22 decimals, one division gives the correctly rounded result; anything else falls back to
+     * {@link Double#parseDouble}.
+     */
+    private static double parseDouble(ByteBuffer buf, int from, int to) {
+        if (to > from && buf.get(to - 1) == 'i') to--;
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buf.get(i) == '-' || buf.get(i) == '+')) {
+            negative = buf.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int scale = 0;
+        boolean dot = false;
+        boolean sawDigit = false;
+        for (; i < to; i++) {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                if (mantissa >= MAX_EXACT_MANTISSA / 10) return parseSlow(buf, from, to);
+                mantissa = mantissa * 10 + (b - '0');
+                sawDigit = true;
+                if (dot) scale++;
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else if (b == 'e' || b == 'E') {
+                return sawDigit ? parseSlow(buf, from, to) : Double.NaN;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (!sawDigit) return Double.NaN;
+        if (scale >= POWERS_OF_TEN.length) return parseSlow(buf, from, to);
+        double value = mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private static double parseSlow(ByteBuffer buf, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buf.get(from, bytes);
+        try {
+            return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
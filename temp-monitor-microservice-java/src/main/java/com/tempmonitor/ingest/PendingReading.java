@@ -0,0 +1,12 @@
+package com.tempmonitor.ingest;
+
+import java.time.Instant;
+
+/**
+ * A reading on its way into storage, stamped with the device's time or else the time it was received.
+ *
+ * @param serverStamped whether the timestamp is the receive time; two such readings of a thermometer at the same
+ *                      instant are different readings, while a device sending the same instant twice is retrying
+ */
+public record PendingReading(Integer thermometerId, Double value, Instant timestamp, boolean serverStamped) {
+}
@@ -0,0 +1,108 @@
+package com.tempmonitor.ingest;
+
+import com.tempmonitor.InvalidRequestException;
+import org.springframework.http.MediaType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-width binary readings for gateways that cannot afford JSON. A body is a sequence of big-endian frames
+ * of {@code thermometerId:int32, value:float64}, 12 bytes each, or 20 bytes with a trailing
+ * {@code timestamp:int64} in epoch microseconds when the content type carries {@code timestamps=true}:
+ * <pre>
+ * Content-Type: application/vnd.tempmonitor.reading
+ * Content-Type: application/vnd.tempmonitor.reading;timestamps=true
+ * </pre>
+ * Frames are decoded in place from the buffer, without an intermediate object tree. Timestamps must lie between
+ * the epoch and the year 10000.
+ */
+public final class ReadingFrames {
+
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.tempmonitor.reading";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+    public static final String TIMESTAMPS_PARAMETER = "timestamps";
+    public static final int FRAME_BYTES = 12;
+    public static final int TIMESTAMPED_FRAME_BYTES = 20;
+    static final long MAX_TIMESTAMP_MICROS =
+            ChronoUnit.MICROS.between(Instant.EPOCH, Instant.parse("+10000-01-01T00:00:00Z"));
+
+    private ReadingFrames() {
+    }
+
+    public static boolean hasTimestamps(MediaType contentType) {
+        return contentType != null && Boolean.parseBoolean(contentType.getParameter(TIMESTAMPS_PARAMETER));
+    }
+
+    /**
+     * Decodes every frame remaining in {@code buffer}. Frames without a timestamp are stamped {@code receivedAt}.
+     *
+     * @throws InvalidRequestException if the body is not a whole number of frames, has more than
+     *                                  {@code maxFrames} or a timestamp out of range
+     */
+    public static List<PendingReading> decode(ByteBuffer buffer, boolean timestamps, Instant receivedAt,
+                                              int maxFrames) {
+        int frameBytes = timestamps ? TIMESTAMPED_FRAME_BYTES : FRAME_BYTES;
+        int remaining = buffer.remaining();
+        if (remaining % frameBytes != 0) {
+            throw new InvalidRequestException("Body of " + remaining + " bytes is not a whole number of "
+                    + frameBytes + "-byte frames");
+        }
+        int count = remaining / frameBytes;
+        if (count > maxFrames) {
+            throw new InvalidRequestException("Batch size exceeds " + maxFrames);
+        }
+        List<PendingReading> readings = new ArrayList<>(count);
+        int malformed = decode(buffer, timestamps, receivedAt, readings);
+        if (malformed > 0) {
+            throw new InvalidRequestException(malformed + " of " + count + " frames have a timestamp out of range");
+        }
+        return readings;
+    }
+
+    /**
+     * Decodes the whole frames remaining in {@code buffer} into {@code out}, skipping frames whose timestamp is
+     * out of range, and leaves the position after the last whole frame.
+     *
+     * @return the number of frames skipped
+     */
+    public static int decode(ByteBuffer buffer, boolean timestamps, Instant receivedAt, List<PendingReading> out) {
+        int frameBytes = timestamps ? TIMESTAMPED_FRAME_BYTES : FRAME_BYTES;
+        int whole = buffer.remaining() - buffer.remaining() % frameBytes;
+        ByteBuffer in = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        int malformed = 0;
+        for (int offset = 0; offset < whole; offset += frameBytes) {
+            int thermometerId = in.getInt(offset);
+            double value = in.getDouble(offset + 4);
+            Instant timestamp = receivedAt;
+            if (timestamps) {
+                long micros = in.getLong(offset + 12);
+                if (micros < 0 || micros >= MAX_TIMESTAMP_MICROS) {
+                    malformed++;
+                    continue;
+                }
+                timestamp = Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+            }
+            out.add(new PendingReading(thermometerId, value, timestamp, !timestamps));
+        }
+        buffer.position(buffer.position() + whole);
+        return malformed;
+    }
+
+    /**
+     * Encodes readings the way a gateway would send them; timestamps are written only if {@code timestamps}.
+     */
+    public static byte[] encode(List<PendingReading> readings, boolean timestamps) {
+        int frameBytes = timestamps ? TIMESTAMPED_FRAME_BYTES : FRAME_BYTES;
+        ByteBuffer out = ByteBuffer.allocate(readings.size() * frameBytes).order(ByteOrder.BIG_ENDIAN);
+        for (PendingReading reading : readings) {
+            out.putInt(reading.thermometerId()).putDouble(reading.value());
+            if (timestamps) out.putLong(ChronoUnit.MICROS.between(Instant.EPOCH, reading.timestamp()));
+        }
+        return out.array();
+    }
+}
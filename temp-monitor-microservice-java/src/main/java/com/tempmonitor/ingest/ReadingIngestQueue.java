@@ -0,0 +1,201 @@
+package com.tempmonitor.ingest;
+
+import com.tempmonitor.InvalidRequestException;
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.TempMonitorService;
+import com.tempmonitor.dto.ReadingBatchResultDto;
+import com.tempmonitor.dto.TemperatureReadingCreateDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for {@code tempmonitor.ingest.mode=async}. Requests only enqueue, background writers
+ * drain the queue in batches bounded by {@code flush-batch-size} and {@code flush-interval} and hand them to
+ * {@link TempMonitorService#storeReadings}. The queue is drained before the datasource goes away on shutdown.
+ *
+ * <p>In {@code tempmonitor.ingest.mode=wal} the queue is not used; readings are appended to the {@link ReadingWal}
+ * instead, which returns once they are on local disk.
+ */
+@Component
+@Slf4j
+public class ReadingIngestQueue implements SmartLifecycle {
+
+    private final TempMonitorService service;
+    private final ReadingWal wal;
+    private final TempMonitorProperties properties;
+    private final TempMonitorProperties.Ingest config;
+    private final BlockingQueue<PendingReading> queue;
+    private final Thread.Builder writerThreads;
+    private final Timer flushTimer;
+    private final Counter rejectedCounter;
+    private final Counter droppedCounter;
+    private final List<Thread> writers = new ArrayList<>();
+    private volatile boolean running;
+
+    public ReadingIngestQueue(TempMonitorService service, ReadingWal wal, TempMonitorProperties properties,
+                              MeterRegistry registry, Environment environment) {
+        this.service = service;
+        this.wal = wal;
+        this.properties = properties;
+        this.config = properties.getIngest();
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.writerThreads = Threading.VIRTUAL.isActive(environment)
+                ? Thread.ofVirtual().name("ingest-writer-", 0)
+                : Thread.ofPlatform().name("ingest-writer-", 0);
+        Gauge.builder("tempmonitor.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Readings waiting to be written")
+                .register(registry);
+        Gauge.builder("tempmonitor.ingest.queue.capacity", config, TempMonitorProperties.Ingest::getQueueCapacity)
+                .register(registry);
+        this.flushTimer = Timer.builder("tempmonitor.ingest.flush")
+                .description("Latency of writing one queued batch")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.rejectedCounter = Counter.builder("tempmonitor.ingest.rejected")
+                .description("Readings refused because the queue was full")
+                .register(registry);
+        this.droppedCounter = Counter.builder("tempmonitor.ingest.dropped")
+                .description("Queued readings lost because their batch failed to write")
+                .register(registry);
+    }
+
+    /** Whether readings are accepted before they are stored, in mode ASYNC or WAL. */
+    public boolean isEnabled() {
+        return config.getMode() != TempMonitorProperties.Ingest.Mode.SYNC;
+    }
+
+    public void enqueue(TemperatureReadingCreateDto dto) {
+        boolean serverStamped = dto.getTimestamp() == null;
+        Instant timestamp = serverStamped ? Instant.now() : dto.getTimestamp();
+        enqueuePending(new PendingReading(dto.getThermometerId(), dto.getValue(), timestamp, serverStamped));
+    }
+
+    /**
+     * @throws InvalidRequestException if the value is not finite or the reading time is outside the
+     *                                  {@link ReadingTimeWindow}, so the client hears about it rather than the writer
+     *                                  dropping it later
+     */
+    public void enqueuePending(PendingReading reading) {
+        if (reading.value() != null && !Double.isFinite(reading.value())) {
+            throw new InvalidRequestException(TempMonitorService.READING_VALUE_NOT_FINITE);
+        }
+        String timeRejection = ReadingTimeWindow.rejection(reading.timestamp(), Instant.now(), properties);
+        if (timeRejection != null) {
+            throw new InvalidRequestException(timeRejection);
+        }
+        if (config.getMode() == TempMonitorProperties.Ingest.Mode.WAL) {
+            wal.append(List.of(reading));
+            return;
+        }
+        if (!running || !queue.offer(reading)) {
+            rejectedCounter.increment();
+            throw new IngestQueueFullException(config.getRetryAfter());
+        }
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    @Override
+    public void start() {
+        if (!isEnabled()) return;
+        running = true;
+        if (config.getMode() != TempMonitorProperties.Ingest.Mode.ASYNC) return;
+        for (int i = 0; i < config.getWriterThreads(); i++) {
+            writers.add(writerThreads.start(this::runWriter));
+        }
+        log.info("Async ingestion started: capacity={}, writers={}", config.getQueueCapacity(), writers.size());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        long deadline = System.nanoTime() + config.getShutdownTimeout().toNanos();
+        for (Thread writer : writers) {
+            try {
+                writer.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        writers.clear();
+        if (!queue.isEmpty()) {
+            log.warn("Async ingestion stopped with {} readings still queued", queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // stop after the web server has stopped accepting requests
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void runWriter() {
+        int maxBatch = config.getFlushBatchSize();
+        while (running || !queue.isEmpty()) {
+            List<PendingReading> batch = new ArrayList<>(maxBatch);
+            try {
+                collect(batch, maxBatch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+            }
+        }
+    }
+
+    private void collect(List<PendingReading> batch, int maxBatch) throws InterruptedException {
+        if (!running) {
+            queue.drainTo(batch, maxBatch);
+            return;
+        }
+        long interval = config.getFlushInterval().toNanos();
+        PendingReading first = queue.poll(interval, TimeUnit.NANOSECONDS);
+        if (first == null) return;
+        batch.add(first);
+        long deadline = System.nanoTime() + interval;
+        while (batch.size() < maxBatch) {
+            queue.drainTo(batch, maxBatch - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatch || remaining <= 0 || !running) return;
+            PendingReading next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) return;
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<PendingReading> batch) {
+        try {
+            ReadingBatchResultDto result = flushTimer.recordCallable(() -> service.storeReadings(batch));
+            if (result != null && result.getRejected() > 0) {
+                log.warn("Async batch of {} readings had {} rejected", batch.size(), result.getRejected());
+            }
+        } catch (Exception e) {
+            droppedCounter.increment(batch.size());
+            log.error("Failed to write async batch of {} readings", batch.size(), e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.tempmonitor.ingest;
+
+import com.tempmonitor.TempMonitorProperties;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+/**
+ * Which reading times are accepted. Devices may send readings late, for example when a gateway flushes what it
+ * buffered offline, up to {@code tempmonitor.ingest.max-lateness} behind the server clock and never before the
+ * oldest month kept by partition retention, whose rows would otherwise land in the default partition only to be
+ * deleted again by the next maintenance run. {@code ReadingPartitionManager} keeps a partition for every month in
+ * the window. Readings ahead of the server clock by more than {@code max-clock-skew} are refused as well.
+ *
+ * <p>Rollups and running stats merge readings by their own time and "latest" compares timestamps, so late
+ * readings within the window are folded in without recomputing anything.
+ */
+public final class ReadingTimeWindow {
+
+    static final String TOO_LATE = "timestamp is older than the accepted lateness window";
+    static final String IN_FUTURE = "timestamp is ahead of the server clock";
+
+    private ReadingTimeWindow() {
+    }
+
+    /**
+     * Why a reading taken at {@code timestamp} and received at {@code receivedAt} is refused, or null if it is
+     * accepted.
+     */
+    public static String rejection(Instant timestamp, Instant receivedAt, TempMonitorProperties properties) {
+        TempMonitorProperties.Ingest ingest = properties.getIngest();
+        if (timestamp.isAfter(receivedAt.plus(ingest.getMaxClockSkew()))) return IN_FUTURE;
+        if (timestamp.isBefore(oldestAccepted(receivedAt, properties))) return TOO_LATE;
+        return null;
+    }
+
+    /** The oldest reading time accepted at {@code receivedAt}. */
+    public static Instant oldestAccepted(Instant receivedAt, TempMonitorProperties properties) {
+        Instant oldest = receivedAt.minus(properties.getIngest().getMaxLateness());
+        TempMonitorProperties.Partitions partitions = properties.getPartitions();
+        if (partitions.isEnabled() && partitions.getRetentionMonths() > 0) {
+            Instant oldestKept = YearMonth.from(receivedAt.atOffset(ZoneOffset.UTC))
+                    .minusMonths(partitions.getRetentionMonths())
+                    .atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+            if (oldestKept.isAfter(oldest)) oldest = oldestKept;
+        }
+        return oldest;
+    }
+}
@@ -0,0 +1,538 @@
+package com.tempmonitor.ingest;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.TempMonitorService;
+import com.tempmonitor.dto.ReadingBatchItemDto;
+import com.tempmonitor.dto.ReadingBatchResultDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Local write-ahead log for {@code tempmonitor.ingest.mode=wal}. Readings are appended to memory-mapped segment
+ * files and acknowledged once they are forced to disk; a replayer stores them in the database in batches of
+ * {@code flush-batch-size} and retries a failed batch for as long as the database is unreachable. Sensors only
+ * ever wait for the local disk, and a database outage delays their readings instead of losing them. A batch that
+ * fails any other way is stored one reading at a time and the readings that still fail are logged and dropped,
+ * so one bad reading cannot hold up the log.
+ *
+ * <p>A record is a timestamped {@link ReadingFrames} frame and the CRC32C of its 20 bytes. The log ends at the
+ * first record whose checksum does not match, which also drops a record torn by a crash. Receive times are made
+ * final when appended, each a microsecond past the one before if needed, so every record replays like a
+ * device-stamped reading: replaying it again is skipped as a duplicate instead of being stored a second time
+ * at a later instant. Appenders that arrive while the disk is being forced wait for the next
+ * force, so concurrent requests share one fsync.
+ * The position up to which readings were stored is kept in a checkpoint file and segments wholly before it are
+ * deleted. The checkpoint is not forced: replaying readings again after a crash is harmless, as the unique
+ * (thermometer, timestamp) index skips them.
+ *
+ * <p>Uses a {@link ReentrantLock} rather than {@code synchronized} because appenders wait on it, and they may be
+ * virtual threads.
+ */
+@Component
+@Slf4j
+public class ReadingWal implements SmartLifecycle {
+
+    private static final int CHECKED_BYTES = ReadingFrames.TIMESTAMPED_FRAME_BYTES;
+    static final int RECORD_BYTES = CHECKED_BYTES + 4;
+    static final String SEGMENT_SUFFIX = ".wal";
+    static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String CONNECTION_EXCEPTION_CLASS = "08";
+
+    private final TempMonitorService service;
+    private final TempMonitorProperties.Ingest config;
+    private final TempMonitorProperties.Ingest.Wal walConfig;
+    private final int recordsPerSegment;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appendedCondition = lock.newCondition();
+    private final Condition durableCondition = lock.newCondition();
+    /** Segments by the sequence number of their first record. */
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES).order(ByteOrder.BIG_ENDIAN);
+    private final CRC32C crc = new CRC32C();
+    private final Timer forceTimer;
+    private final Counter rejectedCounter;
+    private final Counter replayFailureCounter;
+    private final Counter replayRejectedCounter;
+    private final Counter corruptCounter;
+    private final Counter discardedCounter;
+    private Path directory;
+    /** Sequence number of the next record; guarded by the lock, like everything else the appenders change. */
+    private long appended;
+    /** Epoch microseconds of the latest receive time appended since the start. */
+    private long lastReceiveTime;
+    /** Records before this one are on disk. */
+    private volatile long durable;
+    /** Records before this one are stored in the database. */
+    private volatile long acknowledged;
+    private Thread flusher;
+    private Thread replayer;
+    private volatile boolean running;
+
+    public ReadingWal(TempMonitorService service, TempMonitorProperties properties, MeterRegistry registry) {
+        this.service = service;
+        this.config = properties.getIngest();
+        this.walConfig = config.getWal();
+        long records = walConfig.getSegmentSize().toBytes() / RECORD_BYTES;
+        if (records < 1 || records * RECORD_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("WAL segment size must hold a record and be below 2 GB");
+        }
+        this.recordsPerSegment = (int) records;
+        Gauge.builder("tempmonitor.ingest.wal.pending", this, wal -> wal.durable - wal.acknowledged)
+                .description("Readings in the write-ahead log not yet stored in the database")
+                .register(registry);
+        Gauge.builder("tempmonitor.ingest.wal.segments", this, ReadingWal::segmentCount)
+                .description("Segment files of the write-ahead log")
+                .register(registry);
+        this.forceTimer = Timer.builder("tempmonitor.ingest.wal.fsync")
+                .description("Time to force appended readings to disk, shared by all appenders waiting for it")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.rejectedCounter = Counter.builder("tempmonitor.ingest.wal.rejected")
+                .description("Readings refused because the write-ahead log was full")
+                .register(registry);
+        this.replayFailureCounter = Counter.builder("tempmonitor.ingest.wal.replay.failures")
+                .description("Batches that failed to replay into the database and will be retried")
+                .register(registry);
+        this.replayRejectedCounter = Counter.builder("tempmonitor.ingest.wal.replay.rejected")
+                .description("Replayed readings the service rejected, e.g. past max-lateness after a long outage")
+                .register(registry);
+        this.corruptCounter = Counter.builder("tempmonitor.ingest.wal.replay.discarded")
+                .description("Logged readings dropped instead of stored")
+                .tag("reason", "corrupt")
+                .register(registry);
+        this.discardedCounter = Counter.builder("tempmonitor.ingest.wal.replay.discarded")
+                .description("Logged readings dropped instead of stored")
+                .tag("reason", "failed")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return config.getMode() == TempMonitorProperties.Ingest.Mode.WAL;
+    }
+
+    /**
+     * Appends readings and returns once they are on disk.
+     *
+     * @throws IngestQueueFullException if the log holds {@code max-readings} not yet stored, or is not running
+     */
+    public void append(List<PendingReading> readings) {
+        for (PendingReading reading : readings) {
+            if (reading.thermometerId() == null || reading.value() == null || reading.timestamp() == null) {
+                throw new IllegalArgumentException("thermometerId, value and timestamp are required");
+            }
+        }
+        lock.lock();
+        try {
+            if (!running || appended + readings.size() - acknowledged > walConfig.getMaxReadings()) {
+                rejectedCounter.increment(readings.size());
+                throw new IngestQueueFullException(config.getRetryAfter());
+            }
+            for (PendingReading reading : readings) {
+                long micros = epochMicros(reading.timestamp());
+                if (reading.serverStamped()) {
+                    micros = Math.max(micros, lastReceiveTime + 1);
+                    lastReceiveTime = micros;
+                }
+                write(reading, micros);
+            }
+            long end = appended;
+            appendedCondition.signal();
+            while (durable < end) {
+                durableCondition.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the write-ahead log", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Readings in the log that are not stored in the database yet. */
+    public long pending() {
+        return durable - acknowledged;
+    }
+
+    @Override
+    public void start() {
+        if (!isEnabled()) return;
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the write-ahead log in " + walConfig.getDirectory(), e);
+        }
+        running = true;
+        flusher = Thread.ofPlatform().daemon().name("ingest-wal-flusher").start(this::runFlusher);
+        replayer = Thread.ofPlatform().daemon().name("ingest-wal-replayer").start(this::runReplayer);
+        log.info("Write-ahead log opened in {}: {} readings to replay", directory.toAbsolutePath(), pending());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) return;
+        lock.lock();
+        try {
+            running = false;
+            appendedCondition.signalAll();
+            durableCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        join(flusher, TimeUnit.SECONDS.toMillis(5));
+        join(replayer, config.getShutdownTimeout().toMillis());
+        if (replayer.isAlive()) replayer.interrupt();
+        log.info("Write-ahead log closed with {} readings to replay on the next start", pending());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // stop after the ingest queue and the listener, which append to the log, but before the datasource
+        return SmartLifecycle.DEFAULT_PHASE - 8192;
+    }
+
+    /** Opens the segments left by the last run and finds where the log ends. */
+    private void recover() throws IOException {
+        directory = Path.of(walConfig.getDirectory());
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            segments.put(base, Segment.open(file, base, recordsPerSegment));
+        }
+        long checkpoint = readCheckpoint();
+        if (segments.isEmpty()) {
+            appended = checkpoint;
+        } else {
+            Segment last = segments.lastEntry().getValue();
+            long valid = 0;
+            while (valid < recordsPerSegment && read(last, valid) != null) valid++;
+            appended = last.base + valid;
+        }
+        durable = appended;
+        acknowledged = Math.min(Math.max(checkpoint, segments.isEmpty() ? checkpoint : segments.firstKey()), appended);
+        deleteAcknowledgedSegments();
+    }
+
+    private void write(PendingReading reading, long micros) {
+        Segment segment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (segment == null || appended - segment.base >= recordsPerSegment) {
+            try {
+                segment = Segment.open(directory.resolve(segmentName(appended)), appended, recordsPerSegment);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create a write-ahead log segment", e);
+            }
+            segments.put(segment.base, segment);
+        }
+        record.clear();
+        record.putInt(reading.thermometerId())
+                .putDouble(reading.value())
+                .putLong(micros);
+        crc.reset();
+        crc.update(record.array(), 0, CHECKED_BYTES);
+        record.putInt((int) crc.getValue());
+        segment.buffer.put((int) (appended - segment.base) * RECORD_BYTES, record.array());
+        appended++;
+    }
+
+    /** The record at {@code index} of a segment, or null past the end of the log. */
+    private static PendingReading read(Segment segment, long index) {
+        int offset = (int) index * RECORD_BYTES;
+        byte[] bytes = new byte[RECORD_BYTES];
+        segment.buffer.get(offset, bytes);
+        ByteBuffer in = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN);
+        CRC32C checksum = new CRC32C();
+        checksum.update(bytes, 0, CHECKED_BYTES);
+        if ((int) checksum.getValue() != in.getInt(CHECKED_BYTES)) return null;
+        long micros = in.getLong(12);
+        return new PendingReading(in.getInt(0), in.getDouble(4),
+                Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000),
+                false);
+    }
+
+    private static long epochMicros(Instant timestamp) {
+        return timestamp.getEpochSecond() * 1_000_000 + timestamp.getNano() / 1_000;
+    }
+
+    private void runFlusher() {
+        while (true) {
+            long from;
+            long target;
+            List<Segment> dirty;
+            lock.lock();
+            try {
+                while (durable == appended && running) {
+                    appendedCondition.awaitUninterruptibly();
+                }
+                if (durable == appended) return;
+                from = durable;
+                target = appended;
+                dirty = new ArrayList<>(segments.subMap(segments.floorKey(from), true, target, false).values());
+            } finally {
+                lock.unlock();
+            }
+            // appenders keep writing behind target meanwhile, and wait for the next round
+            boolean forced = false;
+            try {
+                forceTimer.record(() -> {
+                    for (Segment segment : dirty) {
+                        int start = (int) Math.max(0, from - segment.base);
+                        int end = (int) Math.min(recordsPerSegment, target - segment.base);
+                        segment.buffer.force(start * RECORD_BYTES, (end - start) * RECORD_BYTES);
+                    }
+                });
+                forced = true;
+            } catch (UncheckedIOException e) {
+                log.error("Forcing the write-ahead log to disk failed, retrying", e);
+                sleep(walConfig.getRetryBackoff().toMillis());
+            }
+            lock.lock();
+            try {
+                if (forced) durable = target;
+                durableCondition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void runReplayer() {
+        int batchSize = Math.min(config.getFlushBatchSize(), TempMonitorService.MAX_BATCH_SIZE);
+        long backoff = walConfig.getRetryBackoff().toMillis();
+        while (running || acknowledged < durable) {
+            long from = acknowledged;
+            long to = Math.min(durable, from + batchSize);
+            if (from == to) {
+                awaitDurable(from, config.getFlushInterval().toMillis());
+                continue;
+            }
+            try {
+                List<PendingReading> batch = readRange(from, to);
+                try {
+                    rejected(service.storeReadings(batch), batch.size());
+                } catch (RuntimeException e) {
+                    if (isTransient(e)) throw e;
+                    log.error("Replaying {} readings from the write-ahead log failed, storing them one by one",
+                            batch.size(), e);
+                    storeOneByOne(batch);
+                }
+            } catch (RuntimeException e) {
+                // only failures that go away by themselves, such as the database being down, get here
+                replayFailureCounter.increment();
+                if (!running) return;
+                log.warn("Replaying readings {} to {} from the write-ahead log failed, retrying in {} ms: {}",
+                        from, to, backoff, e.toString());
+                if (!sleep(backoff)) return;
+                continue;
+            }
+            acknowledged = to;
+            writeCheckpoint(to);
+            lock.lock();
+            try {
+                deleteAcknowledgedSegments();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Stores the readings of a batch that failed for good one at a time, so that only the readings that fail
+     * themselves are dropped rather than the batch, or the log behind it.
+     *
+     * @throws RuntimeException if a transient failure interrupts it, to retry the batch later
+     */
+    private void storeOneByOne(List<PendingReading> batch) {
+        for (PendingReading reading : batch) {
+            try {
+                rejected(service.storeReadings(List.of(reading)), 1);
+            } catch (RuntimeException e) {
+                if (isTransient(e)) throw e;
+                discardedCounter.increment();
+                log.error("Dropping reading {} from the write-ahead log, it cannot be stored", reading, e);
+            }
+        }
+    }
+
+    private void rejected(ReadingBatchResultDto result, int readings) {
+        if (result == null || result.getRejected() == 0) return;
+        replayRejectedCounter.increment(result.getRejected());
+        String error = result.getItems().stream()
+                .filter(item -> item.getStatus() == ReadingBatchItemDto.Status.REJECTED)
+                .map(ReadingBatchItemDto::getError)
+                .findFirst().orElse(null);
+        log.warn("{} of {} readings replayed from the write-ahead log were rejected, e.g. {}", result.getRejected(),
+                readings, error);
+    }
+
+    /**
+     * Whether the database could not be reached or timed out, so retrying later may succeed. Anything else, e.g.
+     * a constraint violation or a bug, would fail the same way again.
+     */
+    static boolean isTransient(RuntimeException e) {
+        if (e instanceof TransientDataAccessException || e instanceof CannotCreateTransactionException) return true;
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException || cause instanceof SQLTimeoutException) return true;
+            // PgJDBC reports a broken or timed-out connection as a plain SQLException of class 08
+            if (cause instanceof SQLException sql && sql.getSQLState() != null
+                    && sql.getSQLState().startsWith(CONNECTION_EXCEPTION_CLASS)) return true;
+        }
+        return false;
+    }
+
+    private List<PendingReading> readRange(long from, long to) {
+        List<Segment> range;
+        lock.lock();
+        try {
+            range = new ArrayList<>(segments.subMap(segments.floorKey(from), true, to, false).values());
+        } finally {
+            lock.unlock();
+        }
+        List<PendingReading> batch = new ArrayList<>((int) (to - from));
+        for (Segment segment : range) {
+            long start = Math.max(from, segment.base);
+            long end = Math.min(to, segment.base + recordsPerSegment);
+            for (long sequence = start; sequence < end; sequence++) {
+                PendingReading reading = read(segment, sequence - segment.base);
+                if (reading == null) {
+                    // forced to disk and then damaged, nothing to replay
+                    corruptCounter.increment();
+                    log.error("Skipping write-ahead log record {} of {}, its checksum does not match", sequence,
+                            segmentName(segment.base));
+                    continue;
+                }
+                batch.add(reading);
+            }
+        }
+        return batch;
+    }
+
+    private void awaitDurable(long past, long millis) {
+        lock.lock();
+        try {
+            if (durable == past && running) durableCondition.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Deletes the segments whose records are all stored, keeping the one appended to. */
+    private void deleteAcknowledgedSegments() {
+        while (segments.size() > 1) {
+            Map.Entry<Long, Segment> first = segments.firstEntry();
+            if (first.getKey() + recordsPerSegment > acknowledged) return;
+            segments.pollFirstEntry();
+            try {
+                first.getValue().close();
+                Files.deleteIfExists(first.getValue().file);
+            } catch (IOException e) {
+                log.warn("Cannot delete write-ahead log segment {}", first.getValue().file, e);
+            }
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) return 0;
+        return ByteBuffer.wrap(Files.readAllBytes(file)).getLong();
+    }
+
+    private void writeCheckpoint(long sequence) {
+        Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try {
+            Files.write(temp, ByteBuffer.allocate(Long.BYTES).putLong(sequence).array());
+            Files.move(temp, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // the next checkpoint covers this one; until then a restart replays a few readings twice
+            log.warn("Cannot write the write-ahead log checkpoint", e);
+        }
+    }
+
+    private int segmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static String segmentName(long base) {
+        return String.format("%019d%s", base, SEGMENT_SUFFIX);
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void join(Thread thread, long millis) {
+        if (thread == null) return;
+        try {
+            thread.join(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Segment(Path file, long base, FileChannel channel, MappedByteBuffer buffer) {
+
+        static Segment open(Path file, long base, int records) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            return new Segment(file, base, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    (long) records * RECORD_BYTES));
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.tempmonitor.ingest;
+
+import java.util.List;
+
+/**
+ * Published by {@link com.tempmonitor.TempMonitorService} for every write. In-memory views of the data listen
+ * for it after commit, so they never see readings that were rolled back.
+ */
+public record ReadingsStoredEvent(List<StoredReading> readings) {
+}
@@ -0,0 +1,9 @@
+package com.tempmonitor.ingest;
+
+import java.time.Instant;
+
+/**
+ * A reading as it was written to {@code temperature_readings}.
+ */
+public record StoredReading(int id, int thermometerId, double value, Instant timestamp) {
+}
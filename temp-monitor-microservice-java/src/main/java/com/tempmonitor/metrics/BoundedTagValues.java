@@ -0,0 +1,32 @@
+package com.tempmonitor.metrics;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Admits the first {@code limit} distinct tag values and maps every later one to {@value #OVERFLOW}, so a
+ * tag keyed by an id cannot grow the number of series without bound.
+ */
+class BoundedTagValues {
+
+    static final String OVERFLOW = "other";
+
+    private final int limit;
+    private final Set<String> admitted = ConcurrentHashMap.newKeySet();
+
+    BoundedTagValues(int limit) {
+        this.limit = limit;
+    }
+
+    String value(Object candidate) {
+        String value = String.valueOf(candidate);
+        if (admitted.contains(value)) return value;
+        synchronized (admitted) {
+            if (admitted.size() < limit) {
+                admitted.add(value);
+                return value;
+            }
+        }
+        return admitted.contains(value) ? value : OVERFLOW;
+    }
+}
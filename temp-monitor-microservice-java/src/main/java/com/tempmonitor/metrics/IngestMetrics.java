@@ -0,0 +1,83 @@
+package com.tempmonitor.metrics;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.repo.ThermometerRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Size of every committed write batch, how far behind the clock readings arrive, and readings ingested per
+ * thermometer and location. Both tags are capped by {@link BoundedTagValues}, sum by location in the dashboard
+ * for per-location rates.
+ */
+@Component
+public class IngestMetrics {
+
+    private final MeterRegistry registry;
+    private final ThermometerRepository thermometerRepo;
+    private final DistributionSummary batchSize;
+    private final Timer lateness;
+    private final BoundedTagValues thermometerTags;
+    private final BoundedTagValues locationTags;
+    private final ConcurrentMap<Integer, Counter> counters = new ConcurrentHashMap<>();
+
+    public IngestMetrics(MeterRegistry registry, ThermometerRepository thermometerRepo, TempMonitorProperties properties) {
+        this.registry = registry;
+        this.thermometerRepo = thermometerRepo;
+        this.batchSize = DistributionSummary.builder("tempmonitor.ingest.batch.size")
+                .description("Readings written per committed batch")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(5000.0)
+                .register(registry);
+        this.lateness = Timer.builder("tempmonitor.ingest.lateness")
+                .description("Time from a reading being taken to it being committed")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(properties.getIngest().getMaxLateness())
+                .register(registry);
+        this.thermometerTags = new BoundedTagValues(properties.getMetrics().getMaxTaggedThermometers());
+        this.locationTags = new BoundedTagValues(properties.getMetrics().getMaxTaggedLocations());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReadingsStored(ReadingsStoredEvent event) {
+        batchSize.record(event.readings().size());
+        Instant now = Instant.now();
+        Map<Integer, Integer> perThermometer = new HashMap<>();
+        for (StoredReading reading : event.readings()) {
+            perThermometer.merge(reading.thermometerId(), 1, Integer::sum);
+            Duration behind = Duration.between(reading.timestamp(), now);
+            lateness.record(behind.isNegative() ? Duration.ZERO : behind);
+        }
+        registerMissing(perThermometer.keySet());
+        perThermometer.forEach((id, count) -> {
+            Counter counter = counters.get(id);
+            if (counter != null) counter.increment(count);
+        });
+    }
+
+    private void registerMissing(Set<Integer> thermometerIds) {
+        List<Integer> missing = thermometerIds.stream().filter(id -> !counters.containsKey(id)).toList();
+        if (missing.isEmpty()) return;
+        for (Object[] row : thermometerRepo.findLocationIds(missing)) {
+            Integer thermometerId = (Integer) row[0];
+            counters.computeIfAbsent(thermometerId, id -> Counter.builder("tempmonitor.ingest.readings")
+                    .description("Readings ingested")
+                    .tag("thermometer", thermometerTags.value(id))
+                    .tag("location", locationTags.value(row[1]))
+                    .register(registry));
+        }
+    }
+}
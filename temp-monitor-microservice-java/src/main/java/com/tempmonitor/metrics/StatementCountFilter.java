@@ -0,0 +1,46 @@
+package com.tempmonitor.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Records how many JDBC statements each request ran, tagged like {@code http.server.requests} so N+1 patterns
+ * show up per endpoint. Work handed to other threads, such as streamed exports, is not attributed.
+ */
+public class StatementCountFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry registry;
+
+    public StatementCountFilter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        StatementCounter.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            int statements = StatementCounter.end();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            DistributionSummary.builder("tempmonitor.http.db.statements")
+                    .description("JDBC statements executed per request")
+                    .tag("method", request.getMethod())
+                    .tag("uri", pattern != null ? pattern.toString() : "UNKNOWN")
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(1.0)
+                    .maximumExpectedValue(100.0)
+                    .register(registry)
+                    .record(statements);
+        }
+    }
+}
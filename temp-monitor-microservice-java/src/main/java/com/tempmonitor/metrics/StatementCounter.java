@@ -0,0 +1,28 @@
+package com.tempmonitor.metrics;
+
+/**
+ * Counts JDBC statements prepared on the current thread while a scope is open, see {@link StatementCountFilter}.
+ */
+final class StatementCounter {
+
+    private static final ThreadLocal<int[]> SCOPE = new ThreadLocal<>();
+
+    private StatementCounter() {
+    }
+
+    static void begin() {
+        SCOPE.set(new int[1]);
+    }
+
+    /** Closes the scope and returns its count. */
+    static int end() {
+        int[] count = SCOPE.get();
+        SCOPE.remove();
+        return count != null ? count[0] : 0;
+    }
+
+    static void increment() {
+        int[] count = SCOPE.get();
+        if (count != null) count[0]++;
+    }
+}
@@ -0,0 +1,223 @@
+package com.tempmonitor.metrics;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.repo.ThermometerRepository;
+import io.prometheus.metrics.model.registry.MultiCollector;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import io.prometheus.metrics.model.snapshots.CounterSnapshot;
+import io.prometheus.metrics.model.snapshots.CounterSnapshot.CounterDataPointSnapshot;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot.GaugeDataPointSnapshot;
+import io.prometheus.metrics.model.snapshots.Labels;
+import io.prometheus.metrics.model.snapshots.MetricMetadata;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Latest value, moving average, reading count and anomaly count per thermometer, for graphing sensors in
+ * Grafana. Every thermometer has a row in an in-memory table that each committed reading updates in place;
+ * only the rows of the allowlisted thermometers, or of the {@code top-k} with the most readings since the last
+ * selection, are exported, so the number of series stays bounded and only changes once per
+ * {@code selection-interval}.
+ *
+ * <p>Registered as a collector of the Prometheus registry behind {@code /actuator/prometheus}, so the exported
+ * rows are read at scrape time instead of being kept in meters. The labels of a row are built when it is
+ * selected; a scrape only wraps the current values in the data points the exposition format needs.
+ *
+ * <p>An anomaly is a reading further than {@code anomaly-threshold} standard deviations from the exponentially
+ * weighted moving average, once the average has seen enough readings to settle. Readings older than the latest
+ * one of their thermometer are counted but do not change the value or the average.
+ */
+@Component
+@ConditionalOnProperty(prefix = "tempmonitor.metrics.thermometers", name = "enabled", havingValue = "true")
+@Slf4j
+public class ThermometerMetricsExporter implements MultiCollector {
+
+    static final MetricMetadata VALUE = new MetricMetadata("tempmonitor_thermometer_value",
+            "Latest reading of the thermometer");
+    static final MetricMetadata AVERAGE = new MetricMetadata("tempmonitor_thermometer_value_ewma",
+            "Exponentially weighted moving average of the thermometer's readings");
+    static final MetricMetadata READINGS = new MetricMetadata("tempmonitor_thermometer_readings",
+            "Readings of the thermometer since it was first seen by this replica");
+    static final MetricMetadata ANOMALIES = new MetricMetadata("tempmonitor_thermometer_anomalies",
+            "Readings far from the thermometer's moving average");
+
+    private final PrometheusRegistry prometheusRegistry;
+    private final ThermometerRepository thermometerRepo;
+    private final TempMonitorProperties.Metrics.Thermometers config;
+    private final boolean allowlisted;
+    private final ConcurrentMap<Integer, ThermometerSeries> table = new ConcurrentHashMap<>();
+    private volatile ThermometerSeries[] exported = new ThermometerSeries[0];
+
+    public ThermometerMetricsExporter(PrometheusRegistry prometheusRegistry, ThermometerRepository thermometerRepo,
+                                      TempMonitorProperties properties) {
+        this.prometheusRegistry = prometheusRegistry;
+        this.thermometerRepo = thermometerRepo;
+        this.config = properties.getMetrics().getThermometers();
+        if (config.getTopK() < 1 || !(config.getEwmaAlpha() > 0 && config.getEwmaAlpha() <= 1)) {
+            throw new IllegalArgumentException("Thermometer metrics need a positive top-k and an EWMA alpha in (0, 1]");
+        }
+        this.allowlisted = !config.getAllowlist().isEmpty();
+        // with an allowlist the table holds only its rows, other thermometers are not tracked at all
+        config.getAllowlist().forEach(id -> table.put(id, new ThermometerSeries(id)));
+        prometheusRegistry.register(this);
+    }
+
+    @PreDestroy
+    void unregister() {
+        prometheusRegistry.unregister(this);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReadingsStored(ReadingsStoredEvent event) {
+        double alpha = config.getEwmaAlpha();
+        double threshold = config.getAnomalyThreshold();
+        for (StoredReading reading : event.readings()) {
+            ThermometerSeries series = table.get(reading.thermometerId());
+            if (series == null) {
+                if (allowlisted) continue;
+                series = table.computeIfAbsent(reading.thermometerId(), ThermometerSeries::new);
+            }
+            series.record(reading, alpha, threshold);
+        }
+    }
+
+    /** Chooses the exported rows; also runs once at startup. */
+    @Scheduled(fixedDelayString = "${tempmonitor.metrics.thermometers.selection-interval:1m}")
+    public synchronized void select() {
+        ThermometerSeries[] current = exported;
+        Set<ThermometerSeries> wasExported = new HashSet<>(Arrays.asList(current));
+        List<ThermometerSeries> selected;
+        if (allowlisted) {
+            selected = table.values().stream().filter(ThermometerSeries::hasReadings).toList();
+        } else {
+            // fewest recent readings first, so the head is the one to drop; ties keep what is already exported
+            Comparator<Ranked> order = Comparator.comparingLong(Ranked::recent)
+                    .thenComparing(ranked -> wasExported.contains(ranked.series()))
+                    .thenComparing(ranked -> -ranked.series().thermometerId);
+            PriorityQueue<Ranked> top = new PriorityQueue<>(config.getTopK() + 1, order);
+            for (ThermometerSeries series : table.values()) {
+                long recent = series.takeRecentReadings();
+                if (recent == 0 && !wasExported.contains(series)) continue;
+                top.add(new Ranked(series, recent));
+                if (top.size() > config.getTopK()) top.poll();
+            }
+            selected = top.stream().map(Ranked::series).toList();
+        }
+        label(selected);
+        ThermometerSeries[] next = selected.stream()
+                .filter(series -> series.labels != null)
+                .sorted(Comparator.comparingInt(series -> series.thermometerId))
+                .toArray(ThermometerSeries[]::new);
+        exported = next;
+        log.debug("Exporting metrics of {} of {} tracked thermometers", next.length, table.size());
+    }
+
+    @Override
+    public MetricSnapshots collect() {
+        ThermometerSeries[] rows = exported;
+        List<GaugeDataPointSnapshot> values = new ArrayList<>(rows.length);
+        List<GaugeDataPointSnapshot> averages = new ArrayList<>(rows.length);
+        List<CounterDataPointSnapshot> readings = new ArrayList<>(rows.length);
+        List<CounterDataPointSnapshot> anomalies = new ArrayList<>(rows.length);
+        for (ThermometerSeries row : rows) {
+            synchronized (row) {
+                values.add(new GaugeDataPointSnapshot(row.value, row.labels, null));
+                averages.add(new GaugeDataPointSnapshot(row.average, row.labels, null));
+                readings.add(new CounterDataPointSnapshot(row.readings, row.labels, null, 0));
+                anomalies.add(new CounterDataPointSnapshot(row.anomalies, row.labels, null, 0));
+            }
+        }
+        return MetricSnapshots.of(
+                new GaugeSnapshot(VALUE, values),
+                new GaugeSnapshot(AVERAGE, averages),
+                new CounterSnapshot(READINGS, readings),
+                new CounterSnapshot(ANOMALIES, anomalies));
+    }
+
+    @Override
+    public List<String> getPrometheusNames() {
+        return List.of(VALUE.getPrometheusName(), AVERAGE.getPrometheusName(), READINGS.getPrometheusName(),
+                ANOMALIES.getPrometheusName());
+    }
+
+    /** Builds the labels of newly selected rows, which needs their location. */
+    private void label(List<ThermometerSeries> selected) {
+        List<Integer> unlabelled = selected.stream()
+                .filter(series -> series.labels == null)
+                .map(series -> series.thermometerId)
+                .toList();
+        if (unlabelled.isEmpty()) return;
+        for (Object[] row : thermometerRepo.findLocationIds(unlabelled)) {
+            ThermometerSeries series = table.get((Integer) row[0]);
+            series.labels = Labels.of("thermometer", String.valueOf(row[0]), "location", String.valueOf(row[1]));
+        }
+    }
+
+    private record Ranked(ThermometerSeries series, long recent) {
+    }
+
+    private static final class ThermometerSeries {
+        private final int thermometerId;
+        /** Set by {@link #select()} only, and read by scrapes after the exported rows were published. */
+        private volatile Labels labels;
+        private long readings;
+        private long readingsAtSelection;
+        private long anomalies;
+        private long latestMicros = Long.MIN_VALUE;
+        private double value = Double.NaN;
+        private double average;
+        private double variance;
+        private long samples;
+
+        ThermometerSeries(int thermometerId) {
+            this.thermometerId = thermometerId;
+        }
+
+        synchronized void record(StoredReading reading, double alpha, double anomalyThreshold) {
+            readings++;
+            long micros = reading.timestamp().getEpochSecond() * 1_000_000 + reading.timestamp().getNano() / 1_000;
+            if (micros <= latestMicros) return;
+            latestMicros = micros;
+            value = reading.value();
+            if (samples == 0) {
+                average = value;
+            } else {
+                double diff = value - average;
+                // the average settles after about 2 / alpha readings
+                if (samples * alpha >= 2 && Math.abs(diff) > anomalyThreshold * Math.sqrt(variance)) anomalies++;
+                double increment = alpha * diff;
+                average += increment;
+                variance = (1 - alpha) * (variance + diff * increment);
+            }
+            samples++;
+        }
+
+        synchronized boolean hasReadings() {
+            return readings > 0;
+        }
+
+        synchronized long takeRecentReadings() {
+            long recent = readings - readingsAtSelection;
+            readingsAtSelection = readings;
+            return recent;
+        }
+    }
+}
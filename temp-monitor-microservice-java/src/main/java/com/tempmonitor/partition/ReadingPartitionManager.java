@@ -0,0 +1,218 @@
+package com.tempmonitor.partition;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.ingest.ReadingTimeWindow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the monthly partitions of {@code temperature_readings}: creates every month a reading may still be
+ * accepted for, from {@code max-lateness} back to the upcoming months, and drops whole partitions once they fall
+ * out of the retention window, which is far cheaper than deleting rows. Rows of the default partition and
+ * archived blocks of readings expire with the same window. Running stats cover the retained readings only: the
+ * stats of every thermometer that loses readings are rebuilt from its daily rollups inside the window. Rollups
+ * themselves are kept, so downsampled history reaches back past the retention window.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReadingPartitionManager {
+
+    static final String PARTITION_PREFIX = "temperature_readings_p";
+    static final String DEFAULT_PARTITION = "temperature_readings_default";
+    private static final Pattern PARTITION_NAME = Pattern.compile(PARTITION_PREFIX + "(\\d{6})");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    /**
+     * Arbitrary key shared by all replicas so only one of them maintains partitions at a time; also taken by
+     * {@code ReadingArchiver} when it drops an archived month.
+     */
+    public static final long LOCK_KEY = 0x7465_6d70_7061_7274L;
+
+    private static final String LIST_PARTITIONS_SQL = """
+            SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'temperature_readings'::regclass
+            """;
+
+    // the daily rollups from the cutoff on cover exactly the readings retention keeps
+    private static final String REBUILD_STATS_SQL = """
+            UPDATE thermometer_stats s
+            SET min_value = r.min_value, max_value = r.max_value, sum_value = r.sum_value,
+                reading_count = r.reading_count, sketch = r.sketch
+            FROM (
+                SELECT thermometer_id, MIN(min_value) AS min_value, MAX(max_value) AS max_value,
+                       SUM(sum_value) AS sum_value, SUM(reading_count) AS reading_count,
+                       reading_sketch_merge_agg(sketch) AS sketch
+                FROM reading_rollups
+                WHERE resolution = 'DAY' AND bucket_start >= ? AND thermometer_id = ANY(?)
+                GROUP BY thermometer_id
+            ) AS r
+            WHERE s.thermometer_id = r.thermometer_id
+            """;
+
+    private static final String DELETE_EMPTY_STATS_SQL = """
+            DELETE FROM thermometer_stats s
+            WHERE s.thermometer_id = ANY(?) AND NOT EXISTS (
+                SELECT 1 FROM reading_rollups r
+                WHERE r.thermometer_id = s.thermometer_id AND r.resolution = 'DAY' AND r.bucket_start >= ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TempMonitorProperties properties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${tempmonitor.partitions.cron:0 15 3 * * *}", zone = "UTC")
+    public void maintain() {
+        TempMonitorProperties.Partitions config = properties.getPartitions();
+        if (!config.isEnabled()) return;
+        Instant now = Instant.now();
+        YearMonth current = YearMonth.from(now.atOffset(ZoneOffset.UTC));
+        YearMonth oldestAccepted = YearMonth.from(ReadingTimeWindow.oldestAccepted(now, properties).atOffset(ZoneOffset.UTC));
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, LOCK_KEY);
+                if (!Boolean.TRUE.equals(locked)) {
+                    log.debug("Partition maintenance already running elsewhere");
+                    return;
+                }
+                List<String> existing = jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class);
+                for (YearMonth month : monthsToCreate(oldestAccepted, current, config.getPremakeMonths())) {
+                    if (!existing.contains(partitionName(month))) createPartition(month);
+                }
+                if (config.getRetentionMonths() > 0) {
+                    OffsetDateTime oldestKept = current.minusMonths(config.getRetentionMonths())
+                            .atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+                    List<String> expired = partitionsToDrop(existing, current, config.getRetentionMonths());
+                    List<Integer> affected = lockExpiringStats(expired, oldestKept);
+                    for (String partition : expired) {
+                        log.info("Dropping expired partition {}", partition);
+                        jdbcTemplate.execute("DROP TABLE " + partition);
+                    }
+                    int rows = jdbcTemplate.update(
+                            "DELETE FROM " + DEFAULT_PARTITION + " WHERE \"timestamp\" < ?", oldestKept);
+                    if (rows > 0) log.info("Deleted {} expired readings from {}", rows, DEFAULT_PARTITION);
+                    int blocks = jdbcTemplate.update("DELETE FROM reading_blocks WHERE block_start < ?", oldestKept);
+                    if (blocks > 0) log.info("Deleted {} expired archived blocks", blocks);
+                    rebuildStats(affected, oldestKept);
+                }
+            });
+        } catch (DataAccessException e) {
+            log.error("Partition maintenance failed", e);
+        }
+    }
+
+    /**
+     * Creates the month's partition and attaches it, after moving in the rows the default partition caught for
+     * it, e.g. late readings that arrived before the month had a partition. Attaching only locks the parent
+     * against concurrent DDL, where {@code CREATE TABLE ... PARTITION OF} would block its readers and writers.
+     */
+    private void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        String from = month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC).toString();
+        String to = month.plusMonths(1).atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC).toString();
+        log.info("Creating partition {} for [{}, {})", name, from, to);
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE temperature_readings INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                + " WHERE \"timestamp\" >= '" + from + "' AND \"timestamp\" < '" + to + "' RETURNING *)"
+                + " INSERT INTO " + name + " SELECT * FROM moved");
+        if (moved > 0) log.info("Moved {} readings from {} into {}", moved, DEFAULT_PARTITION, name);
+        jdbcTemplate.execute("ALTER TABLE temperature_readings ATTACH PARTITION " + name
+                + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+    }
+
+    /**
+     * Locks the stats of the thermometers with readings about to expire and returns their ids. Writers change a
+     * thermometer's rollups and stats in one transaction, so the rebuild sees either all of a batch, or none of
+     * it and the batch adds to the rebuilt row once the lock is released.
+     */
+    private List<Integer> lockExpiringStats(List<String> expired, OffsetDateTime oldestKept) {
+        StringBuilder sql = new StringBuilder("SELECT thermometer_id FROM thermometer_stats WHERE thermometer_id IN (")
+                .append("SELECT thermometer_id FROM ").append(DEFAULT_PARTITION).append(" WHERE \"timestamp\" < ?")
+                .append(" UNION SELECT thermometer_id FROM reading_blocks WHERE block_start < ?");
+        for (String partition : expired) {
+            sql.append(" UNION SELECT thermometer_id FROM ").append(partition);
+        }
+        sql.append(") ORDER BY thermometer_id FOR UPDATE");
+        return jdbcTemplate.queryForList(sql.toString(), Integer.class, oldestKept, oldestKept);
+    }
+
+    private void rebuildStats(List<Integer> thermometerIds, OffsetDateTime oldestKept) {
+        if (thermometerIds.isEmpty()) return;
+        int rebuilt = jdbcTemplate.update((Connection con) -> {
+            PreparedStatement ps = con.prepareStatement(REBUILD_STATS_SQL);
+            ps.setObject(1, oldestKept);
+            ps.setArray(2, con.createArrayOf("int4", thermometerIds.toArray()));
+            return ps;
+        });
+        int emptied = jdbcTemplate.update((Connection con) -> {
+            PreparedStatement ps = con.prepareStatement(DELETE_EMPTY_STATS_SQL);
+            ps.setArray(1, con.createArrayOf("int4", thermometerIds.toArray()));
+            ps.setObject(2, oldestKept);
+            return ps;
+        });
+        log.info("Rebuilt the stats of {} thermometers from retained rollups, {} have no readings left", rebuilt, emptied);
+    }
+
+    /** Months that have a partition of their own, oldest first. */
+    public List<YearMonth> partitionMonths() {
+        List<YearMonth> months = new ArrayList<>();
+        for (String name : jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class)) {
+            Matcher m = PARTITION_NAME.matcher(name);
+            if (m.matches()) months.add(YearMonth.parse(m.group(1), SUFFIX));
+        }
+        months.sort(null);
+        return months;
+    }
+
+    public static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(SUFFIX);
+    }
+
+    /** From the month of the oldest reading accepted to {@code premakeMonths} after the current one. */
+    static List<YearMonth> monthsToCreate(YearMonth oldestAccepted, YearMonth current, int premakeMonths) {
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth month = oldestAccepted; !month.isAfter(current.plusMonths(premakeMonths)); month = month.plusMonths(1)) {
+            months.add(month);
+        }
+        return months;
+    }
+
+    /**
+     * Monthly partitions that end on or before the retention cutoff. A retention of 0 keeps everything.
+     */
+    static List<String> partitionsToDrop(List<String> existing, YearMonth current, int retentionMonths) {
+        if (retentionMonths <= 0) return List.of();
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        List<String> expired = new ArrayList<>();
+        for (String name : existing) {
+            Matcher m = PARTITION_NAME.matcher(name);
+            if (m.matches() && YearMonth.parse(m.group(1), SUFFIX).isBefore(oldestKept)) {
+                expired.add(name);
+            }
+        }
+        return expired;
+    }
+}
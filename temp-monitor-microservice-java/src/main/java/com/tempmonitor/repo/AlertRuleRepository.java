@@ -0,0 +1,16 @@
+package com.tempmonitor.repo;
+
+import com.tempmonitor.entity.AlertRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface AlertRuleRepository extends JpaRepository<AlertRule, Integer> {
+
+    @Query("SELECT r FROM AlertRule r ORDER BY r.id")
+    List<AlertRule> findAllOrdered();
+
+    @Query("SELECT r FROM AlertRule r WHERE r.enabled = true")
+    List<AlertRule> findEnabled();
+}
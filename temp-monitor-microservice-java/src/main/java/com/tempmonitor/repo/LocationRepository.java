@@ -1,8 +1,17 @@
 package com.tempmonitor.repo;
 
 
+import com.tempmonitor.cache.MetadataCaches;
 import com.tempmonitor.entity.Location;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
 
 public interface LocationRepository extends JpaRepository<Location, Integer> {
-}
\ No newline at end of file
+
+    @Cacheable(cacheNames = MetadataCaches.LOCATIONS, unless = "#result == null")
+    @Query("SELECT new com.tempmonitor.repo.LocationRow(l.id, l.name) FROM Location l WHERE l.id = :id")
+    Optional<LocationRow> findRowById(Integer id);
+}
@@ -0,0 +1,7 @@
+package com.tempmonitor.repo;
+
+/**
+ * Location columns without the thermometer collection.
+ */
+public record LocationRow(Integer id, String name) {
+}
@@ -0,0 +1,259 @@
+package com.tempmonitor.repo;
+
+import com.tempmonitor.archive.ReadingBlock;
+import com.tempmonitor.archive.ReadingBlockCodec;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compressed day blocks of readings in {@code reading_blocks} and the instant before which readings live there
+ * instead of in {@code temperature_readings}. Reads only see blocks before that instant; callers that also read
+ * {@code temperature_readings} should do so in the same repeatable-read transaction, so that a month switching
+ * over in between is seen on exactly one side.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class ReadingBlockRepository {
+
+    private static final String ARCHIVED_BEFORE_SQL = "SELECT archived_before FROM reading_archive";
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO reading_blocks
+                (thermometer_id, block_start, reading_count, last_id, last_value, last_timestamp, data)
+            SELECT u.thermometer_id, timestamptz 'epoch' + u.start_micros * interval '1 microsecond', u.reading_count,
+                   u.last_id, u.last_value, timestamptz 'epoch' + u.last_micros * interval '1 microsecond', u.data
+            FROM unnest(?, ?, ?, ?, ?, ?, ?)
+                AS u(thermometer_id, start_micros, reading_count, last_id, last_value, last_micros, data)
+            ON CONFLICT (thermometer_id, block_start) DO UPDATE SET
+                reading_count = EXCLUDED.reading_count,
+                last_id = EXCLUDED.last_id,
+                last_value = EXCLUDED.last_value,
+                last_timestamp = EXCLUDED.last_timestamp,
+                data = EXCLUDED.data
+            """;
+
+    private static final String FIND_SQL = """
+            SELECT thermometer_id, data
+            FROM reading_blocks
+            WHERE thermometer_id = ? AND block_start >= ? AND block_start < ?
+              AND block_start < (SELECT archived_before FROM reading_archive)
+            ORDER BY block_start
+            LIMIT ?
+            """;
+
+    private static final String NEWEST_SQL = """
+            SELECT thermometer_id, data
+            FROM reading_blocks
+            WHERE thermometer_id = ? AND block_start < COALESCE(CAST(? AS TIMESTAMP WITH TIME ZONE), 'infinity')
+              AND block_start < (SELECT archived_before FROM reading_archive)
+            ORDER BY block_start DESC
+            LIMIT ?
+            """;
+
+    private static final String THERMOMETER_IDS_SQL = """
+            SELECT DISTINCT thermometer_id
+            FROM reading_blocks
+            WHERE block_start < (SELECT archived_before FROM reading_archive)
+            """;
+
+    /** Blocks decoded per query when walking back from the newest ones. */
+    private static final int NEWEST_PAGE_BLOCKS = 4;
+    private static final long DAY_MICROS = 86_400_000_000L;
+
+    private static final String BY_THERMOMETER_SQL = """
+            SELECT thermometer_id, data
+            FROM reading_blocks
+            WHERE thermometer_id = ANY(?) AND block_start < (SELECT archived_before FROM reading_archive)
+            """;
+
+    private static final String BY_LOCATION_SQL = """
+            SELECT t.location_id, b.data
+            FROM reading_blocks b
+            JOIN thermometers t ON t.id = b.thermometer_id
+            WHERE t.location_id = ANY(?) AND b.block_start < (SELECT archived_before FROM reading_archive)
+            """;
+
+    @FunctionalInterface
+    public interface BlockHandler {
+        /** @param key the thermometer id, or the location id when blocks are read by location */
+        void accept(int key, ReadingBlock block);
+    }
+
+    @FunctionalInterface
+    public interface ReadingHandler {
+        void accept(int id, long epochMicros, double value);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Instant knownArchivedBefore;
+
+    /** Readings before this instant are in blocks, later ones in {@code temperature_readings}. */
+    public Instant archivedBefore() {
+        return jdbcTemplate.queryForObject(ARCHIVED_BEFORE_SQL, OffsetDateTime.class).toInstant();
+    }
+
+    /**
+     * {@link #archivedBefore()} as last read, without a query, so readers can skip {@code reading_blocks} while
+     * nothing is archived. Archiving by another replica shows up within {@code archive.boundary-refresh-interval}.
+     */
+    public Instant knownArchivedBefore() {
+        Instant known = knownArchivedBefore;
+        if (known == null) {
+            known = archivedBefore();
+            knownArchivedBefore = known;
+        }
+        return known;
+    }
+
+    /** Also runs once at startup. */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${tempmonitor.archive.boundary-refresh-interval:1m}")
+    public void refreshArchivedBefore() {
+        try {
+            knownArchivedBefore = archivedBefore();
+        } catch (DataAccessException e) {
+            log.warn("Reading the archive boundary failed, keeping {}", knownArchivedBefore, e);
+        }
+    }
+
+    public void setArchivedBefore(Instant archivedBefore) {
+        jdbcTemplate.update("UPDATE reading_archive SET archived_before = ?",
+                OffsetDateTime.ofInstant(archivedBefore, ZoneOffset.UTC));
+        // before the commit is fine: a boundary ahead of the table only costs a block query that finds nothing
+        knownArchivedBefore = archivedBefore;
+    }
+
+    /** Inserts blocks, replacing those of the same thermometer and day. */
+    public void saveAll(List<ReadingBlockRow> blocks) {
+        if (blocks.isEmpty()) return;
+        int n = blocks.size();
+        int[] thermometerIds = new int[n];
+        long[] startMicros = new long[n];
+        int[] counts = new int[n];
+        int[] lastIds = new int[n];
+        double[] lastValues = new double[n];
+        long[] lastMicros = new long[n];
+        byte[][] data = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            ReadingBlockRow block = blocks.get(i);
+            thermometerIds[i] = block.thermometerId();
+            startMicros[i] = toMicros(block.blockStart());
+            counts[i] = block.readingCount();
+            lastIds[i] = block.lastId();
+            lastValues[i] = block.lastValue();
+            lastMicros[i] = toMicros(block.lastTimestamp());
+            data[i] = block.data();
+        }
+        jdbcTemplate.execute((Connection con) -> {
+            PGConnection pg = con.unwrap(PGConnection.class);
+            PreparedStatement ps = con.prepareStatement(UPSERT_SQL);
+            ps.setArray(1, pg.createArrayOf("int4", thermometerIds));
+            ps.setArray(2, pg.createArrayOf("int8", startMicros));
+            ps.setArray(3, pg.createArrayOf("int4", counts));
+            ps.setArray(4, pg.createArrayOf("int4", lastIds));
+            ps.setArray(5, pg.createArrayOf("float8", lastValues));
+            ps.setArray(6, pg.createArrayOf("int8", lastMicros));
+            ps.setArray(7, pg.createArrayOf("bytea", data));
+            return ps;
+        }, PreparedStatement::executeUpdate);
+    }
+
+    /**
+     * Decodes up to {@code limit} blocks of one thermometer that start in {@code [from, to)}, oldest first.
+     *
+     * @return the number of blocks read
+     */
+    public int forEachBlock(int thermometerId, Instant from, Instant to, int limit, BlockHandler handler) {
+        int[] blocks = new int[1];
+        jdbcTemplate.query(FIND_SQL, rs -> {
+            blocks[0]++;
+            handler.accept(rs.getInt(1), ReadingBlockCodec.decode(rs.getBytes(2)));
+        }, thermometerId, OffsetDateTime.ofInstant(from, ZoneOffset.UTC), OffsetDateTime.ofInstant(to, ZoneOffset.UTC),
+                limit);
+        return blocks[0];
+    }
+
+    /**
+     * Visits up to {@code limit} archived readings of a thermometer, newest first, that sort before
+     * {@code (beforeMicros, beforeId)}, e.g. the oldest reading found in {@code temperature_readings}; a null
+     * {@code beforeMicros} starts from the newest archived reading.
+     *
+     * @return the number of readings visited
+     */
+    public int forEachNewestReading(int thermometerId, Long beforeMicros, int beforeId, int limit,
+                                    ReadingHandler handler) {
+        int visited = 0;
+        // blocks start at midnight, so the one holding the cursor starts before it
+        Long blockBefore = beforeMicros == null ? null : beforeMicros + 1;
+        while (visited < limit) {
+            List<ReadingBlock> blocks = new ArrayList<>(NEWEST_PAGE_BLOCKS);
+            jdbcTemplate.query(NEWEST_SQL, rs -> {
+                blocks.add(ReadingBlockCodec.decode(rs.getBytes(2)));
+            }, thermometerId, blockBefore == null ? null : utc(blockBefore), NEWEST_PAGE_BLOCKS);
+            for (ReadingBlock block : blocks) {
+                int end = block.size();
+                if (beforeMicros != null) {
+                    end = block.indexAfter(beforeMicros, beforeId);
+                    if (end > 0 && block.epochMicros(end - 1) == beforeMicros && block.id(end - 1) == beforeId) end--;
+                }
+                for (int i = end - 1; i >= 0 && visited < limit; i--) {
+                    handler.accept(block.id(i), block.epochMicros(i), block.value(i));
+                    visited++;
+                }
+                blockBefore = Math.floorDiv(block.epochMicros(0), DAY_MICROS) * DAY_MICROS;
+            }
+            if (blocks.size() < NEWEST_PAGE_BLOCKS) break;
+        }
+        return visited;
+    }
+
+    /** Thermometers with archived readings. */
+    public List<Integer> thermometerIds() {
+        return jdbcTemplate.queryForList(THERMOMETER_IDS_SQL, Integer.class);
+    }
+
+    /** Decodes every block of the thermometers, in no particular order. */
+    public void forEachBlockByThermometer(List<Integer> thermometerIds, BlockHandler handler) {
+        query(BY_THERMOMETER_SQL, thermometerIds, handler);
+    }
+
+    /** Decodes every block of the thermometers at the locations, keyed by location, in no particular order. */
+    public void forEachBlockByLocation(List<Integer> locationIds, BlockHandler handler) {
+        query(BY_LOCATION_SQL, locationIds, handler);
+    }
+
+    private void query(String sql, List<Integer> ids, BlockHandler handler) {
+        jdbcTemplate.query((Connection con) -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("int4", ids.toArray()));
+            return ps;
+        }, rs -> {
+            handler.accept(rs.getInt(1), ReadingBlockCodec.decode(rs.getBytes(2)));
+        });
+    }
+
+    private static OffsetDateTime utc(long epochMicros) {
+        return OffsetDateTime.ofInstant(Instant.EPOCH.plus(epochMicros, ChronoUnit.MICROS), ZoneOffset.UTC);
+    }
+
+    private static long toMicros(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000;
+    }
+}
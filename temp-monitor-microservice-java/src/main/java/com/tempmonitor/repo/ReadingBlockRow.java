@@ -0,0 +1,11 @@
+package com.tempmonitor.repo;
+
+import java.time.Instant;
+
+/**
+ * A row of {@code reading_blocks}: the readings of one thermometer and UTC day compressed by
+ * {@code ReadingBlockCodec}, with the newest of them in plain columns.
+ */
+public record ReadingBlockRow(int thermometerId, Instant blockStart, int readingCount, int lastId, double lastValue,
+                              Instant lastTimestamp, byte[] data) {
+}
@@ -0,0 +1,94 @@
+package com.tempmonitor.repo;
+
+import com.tempmonitor.dto.ReadingBucketDto;
+import com.tempmonitor.stats.QuantileSketch;
+import com.tempmonitor.stats.RollupResolution;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Minute, hour and day buckets of min/max/sum/count and a quantile sketch per thermometer in
+ * {@code reading_rollups}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReadingRollupRepository {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO reading_rollups AS r
+                (thermometer_id, resolution, bucket_start, min_value, max_value, sum_value, reading_count, sketch)
+            SELECT u.thermometer_id, u.resolution, timestamptz 'epoch' + u.micros * interval '1 microsecond',
+                   u.min_value, u.max_value, u.sum_value, u.reading_count, CAST(u.sketch AS jsonb)
+            FROM unnest(?, ?, ?, ?, ?, ?, ?, ?)
+                AS u(thermometer_id, resolution, micros, min_value, max_value, sum_value, reading_count, sketch)
+            ON CONFLICT (thermometer_id, resolution, bucket_start) DO UPDATE SET
+                min_value = LEAST(r.min_value, EXCLUDED.min_value),
+                max_value = GREATEST(r.max_value, EXCLUDED.max_value),
+                sum_value = r.sum_value + EXCLUDED.sum_value,
+                reading_count = r.reading_count + EXCLUDED.reading_count,
+                sketch = reading_sketch_merge(r.sketch, EXCLUDED.sketch)
+            """;
+
+    private static final String FIND_SQL = """
+            SELECT bucket_start, min_value, max_value, sum_value, reading_count, CAST(sketch AS text)
+            FROM reading_rollups
+            WHERE thermometer_id = ? AND resolution = ? AND bucket_start >= ? AND bucket_start < ?
+            ORDER BY bucket_start
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Adds one aggregate per bucket, with its sketch as {@code QuantileSketch} JSON. Keys must be unique and
+     * should be sorted so that concurrent writers lock the rows in the same order.
+     */
+    public void accumulate(int[] thermometerIds, String[] resolutions, long[] bucketStartMicros,
+                           double[] min, double[] max, double[] sum, long[] count, String[] sketches) {
+        if (thermometerIds.length == 0) return;
+        jdbcTemplate.execute((Connection con) -> {
+            PGConnection pg = con.unwrap(PGConnection.class);
+            PreparedStatement ps = con.prepareStatement(UPSERT_SQL);
+            ps.setArray(1, pg.createArrayOf("int4", thermometerIds));
+            ps.setArray(2, con.createArrayOf("varchar", resolutions));
+            ps.setArray(3, pg.createArrayOf("int8", bucketStartMicros));
+            ps.setArray(4, pg.createArrayOf("float8", min));
+            ps.setArray(5, pg.createArrayOf("float8", max));
+            ps.setArray(6, pg.createArrayOf("float8", sum));
+            ps.setArray(7, pg.createArrayOf("int8", count));
+            ps.setArray(8, con.createArrayOf("text", sketches));
+            return ps;
+        }, PreparedStatement::executeUpdate);
+    }
+
+    /**
+     * Buckets of one thermometer whose start lies in {@code [from, to)}, oldest first.
+     */
+    public List<ReadingBucketDto> findBuckets(int thermometerId, RollupResolution resolution, Instant from, Instant to) {
+        return jdbcTemplate.query(FIND_SQL, (rs, rowNum) -> {
+            ReadingBucketDto dto = new ReadingBucketDto();
+            long count = rs.getLong(5);
+            dto.setBucketStart(rs.getObject(1, OffsetDateTime.class).toInstant());
+            dto.setMin(rs.getDouble(2));
+            dto.setMax(rs.getDouble(3));
+            dto.setAvg(rs.getDouble(4) / count);
+            dto.setCount(count);
+            double[] percentiles = QuantileSketch.fromJson(rs.getString(6)).percentiles();
+            if (percentiles != null) {
+                dto.setP50(percentiles[0]);
+                dto.setP90(percentiles[1]);
+                dto.setP99(percentiles[2]);
+            }
+            return dto;
+        }, thermometerId, resolution.name(), OffsetDateTime.ofInstant(from, ZoneOffset.UTC),
+                OffsetDateTime.ofInstant(to, ZoneOffset.UTC));
+    }
+}
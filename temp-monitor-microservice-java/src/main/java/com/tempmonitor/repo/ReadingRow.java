@@ -0,0 +1,16 @@
+package com.tempmonitor.repo;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Reading columns without the thermometer entity, only its foreign key.
+ */
+public record ReadingRow(Integer id, Integer thermometerId, Double value, Instant timestamp) {
+
+    /** From a native row of id, thermometer_id, value and the timestamp as epoch microseconds. */
+    public static ReadingRow fromNative(Object[] row) {
+        return new ReadingRow(((Number) row[0]).intValue(), ((Number) row[1]).intValue(),
+                ((Number) row[2]).doubleValue(), Instant.EPOCH.plus(((Number) row[3]).longValue(), ChronoUnit.MICROS));
+    }
+}
@@ -0,0 +1,47 @@
+package com.tempmonitor.repo;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+
+/**
+ * Streams the newest readings of every thermometer without materializing rows, used to warm the recent-readings
+ * store. Each thermometer is an index range scan on {@code (thermometer_id, timestamp)}.
+ */
+@Repository
+public class RecentReadingsRepository {
+
+    private static final String RECENT_SQL = """
+            SELECT r.id, t.id, r."value", CAST(EXTRACT(EPOCH FROM r."timestamp") * 1000000 AS BIGINT)
+            FROM thermometers t
+            CROSS JOIN LATERAL (
+                SELECT id, "value", "timestamp"
+                FROM temperature_readings
+                WHERE thermometer_id = t.id
+                ORDER BY "timestamp" DESC, id DESC
+                LIMIT ?
+            ) r
+            """;
+
+    @FunctionalInterface
+    public interface RowHandler {
+        void accept(int id, int thermometerId, double value, long epochMicros);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RecentReadingsRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // a cursor instead of the whole result in memory, needs the surrounding transaction
+        this.jdbcTemplate.setFetchSize(10_000);
+    }
+
+    @Transactional(readOnly = true)
+    public void forEachRecent(int perThermometer, RowHandler handler) {
+        jdbcTemplate.query(RECENT_SQL, rs -> {
+            handler.accept(rs.getInt(1), rs.getInt(2), rs.getDouble(3), rs.getLong(4));
+        }, perThermometer);
+    }
+}
@@ -0,0 +1,69 @@
+package com.tempmonitor.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Multi-row writer for temperature readings. Ids are reserved from the table sequence in one round-trip
+ * and all rows are then inserted with a single {@code unnest} statement, so a batch costs two statements
+ * regardless of its size. Readings already stored for the same thermometer and instant are skipped.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TemperatureReadingBatchRepository {
+
+    private static final String NEXT_IDS_SQL =
+            "SELECT nextval('temperature_readings_id_seq') FROM generate_series(1, ?)";
+
+    private static final String INSERT_SQL = """
+            INSERT INTO temperature_readings (id, thermometer_id, "value", "timestamp")
+            SELECT u.id, u.thermometer_id, u.value, timestamptz 'epoch' + u.micros * interval '1 microsecond'
+            FROM unnest(?, ?, ?, ?) AS u(id, thermometer_id, value, micros)
+            ON CONFLICT DO NOTHING
+            RETURNING id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts the given readings and returns their ids in input order, or 0 for a reading that was skipped
+     * because one for the same thermometer and timestamp already exists.
+     * Timestamps are epoch microseconds, the precision of a Postgres {@code timestamptz}.
+     */
+    public int[] insertAll(int[] thermometerIds, double[] values, long[] epochMicros) {
+        int size = thermometerIds.length;
+        if (size == 0) return new int[0];
+        List<Integer> idList = jdbcTemplate.queryForList(NEXT_IDS_SQL, Integer.class, size);
+        int[] ids = idList.stream().mapToInt(Integer::intValue).toArray();
+        Set<Integer> inserted = new HashSet<>(size * 2);
+        jdbcTemplate.execute((Connection con) -> {
+            PGConnection pg = con.unwrap(PGConnection.class);
+            PreparedStatement ps = con.prepareStatement(INSERT_SQL);
+            ps.setArray(1, pg.createArrayOf("int4", ids));
+            ps.setArray(2, pg.createArrayOf("int4", thermometerIds));
+            ps.setArray(3, pg.createArrayOf("float8", values));
+            ps.setArray(4, pg.createArrayOf("int8", epochMicros));
+            return ps;
+        }, (PreparedStatement ps) -> {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) inserted.add(rs.getInt(1));
+            }
+            return null;
+        });
+        if (inserted.size() < size) {
+            for (int i = 0; i < size; i++) {
+                if (!inserted.contains(ids[i])) ids[i] = 0;
+            }
+        }
+        return ids;
+    }
+}
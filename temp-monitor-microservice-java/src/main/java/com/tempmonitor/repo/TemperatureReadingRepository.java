@@ -1,33 +1,44 @@
 package com.tempmonitor.repo;
 
 import com.tempmonitor.entity.TemperatureReading;
-import com.tempmonitor.entity.Thermometer;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 public interface TemperatureReadingRepository extends JpaRepository<TemperatureReading, Integer> {
-    List<TemperatureReading> findTop10ByThermometerOrderByTimestampDesc(Thermometer thermometer);
 
     @Query("""
-                SELECT tr FROM TemperatureReading tr
-                WHERE (tr.thermometer.id, tr.timestamp) IN (
-                    SELECT t.id, MAX(tr2.timestamp)
-                    FROM Thermometer t
-                    JOIN TemperatureReading tr2 ON tr2.thermometer.id = t.id
-                    GROUP BY t.id
-                )
+                SELECT new com.tempmonitor.repo.ReadingRow(tr.id, tr.thermometer.id, tr.value, tr.timestamp)
+                FROM TemperatureReading tr
+                WHERE tr.thermometer.id = :thermometerId
+                ORDER BY tr.timestamp DESC, tr.id DESC
             """)
-    List<TemperatureReading> findLatestForAllThermometers();
-
-    @Query("SELECT MIN(tr.value), MAX(tr.value), AVG(tr.value), COUNT(tr.id) FROM TemperatureReading tr WHERE tr.thermometer = :thermometer")
-    List<Object[]> statsForThermometer(Thermometer thermometer);
+    List<ReadingRow> findLatestRows(Integer thermometerId, Limit limit);
 
     @Query("""
-                SELECT MIN(tr.value), MAX(tr.value), AVG(tr.value), COUNT(tr.id)
+                SELECT new com.tempmonitor.repo.ReadingRow(tr.id, tr.thermometer.id, tr.value, tr.timestamp)
                 FROM TemperatureReading tr
-                WHERE tr.thermometer.id IN :thermometerIds
+                WHERE tr.thermometer.id = :thermometerId AND tr.timestamp = :timestamp
             """)
-    List<Object[]>  statsForLocation(List<Integer> thermometerIds);
-}
\ No newline at end of file
+    Optional<ReadingRow> findRowByThermometerAndTimestamp(Integer thermometerId, Instant timestamp);
+
+    // thermometers silent since their readings were archived keep their latest one in reading_blocks
+    @Query(value = """
+                SELECT DISTINCT ON (thermometer_id) id, thermometer_id, "value",
+                       CAST(EXTRACT(EPOCH FROM "timestamp") * 1000000 AS BIGINT) AS epoch_micros
+                FROM (
+                    SELECT id, thermometer_id, "value", "timestamp"
+                    FROM temperature_readings
+                    UNION ALL
+                    SELECT last_id, thermometer_id, last_value, last_timestamp
+                    FROM reading_blocks
+                    WHERE block_start < (SELECT archived_before FROM reading_archive)
+                ) r
+                ORDER BY thermometer_id, "timestamp" DESC, id DESC
+            """, nativeQuery = true)
+    List<Object[]> findLatestRowsForAllThermometers();
+}
@@ -1,11 +1,39 @@
 package com.tempmonitor.repo;
 
-import com.tempmonitor.entity.Location;
+import com.tempmonitor.cache.MetadataCaches;
 import com.tempmonitor.entity.Thermometer;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface ThermometerRepository extends JpaRepository<Thermometer, Integer> {
-    List<Thermometer> findByLocation(Location location);
-}
\ No newline at end of file
+
+    @Query("SELECT new com.tempmonitor.repo.ThermometerRow(t.id, t.name, t.location.id) FROM Thermometer t ORDER BY t.id")
+    List<ThermometerRow> findAllRows();
+
+    @Cacheable(MetadataCaches.LOCATION_THERMOMETERS)
+    @Query("""
+                SELECT new com.tempmonitor.repo.ThermometerRow(t.id, t.name, t.location.id) FROM Thermometer t
+                WHERE t.location.id = :locationId ORDER BY t.id
+            """)
+    List<ThermometerRow> findRowsByLocationId(Integer locationId);
+
+    @Cacheable(cacheNames = MetadataCaches.THERMOMETERS, unless = "#result == null")
+    @Query("SELECT new com.tempmonitor.repo.ThermometerRow(t.id, t.name, t.location.id) FROM Thermometer t WHERE t.id = :id")
+    Optional<ThermometerRow> findRowById(Integer id);
+
+    @Query("SELECT t.id FROM Thermometer t WHERE t.id IN :ids")
+    List<Integer> findExistingIds(Collection<Integer> ids);
+
+    /** Pairs of thermometer id and location id. */
+    @Query("SELECT t.id, t.location.id FROM Thermometer t WHERE t.id IN :ids")
+    List<Object[]> findLocationIds(Collection<Integer> ids);
+
+    /** Pairs of thermometer id and location id, of every thermometer of the locations. */
+    @Query("SELECT t.id, t.location.id FROM Thermometer t WHERE t.location.id IN :locationIds")
+    List<Object[]> findIdsByLocationIds(Collection<Integer> locationIds);
+}
@@ -0,0 +1,7 @@
+package com.tempmonitor.repo;
+
+/**
+ * Thermometer columns without the location entity, only its foreign key.
+ */
+public record ThermometerRow(Integer id, String name, Integer locationId) {
+}
@@ -0,0 +1,52 @@
+package com.tempmonitor.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+/**
+ * Folds pre-aggregated readings into {@code thermometer_stats} with one upsert per batch. Quantile sketches are
+ * merged by the {@code reading_sketch_merge} database function.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ThermometerStatsBatchRepository {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO thermometer_stats AS s (thermometer_id, min_value, max_value, sum_value, reading_count, sketch)
+            SELECT u.thermometer_id, u.min_value, u.max_value, u.sum_value, u.reading_count, CAST(u.sketch AS jsonb)
+            FROM unnest(?, ?, ?, ?, ?, ?) AS u(thermometer_id, min_value, max_value, sum_value, reading_count, sketch)
+            ON CONFLICT (thermometer_id) DO UPDATE SET
+                min_value = LEAST(s.min_value, EXCLUDED.min_value),
+                max_value = GREATEST(s.max_value, EXCLUDED.max_value),
+                sum_value = s.sum_value + EXCLUDED.sum_value,
+                reading_count = s.reading_count + EXCLUDED.reading_count,
+                sketch = reading_sketch_merge(s.sketch, EXCLUDED.sketch)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Adds one aggregate per thermometer, with its sketch as {@code QuantileSketch} JSON. Ids must be unique and
+     * should be sorted so that concurrent writers lock the rows in the same order.
+     */
+    public void accumulate(int[] thermometerIds, double[] min, double[] max, double[] sum, long[] count,
+                           String[] sketches) {
+        if (thermometerIds.length == 0) return;
+        jdbcTemplate.execute((Connection con) -> {
+            PGConnection pg = con.unwrap(PGConnection.class);
+            PreparedStatement ps = con.prepareStatement(UPSERT_SQL);
+            ps.setArray(1, pg.createArrayOf("int4", thermometerIds));
+            ps.setArray(2, pg.createArrayOf("float8", min));
+            ps.setArray(3, pg.createArrayOf("float8", max));
+            ps.setArray(4, pg.createArrayOf("float8", sum));
+            ps.setArray(5, pg.createArrayOf("int8", count));
+            ps.setArray(6, con.createArrayOf("text", sketches));
+            return ps;
+        }, PreparedStatement::executeUpdate);
+    }
+}
@@ -0,0 +1,61 @@
+package com.tempmonitor.repo;
+
+import com.tempmonitor.entity.ThermometerStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface ThermometerStatsRepository extends JpaRepository<ThermometerStats, Integer> {
+
+    /**
+     * Number of thermometers at the location followed by MIN, MAX, SUM and COUNT over all their readings, and
+     * their merged quantile sketch as JSON.
+     */
+    @Query(value = """
+                SELECT COUNT(t.id), MIN(s.min_value), MAX(s.max_value), SUM(s.sum_value), SUM(s.reading_count),
+                       CAST(reading_sketch_merge_agg(s.sketch) AS text)
+                FROM thermometers t
+                LEFT JOIN thermometer_stats s ON s.thermometer_id = t.id
+                WHERE t.location_id = :locationId
+            """, nativeQuery = true)
+    List<Object[]> locationStats(Integer locationId);
+
+    /**
+     * Id, MIN, MAX, SUM, COUNT and quantile sketch of every thermometer at the location, null if it has no
+     * readings.
+     */
+    @Query("""
+                SELECT t.id, s.minValue, s.maxValue, s.sumValue, s.count, s.sketch
+                FROM Thermometer t
+                LEFT JOIN ThermometerStats s ON s.thermometerId = t.id
+                WHERE t.location.id = :locationId
+                ORDER BY t.id
+            """)
+    List<Object[]> thermometerStatsByLocation(Integer locationId);
+
+    /**
+     * Same as {@link #thermometerStatsByLocation} for every thermometer.
+     */
+    @Query("""
+                SELECT t.id, s.minValue, s.maxValue, s.sumValue, s.count, s.sketch
+                FROM Thermometer t
+                LEFT JOIN ThermometerStats s ON s.thermometerId = t.id
+                ORDER BY t.id
+            """)
+    List<Object[]> allThermometerStats();
+
+    /**
+     * The columns of {@link #locationStats} for every location, followed by the location id.
+     */
+    @Query(value = """
+                SELECT COUNT(t.id), MIN(s.min_value), MAX(s.max_value), SUM(s.sum_value), SUM(s.reading_count),
+                       CAST(reading_sketch_merge_agg(s.sketch) AS text), l.id
+                FROM locations l
+                LEFT JOIN thermometers t ON t.location_id = l.id
+                LEFT JOIN thermometer_stats s ON s.thermometer_id = t.id
+                GROUP BY l.id
+                ORDER BY l.id
+            """, nativeQuery = true)
+    List<Object[]> allLocationStats();
+}
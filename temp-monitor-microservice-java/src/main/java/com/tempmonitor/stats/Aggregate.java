@@ -0,0 +1,21 @@
+package com.tempmonitor.stats;
+
+/**
+ * Mutable min/max/sum/count and quantile sketch accumulator used to pre-aggregate a batch before it is folded
+ * into the database.
+ */
+final class Aggregate {
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    double sum;
+    long count;
+    final QuantileSketch sketch = new QuantileSketch();
+
+    void add(double value) {
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+        count++;
+        sketch.add(value);
+    }
+}
@@ -0,0 +1,143 @@
+package com.tempmonitor.stats;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mergeable quantile sketch in the manner of DDSketch: a value {@code v} is counted in bin
+ * {@code ceil(log(|v|) / log(gamma))} on the side of its sign, and every bin is reported as the one value within
+ * {@link #RELATIVE_ACCURACY} of all values it holds. Two sketches merge by adding the counts of equal bins, so
+ * the sketches kept with the running stats and in every rollup bucket combine into location and range
+ * quantiles without reading raw readings. Temperatures usually fill a few dozen bins.
+ *
+ * <p>Stored as a JSON object of bin counts, {@code {"p<bin>": n}} for positive values, {@code {"n<bin>": n}}
+ * for negative ones and {@code {"z": n}} for values closer to zero than {@link #MIN_INDEXABLE}; the database
+ * function {@code reading_sketch_merge} merges the same format.
+ */
+public final class QuantileSketch {
+
+    public static final double RELATIVE_ACCURACY = 0.01;
+    public static final double MIN_INDEXABLE = 1e-6;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Long>> BINS = new TypeReference<>() {
+    };
+
+    private final Map<Integer, Long> positive = new HashMap<>();
+    private final Map<Integer, Long> negative = new HashMap<>();
+    private long zeros;
+    private long count;
+
+    public void add(double value) {
+        if (Math.abs(value) < MIN_INDEXABLE) {
+            zeros++;
+        } else if (value > 0) {
+            positive.merge(bin(value), 1L, Long::sum);
+        } else {
+            negative.merge(bin(-value), 1L, Long::sum);
+        }
+        count++;
+    }
+
+    public void merge(QuantileSketch other) {
+        other.positive.forEach((bin, n) -> positive.merge(bin, n, Long::sum));
+        other.negative.forEach((bin, n) -> negative.merge(bin, n, Long::sum));
+        zeros += other.zeros;
+        count += other.count;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * The value at quantile {@code q}, within {@link #RELATIVE_ACCURACY} of the exact (lower) quantile, or NaN
+     * if the sketch is empty.
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + q);
+        }
+        if (count == 0) return Double.NaN;
+        long rank = (long) (q * (count - 1));
+        long seen = 0;
+        // from the most negative value up: negative bins by descending magnitude, zeros, positive bins
+        List<Integer> bins = new ArrayList<>(negative.keySet());
+        bins.sort(Comparator.reverseOrder());
+        for (int bin : bins) {
+            seen += negative.get(bin);
+            if (seen > rank) return -value(bin);
+        }
+        seen += zeros;
+        if (seen > rank) return 0;
+        bins = new ArrayList<>(positive.keySet());
+        bins.sort(null);
+        for (int bin : bins) {
+            seen += positive.get(bin);
+            if (seen > rank) return value(bin);
+        }
+        throw new IllegalStateException("Bin counts do not add up to " + count);
+    }
+
+    /** p50, p90 and p99, or null if the sketch is empty. */
+    public double[] percentiles() {
+        return isEmpty() ? null : new double[]{quantile(0.5), quantile(0.9), quantile(0.99)};
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder(16 * (positive.size() + negative.size()) + 16).append('{');
+        positive.forEach((bin, n) -> json.append("\"p").append(bin).append("\":").append(n).append(','));
+        negative.forEach((bin, n) -> json.append("\"n").append(bin).append("\":").append(n).append(','));
+        if (zeros > 0) json.append("\"z\":").append(zeros).append(',');
+        if (json.length() > 1) json.setLength(json.length() - 1);
+        return json.append('}').toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code json} is not a sketch; null is read as an empty one
+     */
+    public static QuantileSketch fromJson(String json) {
+        QuantileSketch sketch = new QuantileSketch();
+        if (json == null || json.isEmpty()) return sketch;
+        Map<String, Long> bins;
+        try {
+            bins = MAPPER.readValue(json, BINS);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid quantile sketch: " + e.getOriginalMessage(), e);
+        }
+        bins.forEach((key, n) -> {
+            if (key.equals("z")) {
+                sketch.zeros += n;
+            } else if (key.length() > 1 && key.charAt(0) == 'p') {
+                sketch.positive.merge(Integer.parseInt(key, 1, key.length(), 10), n, Long::sum);
+            } else if (key.length() > 1 && key.charAt(0) == 'n') {
+                sketch.negative.merge(Integer.parseInt(key, 1, key.length(), 10), n, Long::sum);
+            } else {
+                throw new IllegalArgumentException("Invalid quantile sketch bin: " + key);
+            }
+            sketch.count += n;
+        });
+        return sketch;
+    }
+
+    private static int bin(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+    }
+
+    /** The value that represents a bin, within the relative accuracy of every value counted in it. */
+    private static double value(int bin) {
+        return 2 * Math.pow(GAMMA, bin) / (GAMMA + 1);
+    }
+}
@@ -0,0 +1,241 @@
+package com.tempmonitor.stats;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.archive.ReadingBlock;
+import com.tempmonitor.repo.ReadingBlockRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Exact p50, p90 and p99 of the raw readings of thermometers or locations, for when the estimates of the
+ * stored {@link QuantileSketch}es are not good enough. Every reading of the entities involved is scanned, so the
+ * ids are split into batches that are queried in parallel on a small pool of their own, which also bounds how
+ * many connections percentile requests take away from writers.
+ *
+ * <p>Once readings have been archived, Postgres can no longer see all of them: a batch then counts the distinct
+ * values of its rows in {@code temperature_readings}, adds those of the decoded blocks and interpolates the
+ * percentiles the way {@code percentile_cont} does, all in one repeatable-read snapshot.
+ */
+@Component
+@Slf4j
+public class ReadingPercentiles implements SmartLifecycle {
+
+    private static final String BY_THERMOMETER_SQL = """
+            SELECT thermometer_id, percentile_cont(ARRAY[0.5, 0.9, 0.99]) WITHIN GROUP (ORDER BY "value")
+            FROM temperature_readings
+            WHERE thermometer_id = ANY(?)
+            GROUP BY thermometer_id
+            """;
+
+    private static final String BY_LOCATION_SQL = """
+            SELECT t.location_id, percentile_cont(ARRAY[0.5, 0.9, 0.99]) WITHIN GROUP (ORDER BY r."value")
+            FROM temperature_readings r
+            JOIN thermometers t ON t.id = r.thermometer_id
+            WHERE t.location_id = ANY(?)
+            GROUP BY t.location_id
+            """;
+
+    private static final String VALUE_COUNTS_BY_THERMOMETER_SQL = """
+            SELECT thermometer_id, "value", COUNT(*)
+            FROM temperature_readings
+            WHERE thermometer_id = ANY(?)
+            GROUP BY thermometer_id, "value"
+            """;
+
+    private static final String VALUE_COUNTS_BY_LOCATION_SQL = """
+            SELECT t.location_id, r."value", COUNT(*)
+            FROM temperature_readings r
+            JOIN thermometers t ON t.id = r.thermometer_id
+            WHERE t.location_id = ANY(?)
+            GROUP BY t.location_id, r."value"
+            """;
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadingBlockRepository blockRepo;
+    private final TransactionTemplate transactionTemplate;
+    private final TempMonitorProperties.Stats config;
+    private volatile ExecutorService executor;
+
+    public ReadingPercentiles(JdbcTemplate jdbcTemplate, ReadingBlockRepository blockRepo,
+                              PlatformTransactionManager transactionManager, TempMonitorProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blockRepo = blockRepo;
+        this.config = properties.getStats();
+        if (config.getPercentileParallelism() < 1 || config.getPercentileBatchSize() < 1) {
+            throw new IllegalArgumentException("Percentile parallelism and batch size must be positive");
+        }
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /** p50, p90 and p99 by thermometer id; thermometers without readings are left out. */
+    public Map<Integer, double[]> byThermometer(List<Integer> thermometerIds) {
+        return query(Source.THERMOMETER, thermometerIds);
+    }
+
+    /** p50, p90 and p99 by location id, over the readings of all its thermometers. */
+    public Map<Integer, double[]> byLocation(List<Integer> locationIds) {
+        return query(Source.LOCATION, locationIds);
+    }
+
+    @Override
+    public void start() {
+        executor = Executors.newFixedThreadPool(config.getPercentileParallelism(),
+                Thread.ofPlatform().daemon().name("stats-percentiles-", 0).factory());
+    }
+
+    @Override
+    public void stop() {
+        ExecutorService current = executor;
+        executor = null;
+        if (current != null) current.shutdownNow();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executor != null;
+    }
+
+    private Map<Integer, double[]> query(Source source, List<Integer> ids) {
+        int batchSize = config.getPercentileBatchSize();
+        if (ids.size() <= batchSize) {
+            // a single batch is not worth the hand-off
+            return queryBatch(source, ids);
+        }
+        ExecutorService pool = executor;
+        if (pool == null) {
+            throw new IllegalStateException("Percentile queries are not running");
+        }
+        List<CompletableFuture<Map<Integer, double[]>>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<Integer> batch = ids.subList(from, Math.min(ids.size(), from + batchSize));
+            batches.add(CompletableFuture.supplyAsync(() -> queryBatch(source, batch), pool));
+        }
+        Map<Integer, double[]> result = new HashMap<>(ids.size() * 2);
+        try {
+            for (CompletableFuture<Map<Integer, double[]>> batch : batches) {
+                result.putAll(batch.join());
+            }
+        } catch (CompletionException e) {
+            batches.forEach(batch -> batch.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+        log.debug("Percentiles of {} ids computed in {} parallel batches", ids.size(), batches.size());
+        return result;
+    }
+
+    private Map<Integer, double[]> queryBatch(Source source, List<Integer> ids) {
+        return transactionTemplate.execute(status -> {
+            if (Instant.EPOCH.equals(blockRepo.archivedBefore())) {
+                return percentilesInDatabase(source.percentilesSql, ids);
+            }
+            Map<Integer, NavigableMap<Double, long[]>> counts = new HashMap<>(ids.size() * 2);
+            queryIds(source.valueCountsSql, ids, rs -> counts
+                    .computeIfAbsent(rs.getInt(1), key -> new TreeMap<>())
+                    .computeIfAbsent(rs.getDouble(2), value -> new long[1])[0] += rs.getLong(3));
+            ReadingBlockRepository.BlockHandler addBlock = (key, block) -> count(counts, key, block);
+            if (source == Source.THERMOMETER) {
+                blockRepo.forEachBlockByThermometer(ids, addBlock);
+            } else {
+                blockRepo.forEachBlockByLocation(ids, addBlock);
+            }
+            Map<Integer, double[]> result = new HashMap<>(counts.size() * 2);
+            counts.forEach((key, valueCounts) -> result.put(key, percentiles(valueCounts)));
+            return result;
+        });
+    }
+
+    private Map<Integer, double[]> percentilesInDatabase(String sql, List<Integer> ids) {
+        Map<Integer, double[]> result = new HashMap<>(ids.size() * 2);
+        queryIds(sql, ids, rs -> {
+            Array percentiles = rs.getArray(2);
+            Double[] values = (Double[]) percentiles.getArray();
+            result.put(rs.getInt(1), new double[]{values[0], values[1], values[2]});
+            percentiles.free();
+        });
+        return result;
+    }
+
+    private void queryIds(String sql, List<Integer> ids, RowCallbackHandler handler) {
+        jdbcTemplate.query((Connection con) -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("int4", ids.toArray()));
+            return ps;
+        }, handler);
+    }
+
+    private static void count(Map<Integer, NavigableMap<Double, long[]>> counts, int key, ReadingBlock block) {
+        NavigableMap<Double, long[]> valueCounts = counts.computeIfAbsent(key, k -> new TreeMap<>());
+        for (int i = 0; i < block.size(); i++) {
+            valueCounts.computeIfAbsent(block.value(i), value -> new long[1])[0]++;
+        }
+    }
+
+    /**
+     * p50, p90 and p99 of values given with their number of occurrences, interpolated between the two closest
+     * ranks like {@code percentile_cont}.
+     */
+    static double[] percentiles(NavigableMap<Double, long[]> valueCounts) {
+        long total = 0;
+        for (long[] count : valueCounts.values()) {
+            total += count[0];
+        }
+        double[] result = new double[PERCENTILES.length];
+        Iterator<Map.Entry<Double, long[]>> entries = valueCounts.entrySet().iterator();
+        Map.Entry<Double, long[]> entry = entries.next();
+        // ranks [seen, seen + count) hold entry's value
+        long seen = 0;
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            double position = PERCENTILES[i] * (total - 1);
+            long lower = (long) Math.floor(position);
+            while (lower >= seen + entry.getValue()[0]) {
+                seen += entry.getValue()[0];
+                entry = entries.next();
+            }
+            double lowerValue = entry.getKey();
+            double upperValue = lower + 1 < seen + entry.getValue()[0] || lower + 1 >= total
+                    ? lowerValue : valueCounts.higherKey(lowerValue);
+            result[i] = lowerValue + (position - lower) * (upperValue - lowerValue);
+        }
+        return result;
+    }
+
+    private enum Source {
+        THERMOMETER(BY_THERMOMETER_SQL, VALUE_COUNTS_BY_THERMOMETER_SQL),
+        LOCATION(BY_LOCATION_SQL, VALUE_COUNTS_BY_LOCATION_SQL);
+
+        private final String percentilesSql;
+        private final String valueCountsSql;
+
+        Source(String percentilesSql, String valueCountsSql) {
+            this.percentilesSql = percentilesSql;
+            this.valueCountsSql = valueCountsSql;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.tempmonitor.stats;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Bucket sizes kept in {@code reading_rollups}, finest first. Buckets are aligned to UTC.
+ */
+public enum RollupResolution {
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    RollupResolution(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public Duration getDuration() {
+        return unit.getDuration();
+    }
+
+    public Instant truncate(Instant instant) {
+        return instant.truncatedTo(unit);
+    }
+
+    /**
+     * The finest resolution that covers {@code range} with at most {@code maxPoints} buckets, or the coarsest one
+     * if none does.
+     */
+    public static RollupResolution forRange(Duration range, int maxPoints) {
+        for (RollupResolution resolution : values()) {
+            if (range.dividedBy(resolution.getDuration()) <= maxPoints) {
+                return resolution;
+            }
+        }
+        return DAY;
+    }
+}
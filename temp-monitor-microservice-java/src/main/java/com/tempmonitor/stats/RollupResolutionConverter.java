@@ -0,0 +1,19 @@
+package com.tempmonitor.stats;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Binds the {@code resolution} request parameter case-insensitively, so {@code ?resolution=hour} works as well as
+ * {@code ?resolution=HOUR}. Unknown names still fail conversion and come back as 400.
+ */
+@Component
+public class RollupResolutionConverter implements Converter<String, RollupResolution> {
+
+    @Override
+    public RollupResolution convert(String source) {
+        return RollupResolution.valueOf(source.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,68 @@
+package com.tempmonitor.stats;
+
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.repo.ReadingRollupRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Folds every written batch into the minute, hour and day buckets of {@code reading_rollups}, inside the
+ * writing transaction. Buckets are keyed by reading time, so arrival order does not matter.
+ */
+@Component
+@RequiredArgsConstructor
+public class RollupUpdater {
+
+    private static final Comparator<BucketKey> KEY_ORDER = Comparator.comparingInt(BucketKey::thermometerId)
+            .thenComparing(BucketKey::resolution)
+            .thenComparing(BucketKey::bucketStart);
+
+    private final ReadingRollupRepository rollupRepo;
+
+    @EventListener
+    public void onReadingsStored(ReadingsStoredEvent event) {
+        // sorted so concurrent batches lock reading_rollups rows in the same order
+        Map<BucketKey, Aggregate> buckets = new TreeMap<>(KEY_ORDER);
+        for (StoredReading reading : event.readings()) {
+            for (RollupResolution resolution : RollupResolution.values()) {
+                BucketKey key = new BucketKey(reading.thermometerId(), resolution, resolution.truncate(reading.timestamp()));
+                buckets.computeIfAbsent(key, k -> new Aggregate()).add(reading.value());
+            }
+        }
+        int size = buckets.size();
+        int[] ids = new int[size];
+        String[] resolutions = new String[size];
+        long[] starts = new long[size];
+        double[] min = new double[size];
+        double[] max = new double[size];
+        double[] sum = new double[size];
+        long[] count = new long[size];
+        String[] sketches = new String[size];
+        int i = 0;
+        for (Map.Entry<BucketKey, Aggregate> entry : buckets.entrySet()) {
+            BucketKey key = entry.getKey();
+            Aggregate bucket = entry.getValue();
+            ids[i] = key.thermometerId();
+            resolutions[i] = key.resolution().name();
+            starts[i] = ChronoUnit.MICROS.between(Instant.EPOCH, key.bucketStart());
+            min[i] = bucket.min;
+            max[i] = bucket.max;
+            sum[i] = bucket.sum;
+            count[i] = bucket.count;
+            sketches[i] = bucket.sketch.toJson();
+            i++;
+        }
+        rollupRepo.accumulate(ids, resolutions, starts, min, max, sum, count, sketches);
+    }
+
+    private record BucketKey(int thermometerId, RollupResolution resolution, Instant bucketStart) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.tempmonitor.stats;
+
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.repo.ThermometerStatsBatchRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps {@code thermometer_stats} in step with {@code temperature_readings}. Runs synchronously inside the
+ * writing transaction, so the aggregates commit or roll back together with the readings.
+ */
+@Component
+@RequiredArgsConstructor
+public class RunningStatsUpdater {
+
+    private final ThermometerStatsBatchRepository statsBatchRepo;
+
+    @EventListener
+    public void onReadingsStored(ReadingsStoredEvent event) {
+        // sorted so concurrent batches lock thermometer_stats rows in the same order
+        Map<Integer, Aggregate> byThermometer = new TreeMap<>();
+        for (StoredReading reading : event.readings()) {
+            byThermometer.computeIfAbsent(reading.thermometerId(), id -> new Aggregate()).add(reading.value());
+        }
+        int size = byThermometer.size();
+        int[] ids = new int[size];
+        double[] min = new double[size];
+        double[] max = new double[size];
+        double[] sum = new double[size];
+        long[] count = new long[size];
+        String[] sketches = new String[size];
+        int i = 0;
+        for (Map.Entry<Integer, Aggregate> entry : byThermometer.entrySet()) {
+            Aggregate aggregate = entry.getValue();
+            ids[i] = entry.getKey();
+            min[i] = aggregate.min;
+            max[i] = aggregate.max;
+            sum[i] = aggregate.sum;
+            count[i] = aggregate.count;
+            sketches[i] = aggregate.sketch.toJson();
+            i++;
+        }
+        statsBatchRepo.accumulate(ids, min, max, sum, count, sketches);
+    }
+}
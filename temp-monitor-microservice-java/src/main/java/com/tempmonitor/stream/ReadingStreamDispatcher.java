@@ -0,0 +1,271 @@
+package com.tempmonitor.stream;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.cache.LatestReadingCache;
+import com.tempmonitor.dto.TemperatureReadingDto;
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.repo.ThermometerRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans committed readings out to {@code /readings/stream} subscribers. Stored batches are handed to a single
+ * dispatcher thread, so writers never wait for subscribers; it matches each reading against subscribers
+ * indexed by thermometer and location and buffers it in their {@link ReadingSubscriber}. Every subscriber has
+ * its own virtual thread blocking on the SSE connection, which makes thousands of them cheap.
+ */
+@Component
+@Slf4j
+public class ReadingStreamDispatcher implements SmartLifecycle {
+
+    private final ThermometerRepository thermometerRepo;
+    private final LatestReadingCache latestReadingCache;
+    private final TempMonitorProperties.Stream config;
+    private final BlockingQueue<List<StoredReading>> inbox;
+    private final Set<ReadingSubscriber> allReadings = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<Integer, Set<ReadingSubscriber>> byThermometer = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Set<ReadingSubscriber>> byLocation = new ConcurrentHashMap<>();
+    /** Location of every thermometer seen while location subscribers exist; thermometers do not move. */
+    private final ConcurrentMap<Integer, Integer> thermometerLocations = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Counter coalescedCounter;
+    private final Counter droppedCounter;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    public ReadingStreamDispatcher(ThermometerRepository thermometerRepo, LatestReadingCache latestReadingCache,
+                                   TempMonitorProperties properties, MeterRegistry registry) {
+        this.thermometerRepo = thermometerRepo;
+        this.latestReadingCache = latestReadingCache;
+        this.config = properties.getStream();
+        this.inbox = new ArrayBlockingQueue<>(config.getDispatchQueueCapacity());
+        Gauge.builder("tempmonitor.stream.subscribers", subscribers, AtomicInteger::get)
+                .description("Open reading streams")
+                .register(registry);
+        this.coalescedCounter = Counter.builder("tempmonitor.stream.coalesced")
+                .description("Readings replaced by a newer one because the subscriber was behind")
+                .register(registry);
+        this.droppedCounter = Counter.builder("tempmonitor.stream.dropped")
+                .description("Readings not streamed because the dispatch queue was full")
+                .register(registry);
+    }
+
+    /**
+     * Opens a stream of readings, of one thermometer, of one location, or of all when both are null. It starts
+     * with the latest known reading of each matching thermometer.
+     */
+    public SseEmitter subscribe(Integer thermometerId, Integer locationId) {
+        if (subscribers.incrementAndGet() > config.getMaxSubscribers()) {
+            subscribers.decrementAndGet();
+            throw new StreamLimitExceededException(config.getMaxSubscribers());
+        }
+        ReadingSubscriber subscriber = new ReadingSubscriber(thermometerId, locationId, config.getBufferSize());
+        SseEmitter emitter = new SseEmitter(config.getTimeout().toMillis());
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> {
+            unsubscribe(subscriber);
+            emitter.complete();
+        });
+        emitter.onError(e -> unsubscribe(subscriber));
+        register(subscriber);
+        latestReadingCache.snapshot().ifPresent(latest -> {
+            List<StoredReading> readings = latest.stream()
+                    .map(dto -> new StoredReading(dto.getId(), dto.getThermometerId(), dto.getValue(), dto.getTimestamp()))
+                    .sorted(Comparator.comparing(StoredReading::timestamp))
+                    .toList();
+            if (locationId != null) resolveLocations(readings);
+            readings.stream().filter(reading -> matches(subscriber, reading)).forEach(subscriber::offer);
+        });
+        Thread.ofVirtual().name("reading-stream").start(() -> write(subscriber, emitter));
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReadingsStored(ReadingsStoredEvent event) {
+        publish(event.readings());
+    }
+
+    /**
+     * Queues readings for the subscribers, also used for readings stored by other replicas.
+     */
+    public void publish(List<StoredReading> readings) {
+        if (subscribers.get() == 0 || readings.isEmpty()) return;
+        if (!inbox.offer(readings)) {
+            droppedCounter.increment(readings.size());
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.get();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        dispatcher = Thread.ofPlatform().daemon().name("reading-stream-dispatcher").start(this::dispatch);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+            dispatcher = null;
+        }
+        List<ReadingSubscriber> open = new ArrayList<>(allReadings);
+        byThermometer.values().forEach(open::addAll);
+        byLocation.values().forEach(open::addAll);
+        open.forEach(ReadingSubscriber::close);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void dispatch() {
+        while (running) {
+            List<StoredReading> readings;
+            try {
+                readings = inbox.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                if (!byLocation.isEmpty()) resolveLocations(readings);
+                for (StoredReading reading : readings) {
+                    deliver(allReadings, reading);
+                    deliver(byThermometer.get(reading.thermometerId()), reading);
+                    Integer locationId = thermometerLocations.get(reading.thermometerId());
+                    if (locationId != null) deliver(byLocation.get(locationId), reading);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Dispatching {} readings to streams failed", readings.size(), e);
+            }
+        }
+    }
+
+    private void deliver(Set<ReadingSubscriber> targets, StoredReading reading) {
+        if (targets == null) return;
+        for (ReadingSubscriber subscriber : targets) {
+            int replaced = subscriber.offer(reading);
+            if (replaced > 0) coalescedCounter.increment(replaced);
+        }
+    }
+
+    private void resolveLocations(List<StoredReading> readings) {
+        List<Integer> missing = readings.stream()
+                .map(StoredReading::thermometerId)
+                .distinct()
+                .filter(id -> !thermometerLocations.containsKey(id))
+                .toList();
+        if (missing.isEmpty()) return;
+        for (Object[] row : thermometerRepo.findLocationIds(missing)) {
+            thermometerLocations.put((Integer) row[0], (Integer) row[1]);
+        }
+    }
+
+    private boolean matches(ReadingSubscriber subscriber, StoredReading reading) {
+        if (subscriber.thermometerId() != null) return subscriber.thermometerId() == reading.thermometerId();
+        if (subscriber.locationId() == null) return true;
+        return subscriber.locationId().equals(thermometerLocations.get(reading.thermometerId()));
+    }
+
+    private void write(ReadingSubscriber subscriber, SseEmitter emitter) {
+        try {
+            while (!subscriber.isClosed()) {
+                List<StoredReading> readings = subscriber.take(config.getHeartbeatInterval());
+                if (subscriber.isClosed()) break;
+                if (readings.isEmpty()) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+                for (StoredReading reading : readings) {
+                    emitter.send(SseEmitter.event()
+                            .name("reading")
+                            .id(Integer.toString(reading.id()))
+                            .data(toDto(reading), MediaType.APPLICATION_JSON));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // the client went away or the emitter already completed
+            log.debug("Reading stream closed: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            unsubscribe(subscriber);
+            if (!running) emitter.complete();
+        }
+    }
+
+    private void register(ReadingSubscriber subscriber) {
+        if (subscriber.thermometerId() != null) {
+            add(byThermometer, subscriber.thermometerId(), subscriber);
+        } else if (subscriber.locationId() != null) {
+            add(byLocation, subscriber.locationId(), subscriber);
+        } else {
+            allReadings.add(subscriber);
+        }
+    }
+
+    private void unsubscribe(ReadingSubscriber subscriber) {
+        boolean removed;
+        if (subscriber.thermometerId() != null) {
+            removed = remove(byThermometer, subscriber.thermometerId(), subscriber);
+        } else if (subscriber.locationId() != null) {
+            removed = remove(byLocation, subscriber.locationId(), subscriber);
+        } else {
+            removed = allReadings.remove(subscriber);
+        }
+        subscriber.close();
+        if (removed) subscribers.decrementAndGet();
+    }
+
+    private static void add(ConcurrentMap<Integer, Set<ReadingSubscriber>> index, Integer key,
+                            ReadingSubscriber subscriber) {
+        // add inside compute, so it cannot race with remove() dropping the emptied set
+        index.compute(key, (k, set) -> {
+            Set<ReadingSubscriber> target = set != null ? set : ConcurrentHashMap.<ReadingSubscriber>newKeySet();
+            target.add(subscriber);
+            return target;
+        });
+    }
+
+    private static boolean remove(ConcurrentMap<Integer, Set<ReadingSubscriber>> index, Integer key,
+                                  ReadingSubscriber subscriber) {
+        boolean[] removed = new boolean[1];
+        index.computeIfPresent(key, (k, set) -> {
+            removed[0] = set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+        return removed[0];
+    }
+
+    private static TemperatureReadingDto toDto(StoredReading reading) {
+        TemperatureReadingDto dto = new TemperatureReadingDto();
+        dto.setId(reading.id());
+        dto.setThermometerId(reading.thermometerId());
+        dto.setValue(reading.value());
+        dto.setTimestamp(reading.timestamp());
+        return dto;
+    }
+}
@@ -0,0 +1,145 @@
+package com.tempmonitor.stream;
+
+import com.tempmonitor.ingest.StoredReading;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Readings waiting to be written to one stream. Up to {@code capacity} readings are kept in order; once a
+ * subscriber falls further behind, the buffer collapses to the newest reading per thermometer until the
+ * writer catches up, so a slow client costs at most one entry per thermometer.
+ *
+ * <p>Uses a {@link ReentrantLock} rather than {@code synchronized} because the writer waits on it from a
+ * virtual thread.
+ */
+final class ReadingSubscriber {
+
+    private final Integer thermometerId;
+    private final Integer locationId;
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private final ArrayDeque<StoredReading> queue;
+    private Map<Integer, StoredReading> latest;
+    private boolean closed;
+
+    ReadingSubscriber(Integer thermometerId, Integer locationId, int capacity) {
+        this.thermometerId = thermometerId;
+        this.locationId = locationId;
+        this.capacity = capacity;
+        this.queue = new ArrayDeque<>(Math.min(capacity, 64));
+    }
+
+    Integer thermometerId() {
+        return thermometerId;
+    }
+
+    Integer locationId() {
+        return locationId;
+    }
+
+    /**
+     * Buffers a reading and wakes the writer.
+     *
+     * @return how many buffered readings were replaced by a newer one of the same thermometer
+     */
+    int offer(StoredReading reading) {
+        lock.lock();
+        try {
+            if (closed) return 0;
+            int replaced = 0;
+            if (latest == null && queue.size() >= capacity) {
+                latest = new LinkedHashMap<>();
+                for (StoredReading queued : queue) {
+                    replaced += keepNewest(queued);
+                }
+                queue.clear();
+            }
+            if (latest != null) {
+                replaced += keepNewest(reading);
+            } else {
+                queue.add(reading);
+            }
+            ready.signal();
+            return replaced;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes everything buffered, waiting up to {@code timeout} for something to arrive.
+     *
+     * @return the readings, oldest first, or an empty list on timeout or once closed
+     */
+    List<StoredReading> take(Duration timeout) throws InterruptedException {
+        long nanos = timeout.toNanos();
+        lock.lock();
+        try {
+            while (!closed && queue.isEmpty() && latest == null) {
+                if (nanos <= 0) return List.of();
+                nanos = ready.awaitNanos(nanos);
+            }
+            if (closed) return List.of();
+            List<StoredReading> taken;
+            if (latest != null) {
+                taken = new ArrayList<>(latest.values());
+                latest = null;
+            } else {
+                taken = new ArrayList<>(queue);
+                queue.clear();
+            }
+            return taken;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            queue.clear();
+            latest = null;
+            ready.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int keepNewest(StoredReading reading) {
+        StoredReading previous = latest.get(reading.thermometerId());
+        if (previous == null) {
+            latest.put(reading.thermometerId(), reading);
+            return 0;
+        }
+        if (newer(reading, previous)) {
+            // re-insert so the map stays in arrival order of the values it holds
+            latest.remove(reading.thermometerId());
+            latest.put(reading.thermometerId(), reading);
+        }
+        return 1;
+    }
+
+    private static boolean newer(StoredReading candidate, StoredReading current) {
+        int cmp = candidate.timestamp().compareTo(current.timestamp());
+        if (cmp == 0) cmp = Integer.compare(candidate.id(), current.id());
+        return cmp > 0;
+    }
+}
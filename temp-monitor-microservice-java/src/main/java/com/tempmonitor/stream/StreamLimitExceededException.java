@@ -0,0 +1,12 @@
+package com.tempmonitor.stream;
+
+public class StreamLimitExceededException extends RuntimeException {
+
+    public StreamLimitExceededException(int maxSubscribers) {
+        this("Reading stream", maxSubscribers);
+    }
+
+    public StreamLimitExceededException(String stream, int maxSubscribers) {
+        super(stream + " is at its limit of " + maxSubscribers + " subscribers");
+    }
+}
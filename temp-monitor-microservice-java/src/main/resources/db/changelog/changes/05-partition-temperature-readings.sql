@@ -0,0 +1,47 @@
+--liquibase formatted sql
+
+--changeset stefangolubov:6 splitStatements:false
+--preconditions onFail:MARK_RAN
+--precondition-sql-check expectedResult:0 SELECT COUNT(*) FROM pg_partitioned_table WHERE partrelid = 'temperature_readings'::regclass
+-- Turn temperature_readings into a table range-partitioned by month on "timestamp". Partitions are named
+-- temperature_readings_pYYYYMM; ReadingPartitionManager creates upcoming months and drops expired ones.
+ALTER TABLE temperature_readings RENAME TO temperature_readings_old;
+ALTER TABLE temperature_readings_old RENAME CONSTRAINT temperature_readings_pkey TO temperature_readings_old_pkey;
+ALTER TABLE temperature_readings_old DROP CONSTRAINT fk_temperature_readings_thermometer_id;
+-- id was created as SERIAL, so its sequence is owned by the old table and dropped with it; continue from a fresh one
+ALTER SEQUENCE temperature_readings_id_seq RENAME TO temperature_readings_old_id_seq;
+CREATE SEQUENCE temperature_readings_id_seq AS INT;
+SELECT setval('temperature_readings_id_seq', last_value, is_called) FROM temperature_readings_old_id_seq;
+
+CREATE TABLE temperature_readings (
+    id INT NOT NULL DEFAULT nextval('temperature_readings_id_seq'),
+    thermometer_id INT NOT NULL,
+    "timestamp" TIMESTAMP WITH TIME ZONE NOT NULL,
+    "value" FLOAT8 NOT NULL,
+    CONSTRAINT temperature_readings_pkey PRIMARY KEY (id, "timestamp"),
+    CONSTRAINT fk_temperature_readings_thermometer_id FOREIGN KEY (thermometer_id) REFERENCES thermometers (id)
+) PARTITION BY RANGE ("timestamp");
+ALTER SEQUENCE temperature_readings_id_seq OWNED BY temperature_readings.id;
+
+-- catches readings outside every monthly partition
+CREATE TABLE temperature_readings_default PARTITION OF temperature_readings DEFAULT;
+
+-- from the oldest month a reading can still arrive for, so late readings do not land in the default partition
+DO $$
+DECLARE
+    month_start TIMESTAMPTZ := date_trunc('month', LEAST((SELECT MIN("timestamp") FROM temperature_readings_old), now() - interval '${ingestMaxLateness}') AT TIME ZONE 'UTC') AT TIME ZONE 'UTC';
+    last_month TIMESTAMPTZ := date_trunc('month', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC' + interval '2 months';
+BEGIN
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF temperature_readings FOR VALUES FROM (%L) TO (%L)',
+                       'temperature_readings_p' || to_char(month_start AT TIME ZONE 'UTC', 'YYYYMM'),
+                       month_start, month_start + interval '1 month');
+        month_start := month_start + interval '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO temperature_readings (id, thermometer_id, "timestamp", "value")
+SELECT id, thermometer_id, "timestamp", "value" FROM temperature_readings_old;
+DROP TABLE temperature_readings_old;
+
+CREATE INDEX idx_temperature_readings_thermometer_ts ON temperature_readings (thermometer_id, "timestamp" DESC);
@@ -0,0 +1,71 @@
+--liquibase formatted sql
+
+--changeset stefangolubov:7
+-- A thermometer has at most one reading per instant, so (thermometer_id, "timestamp") identifies a reading and
+-- a retried upload can be skipped with ON CONFLICT DO NOTHING. Duplicates already stored are removed first,
+-- keeping the oldest row, and taken out of the running stats and rollups they were counted in.
+CREATE TEMPORARY TABLE reading_duplicates (thermometer_id INT NOT NULL, "timestamp" TIMESTAMP WITH TIME ZONE NOT NULL, "value" FLOAT8 NOT NULL);
+
+WITH deleted AS (
+    DELETE FROM temperature_readings a
+    USING temperature_readings b
+    WHERE a.thermometer_id = b.thermometer_id AND a."timestamp" = b."timestamp" AND a.id > b.id
+    RETURNING a.thermometer_id, a."timestamp", a."value"
+)
+INSERT INTO reading_duplicates SELECT * FROM deleted;
+
+UPDATE reading_rollups r
+SET sum_value = r.sum_value - d.sum_value, reading_count = r.reading_count - d.n
+FROM (
+    SELECT d.thermometer_id, res.name AS resolution,
+           date_trunc(res.unit, d."timestamp" AT TIME ZONE 'UTC') AT TIME ZONE 'UTC' AS bucket_start,
+           SUM(d."value") AS sum_value, COUNT(*) AS n
+    FROM reading_duplicates d
+    CROSS JOIN (VALUES ('MINUTE', 'minute'), ('HOUR', 'hour'), ('DAY', 'day')) AS res(name, unit)
+    GROUP BY 1, 2, 3
+) AS d
+WHERE r.thermometer_id = d.thermometer_id AND r.resolution = d.resolution AND r.bucket_start = d.bucket_start;
+
+-- buckets lie within one month, so every row left of an affected bucket is still there to take min/max from
+UPDATE reading_rollups r
+SET min_value = m.min_value, max_value = m.max_value
+FROM (
+    SELECT b.thermometer_id, b.resolution, b.bucket_start, MIN(t."value") AS min_value, MAX(t."value") AS max_value
+    FROM (
+        SELECT DISTINCT d.thermometer_id, res.name AS resolution,
+               date_trunc(res.unit, d."timestamp" AT TIME ZONE 'UTC') AT TIME ZONE 'UTC' AS bucket_start,
+               CAST('1 ' || res.unit AS INTERVAL) AS width
+        FROM reading_duplicates d
+        CROSS JOIN (VALUES ('MINUTE', 'minute'), ('HOUR', 'hour'), ('DAY', 'day')) AS res(name, unit)
+    ) AS b
+    JOIN temperature_readings t ON t.thermometer_id = b.thermometer_id
+        AND t."timestamp" >= b.bucket_start AND t."timestamp" < b.bucket_start + b.width
+    GROUP BY 1, 2, 3
+) AS m
+WHERE r.thermometer_id = m.thermometer_id AND r.resolution = m.resolution AND r.bucket_start = m.bucket_start;
+
+UPDATE thermometer_stats s
+SET sum_value = s.sum_value - d.sum_value, reading_count = s.reading_count - d.n
+FROM (
+    SELECT thermometer_id, SUM("value") AS sum_value, COUNT(*) AS n
+    FROM reading_duplicates
+    GROUP BY thermometer_id
+) AS d
+WHERE s.thermometer_id = d.thermometer_id;
+
+-- the daily rollups still cover readings of partitions dropped by retention, the raw rows do not
+UPDATE thermometer_stats s
+SET min_value = m.min_value, max_value = m.max_value
+FROM (
+    SELECT thermometer_id, MIN(min_value) AS min_value, MAX(max_value) AS max_value
+    FROM reading_rollups
+    WHERE resolution = 'DAY' AND thermometer_id IN (SELECT thermometer_id FROM reading_duplicates)
+    GROUP BY thermometer_id
+) AS m
+WHERE s.thermometer_id = m.thermometer_id;
+
+DROP TABLE reading_duplicates;
+
+-- replaces the plain index on the same columns, so writes do not maintain one more index
+CREATE UNIQUE INDEX ux_temperature_readings_thermometer_ts ON temperature_readings (thermometer_id, "timestamp" DESC);
+DROP INDEX idx_temperature_readings_thermometer_ts;
@@ -0,0 +1,70 @@
+--liquibase formatted sql
+
+--changeset stefangolubov:8 splitStatements:false
+-- Quantile sketches (see QuantileSketch) with the running stats and in every rollup bucket, as JSON objects of
+-- bin counts. Sketches merge by adding the counts of equal bins, on write in the upserts and on read with
+-- reading_sketch_merge_agg.
+CREATE FUNCTION reading_sketch_merge(a jsonb, b jsonb) RETURNS jsonb
+LANGUAGE sql IMMUTABLE PARALLEL SAFE AS $$
+    SELECT COALESCE(jsonb_object_agg(bin, total), '{}'::jsonb)
+    FROM (
+        SELECT bin, SUM(n::bigint) AS total
+        FROM (
+            SELECT * FROM jsonb_each_text(COALESCE(a, '{}'::jsonb))
+            UNION ALL
+            SELECT * FROM jsonb_each_text(COALESCE(b, '{}'::jsonb))
+        ) AS bins(bin, n)
+        GROUP BY bin
+    ) AS merged
+$$;
+
+CREATE AGGREGATE reading_sketch_merge_agg(jsonb) (
+    SFUNC = reading_sketch_merge,
+    STYPE = jsonb,
+    INITCOND = '{}'
+);
+
+ALTER TABLE thermometer_stats ADD COLUMN sketch JSONB NOT NULL DEFAULT '{}';
+ALTER TABLE reading_rollups ADD COLUMN sketch JSONB NOT NULL DEFAULT '{}';
+
+-- the bin of a value as QuantileSketch computes it, for the backfill below; readings already dropped by
+-- retention stay counted in the stats but not in the sketches
+CREATE FUNCTION pg_temp.reading_sketch_bin(v FLOAT8) RETURNS TEXT
+LANGUAGE sql IMMUTABLE AS $$
+    SELECT CASE
+        WHEN abs(v) < 1e-6 THEN 'z'
+        WHEN v > 0 THEN 'p' || CEIL(LN(v) / LN(1.01::FLOAT8 / 0.99::FLOAT8))::INT
+        ELSE 'n' || CEIL(LN(-v) / LN(1.01::FLOAT8 / 0.99::FLOAT8))::INT
+    END
+$$;
+
+UPDATE thermometer_stats s
+SET sketch = b.sketch
+FROM (
+    SELECT thermometer_id, jsonb_object_agg(bin, n) AS sketch
+    FROM (
+        SELECT thermometer_id, pg_temp.reading_sketch_bin("value") AS bin, COUNT(*) AS n
+        FROM temperature_readings
+        GROUP BY 1, 2
+    ) AS bins
+    GROUP BY thermometer_id
+) AS b
+WHERE s.thermometer_id = b.thermometer_id;
+
+UPDATE reading_rollups r
+SET sketch = b.sketch
+FROM (
+    SELECT thermometer_id, resolution, bucket_start, jsonb_object_agg(bin, n) AS sketch
+    FROM (
+        SELECT t.thermometer_id, res.name AS resolution,
+               date_trunc(res.unit, t."timestamp" AT TIME ZONE 'UTC') AT TIME ZONE 'UTC' AS bucket_start,
+               pg_temp.reading_sketch_bin(t."value") AS bin, COUNT(*) AS n
+        FROM temperature_readings t
+        CROSS JOIN (VALUES ('MINUTE', 'minute'), ('HOUR', 'hour'), ('DAY', 'day')) AS res(name, unit)
+        GROUP BY 1, 2, 3, 4
+    ) AS bins
+    GROUP BY 1, 2, 3
+) AS b
+WHERE r.thermometer_id = b.thermometer_id AND r.resolution = b.resolution AND r.bucket_start = b.bucket_start;
+
+DROP FUNCTION pg_temp.reading_sketch_bin(FLOAT8);
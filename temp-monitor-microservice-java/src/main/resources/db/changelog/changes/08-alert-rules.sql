@@ -0,0 +1,20 @@
+--liquibase formatted sql
+
+--changeset stefangolubov:9
+-- Threshold rules evaluated on every stored reading, see AlertRuleIndex. A rule applies to one thermometer or to
+-- every thermometer of one location. ABOVE and BELOW compare the reading with the threshold, RATE_OF_CHANGE the
+-- change since the previous reading in degrees per minute; a firing alert resolves once it is back past the
+-- threshold by the hysteresis.
+CREATE TABLE alert_rules (
+    id SERIAL PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    thermometer_id INT REFERENCES thermometers (id) ON DELETE CASCADE,
+    location_id INT REFERENCES locations (id) ON DELETE CASCADE,
+    kind VARCHAR(16) NOT NULL CHECK (kind IN ('ABOVE', 'BELOW', 'RATE_OF_CHANGE')),
+    threshold FLOAT8 NOT NULL,
+    hysteresis FLOAT8 NOT NULL DEFAULT 0 CHECK (hysteresis >= 0),
+    enabled BOOLEAN NOT NULL DEFAULT TRUE,
+    CONSTRAINT ck_alert_rules_scope CHECK ((thermometer_id IS NULL) <> (location_id IS NULL))
+);
+CREATE INDEX idx_alert_rules_thermometer_id ON alert_rules (thermometer_id);
+CREATE INDEX idx_alert_rules_location_id ON alert_rules (location_id);
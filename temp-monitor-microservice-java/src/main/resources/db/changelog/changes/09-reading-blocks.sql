@@ -0,0 +1,26 @@
+--liquibase formatted sql
+
+--changeset stefangolubov:10
+-- Cold tier of temperature_readings: ReadingArchiver moves whole months of readings into one compressed block
+-- per thermometer and UTC day (see ReadingBlockCodec) and then drops the month's partition. Readings before
+-- reading_archive.archived_before are read from blocks only; blocks at or after it belong to a month still
+-- being archived, whose rows are still in temperature_readings, and are ignored. The newest reading of a block
+-- is kept in plain columns so the latest readings need no decoding.
+CREATE TABLE reading_blocks (
+    thermometer_id INT NOT NULL REFERENCES thermometers (id),
+    block_start TIMESTAMP WITH TIME ZONE NOT NULL,
+    reading_count INT NOT NULL,
+    last_id INT NOT NULL,
+    last_value FLOAT8 NOT NULL,
+    last_timestamp TIMESTAMP WITH TIME ZONE NOT NULL,
+    data BYTEA NOT NULL,
+    CONSTRAINT reading_blocks_pkey PRIMARY KEY (thermometer_id, block_start)
+);
+-- the blocks are compressed already, so TOAST should not try again
+ALTER TABLE reading_blocks ALTER COLUMN data SET STORAGE EXTERNAL;
+
+CREATE TABLE reading_archive (
+    id BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    archived_before TIMESTAMP WITH TIME ZONE NOT NULL
+);
+INSERT INTO reading_archive (archived_before) VALUES ('epoch');
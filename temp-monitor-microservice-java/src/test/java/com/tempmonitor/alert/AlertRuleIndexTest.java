@@ -0,0 +1,117 @@
+package com.tempmonitor.alert;
+
+import com.tempmonitor.dto.AlertDto;
+import com.tempmonitor.entity.AlertRule;
+import com.tempmonitor.ingest.StoredReading;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AlertRuleIndexTest {
+
+    private static final Instant T0 = Instant.parse("2025-01-01T00:00:00Z");
+
+    @Test
+    void above_firesOnceAndResolvesOnlyPastTheHysteresis() {
+        AlertRuleIndex index = compile(List.of(rule(1, 7, null, AlertKind.ABOVE, 30, 2)), Map.of());
+
+        List<AlertDto> changes = evaluate(index, reading(7, 25, 0), reading(7, 31, 60), reading(7, 35, 120),
+                reading(7, 29, 180), reading(7, 27.5, 240));
+
+        assertThat(changes).extracting(AlertDto::getState).containsExactly(AlertState.FIRING, AlertState.RESOLVED);
+        assertThat(changes.get(0).getValue()).isEqualTo(31);
+        assertThat(changes.get(0).getTimestamp()).isEqualTo(T0.plusSeconds(60));
+        assertThat(changes.get(1).getValue()).isEqualTo(27.5);
+    }
+
+    @Test
+    void below_firesUnderTheThreshold() {
+        AlertRuleIndex index = compile(List.of(rule(1, 7, null, AlertKind.BELOW, 5, 1)), Map.of());
+
+        List<AlertDto> changes = evaluate(index, reading(7, 4, 0), reading(7, 5.5, 60), reading(7, 6, 120));
+
+        assertThat(changes).extracting(AlertDto::getState).containsExactly(AlertState.FIRING, AlertState.RESOLVED);
+    }
+
+    @Test
+    void locationRule_appliesToEveryThermometerOfTheLocation() {
+        AlertRuleIndex index = compile(List.of(rule(1, null, 3, AlertKind.ABOVE, 30, 0)), Map.of(3, List.of(7, 8)));
+
+        List<AlertDto> changes = evaluate(index, reading(7, 31, 0), reading(8, 32, 0), reading(9, 40, 0));
+
+        assertThat(changes).extracting(AlertDto::getThermometerId).containsExactly(7, 8);
+        assertThat(changes).allMatch(alert -> alert.getLocationId() == 3);
+        assertThat(index.firing()).hasSize(2);
+    }
+
+    @Test
+    void rateOfChange_isMeasuredInDegreesPerMinuteOverAtLeastASecond() {
+        AlertRuleIndex index = compile(List.of(rule(1, 7, null, AlertKind.RATE_OF_CHANGE, 2, 0.5)), Map.of());
+
+        List<AlertDto> changes = new ArrayList<>();
+        index.evaluate(List.of(reading(7, 20, 0), reading(7, 21, 60)), changes);
+        assertThat(changes).isEmpty();
+        // 0.5 degrees in 10 seconds is 3 degrees per minute; one microsecond later is too close to measure
+        index.evaluate(List.of(reading(7, 21.5, 70), new StoredReading(0, 7, 40, T0.plusSeconds(70).plusNanos(1000))),
+                changes);
+        assertThat(changes).singleElement().satisfies(alert -> {
+            assertThat(alert.getState()).isEqualTo(AlertState.FIRING);
+            assertThat(alert.getValue()).isEqualTo(3.0);
+        });
+    }
+
+    @Test
+    void lateReading_isSkipped() {
+        AlertRuleIndex index = compile(List.of(rule(1, 7, null, AlertKind.ABOVE, 30, 0)), Map.of());
+
+        List<AlertDto> changes = evaluate(index, reading(7, 20, 60), reading(7, 50, 0));
+
+        assertThat(changes).isEmpty();
+    }
+
+    @Test
+    void compile_keepsFiringAlertsAndResolvesThoseOfRemovedRules() {
+        AlertRule kept = rule(1, 7, null, AlertKind.ABOVE, 30, 0);
+        AlertRule removed = rule(2, 7, null, AlertKind.ABOVE, 25, 0);
+        AlertRuleIndex old = compile(List.of(kept, removed), Map.of());
+        evaluate(old, reading(7, 35, 0));
+
+        List<AlertDto> resolved = new ArrayList<>();
+        AlertRuleIndex index = AlertRuleIndex.compile(List.of(kept), Map.of(), old, resolved);
+
+        assertThat(resolved).singleElement().satisfies(alert -> {
+            assertThat(alert.getRuleId()).isEqualTo(2);
+            assertThat(alert.getState()).isEqualTo(AlertState.RESOLVED);
+        });
+        assertThat(index.firing()).extracting(AlertDto::getRuleId).containsExactly(1);
+        assertThat(evaluate(index, reading(7, 36, 60))).isEmpty();
+        // readings still evaluated through the old index reach the new state
+        assertThat(evaluate(old, reading(7, 20, 120))).extracting(AlertDto::getRuleId).containsExactly(1);
+        assertThat(index.firing()).isEmpty();
+    }
+
+    private static AlertRuleIndex compile(List<AlertRule> rules, Map<Integer, List<Integer>> locationThermometers) {
+        return AlertRuleIndex.compile(rules, locationThermometers, AlertRuleIndex.empty(), new ArrayList<>());
+    }
+
+    private static List<AlertDto> evaluate(AlertRuleIndex index, StoredReading... readings) {
+        List<AlertDto> changes = new ArrayList<>();
+        index.evaluate(List.of(readings), changes);
+        return changes;
+    }
+
+    private static AlertRule rule(int id, Integer thermometerId, Integer locationId, AlertKind kind,
+                                  double threshold, double hysteresis) {
+        return AlertRule.builder().id(id).name("rule " + id).thermometerId(thermometerId).locationId(locationId)
+                .kind(kind).threshold(threshold).hysteresis(hysteresis).enabled(true).build();
+    }
+
+    private static StoredReading reading(int thermometerId, double value, long second) {
+        return new StoredReading(0, thermometerId, value, T0.plusSeconds(second));
+    }
+}
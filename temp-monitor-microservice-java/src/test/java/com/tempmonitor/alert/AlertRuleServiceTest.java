@@ -0,0 +1,99 @@
+package com.tempmonitor.alert;
+
+import com.tempmonitor.dto.AlertRuleDto;
+import com.tempmonitor.entity.AlertRule;
+import com.tempmonitor.repo.AlertRuleRepository;
+import com.tempmonitor.repo.LocationRepository;
+import com.tempmonitor.repo.LocationRow;
+import com.tempmonitor.repo.ThermometerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AlertRuleServiceTest {
+
+    private AlertRuleRepository ruleRepo;
+    private ThermometerRepository thermometerRepo;
+    private LocationRepository locationRepo;
+    private ApplicationEventPublisher eventPublisher;
+    private AlertRuleService service;
+
+    @BeforeEach
+    void setup() {
+        ruleRepo = mock(AlertRuleRepository.class);
+        thermometerRepo = mock(ThermometerRepository.class);
+        locationRepo = mock(LocationRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        service = new AlertRuleService(ruleRepo, thermometerRepo, locationRepo, eventPublisher);
+        when(ruleRepo.save(any())).thenAnswer(invocation -> {
+            AlertRule rule = invocation.getArgument(0);
+            rule.setId(5);
+            return rule;
+        });
+    }
+
+    @Test
+    void createRule_forLocation_savesAndPublishesChange() {
+        when(locationRepo.findRowById(2)).thenReturn(Optional.of(new LocationRow(2, "Cold room")));
+
+        AlertRuleDto created = service.createRule(dto(null, 2, AlertKind.BELOW, 2.0));
+
+        assertThat(created.getId()).isEqualTo(5);
+        assertThat(created.getLocationId()).isEqualTo(2);
+        assertThat(created.getHysteresis()).isZero();
+        assertThat(created.getEnabled()).isTrue();
+        verify(eventPublisher).publishEvent(new AlertRulesChangedEvent(5));
+    }
+
+    @Test
+    void createRule_withThermometerAndLocation_isRejected() {
+        assertThatThrownBy(() -> service.createRule(dto(3, 2, AlertKind.ABOVE, 30.0)))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(ruleRepo, eventPublisher);
+    }
+
+    @Test
+    void createRule_forMissingThermometer_isRejected() {
+        when(thermometerRepo.findRowById(3)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.createRule(dto(3, null, AlertKind.ABOVE, 30.0)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Thermometer not found");
+    }
+
+    @Test
+    void createRule_rateOfChangeWithoutPositiveThreshold_isRejected() {
+        when(locationRepo.findRowById(2)).thenReturn(Optional.of(new LocationRow(2, "Cold room")));
+
+        assertThatThrownBy(() -> service.createRule(dto(null, 2, AlertKind.RATE_OF_CHANGE, 0.0)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void deleteRule_missing_throwsNotFound() {
+        when(ruleRepo.findById(9)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.deleteRule(9)).isInstanceOf(NoSuchElementException.class);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    private static AlertRuleDto dto(Integer thermometerId, Integer locationId, AlertKind kind, double threshold) {
+        AlertRuleDto dto = new AlertRuleDto();
+        dto.setName("rule");
+        dto.setThermometerId(thermometerId);
+        dto.setLocationId(locationId);
+        dto.setKind(kind);
+        dto.setThreshold(threshold);
+        dto.setHysteresis(null);
+        dto.setEnabled(null);
+        return dto;
+    }
+}
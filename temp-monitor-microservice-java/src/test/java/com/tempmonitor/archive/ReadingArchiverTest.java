@@ -0,0 +1,131 @@
+package com.tempmonitor.archive;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.partition.ReadingPartitionManager;
+import com.tempmonitor.repo.ReadingBlockRepository;
+import com.tempmonitor.repo.ReadingBlockRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class ReadingArchiverTest {
+
+    // 2026-08-01T00:00:00Z
+    private static final long AUGUST_MICROS = 1_785_542_400_000_000L;
+
+    private final List<ReadingBlockRow> saved = new ArrayList<>();
+    private JdbcTemplate jdbcTemplate;
+    private ReadingBlockRepository blockRepo;
+    private ReadingArchiver archiver;
+
+    @BeforeEach
+    void setup() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        blockRepo = mock(ReadingBlockRepository.class);
+        ReadingPartitionManager partitionManager = mock(ReadingPartitionManager.class);
+        when(blockRepo.archivedBefore()).thenReturn(Instant.EPOCH);
+        // the list is reused between writes
+        doAnswer(inv -> saved.addAll(inv.getArgument(0))).when(blockRepo).saveAll(anyList());
+        when(partitionManager.partitionMonths()).thenReturn(List.of(YearMonth.of(2026, 8)));
+        when(jdbcTemplate.queryForList("SELECT id FROM thermometers ORDER BY id", Integer.class)).thenReturn(List.of(1));
+        when(jdbcTemplate.queryForObject(eq("SELECT pg_try_advisory_xact_lock(?)"), eq(Boolean.class), any()))
+                .thenReturn(true);
+        // two readings on August 1st, one on the 2nd
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            handler.processRow(row(1, 10, AUGUST_MICROS + 60_000_000L, 20.5));
+            handler.processRow(row(1, 11, AUGUST_MICROS + 120_000_000L, 20.6));
+            handler.processRow(row(1, 12, AUGUST_MICROS + ReadingArchiver.DAY_MICROS, 21.0));
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        when(jdbcTemplate.queryForObject(startsWith("SELECT COUNT(*)"), eq(Long.class), any(), any())).thenReturn(3L);
+
+        TempMonitorProperties properties = new TempMonitorProperties();
+        properties.getArchive().setEnabled(true);
+        archiver = new ReadingArchiver(jdbcTemplate, mock(PlatformTransactionManager.class), blockRepo,
+                partitionManager, properties);
+    }
+
+    @Test
+    void archive_compressesDayBlocksThenMovesTheBoundaryAndDropsThePartition() {
+        when(jdbcTemplate.queryForObject(startsWith("SELECT COALESCE(SUM"), eq(Long.class), any(), any())).thenReturn(3L);
+
+        archiver.archive();
+
+        assertThat(saved).extracting(ReadingBlockRow::blockStart, ReadingBlockRow::readingCount, ReadingBlockRow::lastId)
+                .containsExactly(tuple(Instant.parse("2026-08-01T00:00:00Z"), 2, 11),
+                        tuple(Instant.parse("2026-08-02T00:00:00Z"), 1, 12));
+        ReadingBlock first = ReadingBlockCodec.decode(saved.getFirst().data());
+        assertThat(first.value(1)).isEqualTo(20.6);
+        assertThat(saved.getFirst().lastTimestamp()).isEqualTo(Instant.parse("2026-08-01T00:02:00Z"));
+        verify(blockRepo).setArchivedBefore(Instant.parse("2026-09-01T00:00:00Z"));
+        verify(jdbcTemplate).execute("DROP TABLE IF EXISTS temperature_readings_p202608");
+        verify(jdbcTemplate).update(startsWith("DELETE FROM temperature_readings"), any(OffsetDateTime.class),
+                any(OffsetDateTime.class));
+    }
+
+    @Test
+    void archive_readingsMissingFromBlocks_keepsTheMonth() {
+        when(jdbcTemplate.queryForObject(startsWith("SELECT COALESCE(SUM"), eq(Long.class), any(), any())).thenReturn(2L);
+
+        archiver.archive();
+
+        assertThat(saved).hasSize(2);
+        verify(blockRepo, never()).setArchivedBefore(any());
+        verify(jdbcTemplate, never()).execute(anyString());
+        verify(jdbcTemplate, never()).update(anyString(), any(OffsetDateTime.class), any(OffsetDateTime.class));
+    }
+
+    @Test
+    void archive_lockedByAnotherReplica_writesNothing() {
+        when(jdbcTemplate.queryForObject(eq("SELECT pg_try_advisory_xact_lock(?)"), eq(Boolean.class), any()))
+                .thenReturn(false);
+
+        archiver.archive();
+
+        assertThat(saved).isEmpty();
+        verify(blockRepo, never()).setArchivedBefore(any());
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void monthsToArchive_completeMonthsAfterTheBoundaryOldestFirst() {
+        List<YearMonth> candidates = List.of(YearMonth.of(2026, 9), YearMonth.of(2026, 7), YearMonth.of(2026, 8),
+                YearMonth.of(2026, 6), YearMonth.of(2026, 8), YearMonth.of(2026, 10));
+
+        assertThat(ReadingArchiver.monthsToArchive(candidates, Instant.parse("2026-07-01T00:00:00Z"),
+                Instant.parse("2026-10-04T03:45:00Z")))
+                .containsExactly(YearMonth.of(2026, 7), YearMonth.of(2026, 8), YearMonth.of(2026, 9));
+        // September ends after the cutoff
+        assertThat(ReadingArchiver.monthsToArchive(candidates, Instant.EPOCH, Instant.parse("2026-09-30T23:59:59Z")))
+                .containsExactly(YearMonth.of(2026, 6), YearMonth.of(2026, 7), YearMonth.of(2026, 8));
+    }
+
+    private static ResultSet row(int thermometerId, int id, long epochMicros, double value) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getInt(1)).thenReturn(thermometerId);
+        when(rs.getInt(2)).thenReturn(id);
+        when(rs.getLong(3)).thenReturn(epochMicros);
+        when(rs.getDouble(4)).thenReturn(value);
+        return rs;
+    }
+}
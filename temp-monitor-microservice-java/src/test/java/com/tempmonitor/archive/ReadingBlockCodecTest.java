@@ -0,0 +1,101 @@
+package com.tempmonitor.archive;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReadingBlockCodecTest {
+
+    // 2026-10-01T00:00:00Z
+    private static final long DAY_START = 1_790_812_800_000_000L;
+
+    @Test
+    void roundTrip_decimalValues_compressesOverTenTimes() {
+        Random random = new Random(42);
+        ReadingBlock block = new ReadingBlock();
+        double value = 21.5;
+        for (int i = 0; i < 1_440; i++) {
+            // a reading a minute with a few milliseconds of jitter
+            long micros = DAY_START + i * 60_000_000L + random.nextInt(5_000);
+            value = Math.round((value + (random.nextInt(5) - 2) * 0.1) * 10) / 10.0;
+            block.add(1_000 + i * 296, micros, value);
+        }
+
+        byte[] data = ReadingBlockCodec.encode(block);
+
+        assertThat(ReadingBlockCodec.decimals(block)).isEqualTo(1);
+        assertSame(block, ReadingBlockCodec.decode(data));
+        // a row with its index entries takes about 150 bytes
+        assertThat(data.length).isLessThan(block.size() * 4);
+    }
+
+    @Test
+    void roundTrip_arbitraryDoubles_useXor() {
+        Random random = new Random(7);
+        ReadingBlock block = new ReadingBlock(1);
+        double[] values = {0.0, -0.0, Double.NaN, Double.MIN_VALUE, -Double.MAX_VALUE, Double.POSITIVE_INFINITY,
+                1e300, 20.123456789, 20.123456789};
+        for (int i = 0; i < values.length; i++) {
+            block.add(i, DAY_START + i * 1_000_000L, values[i]);
+        }
+        for (int i = 0; i < 500; i++) {
+            block.add(values.length + i, DAY_START + (values.length + i) * 1_000_000L, random.nextGaussian() * 30);
+        }
+
+        assertThat(ReadingBlockCodec.decimals(block)).isEqualTo(-1);
+        assertSame(block, ReadingBlockCodec.decode(ReadingBlockCodec.encode(block)));
+    }
+
+    @Test
+    void roundTrip_largeJumpsInTimestampsAndIds() {
+        ReadingBlock block = new ReadingBlock();
+        block.add(Integer.MIN_VALUE, Long.MIN_VALUE / 2, -40.25);
+        block.add(Integer.MAX_VALUE, Long.MAX_VALUE / 2, 125.0);
+        block.add(Integer.MAX_VALUE, Long.MAX_VALUE / 2, 125.0);
+        block.add(0, Long.MAX_VALUE / 2 + 1, 0.5);
+
+        assertSame(block, ReadingBlockCodec.decode(ReadingBlockCodec.encode(block)));
+    }
+
+    @Test
+    void decode_rejectsUnknownVersionAndTruncatedData() {
+        ReadingBlock block = new ReadingBlock();
+        block.add(1, DAY_START, 20.5);
+        block.add(2, DAY_START + 1_000_000, 20.6);
+        byte[] data = ReadingBlockCodec.encode(block);
+
+        byte[] unknownVersion = data.clone();
+        unknownVersion[0] = 99;
+        assertThatThrownBy(() -> ReadingBlockCodec.decode(unknownVersion)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ReadingBlockCodec.decode(Arrays.copyOf(data, 10)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void indexAfter_findsTheFirstReadingAfterTheCursor() {
+        ReadingBlock block = new ReadingBlock();
+        block.add(1, 10, 20.0);
+        block.add(2, 20, 20.0);
+        block.add(3, 20, 20.0);
+        block.add(4, 30, 20.0);
+
+        assertThat(block.indexAfter(0, Integer.MIN_VALUE)).isZero();
+        assertThat(block.indexAfter(10, Integer.MIN_VALUE)).isZero();
+        assertThat(block.indexAfter(20, 2)).isEqualTo(2);
+        assertThat(block.indexAfter(25, Integer.MAX_VALUE)).isEqualTo(3);
+        assertThat(block.indexAfter(30, 4)).isEqualTo(4);
+    }
+
+    private static void assertSame(ReadingBlock expected, ReadingBlock actual) {
+        assertThat(actual.size()).isEqualTo(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.id(i)).isEqualTo(expected.id(i));
+            assertThat(actual.epochMicros(i)).isEqualTo(expected.epochMicros(i));
+            assertThat(Double.doubleToRawLongBits(actual.value(i))).isEqualTo(Double.doubleToRawLongBits(expected.value(i)));
+        }
+    }
+}
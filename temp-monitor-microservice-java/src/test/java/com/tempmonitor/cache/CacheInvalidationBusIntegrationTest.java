@@ -0,0 +1,156 @@
+package com.tempmonitor.cache;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.stream.ReadingStreamDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.annotation.DirtiesContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * The application's bus, connected through the context's {@link JdbcConnectionDetails}, and a second bus on the
+ * same database stand in for two replicas.
+ */
+@SpringBootTest(properties = {"tempmonitor.cache-bus.enabled=true", "tempmonitor.cache-bus.poll-interval=20ms"})
+@Testcontainers
+// every test starts with buses that have not reloaded or asked for a reload yet
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class CacheInvalidationBusIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16.2")
+            .withDatabaseName("testdb")
+            .withUsername("testuser")
+            .withPassword("testpass");
+
+    @MockBean
+    private MetadataCacheInvalidator metadata;
+
+    @MockBean
+    private LatestReadingCache latest;
+
+    @MockBean
+    private RecentReadingsStore recent;
+
+    @MockBean
+    private ReadingStreamDispatcher stream;
+
+    @Autowired
+    private JdbcConnectionDetails connectionDetails;
+
+    private Replica other;
+
+    @BeforeEach
+    void setup() {
+        // warmed on startup
+        clearInvocations(metadata, latest, recent, stream);
+        other = new Replica(connectionDetails);
+    }
+
+    @AfterEach
+    void teardown() {
+        other.bus.stop();
+    }
+
+    @Test
+    void metadataChanges_evictOnOtherReplicasOnly() {
+        other.bus.onMetadataChanged(new MetadataChangedEvent(4, 9));
+
+        verify(metadata, timeout(5_000)).evict(new MetadataChangedEvent(4, null));
+        verify(metadata, timeout(5_000)).evict(new MetadataChangedEvent(null, 9));
+        verify(other.metadata, after(500).never()).evict(any());
+    }
+
+    @Test
+    void storedReadings_areAppliedOnOtherReplicas() {
+        List<StoredReading> readings = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            readings.add(new StoredReading(i + 1, i % 10, 20.5, Instant.parse("2025-03-01T12:00:00Z").plusSeconds(i)));
+        }
+        int payloads = new CacheInvalidation(System.currentTimeMillis(), false, List.of(), List.of(), readings)
+                .encode(CacheInvalidationBus.MAX_PAYLOAD_BYTES).size();
+        other.bus.onReadingsStored(new ReadingsStoredEvent(readings));
+
+        ArgumentCaptor<ReadingsStoredEvent> captor = ArgumentCaptor.forClass(ReadingsStoredEvent.class);
+        verify(recent, timeout(5_000).times(payloads)).onReadingsStored(captor.capture());
+        List<StoredReading> received = captor.getAllValues().stream().flatMap(e -> e.readings().stream()).toList();
+        assertThat(payloads).isGreaterThan(1);
+        assertThat(received).isEqualTo(readings);
+        verify(latest, times(payloads)).onReadingsStored(any());
+        verify(stream, times(payloads)).publish(any());
+        verify(other.recent, never()).onReadingsStored(any());
+    }
+
+    @Test
+    void overflow_makesOtherReplicasReload() {
+        other.config.getCacheBus().setMaxPendingReadings(1);
+        StoredReading reading = new StoredReading(1, 1, 20.0, Instant.now());
+        other.bus.onReadingsStored(new ReadingsStoredEvent(List.of(reading, reading)));
+
+        verify(metadata, timeout(5_000)).clear();
+        verify(latest, timeout(5_000)).warm();
+        verify(recent, timeout(5_000)).warm();
+        verify(recent, never()).onReadingsStored(any());
+    }
+
+    @Test
+    void repeatedOverflow_isOneReloadPerInterval() {
+        other.config.getCacheBus().setMaxPendingReadings(1);
+        StoredReading reading = new StoredReading(1, 1, 20.0, Instant.now());
+        other.bus.onReadingsStored(new ReadingsStoredEvent(List.of(reading, reading)));
+        verify(recent, timeout(5_000)).warm();
+
+        for (int i = 0; i < 10; i++) {
+            other.bus.onReadingsStored(new ReadingsStoredEvent(List.of(reading, reading)));
+            sleep(Duration.ofMillis(50));
+        }
+
+        verify(recent, after(1_000).times(1)).warm();
+        verify(recent, never()).onReadingsStored(any());
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Replica {
+        final TempMonitorProperties config = new TempMonitorProperties();
+        final MetadataCacheInvalidator metadata = mock(MetadataCacheInvalidator.class);
+        final LatestReadingCache latest = mock(LatestReadingCache.class);
+        final RecentReadingsStore recent = mock(RecentReadingsStore.class);
+        final ReadingStreamDispatcher stream = mock(ReadingStreamDispatcher.class);
+        final CacheInvalidationBus bus;
+
+        Replica(JdbcConnectionDetails connectionDetails) {
+            config.getCacheBus().setPollInterval(Duration.ofMillis(20));
+            bus = new CacheInvalidationBus(connectionDetails, config, metadata, latest, recent, stream,
+                    new SimpleMeterRegistry());
+            bus.start();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.tempmonitor.cache;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.stream.ReadingStreamDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+class CacheInvalidationBusTest {
+
+    private final TempMonitorProperties properties = new TempMonitorProperties();
+    private final MetadataCacheInvalidator metadata = mock(MetadataCacheInvalidator.class);
+    private final LatestReadingCache latest = mock(LatestReadingCache.class);
+    private final RecentReadingsStore recent = mock(RecentReadingsStore.class);
+
+    @Test
+    void resyncRequests_withinTheInterval_reloadOnce() {
+        properties.getCacheBus().setMinResyncInterval(Duration.ofHours(1));
+        CacheInvalidationBus bus = bus();
+
+        for (int i = 0; i < 5; i++) {
+            bus.apply(resyncRequest());
+        }
+
+        verify(metadata, times(1)).clear();
+        verify(latest, times(1)).warm();
+        verify(recent, times(1)).warm();
+    }
+
+    @Test
+    void resyncRequests_apartByTheInterval_eachReload() {
+        properties.getCacheBus().setMinResyncInterval(Duration.ZERO);
+        CacheInvalidationBus bus = bus();
+
+        bus.apply(resyncRequest());
+        bus.apply(resyncRequest());
+
+        verify(latest, times(2)).warm();
+        verify(recent, times(2)).warm();
+    }
+
+    private CacheInvalidationBus bus() {
+        return new CacheInvalidationBus(mock(JdbcConnectionDetails.class), properties, metadata, latest, recent,
+                mock(ReadingStreamDispatcher.class), new SimpleMeterRegistry());
+    }
+
+    private static CacheInvalidation resyncRequest() {
+        return new CacheInvalidation(System.currentTimeMillis(), true, List.of(), List.of(), List.of());
+    }
+}
@@ -0,0 +1,63 @@
+package com.tempmonitor.cache;
+
+import com.tempmonitor.ingest.StoredReading;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheInvalidationTest {
+
+    private static final Instant T0 = Instant.parse("2025-03-01T12:00:00.123456Z");
+
+    @Test
+    void encode_roundTrips() {
+        CacheInvalidation message = new CacheInvalidation(1_000L, false, List.of(1, 2), List.of(7),
+                List.of(new StoredReading(11, 7, 21.5, T0), new StoredReading(12, 7, -3.25, T0.plusSeconds(1))));
+
+        List<String> payloads = message.encode(CacheInvalidationBus.MAX_PAYLOAD_BYTES);
+
+        assertThat(payloads).hasSize(1);
+        assertThat(CacheInvalidation.decode(payloads.getFirst())).isEqualTo(message);
+    }
+
+    @Test
+    void encode_splitsLargeMessagesBelowTheLimit() {
+        List<Integer> thermometers = new ArrayList<>();
+        List<StoredReading> readings = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            thermometers.add(i);
+            readings.add(new StoredReading(100_000 + i, i, 20.0 + i / 1000.0, T0.plusMillis(i)));
+        }
+        CacheInvalidation message = new CacheInvalidation(1_000L, false, List.of(3), thermometers, readings);
+
+        List<String> payloads = message.encode(1_000);
+
+        assertThat(payloads).hasSizeGreaterThan(1)
+                .allSatisfy(p -> assertThat(p.getBytes(StandardCharsets.UTF_8).length).isLessThanOrEqualTo(1_000));
+        List<Integer> decodedThermometers = new ArrayList<>();
+        List<StoredReading> decodedReadings = new ArrayList<>();
+        for (String payload : payloads) {
+            CacheInvalidation part = CacheInvalidation.decode(payload);
+            assertThat(part.sentAtMillis()).isEqualTo(1_000L);
+            decodedThermometers.addAll(part.thermometerIds());
+            decodedReadings.addAll(part.readings());
+        }
+        assertThat(decodedThermometers).isEqualTo(thermometers);
+        assertThat(decodedReadings).isEqualTo(readings);
+    }
+
+    @Test
+    void encode_emptyMessageSendsNothing_resyncStillSent() {
+        assertThat(new CacheInvalidation(1L, false, List.of(), List.of(), List.of()).encode(100)).isEmpty();
+
+        List<String> payloads = new CacheInvalidation(1L, true, List.of(), List.of(), List.of()).encode(100);
+
+        assertThat(payloads).hasSize(1);
+        assertThat(CacheInvalidation.decode(payloads.getFirst()).resync()).isTrue();
+    }
+}
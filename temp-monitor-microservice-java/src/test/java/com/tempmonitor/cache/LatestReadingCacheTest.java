@@ -0,0 +1,58 @@
+package com.tempmonitor.cache;
+
+import com.tempmonitor.dto.TemperatureReadingDto;
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.repo.TemperatureReadingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LatestReadingCacheTest {
+
+    private static final Instant T0 = Instant.parse("2025-01-01T00:00:00Z");
+
+    private TemperatureReadingRepository readingRepo;
+    private LatestReadingCache cache;
+
+    @BeforeEach
+    void setup() {
+        readingRepo = mock(TemperatureReadingRepository.class);
+        cache = new LatestReadingCache(readingRepo);
+    }
+
+    @Test
+    void snapshot_emptyUntilWarmed() {
+        assertThat(cache.snapshot()).isEmpty();
+        when(readingRepo.findLatestRowsForAllThermometers())
+                .thenReturn(List.<Object[]>of(new Object[]{7, 1, 20.5, T0.toEpochMilli() * 1000}));
+        cache.warm();
+        List<TemperatureReadingDto> latest = cache.snapshot().orElseThrow();
+        assertThat(latest).hasSize(1);
+        assertThat(latest.getFirst().getId()).isEqualTo(7);
+        assertThat(latest.getFirst().getTimestamp()).isEqualTo(T0);
+    }
+
+    @Test
+    void onReadingsStored_keepsNewestPerThermometer() {
+        cache.warm();
+        cache.onReadingsStored(new ReadingsStoredEvent(List.of(
+                new StoredReading(1, 1, 10.0, T0.plusSeconds(10)),
+                new StoredReading(2, 1, 11.0, T0),
+                new StoredReading(3, 2, 12.0, T0))));
+        cache.onReadingsStored(new ReadingsStoredEvent(List.of(new StoredReading(4, 2, 13.0, T0.plusSeconds(1)))));
+
+        assertThat(cache.snapshot().orElseThrow())
+                .extracting(TemperatureReadingDto::getThermometerId, TemperatureReadingDto::getValue)
+                .containsExactlyInAnyOrder(
+                        tuple(1, 10.0),
+                        tuple(2, 13.0));
+    }
+}
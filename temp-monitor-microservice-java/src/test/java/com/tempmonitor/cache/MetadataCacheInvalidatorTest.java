@@ -0,0 +1,46 @@
+package com.tempmonitor.cache;
+
+import com.tempmonitor.repo.LocationRow;
+import com.tempmonitor.repo.ThermometerRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetadataCacheInvalidatorTest {
+
+    private CaffeineCacheManager cacheManager;
+    private MetadataCacheInvalidator invalidator;
+
+    @BeforeEach
+    void setup() {
+        cacheManager = new CaffeineCacheManager(
+                MetadataCaches.LOCATIONS, MetadataCaches.THERMOMETERS, MetadataCaches.LOCATION_THERMOMETERS);
+        invalidator = new MetadataCacheInvalidator(cacheManager);
+        cacheManager.getCache(MetadataCaches.LOCATIONS).put(1, new LocationRow(1, "A"));
+        cacheManager.getCache(MetadataCaches.LOCATIONS).put(2, new LocationRow(2, "B"));
+        cacheManager.getCache(MetadataCaches.LOCATION_THERMOMETERS).put(1, List.of(new ThermometerRow(5, "T", 1)));
+        cacheManager.getCache(MetadataCaches.THERMOMETERS).put(5, new ThermometerRow(5, "T", 1));
+    }
+
+    @Test
+    void newThermometer_evictsItsLocationAndItself() {
+        invalidator.onMetadataChanged(new MetadataChangedEvent(1, 5));
+
+        assertThat(cacheManager.getCache(MetadataCaches.LOCATIONS).get(1)).isNull();
+        assertThat(cacheManager.getCache(MetadataCaches.LOCATION_THERMOMETERS).get(1)).isNull();
+        assertThat(cacheManager.getCache(MetadataCaches.THERMOMETERS).get(5)).isNull();
+        assertThat(cacheManager.getCache(MetadataCaches.LOCATIONS).get(2)).isNotNull();
+    }
+
+    @Test
+    void locationOnlyChange_keepsThermometers() {
+        invalidator.onMetadataChanged(new MetadataChangedEvent(1, null));
+
+        assertThat(cacheManager.getCache(MetadataCaches.LOCATIONS).get(1)).isNull();
+        assertThat(cacheManager.getCache(MetadataCaches.THERMOMETERS).get(5)).isNotNull();
+    }
+}
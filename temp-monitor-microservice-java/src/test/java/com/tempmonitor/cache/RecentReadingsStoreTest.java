@@ -0,0 +1,139 @@
+package com.tempmonitor.cache;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.dto.TemperatureReadingDto;
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.repo.ReadingBlockRepository;
+import com.tempmonitor.repo.RecentReadingsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecentReadingsStoreTest {
+
+    private static final Instant T0 = Instant.parse("2025-03-01T12:00:00.123456Z");
+
+    private RecentReadingsRepository recentRepo;
+    private ReadingBlockRepository blockRepo;
+    private RecentReadingsStore store;
+
+    @BeforeEach
+    void setup() {
+        recentRepo = mock(RecentReadingsRepository.class);
+        blockRepo = mock(ReadingBlockRepository.class);
+        TempMonitorProperties properties = new TempMonitorProperties();
+        properties.getRecent().setWindow(3);
+        store = new RecentReadingsStore(recentRepo, blockRepo, properties);
+    }
+
+    @Test
+    void latest_beforeWarm_isEmpty() {
+        store.onReadingsStored(event(new StoredReading(1, 7, 20.0, T0)));
+        assertThat(store.latest(7, 1)).isEmpty();
+    }
+
+    @Test
+    void latest_keepsNewestWindowInTimeOrder() {
+        doAnswer(inv -> {
+            RecentReadingsRepository.RowHandler handler = inv.getArgument(1);
+            handler.accept(2, 7, 21.0, micros(T0.plusSeconds(2)));
+            handler.accept(1, 7, 20.0, micros(T0.plusSeconds(1)));
+            return null;
+        }).when(recentRepo).forEachRecent(eq(3), any());
+        store.warm();
+
+        store.onReadingsStored(event(
+                new StoredReading(4, 7, 24.0, T0.plusSeconds(4)),
+                // late arrival lands between the others
+                new StoredReading(3, 7, 23.0, T0.plusSeconds(3)),
+                // duplicate of a warmed row
+                new StoredReading(2, 7, 21.0, T0.plusSeconds(2)),
+                // older than everything in a full window
+                new StoredReading(5, 7, 19.0, T0)));
+
+        List<TemperatureReadingDto> latest = store.latest(7, 3).orElseThrow();
+        assertThat(latest).extracting(TemperatureReadingDto::getId).containsExactly(4, 3, 2);
+        assertThat(latest.getFirst().getTimestamp()).isEqualTo(T0.plusSeconds(4));
+        assertThat(latest.getFirst().getThermometerId()).isEqualTo(7);
+        assertThat(store.latest(7, 2).orElseThrow()).extracting(TemperatureReadingDto::getValue).containsExactly(24.0, 23.0);
+        // beyond the window or unknown thermometers go to the database
+        assertThat(store.latest(7, 4)).isEmpty();
+        assertThat(store.latest(8, 1)).isEmpty();
+    }
+
+    @Test
+    void find_returnsOnlyExactlyMatchingHeldReadings() {
+        store.warm();
+        store.onReadingsStored(event(
+                new StoredReading(1, 7, 20.0, T0),
+                new StoredReading(2, 7, 21.0, T0.plusSeconds(2))));
+
+        assertThat(store.find(7, T0).orElseThrow().getId()).isEqualTo(1);
+        assertThat(store.find(7, T0.plusSeconds(2)).orElseThrow().getValue()).isEqualTo(21.0);
+        assertThat(store.find(7, T0.plusSeconds(1))).isEmpty();
+        assertThat(store.find(8, T0)).isEmpty();
+    }
+
+    @Test
+    void warm_keepsReadingsStoredWhileItRuns() {
+        store.warm();
+        doAnswer(inv -> {
+            RecentReadingsRepository.RowHandler handler = inv.getArgument(1);
+            handler.accept(1, 7, 20.0, micros(T0));
+            // committed after the query's snapshot, only seen as an event
+            store.onReadingsStored(event(new StoredReading(2, 7, 21.0, T0.plusSeconds(1))));
+            return null;
+        }).when(recentRepo).forEachRecent(eq(3), any());
+
+        store.warm();
+
+        assertThat(store.latest(7, 3).orElseThrow()).extracting(TemperatureReadingDto::getId).containsExactly(2, 1);
+    }
+
+    @Test
+    void warm_fillsShortRingsWithArchivedReadings() {
+        doAnswer(inv -> {
+            RecentReadingsRepository.RowHandler handler = inv.getArgument(1);
+            handler.accept(5, 7, 25.0, micros(T0.plusSeconds(5)));
+            return null;
+        }).when(recentRepo).forEachRecent(eq(3), any());
+        when(blockRepo.thermometerIds()).thenReturn(List.of(7, 8));
+        doAnswer(inv -> {
+            ReadingBlockRepository.ReadingHandler handler = inv.getArgument(4);
+            handler.accept(4, micros(T0.plusSeconds(4)), 24.0);
+            handler.accept(3, micros(T0.plusSeconds(3)), 23.0);
+            return 2;
+        }).when(blockRepo).forEachNewestReading(eq(7), eq(micros(T0.plusSeconds(5))), eq(5), eq(2), any());
+        doAnswer(inv -> {
+            ReadingBlockRepository.ReadingHandler handler = inv.getArgument(4);
+            handler.accept(9, micros(T0), 19.0);
+            return 1;
+        }).when(blockRepo).forEachNewestReading(eq(8), isNull(), anyInt(), eq(3), any());
+
+        store.warm();
+
+        assertThat(store.latest(7, 3).orElseThrow()).extracting(TemperatureReadingDto::getId).containsExactly(5, 4, 3);
+        // only archived readings left
+        assertThat(store.latest(8, 3).orElseThrow()).extracting(TemperatureReadingDto::getId).containsExactly(9);
+    }
+
+    private static long micros(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1000;
+    }
+
+    private static ReadingsStoredEvent event(StoredReading... readings) {
+        return new ReadingsStoredEvent(List.of(readings));
+    }
+}
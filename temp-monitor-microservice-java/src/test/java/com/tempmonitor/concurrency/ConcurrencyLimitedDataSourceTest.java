@@ -0,0 +1,70 @@
+package com.tempmonitor.concurrency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class ConcurrencyLimitedDataSourceTest {
+
+    private DataSource target;
+    private DbConcurrencyLimiter limiter;
+    private ConcurrencyLimitedDataSource dataSource;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setup() throws SQLException {
+        target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(inv -> mock(Connection.class));
+        limiter = new DbConcurrencyLimiter(2, Duration.ofMillis(50));
+        registry = new SimpleMeterRegistry();
+        limiter.bindTo(registry);
+        dataSource = new ConcurrencyLimitedDataSource(target, limiter);
+    }
+
+    @Test
+    void getConnection_beyondLimit_timesOutUntilOneIsClosed() throws SQLException {
+        Connection first = dataSource.getConnection();
+        dataSource.getConnection();
+        assertThat(limiter.inUse()).isEqualTo(2);
+
+        assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+        assertThat(registry.get("tempmonitor.db.limiter.timeouts").counter().count()).isEqualTo(1.0);
+
+        first.close();
+        first.close();
+        assertThat(limiter.inUse()).isEqualTo(1);
+        assertThat(dataSource.getConnection()).isNotNull();
+        assertThat(registry.get("tempmonitor.db.limiter.wait").timer().count()).isEqualTo(4);
+    }
+
+    @Test
+    void getConnection_whenPoolFails_releasesPermit() throws SQLException {
+        when(target.getConnection()).thenThrow(new SQLException("pool down"));
+
+        assertThatThrownBy(dataSource::getConnection).hasMessage("pool down");
+        assertThat(limiter.inUse()).isZero();
+    }
+
+    @Test
+    void close_delegatesToPooledConnection() throws SQLException {
+        Connection pooled = mock(Connection.class);
+        when(target.getConnection()).thenReturn(pooled);
+
+        Connection connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+        connection.close();
+
+        verify(pooled).setAutoCommit(false);
+        verify(pooled).close();
+    }
+}
@@ -0,0 +1,121 @@
+package com.tempmonitor.controller;
+
+import com.tempmonitor.TempMonitorService;
+import com.tempmonitor.dto.TemperatureReadingCreateDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.search.Search;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Statements per request, read from {@code tempmonitor.http.db.statements}, must not depend on how many
+ * thermometers or readings are involved.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Testcontainers
+class QueryCountIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16.2")
+            .withDatabaseName("testdb")
+            .withUsername("testuser")
+            .withPassword("testpass");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.driver-class-name", postgres::getDriverClassName);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TempMonitorService service;
+
+    private Integer smallLocation;
+    private Integer largeLocation;
+    private Integer thermometer;
+
+    @BeforeEach
+    void setup() {
+        smallLocation = seed("Small " + System.nanoTime(), 1);
+        largeLocation = seed("Large " + System.nanoTime(), 12);
+    }
+
+    private Integer seed(String name, int thermometers) {
+        Integer locationId = service.createLocation(name).getId();
+        List<TemperatureReadingCreateDto> readings = new ArrayList<>();
+        for (int i = 0; i < thermometers; i++) {
+            Integer id = service.createThermometer(name + " " + i, locationId).getId();
+            // not read back through the location, which would warm its cached thermometer list
+            thermometer = id;
+            for (int r = 0; r < 3; r++) {
+                TemperatureReadingCreateDto dto = new TemperatureReadingCreateDto();
+                dto.setThermometerId(id);
+                dto.setValue(20.0 + r);
+                readings.add(dto);
+            }
+        }
+        service.addReadings(readings);
+        return locationId;
+    }
+
+    @Test
+    void thermometers_constantStatements() throws Exception {
+        assertThat(statements("/api/thermometers", "/api/thermometers")).isEqualTo(1);
+        long small = statements("/api/thermometers?locationId=" + smallLocation, "/api/thermometers");
+        long large = statements("/api/thermometers?locationId=" + largeLocation, "/api/thermometers");
+        assertThat(small).isEqualTo(1).isEqualTo(large);
+        assertThat(statements("/api/thermometers/" + thermometer, "/api/thermometers/{thermometerId}")).isEqualTo(1);
+    }
+
+    @Test
+    void readings_constantStatements() throws Exception {
+        assertThat(statements("/api/readings/latest", "/api/readings/latest")).isLessThanOrEqualTo(1);
+        assertThat(statements("/api/readings/" + thermometer + "?limit=1000", "/api/readings/{thermometerId}")).isEqualTo(1);
+    }
+
+    @Test
+    void stats_constantStatements() throws Exception {
+        long small = statements("/api/stats/location/" + smallLocation, "/api/stats/location/{locationId}");
+        long large = statements("/api/stats/location/" + largeLocation, "/api/stats/location/{locationId}");
+        assertThat(small).isEqualTo(1).isEqualTo(large);
+        assertThat(statements("/api/stats/thermometer/" + thermometer, "/api/stats/thermometer/{thermometerId}")).isEqualTo(2);
+    }
+
+    private long statements(String url, String uriPattern) throws Exception {
+        double before = total(uriPattern);
+        mockMvc.perform(get(url)).andExpect(status().isOk());
+        return Math.round(total(uriPattern) - before);
+    }
+
+    private double total(String uriPattern) {
+        var summary = Search.in(meterRegistry).name("tempmonitor.http.db.statements")
+                .tags("method", "GET", "uri", uriPattern)
+                .summary();
+        return summary != null ? summary.totalAmount() : 0;
+    }
+}
@@ -1,21 +1,48 @@
 package com.tempmonitor.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tempmonitor.InvalidRequestException;
 import com.tempmonitor.TempMonitorService;
+import com.tempmonitor.alert.AlertEvaluator;
+import com.tempmonitor.alert.AlertKind;
+import com.tempmonitor.alert.AlertNotifier;
+import com.tempmonitor.alert.AlertRuleService;
+import com.tempmonitor.alert.AlertState;
 import com.tempmonitor.dto.*;
+import com.tempmonitor.export.ExportFormat;
+import com.tempmonitor.export.ReadingExporter;
+import com.tempmonitor.ingest.IngestQueueFullException;
+import com.tempmonitor.ingest.PendingReading;
+import com.tempmonitor.ingest.ReadingFrames;
+import com.tempmonitor.ingest.ReadingIngestQueue;
+import com.tempmonitor.stats.RollupResolution;
+import com.tempmonitor.stream.ReadingStreamDispatcher;
+import com.tempmonitor.stream.StreamLimitExceededException;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -29,6 +56,24 @@ class TempMonitorControllerTest {
     @MockBean
     private TempMonitorService service;
 
+    @MockBean
+    private ReadingIngestQueue ingestQueue;
+
+    @MockBean
+    private ReadingExporter exporter;
+
+    @MockBean
+    private ReadingStreamDispatcher readingStream;
+
+    @MockBean
+    private AlertRuleService alertRules;
+
+    @MockBean
+    private AlertEvaluator alertEvaluator;
+
+    @MockBean
+    private AlertNotifier alertNotifier;
+
     private static final ObjectMapper mapper = new ObjectMapper();
 
     @Test
@@ -108,6 +153,114 @@ class TempMonitorControllerTest {
                 .andExpect(jsonPath("$.value").value(23.5));
     }
 
+    @Test
+    void testAddReading_asyncMode_returns202() throws Exception {
+        TemperatureReadingCreateDto createDto = new TemperatureReadingCreateDto();
+        createDto.setThermometerId(1);
+        createDto.setValue(23.5);
+        when(ingestQueue.isEnabled()).thenReturn(true);
+        mockMvc.perform(post("/api/readings")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(createDto)))
+                .andExpect(status().isAccepted());
+        verify(ingestQueue).enqueue(any());
+        verify(service, never()).addReading(any());
+    }
+
+    @Test
+    void testAddReading_asyncQueueFull_returns429() throws Exception {
+        TemperatureReadingCreateDto createDto = new TemperatureReadingCreateDto();
+        createDto.setThermometerId(1);
+        createDto.setValue(23.5);
+        when(ingestQueue.isEnabled()).thenReturn(true);
+        doThrow(new IngestQueueFullException(Duration.ofSeconds(2))).when(ingestQueue).enqueue(any());
+        mockMvc.perform(post("/api/readings")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(createDto)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "2"));
+    }
+
+    @Test
+    void testAddReadingFrame() throws Exception {
+        Instant deviceTime = Instant.parse("2025-03-01T12:00:00Z");
+        TemperatureReadingDto dto = new TemperatureReadingDto();
+        dto.setId(3);
+        dto.setThermometerId(1);
+        dto.setValue(23.5);
+        dto.setTimestamp(deviceTime);
+        when(service.addPendingReading(new PendingReading(1, 23.5, deviceTime, false))).thenReturn(dto);
+        mockMvc.perform(post("/api/readings")
+                        .contentType(ReadingFrames.MEDIA_TYPE_VALUE + ";timestamps=true")
+                        .content(ReadingFrames.encode(List.of(new PendingReading(1, 23.5, deviceTime, false)), true)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(3));
+    }
+
+    @Test
+    void testAddReadingFrame_truncatedFrame() throws Exception {
+        mockMvc.perform(post("/api/readings")
+                        .contentType(ReadingFrames.MEDIA_TYPE)
+                        .content(new byte[11]))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void testAddReadingFrames() throws Exception {
+        ReadingBatchResultDto result = new ReadingBatchResultDto();
+        result.setAccepted(2);
+        when(service.addPendingReadings(any())).thenReturn(result);
+        byte[] body = ReadingFrames.encode(List.of(
+                new PendingReading(1, 20.0, Instant.EPOCH, true), new PendingReading(2, 21.0, Instant.EPOCH, true)), false);
+        mockMvc.perform(post("/api/readings/batch")
+                        .contentType(ReadingFrames.MEDIA_TYPE)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2));
+        verify(service).addPendingReadings(argThat(readings -> readings.size() == 2
+                && readings.get(1).thermometerId() == 2 && readings.get(1).value() == 21.0));
+        verify(service, never()).addReadings(any());
+    }
+
+    @Test
+    void testAddReadingsBatch() throws Exception {
+        TemperatureReadingCreateDto createDto = new TemperatureReadingCreateDto();
+        createDto.setThermometerId(1);
+        createDto.setValue(23.5);
+        ReadingBatchItemDto item = new ReadingBatchItemDto();
+        item.setIndex(0);
+        item.setStatus(ReadingBatchItemDto.Status.ACCEPTED);
+        item.setId(7);
+        ReadingBatchResultDto result = new ReadingBatchResultDto();
+        result.setAccepted(1);
+        result.setItems(List.of(item));
+        when(service.addReadings(any())).thenReturn(result);
+        mockMvc.perform(post("/api/readings/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(List.of(createDto))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.items[0].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$.items[0].id").value(7));
+    }
+
+    @Test
+    void testAddReadingsBatch_tooLarge_returns400() throws Exception {
+        when(service.addReadings(any())).thenThrow(new InvalidRequestException("Batch size exceeds 5000"));
+        mockMvc.perform(post("/api/readings/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testUnexpectedIllegalArgument_isNotTurnedInto400() {
+        when(service.getLatestReadings()).thenThrow(new IllegalArgumentException("Invalid quantile sketch bin: x1"));
+        assertThatThrownBy(() -> mockMvc.perform(get("/api/readings/latest")))
+                .hasRootCauseInstanceOf(IllegalArgumentException.class);
+    }
+
     @Test
     void testGetLatestReadings() throws Exception {
         TemperatureReadingDto dto = new TemperatureReadingDto();
@@ -122,6 +275,36 @@ class TempMonitorControllerTest {
                 .andExpect(jsonPath("$[0].value").value(18.0));
     }
 
+    @Test
+    void testStreamReadings_forLocation() throws Exception {
+        when(readingStream.subscribe(null, 2)).thenReturn(new SseEmitter());
+        mockMvc.perform(get("/api/readings/stream").param("locationId", "2"))
+                .andExpect(request().asyncStarted());
+        verify(service).getLocation(2);
+        verify(readingStream).subscribe(null, 2);
+    }
+
+    @Test
+    void testStreamReadings_unknownThermometer() throws Exception {
+        when(service.getThermometer(9)).thenThrow(new NoSuchElementException("Thermometer not found"));
+        mockMvc.perform(get("/api/readings/stream").param("thermometerId", "9"))
+                .andExpect(status().isNotFound());
+        verifyNoInteractions(readingStream);
+    }
+
+    @Test
+    void testStreamReadings_bothFilters() throws Exception {
+        mockMvc.perform(get("/api/readings/stream").param("thermometerId", "1").param("locationId", "2"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testStreamReadings_atSubscriberLimit() throws Exception {
+        when(readingStream.subscribe(null, null)).thenThrow(new StreamLimitExceededException(1));
+        mockMvc.perform(get("/api/readings/stream"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
     @Test
     void testGetReadingsForThermometer() throws Exception {
         TemperatureReadingDto dto = new TemperatureReadingDto();
@@ -136,6 +319,133 @@ class TempMonitorControllerTest {
                 .andExpect(jsonPath("$[0].value").value(20.1));
     }
 
+    @Test
+    void testGetReadingsForThermometer_limitOutOfRange_returns400() throws Exception {
+        mockMvc.perform(get("/api/readings/3?limit=-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/readings/3").param("limit", String.valueOf(TempMonitorController.MAX_READINGS_LIMIT + 1)))
+                .andExpect(status().isBadRequest());
+        verify(service, never()).getReadingsForThermometer(any(), anyInt());
+    }
+
+    @Test
+    void testGetReadingHistory() throws Exception {
+        ReadingBucketDto bucket = new ReadingBucketDto();
+        bucket.setBucketStart(Instant.parse("2025-01-01T10:00:00Z"));
+        bucket.setAvg(21.0);
+        bucket.setCount(60L);
+        ReadingHistoryDto dto = new ReadingHistoryDto();
+        dto.setThermometerId(3);
+        dto.setResolution(RollupResolution.HOUR);
+        dto.setBuckets(List.of(bucket));
+        when(service.getReadingHistory(3, Instant.parse("2025-01-01T00:00:00Z"), Instant.parse("2025-01-02T00:00:00Z"),
+                RollupResolution.HOUR)).thenReturn(dto);
+        mockMvc.perform(get("/api/readings/3/history")
+                        .param("from", "2025-01-01T00:00:00Z")
+                        .param("to", "2025-01-02T00:00:00Z")
+                        .param("resolution", "HOUR"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.resolution").value("HOUR"))
+                .andExpect(jsonPath("$.buckets[0].avg").value(21.0))
+                .andExpect(jsonPath("$.buckets[0].count").value(60));
+    }
+
+    @Test
+    void testGetReadingHistory_lowercaseResolution() throws Exception {
+        when(service.getReadingHistory(eq(3), any(), any(), eq(RollupResolution.HOUR))).thenReturn(new ReadingHistoryDto());
+        mockMvc.perform(get("/api/readings/3/history").param("resolution", "hour"))
+                .andExpect(status().isOk());
+        verify(service).getReadingHistory(3, null, null, RollupResolution.HOUR);
+    }
+
+    @Test
+    void testGetReadingHistory_unknownResolution_returns400() throws Exception {
+        mockMvc.perform(get("/api/readings/3/history").param("resolution", "week"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void testExportReadings_gzipCsv() throws Exception {
+        doAnswer(inv -> {
+            OutputStream out = inv.getArgument(4);
+            out.write("id,thermometer_id,timestamp,value\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(exporter).export(eq(3), any(), any(), eq(ExportFormat.CSV), any());
+        MvcResult result = mockMvc.perform(get("/api/readings/3/export")
+                        .param("format", "CSV")
+                        .header("Accept-Encoding", "gzip"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(content().contentType("text/csv"))
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).startsWith("id,thermometer_id");
+        }
+        verify(service).getThermometer(3);
+    }
+
+    @Test
+    void testExportReadings_gzipRefused_plainBody() throws Exception {
+        doAnswer(inv -> {
+            OutputStream out = inv.getArgument(4);
+            out.write("id,thermometer_id,timestamp,value\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(exporter).export(eq(3), any(), any(), eq(ExportFormat.CSV), any());
+        MvcResult result = mockMvc.perform(get("/api/readings/3/export")
+                        .param("format", "CSV")
+                        .header("Accept-Encoding", "gzip;q=0, identity"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(body).startsWith("id,thermometer_id");
+    }
+
+    @Test
+    void acceptsGzip_readsCodingsAndQValues() {
+        assertThat(TempMonitorController.acceptsGzip("gzip, deflate")).isTrue();
+        assertThat(TempMonitorController.acceptsGzip("deflate;q=1, GZIP;q=0.5")).isTrue();
+        assertThat(TempMonitorController.acceptsGzip("*")).isTrue();
+        assertThat(TempMonitorController.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(TempMonitorController.acceptsGzip("gzip; q=0.000, *")).isFalse();
+        assertThat(TempMonitorController.acceptsGzip("*;q=0")).isFalse();
+        assertThat(TempMonitorController.acceptsGzip("x-gzip")).isFalse();
+        assertThat(TempMonitorController.acceptsGzip("identity")).isFalse();
+        assertThat(TempMonitorController.acceptsGzip(null)).isFalse();
+    }
+
+    @Test
+    void testExportReadings_lowercaseFormat() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/readings/3/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"));
+        verify(exporter).export(eq(3), any(), any(), eq(ExportFormat.CSV), any());
+    }
+
+    @Test
+    void testExportReadings_unknownFormat_returns400() throws Exception {
+        mockMvc.perform(get("/api/readings/3/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(exporter);
+    }
+
+    @Test
+    void testExportReadings_notFound_returns404() throws Exception {
+        when(service.getThermometer(404)).thenThrow(new NoSuchElementException("Thermometer not found"));
+        mockMvc.perform(get("/api/readings/404/export"))
+                .andExpect(status().isNotFound());
+        verifyNoInteractions(exporter);
+    }
+
     @Test
     void testStatsForThermometer() throws Exception {
         ThermometerStatsDto dto = new ThermometerStatsDto();
@@ -172,6 +482,44 @@ class TempMonitorControllerTest {
                 .andExpect(jsonPath("$.count").value(12));
     }
 
+    @Test
+    void testStatsForThermometers_exactPercentilesOnlyWhenAsked() throws Exception {
+        ThermometerStatsDto withPercentiles = new ThermometerStatsDto();
+        withPercentiles.setThermometerId(2);
+        withPercentiles.setCount(5L);
+        withPercentiles.setP50(20.0);
+        withPercentiles.setP90(28.0);
+        withPercentiles.setP99(29.8);
+        ThermometerStatsDto plain = new ThermometerStatsDto();
+        plain.setThermometerId(3);
+        plain.setCount(0L);
+        when(service.getThermometerStatsList(1, true)).thenReturn(List.of(withPercentiles));
+        when(service.getThermometerStatsList(null, false)).thenReturn(List.of(plain));
+        mockMvc.perform(get("/api/stats/thermometers?locationId=1&exact=true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].thermometerId").value(2))
+                .andExpect(jsonPath("$[0].p50").value(20.0))
+                .andExpect(jsonPath("$[0].p99").value(29.8));
+        mockMvc.perform(get("/api/stats/thermometers"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].thermometerId").value(3))
+                .andExpect(jsonPath("$[0].p50").doesNotExist());
+    }
+
+    @Test
+    void testStatsForLocations() throws Exception {
+        LocationStatsDto dto = new LocationStatsDto();
+        dto.setLocationId(1);
+        dto.setAvg(17.0);
+        dto.setCount(12L);
+        when(service.getAllLocationStats(false)).thenReturn(List.of(dto));
+        mockMvc.perform(get("/api/stats/locations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].locationId").value(1))
+                .andExpect(jsonPath("$[0].avg").value(17.0))
+                .andExpect(jsonPath("$[0].count").value(12));
+    }
+
     @Test
     void testGetLocation_notFound_returns404() throws Exception {
         when(service.getLocation(404)).thenThrow(new NoSuchElementException("Location not found"));
@@ -227,4 +575,58 @@ class TempMonitorControllerTest {
         mockMvc.perform(get("/api/stats/location/202"))
                 .andExpect(status().isNotFound());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCreateAlertRule() throws Exception {
+        AlertRuleDto created = new AlertRuleDto();
+        created.setId(4);
+        created.setName("freezer too warm");
+        created.setThermometerId(3);
+        created.setKind(AlertKind.ABOVE);
+        created.setThreshold(-15.0);
+        created.setHysteresis(1.0);
+        when(alertRules.createRule(any())).thenReturn(created);
+
+        mockMvc.perform(post("/api/alerts/rules")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"freezer too warm\",\"thermometerId\":3,\"kind\":\"ABOVE\","
+                                + "\"threshold\":-15,\"hysteresis\":1}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(4))
+                .andExpect(jsonPath("$.kind").value("ABOVE"));
+        verify(alertRules).createRule(argThat(dto -> dto.getThermometerId() == 3 && dto.getThreshold() == -15.0
+                && dto.getEnabled()));
+    }
+
+    @Test
+    void testCreateAlertRule_withoutKind_returns400() throws Exception {
+        mockMvc.perform(post("/api/alerts/rules")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"no kind\",\"thermometerId\":3,\"threshold\":30}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(alertRules);
+    }
+
+    @Test
+    void testDeleteAlertRule_notFound_returns404() throws Exception {
+        doThrow(new NoSuchElementException("Alert rule not found")).when(alertRules).deleteRule(9);
+        mockMvc.perform(delete("/api/alerts/rules/9"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGetFiringAlerts() throws Exception {
+        AlertDto alert = new AlertDto();
+        alert.setRuleId(4);
+        alert.setThermometerId(3);
+        alert.setState(AlertState.FIRING);
+        alert.setValue(-12.5);
+        when(alertEvaluator.firing()).thenReturn(List.of(alert));
+
+        mockMvc.perform(get("/api/alerts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].ruleId").value(4))
+                .andExpect(jsonPath("$[0].state").value("FIRING"))
+                .andExpect(jsonPath("$[0].value").value(-12.5));
+    }
+}
@@ -0,0 +1,189 @@
+package com.tempmonitor.ingest;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.TempMonitorService;
+import com.tempmonitor.dto.ReadingBatchResultDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class IngestListenerTest {
+
+    private TempMonitorService service;
+    private TempMonitorProperties properties;
+    private SimpleMeterRegistry registry;
+    private IngestListener listener;
+
+    @BeforeEach
+    void setup() {
+        service = mock(TempMonitorService.class);
+        when(service.storeReadings(anyList())).thenReturn(new ReadingBatchResultDto());
+        properties = new TempMonitorProperties();
+        TempMonitorProperties.Ingest.Listener config = properties.getIngest().getListener();
+        config.setBindAddress("127.0.0.1");
+        config.setTcpPort(0);
+        config.setUdpPort(0);
+        config.setFlushInterval(Duration.ofMillis(20));
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void teardown() {
+        if (listener != null) listener.stop();
+    }
+
+    @Test
+    void tcp_linesSplitAcrossWrites_areStoredInBatches() throws Exception {
+        listener = start();
+
+        try (Socket socket = new Socket("127.0.0.1", listener.getTcpPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(ascii("t,thermometer=1 value=20.5\nt,thermom"));
+            out.flush();
+            Thread.sleep(50);
+            out.write(ascii("eter=2 value=21 1735689600000000000\nnot a reading\nt,thermometer=3 value=22"));
+        }
+
+        waitFor(() -> registry.get("tempmonitor.ingest.listener.connections").gauge().value() == 0);
+        List<PendingReading> stored = stopAndCollect();
+        assertThat(stored).extracting(PendingReading::thermometerId).containsExactly(1, 2, 3);
+        assertThat(stored.get(1).timestamp()).isEqualTo(Instant.parse("2025-01-01T00:00:00Z"));
+        assertThat(readings("tcp", "malformed")).isEqualTo(1.0);
+        assertThat(registry.get("tempmonitor.ingest.listener.accepted").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void udp_binaryFrames_areStored() throws Exception {
+        properties.getIngest().getListener().setFormat(TempMonitorProperties.Ingest.Listener.Format.BINARY);
+        listener = start();
+        byte[] frames = ReadingFrames.encode(List.of(
+                new PendingReading(4, 18.0, Instant.EPOCH, true), new PendingReading(5, 19.0, Instant.EPOCH, true)), false);
+
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.send(new DatagramPacket(frames, frames.length, InetAddress.getLoopbackAddress(), listener.getUdpPort()));
+            byte[] truncated = Arrays.copyOf(frames, 5);
+            socket.send(new DatagramPacket(truncated, truncated.length, InetAddress.getLoopbackAddress(), listener.getUdpPort()));
+        }
+
+        waitFor(() -> registry.get("tempmonitor.ingest.listener.packets").tag("transport", "udp").counter().count() == 2);
+        List<PendingReading> stored = stopAndCollect();
+        assertThat(stored).extracting(PendingReading::thermometerId, PendingReading::value)
+                .containsExactly(tuple(4, 18.0), tuple(5, 19.0));
+        assertThat(readings("udp", "malformed")).isEqualTo(1.0);
+    }
+
+    @Test
+    void udp_frameWithTimestampOutOfRange_isCountedMalformed() throws Exception {
+        properties.getIngest().getListener().setFormat(TempMonitorProperties.Ingest.Listener.Format.BINARY);
+        properties.getIngest().getListener().setBinaryTimestamps(true);
+        listener = start();
+        Instant time = Instant.parse("2025-01-01T00:00:00Z");
+        byte[] frames = ByteBuffer.allocate(3 * ReadingFrames.TIMESTAMPED_FRAME_BYTES)
+                .put(ReadingFrames.encode(List.of(new PendingReading(4, 18.0, time, false)), true))
+                .putInt(5).putDouble(19.0).putLong(Long.MAX_VALUE)
+                .put(ReadingFrames.encode(List.of(new PendingReading(6, 20.0, time, false)), true))
+                .array();
+
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.send(new DatagramPacket(frames, frames.length, InetAddress.getLoopbackAddress(), listener.getUdpPort()));
+        }
+
+        waitFor(() -> registry.get("tempmonitor.ingest.listener.packets").tag("transport", "udp").counter().count() == 1);
+        assertThat(stopAndCollect()).containsExactly(
+                new PendingReading(4, 18.0, time, false), new PendingReading(6, 20.0, time, false));
+        assertThat(readings("udp", "malformed")).isEqualTo(1.0);
+    }
+
+    @Test
+    void tcp_whileWriterIsBehind_pausesReadingInsteadOfDropping() throws Exception {
+        properties.getIngest().getListener().setBatchSize(2);
+        properties.getIngest().getListener().setWriteQueueCapacity(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(service.storeReadings(anyList())).thenAnswer(inv -> {
+            release.await();
+            return new ReadingBatchResultDto();
+        });
+        listener = start();
+
+        try (Socket socket = new Socket("127.0.0.1", listener.getTcpPort())) {
+            OutputStream out = socket.getOutputStream();
+            for (int i = 0; i < 50; i++) {
+                out.write(ascii("t,thermometer=" + i + " value=1\n"));
+                out.flush();
+            }
+            waitFor(() -> readings("tcp", "parsed") >= 6);
+            release.countDown();
+        }
+
+        waitFor(() -> registry.get("tempmonitor.ingest.listener.connections").gauge().value() == 0);
+        assertThat(stopAndCollect()).hasSize(50);
+        assertThat(registry.get("tempmonitor.ingest.listener.dropped").counter().count()).isZero();
+    }
+
+    @Test
+    void tcp_beyondMaxConnections_isRefused() throws Exception {
+        properties.getIngest().getListener().setMaxConnections(1);
+        listener = start();
+
+        try (Socket first = new Socket("127.0.0.1", listener.getTcpPort());
+             Socket second = new Socket("127.0.0.1", listener.getTcpPort())) {
+            waitFor(() -> registry.get("tempmonitor.ingest.listener.refused").counter().count() == 1.0);
+            assertThat(second.getInputStream().read()).isEqualTo(-1);
+            assertThat(first.isClosed()).isFalse();
+        }
+    }
+
+    private IngestListener start() {
+        IngestListener started = new IngestListener(service, mock(ReadingWal.class), properties, registry);
+        started.start();
+        return started;
+    }
+
+    /** Stops the listener, which flushes what it parsed, and returns everything stored in order. */
+    @SuppressWarnings("unchecked")
+    private List<PendingReading> stopAndCollect() {
+        listener.stop();
+        listener = null;
+        ArgumentCaptor<List<PendingReading>> captor = ArgumentCaptor.forClass(List.class);
+        verify(service, atLeastOnce()).storeReadings(captor.capture());
+        return captor.getAllValues().stream().flatMap(List::stream).toList();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met within 5s").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private double readings(String transport, String result) {
+        return registry.get("tempmonitor.ingest.listener.readings")
+                .tag("transport", transport).tag("result", result).counter().count();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,96 @@
+package com.tempmonitor.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LineProtocolParserTest {
+
+    private static final Instant RECEIVED = Instant.parse("2025-03-01T12:00:00Z");
+
+    @Test
+    void parse_readsTagFieldAndNanosecondTimestamp() {
+        List<PendingReading> out = new ArrayList<>();
+
+        int malformed = parse("temperature,site=lab,thermometer=3 humidity=40i,value=21.5 1735689600123456789\n",
+                false, out);
+
+        assertThat(malformed).isZero();
+        assertThat(out).containsExactly(
+                new PendingReading(3, 21.5, Instant.parse("2025-01-01T00:00:00.123456789Z"), false));
+    }
+
+    @Test
+    void parse_withoutTimestamp_stampsReceivedTime() {
+        List<PendingReading> out = new ArrayList<>();
+
+        parse("t,thermometer=7 value=-3.25\r\nt,thermometer=8 value=1e1\n", false, out);
+
+        assertThat(out).containsExactly(new PendingReading(7, -3.25, RECEIVED, true), new PendingReading(8, 10.0, RECEIVED, true));
+    }
+
+    @Test
+    void parse_leavesPartialLineUnlessInputEnded() {
+        ByteBuffer buffer = ascii("t,thermometer=1 value=1\nt,thermometer=2 val");
+        List<PendingReading> out = new ArrayList<>();
+
+        LineProtocolParser.parse(buffer, false, RECEIVED, out);
+
+        assertThat(out).containsExactly(new PendingReading(1, 1.0, RECEIVED, true));
+        assertThat(StandardCharsets.US_ASCII.decode(buffer.slice()).toString()).isEqualTo("t,thermometer=2 val");
+
+        ByteBuffer last = ascii("t,thermometer=2 value=2");
+        LineProtocolParser.parse(last, true, RECEIVED, out);
+        assertThat(out).last().isEqualTo(new PendingReading(2, 2.0, RECEIVED, true));
+        assertThat(last.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void parse_countsMalformedLinesAndSkipsComments() {
+        List<PendingReading> out = new ArrayList<>();
+
+        int malformed = parse("""
+                # a comment
+
+                t value=1
+                t,thermometer=x value=1
+                t,thermometer=1 value=warm
+                t,thermometer=1 value=1 soon
+                t,thermometer=4 value=0.1
+                """, false, out);
+
+        assertThat(malformed).isEqualTo(4);
+        assertThat(out).containsExactly(new PendingReading(4, 0.1, RECEIVED, true));
+    }
+
+    @Test
+    void parse_matchesDoubleParsing() {
+        String[] values = {"0", "-0.0", "21.5", "0.1", "123456.789", "-273.15", "3.141592653589793",
+                "12345678901234567890.5", "1.7976931348623157E308", "5e-324", ".5", "7."};
+        StringBuilder lines = new StringBuilder();
+        for (String value : values) {
+            lines.append("t,thermometer=1 value=").append(value).append('\n');
+        }
+        List<PendingReading> out = new ArrayList<>();
+
+        assertThat(parse(lines.toString(), false, out)).isZero();
+
+        assertThat(out).extracting(PendingReading::value)
+                .containsExactly(Arrays.stream(values).map(Double::valueOf).toArray(Double[]::new));
+    }
+
+    private static int parse(String text, boolean endOfInput, List<PendingReading> out) {
+        return LineProtocolParser.parse(ascii(text), endOfInput, RECEIVED, out);
+    }
+
+    private static ByteBuffer ascii(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
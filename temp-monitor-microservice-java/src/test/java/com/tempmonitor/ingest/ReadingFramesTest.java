@@ -0,0 +1,75 @@
+package com.tempmonitor.ingest;
+
+import com.tempmonitor.InvalidRequestException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReadingFramesTest {
+
+    private static final Instant RECEIVED = Instant.parse("2025-03-01T12:00:00Z");
+
+    @Test
+    void decode_plainFrames_stampsReceivedTime() {
+        // thermometer 7, 21.5 as int32 + IEEE 754 double, big-endian
+        byte[] body = {0, 0, 0, 7, 0x40, 0x35, (byte) 0x80, 0, 0, 0, 0, 0};
+
+        List<PendingReading> readings = ReadingFrames.decode(ByteBuffer.wrap(body), false, RECEIVED, 10);
+
+        assertThat(readings).containsExactly(new PendingReading(7, 21.5, RECEIVED, true));
+    }
+
+    @Test
+    void decode_timestampedFrames_roundTrip() {
+        List<PendingReading> sent = List.of(
+                new PendingReading(1, -3.25, Instant.parse("2025-02-28T23:59:59.123456Z"), false),
+                new PendingReading(2, 40.0, Instant.parse("2025-03-01T00:00:00Z"), false));
+        byte[] body = ReadingFrames.encode(sent, true);
+
+        assertThat(body).hasSize(2 * ReadingFrames.TIMESTAMPED_FRAME_BYTES);
+        assertThat(ReadingFrames.decode(ByteBuffer.wrap(body), true, RECEIVED, 10)).isEqualTo(sent);
+    }
+
+    @Test
+    void decode_readsFromTheBufferPosition() {
+        byte[] frame = ReadingFrames.encode(List.of(new PendingReading(3, 19.0, RECEIVED, true)), false);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + frame.length).putInt(0xCAFE).put(frame).flip();
+        buffer.position(4);
+
+        assertThat(ReadingFrames.decode(buffer, false, RECEIVED, 1)).containsExactly(new PendingReading(3, 19.0, RECEIVED, true));
+        assertThat(buffer.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void decode_rejectsPartialFramesAndOversizedBatches() {
+        assertThatThrownBy(() -> ReadingFrames.decode(ByteBuffer.allocate(13), false, RECEIVED, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("12-byte frames");
+        assertThatThrownBy(() -> ReadingFrames.decode(ByteBuffer.allocate(36), false, RECEIVED, 2))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("exceeds 2");
+    }
+
+    @Test
+    void decode_timestampOutOfRange_isRejected() {
+        ByteBuffer body = ByteBuffer.allocate(ReadingFrames.TIMESTAMPED_FRAME_BYTES)
+                .putInt(1).putDouble(20.0).putLong(Long.MAX_VALUE).flip();
+
+        assertThatThrownBy(() -> ReadingFrames.decode(body, true, RECEIVED, 10))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("1 of 1 frames have a timestamp out of range");
+    }
+
+    @Test
+    void hasTimestamps_readsTheContentTypeParameter() {
+        assertThat(ReadingFrames.hasTimestamps(ReadingFrames.MEDIA_TYPE)).isFalse();
+        assertThat(ReadingFrames.hasTimestamps(MediaType.parseMediaType(ReadingFrames.MEDIA_TYPE_VALUE + ";timestamps=true")))
+                .isTrue();
+    }
+}
@@ -0,0 +1,150 @@
+package com.tempmonitor.ingest;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.TempMonitorService;
+import com.tempmonitor.dto.ReadingBatchResultDto;
+import com.tempmonitor.dto.TemperatureReadingCreateDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class ReadingIngestQueueTest {
+
+    private TempMonitorService service;
+    private ReadingWal wal;
+    private TempMonitorProperties properties;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setup() {
+        service = mock(TempMonitorService.class);
+        when(service.storeReadings(anyList())).thenReturn(new ReadingBatchResultDto());
+        wal = mock(ReadingWal.class);
+        properties = new TempMonitorProperties();
+        properties.getIngest().setMode(TempMonitorProperties.Ingest.Mode.ASYNC);
+        properties.getIngest().setFlushBatchSize(3);
+        properties.getIngest().setFlushInterval(Duration.ofMillis(20));
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void stop_drainsQueuedReadingsInBoundedBatches() {
+        ReadingIngestQueue queue = new ReadingIngestQueue(service, wal, properties, registry, new MockEnvironment());
+        queue.start();
+        for (int i = 0; i < 10; i++) {
+            queue.enqueue(reading(i));
+        }
+        queue.stop();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<PendingReading>> captor = ArgumentCaptor.forClass(List.class);
+        verify(service, atLeast(4)).storeReadings(captor.capture());
+        assertThat(captor.getAllValues()).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(3));
+        assertThat(captor.getAllValues().stream().mapToInt(List::size).sum()).isEqualTo(10);
+        assertThat(queue.depth()).isZero();
+        assertThat(registry.get("tempmonitor.ingest.flush").timer().count()).isGreaterThanOrEqualTo(4);
+    }
+
+    @Test
+    void enqueue_whenFull_throwsWithRetryAfter() {
+        properties.getIngest().setQueueCapacity(1);
+        properties.getIngest().setRetryAfter(Duration.ofSeconds(5));
+        ReadingIngestQueue queue = new ReadingIngestQueue(service, wal, properties, registry, new MockEnvironment());
+        queue.start();
+        // keep the single writer busy so the queue cannot drain
+        when(service.storeReadings(anyList())).thenAnswer(inv -> {
+            Thread.sleep(500);
+            return new ReadingBatchResultDto();
+        });
+        try {
+            assertThatThrownBy(() -> {
+                for (int i = 0; i < 10; i++) queue.enqueue(reading(i));
+            }).isInstanceOf(IngestQueueFullException.class)
+                    .extracting(e -> ((IngestQueueFullException) e).getRetryAfter())
+                    .isEqualTo(Duration.ofSeconds(5));
+            assertThat(registry.get("tempmonitor.ingest.rejected").counter().count()).isEqualTo(1.0);
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    void enqueue_keepsDeviceTimestampAndRefusesOnesOutsideTheWindow() {
+        ReadingIngestQueue queue = new ReadingIngestQueue(service, wal, properties, registry, new MockEnvironment());
+        queue.start();
+        Instant deviceTime = Instant.now().minus(Duration.ofHours(3));
+        TemperatureReadingCreateDto buffered = reading(1);
+        buffered.setTimestamp(deviceTime);
+        TemperatureReadingCreateDto tooLate = reading(2);
+        tooLate.setTimestamp(Instant.now().minus(Duration.ofDays(30)));
+
+        queue.enqueue(buffered);
+        assertThatThrownBy(() -> queue.enqueue(tooLate)).isInstanceOf(IllegalArgumentException.class);
+        queue.stop();
+
+        verify(service).storeReadings(List.of(new PendingReading(1, 21.0, deviceTime, false)));
+    }
+
+    @Test
+    void enqueue_nonFiniteValue_isRejectedBeforeQueueing() {
+        ReadingIngestQueue queue = new ReadingIngestQueue(service, wal, properties, registry, new MockEnvironment());
+        queue.start();
+        TemperatureReadingCreateDto nan = reading(1);
+        nan.setValue(Double.NaN);
+        TemperatureReadingCreateDto infinite = reading(2);
+        infinite.setValue(Double.POSITIVE_INFINITY);
+
+        assertThatThrownBy(() -> queue.enqueue(nan))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage(TempMonitorService.READING_VALUE_NOT_FINITE);
+        assertThatThrownBy(() -> queue.enqueue(infinite)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(queue.depth()).isZero();
+        queue.stop();
+
+        verify(service, never()).storeReadings(anyList());
+    }
+
+    @Test
+    void enqueue_syncMode_isRejected() {
+        properties.getIngest().setMode(TempMonitorProperties.Ingest.Mode.SYNC);
+        ReadingIngestQueue queue = new ReadingIngestQueue(service, wal, properties, registry, new MockEnvironment());
+        queue.start();
+        assertThat(queue.isEnabled()).isFalse();
+        assertThatThrownBy(() -> queue.enqueue(reading(1))).isInstanceOf(IngestQueueFullException.class);
+    }
+
+    @Test
+    void enqueue_walMode_appendsToTheLog() {
+        properties.getIngest().setMode(TempMonitorProperties.Ingest.Mode.WAL);
+        ReadingIngestQueue queue = new ReadingIngestQueue(service, wal, properties, registry, new MockEnvironment());
+        queue.start();
+        Instant deviceTime = Instant.now().minusSeconds(5);
+        TemperatureReadingCreateDto dto = reading(1);
+        dto.setTimestamp(deviceTime);
+
+        assertThat(queue.isEnabled()).isTrue();
+        queue.enqueue(dto);
+        queue.stop();
+
+        verify(wal).append(List.of(new PendingReading(1, 21.0, deviceTime, false)));
+        verifyNoInteractions(service);
+    }
+
+    private static TemperatureReadingCreateDto reading(int i) {
+        TemperatureReadingCreateDto dto = new TemperatureReadingCreateDto();
+        dto.setThermometerId(1);
+        dto.setValue(20.0 + i);
+        return dto;
+    }
+}
@@ -0,0 +1,40 @@
+package com.tempmonitor.ingest;
+
+import com.tempmonitor.TempMonitorProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadingTimeWindowTest {
+
+    private static final Instant NOW = Instant.parse("2025-03-10T12:00:00Z");
+
+    @Test
+    void rejection_acceptsWithinLatenessAndSkew() {
+        TempMonitorProperties properties = new TempMonitorProperties();
+
+        assertThat(ReadingTimeWindow.rejection(NOW, NOW, properties)).isNull();
+        assertThat(ReadingTimeWindow.rejection(NOW.minus(Duration.ofDays(7)), NOW, properties)).isNull();
+        assertThat(ReadingTimeWindow.rejection(NOW.plusSeconds(60), NOW, properties)).isNull();
+        assertThat(ReadingTimeWindow.rejection(NOW.minus(Duration.ofDays(7)).minusNanos(1000), NOW, properties))
+                .isEqualTo(ReadingTimeWindow.TOO_LATE);
+        assertThat(ReadingTimeWindow.rejection(NOW.plusSeconds(61), NOW, properties))
+                .isEqualTo(ReadingTimeWindow.IN_FUTURE);
+    }
+
+    @Test
+    void oldestAccepted_neverPrecedesTheOldestRetainedPartition() {
+        TempMonitorProperties properties = new TempMonitorProperties();
+        properties.getIngest().setMaxLateness(Duration.ofDays(90));
+        properties.getPartitions().setRetentionMonths(1);
+
+        // March is current, so February is the oldest month kept
+        assertThat(ReadingTimeWindow.oldestAccepted(NOW, properties)).isEqualTo(Instant.parse("2025-02-01T00:00:00Z"));
+
+        properties.getPartitions().setEnabled(false);
+        assertThat(ReadingTimeWindow.oldestAccepted(NOW, properties)).isEqualTo(NOW.minus(Duration.ofDays(90)));
+    }
+}
@@ -0,0 +1,169 @@
+package com.tempmonitor.ingest;
+
+import com.tempmonitor.TempMonitorApplication;
+import com.tempmonitor.TempMonitorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Readings POSTed in mode WAL while the database is paused are acknowledged with 202 and stored exactly once
+ * after it comes back, whether the application keeps running or is restarted in between.
+ */
+@Testcontainers
+class ReadingWalIntegrationTest {
+
+    private static final int READINGS = 90;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16.2")
+            .withDatabaseName("testdb")
+            .withUsername("testuser")
+            .withPassword("testpass");
+
+    @TempDir
+    Path walDirectory;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private ConfigurableApplicationContext app;
+    private boolean paused;
+
+    @AfterEach
+    void teardown() {
+        if (paused) resume();
+        if (app != null) app.close();
+    }
+
+    @Test
+    void outage_readingsAcceptedAndReplayedOnce() throws Exception {
+        app = start();
+        int thermometerId = createThermometer();
+        List<Instant> timestamps = timestamps();
+
+        post(thermometerId, timestamps.subList(0, 30));
+        pause();
+        post(thermometerId, timestamps.subList(30, 60));
+        assertThat(app.getBean(ReadingWal.class).pending()).isGreaterThanOrEqualTo(30);
+        resume();
+        post(thermometerId, timestamps.subList(60, READINGS));
+
+        waitFor(() -> stored(thermometerId).size() == READINGS);
+        assertThat(stored(thermometerId)).containsExactlyElementsOf(timestamps);
+    }
+
+    @Test
+    void outage_acrossRestart_readingsReplayedOnce() throws Exception {
+        app = start();
+        int thermometerId = createThermometer();
+        List<Instant> timestamps = timestamps();
+
+        post(thermometerId, timestamps.subList(0, 30));
+        pause();
+        post(thermometerId, timestamps.subList(30, 60));
+        app.close();
+        app = null;
+        resume();
+
+        app = start();
+        // a client that never saw its 202s sends the same readings again
+        post(thermometerId, timestamps.subList(30, 60));
+        post(thermometerId, timestamps.subList(60, READINGS));
+
+        waitFor(() -> app.getBean(ReadingWal.class).pending() == 0);
+        assertThat(stored(thermometerId)).containsExactlyElementsOf(timestamps);
+    }
+
+    private ConfigurableApplicationContext start() {
+        String url = postgres.getJdbcUrl();
+        // a paused database fails requests after a few seconds instead of hanging them
+        url += (url.contains("?") ? "&" : "?") + "socketTimeout=3&connectTimeout=3";
+        return new SpringApplicationBuilder(TempMonitorApplication.class)
+                .run("--spring.datasource.url=" + url,
+                        "--spring.datasource.username=" + postgres.getUsername(),
+                        "--spring.datasource.password=" + postgres.getPassword(),
+                        "--spring.datasource.hikari.connection-timeout=3000",
+                        "--spring.jpa.show-sql=false",
+                        "--server.port=0",
+                        "--tempmonitor.ingest.mode=wal",
+                        "--tempmonitor.ingest.flush-interval=50ms",
+                        "--tempmonitor.ingest.shutdown-timeout=1s",
+                        "--tempmonitor.ingest.wal.directory=" + walDirectory,
+                        "--tempmonitor.ingest.wal.retry-backoff=200ms");
+    }
+
+    private int createThermometer() {
+        TempMonitorService service = app.getBean(TempMonitorService.class);
+        Integer locationId = service.createLocation("WAL " + System.nanoTime()).getId();
+        return service.createThermometer("WAL thermometer", locationId).getId();
+    }
+
+    private static List<Instant> timestamps() {
+        Instant first = Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MICROS);
+        List<Instant> timestamps = new ArrayList<>(READINGS);
+        for (int i = 0; i < READINGS; i++) {
+            timestamps.add(first.plusSeconds(i));
+        }
+        return timestamps;
+    }
+
+    private void post(int thermometerId, List<Instant> timestamps) throws Exception {
+        int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+        for (Instant timestamp : timestamps) {
+            String body = "{\"thermometerId\":" + thermometerId + ",\"value\":21.5,\"timestamp\":\"" + timestamp + "\"}";
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/readings"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            assertThat(response.statusCode()).as("POST of the reading at %s", timestamp).isEqualTo(202);
+        }
+    }
+
+    /** Stored reading times of the thermometer, oldest first, duplicates included. */
+    private List<Instant> stored(int thermometerId) {
+        return app.getBean(JdbcTemplate.class).queryForList(
+                        "SELECT \"timestamp\" FROM temperature_readings WHERE thermometer_id = ? ORDER BY \"timestamp\"",
+                        Timestamp.class, thermometerId)
+                .stream().map(Timestamp::toInstant).toList();
+    }
+
+    private void pause() {
+        postgres.getDockerClient().pauseContainerCmd(postgres.getContainerId()).exec();
+        paused = true;
+    }
+
+    private void resume() {
+        postgres.getDockerClient().unpauseContainerCmd(postgres.getContainerId()).exec();
+        paused = false;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(60).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met within 60s").isLessThan(deadline);
+            Thread.sleep(100);
+        }
+    }
+}
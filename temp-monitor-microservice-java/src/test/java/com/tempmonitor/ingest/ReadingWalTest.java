@@ -0,0 +1,272 @@
+package com.tempmonitor.ingest;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.TempMonitorService;
+import com.tempmonitor.dto.ReadingBatchItemDto;
+import com.tempmonitor.dto.ReadingBatchResultDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class ReadingWalTest {
+
+    private static final Instant T0 = Instant.parse("2025-01-01T00:00:00.123456Z");
+    private static final int RECORDS_PER_SEGMENT = 4;
+
+    @TempDir
+    Path directory;
+
+    private TempMonitorService service;
+    private TempMonitorProperties properties;
+    private SimpleMeterRegistry registry;
+    /** Readings the mocked database accepted, in order. */
+    private final List<PendingReading> stored = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicBoolean databaseDown = new AtomicBoolean();
+    /** Readings the mocked database fails on for good, and readings its service rejects. */
+    private final Set<PendingReading> poison = ConcurrentHashMap.newKeySet();
+    private final Set<PendingReading> tooLate = ConcurrentHashMap.newKeySet();
+    private ReadingWal wal;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        service = mock(TempMonitorService.class);
+        when(service.storeReadings(anyList())).thenAnswer(invocation -> {
+            if (databaseDown.get()) throw new CannotCreateTransactionException("Connection refused");
+            List<PendingReading> batch = invocation.getArgument(0, List.class);
+            if (batch.stream().anyMatch(poison::contains)) throw new IllegalStateException("Cannot store " + batch);
+            ReadingBatchResultDto result = new ReadingBatchResultDto();
+            result.setItems(new ArrayList<>());
+            for (PendingReading reading : batch) {
+                ReadingBatchItemDto item = new ReadingBatchItemDto();
+                if (tooLate.contains(reading)) {
+                    item.setStatus(ReadingBatchItemDto.Status.REJECTED);
+                    item.setError("timestamp is too far in the past");
+                    result.setRejected(result.getRejected() + 1);
+                } else {
+                    item.setStatus(ReadingBatchItemDto.Status.ACCEPTED);
+                    stored.add(reading);
+                }
+                result.getItems().add(item);
+            }
+            return result;
+        });
+        properties = new TempMonitorProperties();
+        properties.getIngest().setMode(TempMonitorProperties.Ingest.Mode.WAL);
+        properties.getIngest().setFlushBatchSize(3);
+        properties.getIngest().setFlushInterval(Duration.ofMillis(20));
+        properties.getIngest().setShutdownTimeout(Duration.ofSeconds(5));
+        TempMonitorProperties.Ingest.Wal config = properties.getIngest().getWal();
+        config.setDirectory(directory.toString());
+        config.setSegmentSize(DataSize.ofBytes(RECORDS_PER_SEGMENT * ReadingWal.RECORD_BYTES));
+        config.setRetryBackoff(Duration.ofMillis(20));
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void teardown() {
+        if (wal != null) wal.stop();
+    }
+
+    @Test
+    void append_replaysIntoTheDatabaseInOrderAndDeletesStoredSegments() throws Exception {
+        wal = start();
+        wal.append(readings(0, 5));
+        wal.append(readings(5, 10));
+
+        waitFor(() -> stored.size() == 10);
+        assertThat(stored).isEqualTo(readings(0, 10));
+        verify(service, atLeast(4)).storeReadings(anyList());
+        waitFor(() -> segmentFiles().size() == 1);
+        assertThat(segmentFiles()).containsExactly(ReadingWal.segmentName(8));
+        assertThat(registry.get("tempmonitor.ingest.wal.fsync").timer().count()).isPositive();
+    }
+
+    @Test
+    void append_receiveTimes_areMadeUniqueAndReplayedAsFinal() throws Exception {
+        wal = start();
+        wal.append(List.of(new PendingReading(1, 20.0, T0, true), new PendingReading(1, 21.0, T0, true),
+                new PendingReading(2, 22.0, T0, false)));
+
+        waitFor(() -> stored.size() == 3);
+        assertThat(stored).containsExactly(new PendingReading(1, 20.0, T0, false),
+                new PendingReading(1, 21.0, T0.plusNanos(1_000), false), new PendingReading(2, 22.0, T0, false));
+    }
+
+    @Test
+    void replay_whileTheDatabaseIsDown_retriesWithoutLosingReadings() throws Exception {
+        databaseDown.set(true);
+        wal = start();
+        wal.append(readings(0, 6));
+
+        waitFor(() -> registry.get("tempmonitor.ingest.wal.replay.failures").counter().count() >= 2);
+        assertThat(stored).isEmpty();
+        assertThat(wal.pending()).isEqualTo(6);
+
+        databaseDown.set(false);
+        waitFor(() -> wal.pending() == 0);
+        assertThat(stored).isEqualTo(readings(0, 6));
+    }
+
+    @Test
+    void start_afterACrash_replaysWhatWasLeftAndIgnoresATornRecord() throws Exception {
+        databaseDown.set(true);
+        wal = start();
+        wal.append(readings(0, 3));
+        wal.stop();
+        // half a record that never made it to disk completely
+        try (FileChannel segment = FileChannel.open(directory.resolve(ReadingWal.segmentName(0)),
+                StandardOpenOption.WRITE)) {
+            segment.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 7, 64, 52}), 3L * ReadingWal.RECORD_BYTES);
+        }
+
+        databaseDown.set(false);
+        wal = start();
+        wal.append(readings(3, 5));
+
+        waitFor(() -> stored.size() == 5);
+        assertThat(stored).isEqualTo(readings(0, 5));
+    }
+
+    @Test
+    void replay_batchFailingForGood_storesItsReadingsOneByOneAndDropsTheBadOne() throws Exception {
+        poison.add(readings(1, 2).getFirst());
+        wal = start();
+        wal.append(readings(0, 6));
+
+        waitFor(() -> wal.pending() == 0);
+        assertThat(stored).containsExactly(readings(0, 6).stream().filter(r -> !poison.contains(r))
+                .toArray(PendingReading[]::new));
+        assertThat(registry.get("tempmonitor.ingest.wal.replay.discarded").tag("reason", "failed").counter().count())
+                .isEqualTo(1.0);
+        assertThat(registry.get("tempmonitor.ingest.wal.replay.failures").counter().count()).isZero();
+    }
+
+    @Test
+    void replay_rejectedReadings_areCounted() throws Exception {
+        tooLate.addAll(readings(0, 2));
+        wal = start();
+        wal.append(readings(0, 4));
+
+        waitFor(() -> wal.pending() == 0);
+        assertThat(stored).isEqualTo(readings(2, 4));
+        assertThat(registry.get("tempmonitor.ingest.wal.replay.rejected").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void replay_recordDamagedOnDisk_isSkipped() throws Exception {
+        databaseDown.set(true);
+        wal = start();
+        wal.append(readings(0, 3));
+        // flip a bit of the second record's value after it was forced
+        try (FileChannel segment = FileChannel.open(directory.resolve(ReadingWal.segmentName(0)),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            segment.read(b, ReadingWal.RECORD_BYTES + 6);
+            segment.write(ByteBuffer.wrap(new byte[]{(byte) (b.get(0) ^ 1)}), ReadingWal.RECORD_BYTES + 6);
+        }
+
+        databaseDown.set(false);
+        waitFor(() -> wal.pending() == 0);
+        assertThat(stored).containsExactly(readings(0, 1).getFirst(), readings(2, 3).getFirst());
+        assertThat(registry.get("tempmonitor.ingest.wal.replay.discarded").tag("reason", "corrupt").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void append_whenTheLogIsFull_throwsWithRetryAfter() {
+        databaseDown.set(true);
+        properties.getIngest().getWal().setMaxReadings(5);
+        properties.getIngest().setRetryAfter(Duration.ofSeconds(5));
+        wal = start();
+        wal.append(readings(0, 5));
+
+        assertThatThrownBy(() -> wal.append(readings(5, 6)))
+                .isInstanceOf(IngestQueueFullException.class)
+                .extracting(e -> ((IngestQueueFullException) e).getRetryAfter())
+                .isEqualTo(Duration.ofSeconds(5));
+        assertThat(registry.get("tempmonitor.ingest.wal.rejected").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void isTransient_onlyConnectionAndTimeoutFailures() {
+        assertThat(ReadingWal.isTransient(new CannotCreateTransactionException("Could not open JPA EntityManager")))
+                .isTrue();
+        assertThat(ReadingWal.isTransient(new QueryTimeoutException("canceling statement due to statement timeout")))
+                .isTrue();
+        assertThat(ReadingWal.isTransient(new CannotGetJdbcConnectionException("Failed to obtain JDBC Connection",
+                new SQLTransientConnectionException("Connection is not available")))).isTrue();
+        assertThat(ReadingWal.isTransient(new DataAccessResourceFailureException("I/O error",
+                new SQLException("An I/O error occurred while sending to the backend", "08006")))).isTrue();
+
+        assertThat(ReadingWal.isTransient(new DataIntegrityViolationException("insert failed",
+                new SQLException("violates foreign key constraint", "23503")))).isFalse();
+        assertThat(ReadingWal.isTransient(new TransactionSystemException("Could not commit"))).isFalse();
+        assertThat(ReadingWal.isTransient(new IllegalStateException("bug"))).isFalse();
+    }
+
+    private ReadingWal start() {
+        ReadingWal started = new ReadingWal(service, properties, registry);
+        started.start();
+        return started;
+    }
+
+    private List<String> segmentFiles() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(ReadingWal.SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static List<PendingReading> readings(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> new PendingReading(i % 3 + 1, 20.0 + i / 4.0, T0.plusSeconds(i), false))
+                .toList();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met within 5s").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.tempmonitor.metrics;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.repo.ThermometerRepository;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class IngestMetricsTest {
+
+    @Test
+    void onReadingsStored_countsPerThermometerWithBoundedTags() {
+        ThermometerRepository thermometerRepo = mock(ThermometerRepository.class);
+        // thermometer n lives in location n * 10
+        when(thermometerRepo.findLocationIds(anyCollection())).thenAnswer(inv -> {
+            Collection<Integer> ids = inv.getArgument(0);
+            List<Object[]> rows = new ArrayList<>();
+            ids.forEach(id -> rows.add(new Object[]{id, id * 10}));
+            return rows;
+        });
+        TempMonitorProperties properties = new TempMonitorProperties();
+        properties.getMetrics().setMaxTaggedThermometers(2);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IngestMetrics metrics = new IngestMetrics(registry, thermometerRepo, properties);
+
+        metrics.onReadingsStored(event(1, 1, 2));
+        metrics.onReadingsStored(event(3, 4, 1));
+
+        assertThat(registry.get("tempmonitor.ingest.batch.size").summary().count()).isEqualTo(2);
+        assertThat(registry.get("tempmonitor.ingest.batch.size").summary().totalAmount()).isEqualTo(6);
+        assertThat(registry.get("tempmonitor.ingest.readings").tag("thermometer", "1").counter().count()).isEqualTo(3);
+        assertThat(registry.get("tempmonitor.ingest.readings").tag("thermometer", "2").counter().count()).isEqualTo(1);
+        assertThat(registry.get("tempmonitor.ingest.readings").tag("thermometer", "other").counters())
+                .hasSize(2)
+                .allSatisfy(c -> assertThat(c.count()).isEqualTo(1));
+        // locations are looked up once per thermometer
+        verify(thermometerRepo, times(2)).findLocationIds(anyCollection());
+    }
+
+    @Test
+    void onReadingsStored_recordsLateness() {
+        ThermometerRepository thermometerRepo = mock(ThermometerRepository.class);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IngestMetrics metrics = new IngestMetrics(registry, thermometerRepo, new TempMonitorProperties());
+        Instant now = Instant.now();
+
+        metrics.onReadingsStored(new ReadingsStoredEvent(List.of(
+                new StoredReading(1, 1, 20.0, now.minus(Duration.ofHours(2))),
+                new StoredReading(2, 1, 20.0, now.plusSeconds(5)))));
+
+        Timer lateness = registry.get("tempmonitor.ingest.lateness").timer();
+        assertThat(lateness.count()).isEqualTo(2);
+        assertThat(lateness.max(TimeUnit.MINUTES)).isBetween(119.0, 121.0);
+    }
+
+    private static ReadingsStoredEvent event(int... thermometerIds) {
+        List<StoredReading> readings = new ArrayList<>();
+        for (int i = 0; i < thermometerIds.length; i++) {
+            readings.add(new StoredReading(i + 1, thermometerIds[i], 20.0, Instant.now()));
+        }
+        return new ReadingsStoredEvent(readings);
+    }
+}
@@ -0,0 +1,46 @@
+package com.tempmonitor.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StatementCountFilterTest {
+
+    @Test
+    void doFilter_recordsStatementsPreparedDuringRequest() throws Exception {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(inv -> mock(Connection.class));
+        DataSource dataSource = new StatementCountingDataSource(target);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/stats/location/1");
+
+        new StatementCountFilter(registry).doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.prepareStatement("select 1");
+                connection.prepareStatement("select 2");
+                connection.createStatement();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/stats/location/{locationId}");
+        });
+        // statements outside a request are not attributed to anything
+        dataSource.getConnection().prepareStatement("select 3");
+
+        var summary = registry.get("tempmonitor.http.db.statements")
+                .tags("method", "GET", "uri", "/api/stats/location/{locationId}")
+                .summary();
+        assertThat(summary.count()).isEqualTo(1);
+        assertThat(summary.totalAmount()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,121 @@
+package com.tempmonitor.metrics;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.repo.ThermometerRepository;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import io.prometheus.metrics.model.snapshots.DataPointSnapshot;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot.GaugeDataPointSnapshot;
+import io.prometheus.metrics.model.snapshots.CounterSnapshot.CounterDataPointSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricMetadata;
+import io.prometheus.metrics.model.snapshots.MetricSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class ThermometerMetricsExporterTest {
+
+    private static final Instant T0 = Instant.parse("2025-01-01T00:00:00Z");
+
+    private final PrometheusRegistry prometheusRegistry = new PrometheusRegistry();
+    private final TempMonitorProperties properties = new TempMonitorProperties();
+    private ThermometerRepository thermometerRepo;
+
+    @BeforeEach
+    void setup() {
+        thermometerRepo = mock(ThermometerRepository.class);
+        // every thermometer is at location 10 * id
+        when(thermometerRepo.findLocationIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> new Object[]{id, id * 10}).toList();
+        });
+    }
+
+    @Test
+    void select_exportsTheTopKByRecentReadings() {
+        properties.getMetrics().getThermometers().setTopK(2);
+        ThermometerMetricsExporter exporter = new ThermometerMetricsExporter(prometheusRegistry, thermometerRepo, properties);
+
+        exporter.onReadingsStored(event(reading(1, 20, 0), reading(1, 21, 1), reading(1, 22, 2),
+                reading(2, 18, 0), reading(2, 19, 1), reading(3, 25, 0)));
+        assertThat(scrape(ThermometerMetricsExporter.VALUE)).isEmpty();
+        exporter.select();
+
+        assertThat(scrape(ThermometerMetricsExporter.VALUE)).containsOnly(
+                Map.entry("1@10", 22.0), Map.entry("2@20", 19.0));
+        assertThat(scrape(ThermometerMetricsExporter.READINGS)).containsOnly(
+                Map.entry("1@10", 3.0), Map.entry("2@20", 2.0));
+
+        // thermometer 3 is busier now; 1 and 2 tie, and the lower id stays
+        exporter.onReadingsStored(event(reading(3, 25, 1), reading(3, 25, 2), reading(1, 22, 3), reading(2, 19, 3)));
+        exporter.select();
+        assertThat(scrape(ThermometerMetricsExporter.VALUE)).containsOnlyKeys("1@10", "3@30");
+        verify(thermometerRepo).findLocationIds(List.of(3));
+    }
+
+    @Test
+    void allowlist_tracksOnlyTheListedThermometers() {
+        properties.getMetrics().getThermometers().setAllowlist(List.of(3, 4));
+        ThermometerMetricsExporter exporter = new ThermometerMetricsExporter(prometheusRegistry, thermometerRepo, properties);
+
+        exporter.onReadingsStored(event(reading(1, 20, 0), reading(1, 21, 1), reading(3, 25, 0)));
+        exporter.select();
+
+        assertThat(scrape(ThermometerMetricsExporter.VALUE)).containsOnly(Map.entry("3@30", 25.0));
+    }
+
+    @Test
+    void anomalies_countReadingsFarFromTheMovingAverage() {
+        properties.getMetrics().getThermometers().setAllowlist(List.of(1));
+        ThermometerMetricsExporter exporter = new ThermometerMetricsExporter(prometheusRegistry, thermometerRepo, properties);
+
+        List<StoredReading> readings = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            readings.add(reading(1, i % 2 == 0 ? 20.0 : 20.2, i));
+        }
+        readings.add(reading(1, 30.0, 40));
+        // late, so counted without changing the value
+        readings.add(reading(1, 50.0, 0));
+        exporter.onReadingsStored(event(readings.toArray(StoredReading[]::new)));
+        exporter.select();
+
+        assertThat(scrape(ThermometerMetricsExporter.ANOMALIES)).containsOnly(Map.entry("1@10", 1.0));
+        assertThat(scrape(ThermometerMetricsExporter.READINGS)).containsOnly(Map.entry("1@10", 42.0));
+        assertThat(scrape(ThermometerMetricsExporter.VALUE)).containsOnly(Map.entry("1@10", 30.0));
+        assertThat(scrape(ThermometerMetricsExporter.AVERAGE).get("1@10")).isBetween(20.1, 21.2);
+    }
+
+    /** Values of one metric by "thermometer@location". */
+    private Map<String, Double> scrape(MetricMetadata metric) {
+        MetricSnapshot snapshot = prometheusRegistry.scrape().stream()
+                .filter(s -> s.getMetadata().getName().equals(metric.getName()))
+                .findFirst()
+                .orElseThrow();
+        return snapshot.getDataPoints().stream().collect(Collectors.toMap(
+                point -> point.getLabels().get("thermometer") + "@" + point.getLabels().get("location"),
+                ThermometerMetricsExporterTest::value));
+    }
+
+    private static double value(DataPointSnapshot point) {
+        return point instanceof GaugeDataPointSnapshot gauge ? gauge.getValue() : ((CounterDataPointSnapshot) point).getValue();
+    }
+
+    private static ReadingsStoredEvent event(StoredReading... readings) {
+        return new ReadingsStoredEvent(List.of(readings));
+    }
+
+    private static StoredReading reading(int thermometerId, double value, long second) {
+        return new StoredReading(0, thermometerId, value, T0.plusSeconds(second));
+    }
+}
@@ -0,0 +1,167 @@
+package com.tempmonitor.partition;
+
+import com.tempmonitor.TempMonitorService;
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.repo.TemperatureReadingBatchRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs partition maintenance against a migrated database with a retention of {@value #RETENTION_MONTHS} months.
+ * Readings are written below the service, which would reject most of these timestamps as too old or too new.
+ */
+@SpringBootTest
+@Testcontainers
+class ReadingPartitionMaintenanceIntegrationTest {
+
+    private static final int RETENTION_MONTHS = 3;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16.2")
+            .withDatabaseName("testdb")
+            .withUsername("testuser")
+            .withPassword("testpass");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.datasource.driver-class-name", postgres::getDriverClassName);
+        registry.add("tempmonitor.partitions.retention-months", () -> RETENTION_MONTHS);
+    }
+
+    @Autowired
+    private ReadingPartitionManager partitionManager;
+
+    @Autowired
+    private TempMonitorService service;
+
+    @Autowired
+    private TemperatureReadingBatchRepository readingBatchRepo;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final YearMonth current = YearMonth.now(ZoneOffset.UTC);
+
+    @Test
+    void maintain_statsKeepOnlyRetainedReadings() {
+        YearMonth expired = current.minusMonths(RETENTION_MONTHS + 2);
+        attachPartition(expired);
+        int kept = createThermometer();
+        int gone = createThermometer();
+        store(kept, 1.0, midMonth(expired));
+        store(kept, 50.0, midMonth(expired));
+        // no partition of its own, so the default partition holds it
+        store(kept, -10.0, midMonth(current.minusMonths(RETENTION_MONTHS + 1)));
+        store(kept, 20.0, Instant.now().minus(1, ChronoUnit.HOURS));
+        store(kept, 22.0, Instant.now().minus(2, ChronoUnit.HOURS));
+        store(gone, 30.0, midMonth(expired));
+
+        partitionManager.maintain();
+
+        assertThat(stats(kept)).isEqualTo(rawStats(kept))
+                .containsEntry("min_value", 20.0).containsEntry("max_value", 22.0)
+                .containsEntry("sum_value", 42.0).containsEntry("reading_count", 2L);
+        assertThat(service.getThermometerStats(kept).getP50()).isBetween(19.0, 23.0);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM thermometer_stats WHERE thermometer_id = ?", Long.class, gone)).isZero();
+    }
+
+    @Test
+    void maintain_attachesMissingPartitionsAndExpiresOldReadings() {
+        YearMonth expired = current.minusMonths(RETENTION_MONTHS + 2);
+        YearMonth premade = current.plusMonths(1);
+        YearMonth missing = current.plusMonths(2);
+        attachPartition(expired);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + ReadingPartitionManager.partitionName(missing));
+        int thermometerId = createThermometer();
+        store(thermometerId, 18.0, midMonth(expired));
+        store(thermometerId, 19.0, midMonth(current.minusMonths(RETENTION_MONTHS + 1)));
+        store(thermometerId, 20.0, midMonth(premade));
+        store(thermometerId, 21.0, midMonth(missing));
+        assertThat(count(ReadingPartitionManager.DEFAULT_PARTITION, thermometerId)).isEqualTo(2);
+
+        partitionManager.maintain();
+
+        assertThat(partitionManager.partitionMonths()).contains(premade, missing).doesNotContain(expired);
+        assertThat(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NULL", Boolean.class,
+                ReadingPartitionManager.partitionName(expired))).isTrue();
+        assertThat(count(ReadingPartitionManager.partitionName(missing), thermometerId)).isEqualTo(1);
+        assertThat(count(ReadingPartitionManager.partitionName(premade), thermometerId)).isEqualTo(1);
+        assertThat(count(ReadingPartitionManager.DEFAULT_PARTITION, thermometerId)).isZero();
+        assertThat(count("temperature_readings", thermometerId)).isEqualTo(2);
+    }
+
+    private int createThermometer() {
+        Integer locationId = service.createLocation("Partitions " + System.nanoTime()).getId();
+        return service.createThermometer("Partitions thermometer", locationId).getId();
+    }
+
+    private void attachPartition(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + ReadingPartitionManager.partitionName(month)
+                + " PARTITION OF temperature_readings FOR VALUES FROM ('" + start(month) + "') TO ('"
+                + start(month.plusMonths(1)) + "')");
+    }
+
+    /** Inserts the reading and folds it into stats and rollups in one transaction, as the service does. */
+    private void store(int thermometerId, double value, Instant timestamp) {
+        Instant micros = timestamp.truncatedTo(ChronoUnit.MICROS);
+        transactionTemplate.executeWithoutResult(status -> {
+            int[] ids = readingBatchRepo.insertAll(new int[]{thermometerId}, new double[]{value},
+                    new long[]{ChronoUnit.MICROS.between(Instant.EPOCH, micros)});
+            eventPublisher.publishEvent(new ReadingsStoredEvent(
+                    List.of(new StoredReading(ids[0], thermometerId, value, micros))));
+        });
+    }
+
+    private long count(String table, int thermometerId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + table + " WHERE thermometer_id = ?", Long.class, thermometerId);
+    }
+
+    private Map<String, Object> stats(int thermometerId) {
+        return jdbcTemplate.queryForMap("SELECT min_value, max_value, sum_value, reading_count FROM thermometer_stats"
+                + " WHERE thermometer_id = ?", thermometerId);
+    }
+
+    private Map<String, Object> rawStats(int thermometerId) {
+        return jdbcTemplate.queryForMap("SELECT MIN(\"value\") AS min_value, MAX(\"value\") AS max_value,"
+                + " SUM(\"value\") AS sum_value, COUNT(*) AS reading_count FROM temperature_readings"
+                + " WHERE thermometer_id = ?", thermometerId);
+    }
+
+    private static Instant start(YearMonth month) {
+        return month.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+
+    private static Instant midMonth(YearMonth month) {
+        return month.atDay(15).atTime(12, 0).toInstant(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,36 @@
+package com.tempmonitor.partition;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadingPartitionManagerTest {
+
+    private static final YearMonth CURRENT = YearMonth.of(2025, 3);
+
+    @Test
+    void monthsToCreate_includesCurrentAndPremadeMonths() {
+        assertThat(ReadingPartitionManager.monthsToCreate(CURRENT, CURRENT, 2))
+                .containsExactly(YearMonth.of(2025, 3), YearMonth.of(2025, 4), YearMonth.of(2025, 5));
+        assertThat(ReadingPartitionManager.partitionName(YearMonth.of(2025, 4))).isEqualTo("temperature_readings_p202504");
+    }
+
+    @Test
+    void monthsToCreate_reachBackToTheOldestAcceptedReading() {
+        // early in the month, late readings may still belong to the previous one
+        assertThat(ReadingPartitionManager.monthsToCreate(YearMonth.of(2025, 2), CURRENT, 1))
+                .containsExactly(YearMonth.of(2025, 2), YearMonth.of(2025, 3), YearMonth.of(2025, 4));
+    }
+
+    @Test
+    void partitionsToDrop_onlyMonthlyPartitionsOlderThanRetention() {
+        List<String> existing = List.of("temperature_readings_default", "temperature_readings_p202411",
+                "temperature_readings_p202412", "temperature_readings_p202501", "temperature_readings_p202503");
+        assertThat(ReadingPartitionManager.partitionsToDrop(existing, CURRENT, 3))
+                .containsExactly("temperature_readings_p202411");
+        assertThat(ReadingPartitionManager.partitionsToDrop(existing, CURRENT, 0)).isEmpty();
+    }
+}
@@ -1,24 +1,52 @@
 package com.tempmonitor.service;
 
+import com.tempmonitor.TempMonitorProperties;
 import com.tempmonitor.TempMonitorService;
+import com.tempmonitor.cache.LatestReadingCache;
+import com.tempmonitor.cache.MetadataChangedEvent;
+import com.tempmonitor.cache.RecentReadingsStore;
 import com.tempmonitor.dto.*;
 import com.tempmonitor.entity.Location;
 import com.tempmonitor.entity.TemperatureReading;
 import com.tempmonitor.entity.Thermometer;
+import com.tempmonitor.entity.ThermometerStats;
+import com.tempmonitor.ingest.PendingReading;
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.stats.QuantileSketch;
+import com.tempmonitor.stats.ReadingPercentiles;
+import com.tempmonitor.stats.RollupResolution;
 import com.tempmonitor.repo.LocationRepository;
+import com.tempmonitor.repo.LocationRow;
+import com.tempmonitor.repo.ReadingBlockRepository;
+import com.tempmonitor.repo.ReadingRollupRepository;
+import com.tempmonitor.repo.ReadingRow;
+import com.tempmonitor.repo.TemperatureReadingBatchRepository;
 import com.tempmonitor.repo.TemperatureReadingRepository;
 import com.tempmonitor.repo.ThermometerRepository;
+import com.tempmonitor.repo.ThermometerStatsRepository;
+import com.tempmonitor.repo.ThermometerRow;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.api.Assertions.within;
 import static org.mockito.Mockito.*;
 
 class TempMonitorServiceTest {
@@ -26,6 +54,14 @@ class TempMonitorServiceTest {
     private LocationRepository locationRepo;
     private ThermometerRepository thermometerRepo;
     private TemperatureReadingRepository readingRepo;
+    private TemperatureReadingBatchRepository readingBatchRepo;
+    private ThermometerStatsRepository statsRepo;
+    private ReadingRollupRepository rollupRepo;
+    private ReadingPercentiles readingPercentiles;
+    private LatestReadingCache latestReadingCache;
+    private RecentReadingsStore recentReadingsStore;
+    private ReadingBlockRepository blockRepo;
+    private ApplicationEventPublisher eventPublisher;
     private TempMonitorService service;
 
     @BeforeEach
@@ -33,7 +69,18 @@ class TempMonitorServiceTest {
         locationRepo = mock(LocationRepository.class);
         thermometerRepo = mock(ThermometerRepository.class);
         readingRepo = mock(TemperatureReadingRepository.class);
-        service = new TempMonitorService(locationRepo, thermometerRepo, readingRepo);
+        readingBatchRepo = mock(TemperatureReadingBatchRepository.class);
+        statsRepo = mock(ThermometerStatsRepository.class);
+        rollupRepo = mock(ReadingRollupRepository.class);
+        blockRepo = mock(ReadingBlockRepository.class);
+        when(blockRepo.knownArchivedBefore()).thenReturn(Instant.EPOCH);
+        readingPercentiles = mock(ReadingPercentiles.class);
+        latestReadingCache = mock(LatestReadingCache.class);
+        recentReadingsStore = mock(RecentReadingsStore.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        service = new TempMonitorService(locationRepo, thermometerRepo, readingRepo, readingBatchRepo,
+                statsRepo, rollupRepo, blockRepo, readingPercentiles, latestReadingCache, recentReadingsStore, eventPublisher, new TempMonitorProperties(),
+                mock(PlatformTransactionManager.class));
     }
 
     @Test
@@ -47,8 +94,7 @@ class TempMonitorServiceTest {
 
     @Test
     void getLocation_success() {
-        Location loc = Location.builder().id(5).name("B").build();
-        when(locationRepo.findById(5)).thenReturn(Optional.of(loc));
+        when(locationRepo.findRowById(5)).thenReturn(Optional.of(new LocationRow(5, "B")));
         LocationDto dto = service.getLocation(5);
         assertThat(dto.getId()).isEqualTo(5);
         assertThat(dto.getName()).isEqualTo("B");
@@ -56,7 +102,7 @@ class TempMonitorServiceTest {
 
     @Test
     void getLocation_notFound() {
-        when(locationRepo.findById(42)).thenReturn(Optional.empty());
+        when(locationRepo.findRowById(42)).thenReturn(Optional.empty());
         assertThatThrownBy(() -> service.getLocation(42))
                 .isInstanceOf(NoSuchElementException.class)
                 .hasMessageContaining("Location not found");
@@ -69,77 +115,378 @@ class TempMonitorServiceTest {
         LocationDto dto = service.createLocation("C");
         assertThat(dto.getId()).isEqualTo(10);
         assertThat(dto.getName()).isEqualTo("C");
+        verify(eventPublisher).publishEvent(new MetadataChangedEvent(10, null));
     }
 
     @Test
     void getThermometers_withLocationId() {
-        Location location = Location.builder().id(2).name("L").build();
-        Thermometer t = Thermometer.builder().id(1).name("T").location(location).build();
-        when(thermometerRepo.findByLocation(location)).thenReturn(List.of(t));
-        when(locationRepo.getReferenceById(2)).thenReturn(location);
+        when(thermometerRepo.findRowsByLocationId(2)).thenReturn(List.of(new ThermometerRow(1, "T", 2)));
         List<ThermometerDto> list = service.getThermometers(2);
         assertThat(list).hasSize(1);
         assertThat(list.getFirst().getLocationId()).isEqualTo(2);
+        verifyNoInteractions(locationRepo);
+    }
+
+    @Test
+    void getThermometer_success() {
+        when(thermometerRepo.findRowById(4)).thenReturn(Optional.of(new ThermometerRow(4, "T4", 2)));
+        ThermometerDto dto = service.getThermometer(4);
+        assertThat(dto.getName()).isEqualTo("T4");
+        assertThat(dto.getLocationId()).isEqualTo(2);
     }
 
     @Test
     void getThermometer_notFound() {
-        when(thermometerRepo.findById(99)).thenReturn(Optional.empty());
+        when(thermometerRepo.findRowById(99)).thenReturn(Optional.empty());
         assertThatThrownBy(() -> service.getThermometer(99))
                 .isInstanceOf(NoSuchElementException.class);
     }
 
     @Test
     void addReading_success() {
-        Thermometer therm = Thermometer.builder().id(3).name("T").location(Location.builder().id(1).build()).build();
-        TemperatureReading reading = TemperatureReading.builder().id(9).thermometer(therm).value(22.5).timestamp(Instant.now()).build();
         TemperatureReadingCreateDto dto = new TemperatureReadingCreateDto();
         dto.setThermometerId(3);
         dto.setValue(22.5);
-        when(thermometerRepo.findById(3)).thenReturn(Optional.of(therm));
-        when(readingRepo.save(any())).thenReturn(reading);
+        when(thermometerRepo.findRowById(3)).thenReturn(Optional.of(new ThermometerRow(3, "T", 1)));
+        when(readingBatchRepo.insertAll(any(), any(), any())).thenReturn(new int[]{9});
         TemperatureReadingDto result = service.addReading(dto);
         assertThat(result.getId()).isEqualTo(9);
         assertThat(result.getThermometerId()).isEqualTo(3);
         assertThat(result.getValue()).isEqualTo(22.5);
+        verify(eventPublisher).publishEvent(any(ReadingsStoredEvent.class));
+    }
+
+    @Test
+    void addReading_retry_returnsStoredReadingWithoutWriting() {
+        Instant taken = Instant.now().minusSeconds(30).truncatedTo(ChronoUnit.MICROS);
+        TemperatureReadingDto stored = new TemperatureReadingDto();
+        stored.setId(9);
+        stored.setThermometerId(3);
+        stored.setValue(22.5);
+        stored.setTimestamp(taken);
+        when(thermometerRepo.findRowById(3)).thenReturn(Optional.of(new ThermometerRow(3, "T", 1)));
+        when(recentReadingsStore.find(3, taken)).thenReturn(Optional.of(stored));
+
+        TemperatureReadingDto result = service.addReading(reading(3, 22.5, taken));
+
+        assertThat(result).isEqualTo(stored);
+        verify(readingBatchRepo).insertAll(new int[0], new double[0], new long[0]);
+        verify(eventPublisher, never()).publishEvent(any(ReadingsStoredEvent.class));
+    }
+
+    @Test
+    void addReading_duplicateSkippedByDatabase_returnsStoredRow() {
+        Instant taken = Instant.now().minus(Duration.ofDays(3)).truncatedTo(ChronoUnit.MICROS);
+        when(thermometerRepo.findRowById(3)).thenReturn(Optional.of(new ThermometerRow(3, "T", 1)));
+        when(readingBatchRepo.insertAll(any(), any(), any())).thenReturn(new int[]{0});
+        when(readingRepo.findRowByThermometerAndTimestamp(3, taken))
+                .thenReturn(Optional.of(new ReadingRow(5, 3, 22.0, taken)));
+
+        TemperatureReadingDto result = service.addReading(reading(3, 22.5, taken));
+
+        assertThat(result.getId()).isEqualTo(5);
+        assertThat(result.getValue()).isEqualTo(22.0);
+        verify(eventPublisher, never()).publishEvent(any(ReadingsStoredEvent.class));
+    }
+
+    @Test
+    void addReadings_duplicates_areReportedAndNotPublished() {
+        Instant taken = Instant.now().minusSeconds(60).truncatedTo(ChronoUnit.MICROS);
+        TemperatureReadingDto known = new TemperatureReadingDto();
+        known.setId(40);
+        when(thermometerRepo.findExistingIds(Set.of(3, 4))).thenReturn(List.of(3, 4));
+        when(recentReadingsStore.find(3, taken)).thenReturn(Optional.of(known));
+        // the second of the two fresh readings already exists in the database
+        when(readingBatchRepo.insertAll(any(), any(), any())).thenReturn(new int[]{41, 0});
+
+        ReadingBatchResultDto result = service.addReadings(List.of(
+                reading(3, 20.0, taken), reading(4, 21.0, taken), reading(4, 22.0, taken.plusSeconds(1))));
+
+        assertThat(result.getItems()).extracting(ReadingBatchItemDto::getStatus, ReadingBatchItemDto::getId).containsExactly(
+                tuple(ReadingBatchItemDto.Status.DUPLICATE, 40), tuple(ReadingBatchItemDto.Status.ACCEPTED, 41),
+                tuple(ReadingBatchItemDto.Status.DUPLICATE, null));
+        assertThat(result.getAccepted()).isEqualTo(1);
+        assertThat(result.getDuplicates()).isEqualTo(2);
+        assertThat(result.getRejected()).isZero();
+        ArgumentCaptor<ReadingsStoredEvent> event = ArgumentCaptor.forClass(ReadingsStoredEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().readings()).extracting(StoredReading::id).containsExactly(41);
+    }
+
+    @Test
+    void addReadings_sameThermometerAndReceiveTime_areMovedApartNotMerged() {
+        TemperatureReadingCreateDto first = new TemperatureReadingCreateDto();
+        first.setThermometerId(3);
+        first.setValue(20.0);
+        TemperatureReadingCreateDto second = new TemperatureReadingCreateDto();
+        second.setThermometerId(3);
+        second.setValue(21.0);
+        when(thermometerRepo.findExistingIds(Set.of(3))).thenReturn(List.of(3));
+        when(readingBatchRepo.insertAll(any(), any(), any())).thenReturn(new int[]{1, 2});
+
+        ReadingBatchResultDto result = service.addReadings(List.of(first, second));
+
+        assertThat(result.getAccepted()).isEqualTo(2);
+        assertThat(Duration.between(result.getItems().get(0).getTimestamp(), result.getItems().get(1).getTimestamp()))
+                .isEqualTo(Duration.ofNanos(1000));
+    }
+
+    @Test
+    void addReadings_reportsPerItemStatus() {
+        TemperatureReadingCreateDto ok = new TemperatureReadingCreateDto();
+        ok.setThermometerId(3);
+        ok.setValue(21.0);
+        TemperatureReadingCreateDto unknown = new TemperatureReadingCreateDto();
+        unknown.setThermometerId(4);
+        unknown.setValue(22.0);
+        TemperatureReadingCreateDto invalid = new TemperatureReadingCreateDto();
+        invalid.setThermometerId(3);
+        when(thermometerRepo.findExistingIds(Set.of(3, 4))).thenReturn(List.of(3));
+        when(readingBatchRepo.insertAll(any(), any(), any())).thenReturn(new int[]{100});
+
+        ReadingBatchResultDto result = service.addReadings(List.of(ok, unknown, invalid));
+
+        assertThat(result.getAccepted()).isEqualTo(1);
+        assertThat(result.getRejected()).isEqualTo(2);
+        assertThat(result.getItems()).extracting(ReadingBatchItemDto::getStatus).containsExactly(
+                ReadingBatchItemDto.Status.ACCEPTED, ReadingBatchItemDto.Status.REJECTED, ReadingBatchItemDto.Status.REJECTED);
+        assertThat(result.getItems().getFirst().getId()).isEqualTo(100);
+        assertThat(result.getItems().get(1).getError()).isEqualTo("Thermometer not found");
+        verify(thermometerRepo, times(1)).findExistingIds(any());
+        verify(readingBatchRepo).insertAll(eq(new int[]{3}), eq(new double[]{21.0}), any());
+    }
+
+    @Test
+    void storeReadings_sameDeviceReadingTwiceInOneBatch_isStoredOnce() {
+        when(thermometerRepo.findExistingIds(Set.of(3))).thenReturn(List.of(3));
+        when(readingBatchRepo.insertAll(any(), any(), any())).thenReturn(new int[]{100});
+        Instant deviceTime = Instant.now().minus(Duration.ofHours(1)).truncatedTo(ChronoUnit.SECONDS);
+
+        // e.g. the original and its retry, both queued while the database was down
+        ReadingBatchResultDto result = service.storeReadings(List.of(
+                new PendingReading(3, 19.5, deviceTime, false), new PendingReading(3, 19.5, deviceTime, false)));
+
+        assertThat(result.getAccepted()).isEqualTo(1);
+        assertThat(result.getDuplicates()).isEqualTo(1);
+        assertThat(result.getItems()).extracting(ReadingBatchItemDto::getStatus).containsExactly(
+                ReadingBatchItemDto.Status.ACCEPTED, ReadingBatchItemDto.Status.DUPLICATE);
+        verify(readingBatchRepo).insertAll(eq(new int[]{3}), eq(new double[]{19.5}),
+                eq(new long[]{deviceTime.getEpochSecond() * 1_000_000L}));
+    }
+
+    @Test
+    void storeReadings_receiveTimeAtADeviceReadingsInstant_isMovedPastIt() {
+        when(thermometerRepo.findExistingIds(Set.of(3))).thenReturn(List.of(3));
+        when(readingBatchRepo.insertAll(any(), any(), any())).thenReturn(new int[]{100, 101});
+        Instant time = Instant.now().minus(Duration.ofMinutes(1)).truncatedTo(ChronoUnit.SECONDS);
+        long micros = time.getEpochSecond() * 1_000_000L;
+
+        ReadingBatchResultDto result = service.storeReadings(List.of(
+                new PendingReading(3, 20.0, time, true), new PendingReading(3, 19.5, time, false)));
+
+        assertThat(result.getAccepted()).isEqualTo(2);
+        verify(readingBatchRepo).insertAll(eq(new int[]{3, 3}), eq(new double[]{20.0, 19.5}),
+                eq(new long[]{micros + 1, micros}));
+    }
+
+    @Test
+    void storeReadings_overlappingServerStampedBatches_areAllStored() {
+        when(thermometerRepo.findExistingIds(Set.of(3))).thenReturn(List.of(3));
+        // the second batch's receive times were taken by the first one, then the moved readings go in
+        when(readingBatchRepo.insertAll(any(), any(), any()))
+                .thenReturn(new int[]{100, 101}, new int[]{0, 0}, new int[]{102, 103});
+        Instant time = Instant.now().minus(Duration.ofMinutes(1)).truncatedTo(ChronoUnit.SECONDS);
+        long micros = time.getEpochSecond() * 1_000_000L;
+
+        service.storeReadings(List.of(new PendingReading(3, 20.0, time, true), new PendingReading(3, 20.5, time, true)));
+        ReadingBatchResultDto result = service.storeReadings(List.of(
+                new PendingReading(3, 21.0, time, true), new PendingReading(3, 21.5, time, true)));
+
+        assertThat(result.getAccepted()).isEqualTo(2);
+        assertThat(result.getDuplicates()).isZero();
+        assertThat(result.getItems()).extracting(ReadingBatchItemDto::getStatus, ReadingBatchItemDto::getId).containsExactly(
+                tuple(ReadingBatchItemDto.Status.ACCEPTED, 102), tuple(ReadingBatchItemDto.Status.ACCEPTED, 103));
+        verify(readingBatchRepo, times(2)).insertAll(eq(new int[]{3, 3}), eq(new double[]{21.0, 21.5}), any());
+        verify(readingBatchRepo).insertAll(eq(new int[]{3, 3}), eq(new double[]{21.0, 21.5}),
+                eq(new long[]{micros + 2, micros + 3}));
+        verify(recentReadingsStore, never()).find(any(), any());
+    }
+
+    @Test
+    void addPendingReadings_rejectsNonFiniteValues() {
+        when(thermometerRepo.findExistingIds(Set.of(3))).thenReturn(List.of(3));
+        when(readingBatchRepo.insertAll(any(), any(), any())).thenReturn(new int[]{100});
+        Instant deviceTime = Instant.now().minus(Duration.ofHours(1)).truncatedTo(ChronoUnit.SECONDS);
+
+        ReadingBatchResultDto result = service.addPendingReadings(List.of(
+                new PendingReading(3, Double.NaN, deviceTime, false), new PendingReading(3, 19.5, deviceTime, false)));
+
+        assertThat(result.getItems()).extracting(ReadingBatchItemDto::getStatus).containsExactly(
+                ReadingBatchItemDto.Status.REJECTED, ReadingBatchItemDto.Status.ACCEPTED);
+        assertThat(result.getItems().getFirst().getError()).isEqualTo("value must be a finite number");
+        verify(readingBatchRepo).insertAll(eq(new int[]{3}), eq(new double[]{19.5}),
+                eq(new long[]{deviceTime.getEpochSecond() * 1_000_000L}));
+    }
+
+    @Test
+    void addReadings_deviceTimestamps_areCheckedAgainstWindowAndInsertedInTimeOrder() {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        TemperatureReadingCreateDto recent = reading(3, 21.0, now.minus(Duration.ofMinutes(5)));
+        TemperatureReadingCreateDto buffered = reading(3, 19.0, now.minus(Duration.ofDays(2)));
+        TemperatureReadingCreateDto tooLate = reading(3, 18.0, now.minus(Duration.ofDays(8)));
+        TemperatureReadingCreateDto future = reading(3, 18.0, now.plus(Duration.ofHours(1)));
+        when(thermometerRepo.findExistingIds(Set.of(3))).thenReturn(List.of(3));
+        when(readingBatchRepo.insertAll(any(), any(), any())).thenReturn(new int[]{100, 101});
+
+        ReadingBatchResultDto result = service.addReadings(List.of(recent, buffered, tooLate, future));
+
+        assertThat(result.getItems()).extracting(ReadingBatchItemDto::getStatus).containsExactly(
+                ReadingBatchItemDto.Status.ACCEPTED, ReadingBatchItemDto.Status.ACCEPTED,
+                ReadingBatchItemDto.Status.REJECTED, ReadingBatchItemDto.Status.REJECTED);
+        assertThat(result.getItems().get(2).getError()).isEqualTo("timestamp is older than the accepted lateness window");
+        assertThat(result.getItems().get(3).getError()).isEqualTo("timestamp is ahead of the server clock");
+        // the older, buffered reading is inserted first and gets the first id
+        verify(readingBatchRepo).insertAll(eq(new int[]{3, 3}), eq(new double[]{19.0, 21.0}), eq(new long[]{
+                ChronoUnit.MICROS.between(Instant.EPOCH, buffered.getTimestamp()),
+                ChronoUnit.MICROS.between(Instant.EPOCH, recent.getTimestamp())}));
+        assertThat(result.getItems().get(1).getId()).isEqualTo(100);
+        assertThat(result.getItems().get(0).getId()).isEqualTo(101);
+    }
+
+    @Test
+    void addReading_outsideLatenessWindow_shouldThrow() {
+        TemperatureReadingCreateDto dto = reading(3, 21.0, Instant.now().minus(Duration.ofDays(30)));
+        assertThatThrownBy(() -> service.addReading(dto))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("timestamp is older than the accepted lateness window");
+        verifyNoInteractions(readingRepo);
+    }
+
+    @Test
+    void addReadings_tooLarge_shouldThrow() {
+        List<TemperatureReadingCreateDto> dtos = Collections.nCopies(5001, new TemperatureReadingCreateDto());
+        assertThatThrownBy(() -> service.addReadings(dtos))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(readingBatchRepo);
     }
 
     @Test
     void getLatestReadings_delegates() {
-        TemperatureReading reading = TemperatureReading.builder().id(1).thermometer(Thermometer.builder().id(1).location(Location.builder().id(2).build()).build()).value(11.2).timestamp(Instant.now()).build();
-        when(readingRepo.findLatestForAllThermometers()).thenReturn(List.of(reading));
+        when(readingRepo.findLatestRowsForAllThermometers())
+                .thenReturn(List.<Object[]>of(new Object[]{1, 1, 11.2, 1_700_000_000_000_000L}));
         List<TemperatureReadingDto> list = service.getLatestReadings();
         assertThat(list).hasSize(1);
         assertThat(list.getFirst().getValue()).isEqualTo(11.2);
+        assertThat(list.getFirst().getTimestamp()).isEqualTo(Instant.ofEpochSecond(1_700_000_000L));
+    }
+
+    @Test
+    void getLatestReadings_servedFromCacheWhenWarm() {
+        TemperatureReadingDto cached = new TemperatureReadingDto();
+        cached.setThermometerId(1);
+        cached.setValue(19.5);
+        when(latestReadingCache.snapshot()).thenReturn(Optional.of(List.of(cached)));
+        List<TemperatureReadingDto> list = service.getLatestReadings();
+        assertThat(list).containsExactly(cached);
+        verifyNoInteractions(readingRepo);
     }
 
     @Test
     void getReadingsForThermometer_success() {
-        Thermometer therm = Thermometer.builder().id(1).location(Location.builder().id(2).build()).build();
-        TemperatureReading reading = TemperatureReading.builder().id(1).thermometer(therm).value(1.1).timestamp(Instant.now()).build();
-        when(thermometerRepo.findById(1)).thenReturn(Optional.of(therm));
-        when(readingRepo.findTop10ByThermometerOrderByTimestampDesc(therm)).thenReturn(List.of(reading));
+        when(readingRepo.findLatestRows(1, Limit.of(10))).thenReturn(List.of(new ReadingRow(1, 1, 1.1, Instant.now())));
         List<TemperatureReadingDto> res = service.getReadingsForThermometer(1, 10);
         assertThat(res).hasSize(1);
         assertThat(res.getFirst().getValue()).isEqualTo(1.1);
+        verifyNoInteractions(thermometerRepo);
+        // nothing was ever archived, so there are no blocks to read
+        verify(blockRepo, never()).forEachNewestReading(anyInt(), any(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void getReadingsForThermometer_continuesWithArchivedReadings() {
+        Instant newest = Instant.parse("2026-10-01T00:00:30Z");
+        when(blockRepo.knownArchivedBefore()).thenReturn(Instant.parse("2026-10-01T00:00:00Z"));
+        when(readingRepo.findLatestRows(1, Limit.of(3))).thenReturn(List.of(new ReadingRow(7, 1, 1.1, newest)));
+        doAnswer(inv -> {
+            ReadingBlockRepository.ReadingHandler handler = inv.getArgument(4);
+            handler.accept(6, 1_790_812_799_000_000L, 1.0);
+            handler.accept(5, 1_790_812_798_000_000L, 0.9);
+            return 2;
+        }).when(blockRepo).forEachNewestReading(eq(1), eq(1_790_812_830_000_000L), eq(7), eq(2), any());
+
+        List<TemperatureReadingDto> res = service.getReadingsForThermometer(1, 3);
+
+        assertThat(res).extracting(TemperatureReadingDto::getId).containsExactly(7, 6, 5);
+        assertThat(res.getLast().getTimestamp()).isEqualTo(Instant.parse("2026-09-30T23:59:58Z"));
+        verifyNoInteractions(thermometerRepo);
+    }
+
+    @Test
+    void getReadingsForThermometer_servedFromRecentStore() {
+        TemperatureReadingDto recent = new TemperatureReadingDto();
+        recent.setValue(2.2);
+        when(recentReadingsStore.latest(1, 5)).thenReturn(Optional.of(List.of(recent)));
+        List<TemperatureReadingDto> res = service.getReadingsForThermometer(1, 5);
+        assertThat(res).containsExactly(recent);
+        verifyNoInteractions(thermometerRepo, readingRepo);
+    }
+
+    @Test
+    void getReadingHistory_picksResolutionFromRange() {
+        Instant to = Instant.parse("2025-02-01T00:00:00Z");
+        Instant from = to.minus(Duration.ofDays(30));
+        ReadingBucketDto bucket = new ReadingBucketDto();
+        when(thermometerRepo.findRowById(1)).thenReturn(Optional.of(new ThermometerRow(1, "T", 1)));
+        when(rollupRepo.findBuckets(1, RollupResolution.HOUR, from, to)).thenReturn(List.of(bucket));
+        ReadingHistoryDto dto = service.getReadingHistory(1, from, to, null);
+        assertThat(dto.getResolution()).isEqualTo(RollupResolution.HOUR);
+        assertThat(dto.getBuckets()).containsExactly(bucket);
+    }
+
+    @Test
+    void getReadingHistory_invalidRange_shouldThrow() {
+        Instant now = Instant.now();
+        assertThatThrownBy(() -> service.getReadingHistory(1, now, now.minusSeconds(1), null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void getReadingHistory_thermometerNotFound_shouldThrow() {
+        when(thermometerRepo.findRowById(1)).thenReturn(Optional.empty());
+        assertThatThrownBy(() -> service.getReadingHistory(1, null, null, RollupResolution.DAY))
+                .isInstanceOf(NoSuchElementException.class)
+                .hasMessageContaining("Thermometer not found");
     }
 
     @Test
     void getThermometerStats_success() {
-        Thermometer therm = Thermometer.builder().id(1).location(Location.builder().id(2).build()).build();
-        when(thermometerRepo.findById(1)).thenReturn(Optional.of(therm));
-        when(readingRepo.statsForThermometer(therm)).thenReturn(List.<Object[]>of(new Object[]{1.0, 5.0, 3.0, 3L}));
+        when(thermometerRepo.findRowById(1)).thenReturn(Optional.of(new ThermometerRow(1, "T", 1)));
+        when(statsRepo.findById(1)).thenReturn(Optional.of(new ThermometerStats(1, 1.0, 5.0, 9.0, 3L,
+                sketch(1.0, 3.0, 5.0))));
         ThermometerStatsDto dto = service.getThermometerStats(1);
         assertThat(dto.getMin()).isEqualTo(1.0);
         assertThat(dto.getMax()).isEqualTo(5.0);
         assertThat(dto.getAvg()).isEqualTo(3.0);
         assertThat(dto.getCount()).isEqualTo(3L);
+        assertThat(dto.getP50()).isCloseTo(3.0, within(0.03));
+        assertThat(dto.getP99()).isCloseTo(3.0, within(0.03));
+    }
+
+    @Test
+    void getThermometerStats_noReadings() {
+        when(thermometerRepo.findRowById(1)).thenReturn(Optional.of(new ThermometerRow(1, "T", 1)));
+        when(statsRepo.findById(1)).thenReturn(Optional.empty());
+        ThermometerStatsDto dto = service.getThermometerStats(1);
+        assertThat(dto.getMin()).isNull();
+        assertThat(dto.getAvg()).isNull();
+        assertThat(dto.getP50()).isNull();
+        assertThat(dto.getCount()).isZero();
     }
 
     @Test
     void getLocationStats_noThermometers() {
-        Location loc = Location.builder().id(1).thermometers(Collections.emptyList()).build();
-        when(locationRepo.findById(1)).thenReturn(Optional.of(loc));
+        when(statsRepo.locationStats(1)).thenReturn(List.<Object[]>of(new Object[]{0L, null, null, null, null, "{}"}));
+        when(locationRepo.findRowById(1)).thenReturn(Optional.of(new LocationRow(1, "L")));
         LocationStatsDto dto = service.getLocationStats(1);
         assertThat(dto.getLocationId()).isEqualTo(1);
         assertThat(dto.getMin()).isNull();
@@ -150,20 +497,72 @@ class TempMonitorServiceTest {
 
     @Test
     void getLocationStats_success() {
-        Location loc = Location.builder().id(2).thermometers(List.of(Thermometer.builder().id(11).build())).build();
-        when(locationRepo.findById(2)).thenReturn(Optional.of(loc));
-        when(readingRepo.statsForLocation(List.of(11))).thenReturn(List.<Object[]>of(new Object[]{2.0, 7.0, 4.5, 4L}));
+        when(statsRepo.locationStats(2)).thenReturn(List.<Object[]>of(new Object[]{1L, 2.0, 7.0, 18.0, 4L,
+                sketch(2.0, 4.0, 5.0, 7.0)}));
         LocationStatsDto dto = service.getLocationStats(2);
         assertThat(dto.getLocationId()).isEqualTo(2);
         assertThat(dto.getMin()).isEqualTo(2.0);
         assertThat(dto.getMax()).isEqualTo(7.0);
         assertThat(dto.getAvg()).isEqualTo(4.5);
         assertThat(dto.getCount()).isEqualTo(4L);
+        assertThat(dto.getP90()).isCloseTo(5.0, within(0.05));
+        verifyNoInteractions(locationRepo);
+    }
+
+    @Test
+    void getThermometerStatsList_exact_percentilesForThermometersWithReadings() {
+        when(statsRepo.thermometerStatsByLocation(2)).thenReturn(List.of(
+                new Object[]{4, 1.0, 5.0, 9.0, 3L, sketch(1.0, 3.0, 5.0)},
+                new Object[]{5, null, null, null, null, null}));
+        when(readingPercentiles.byThermometer(List.of(4))).thenReturn(Map.of(4, new double[]{3.0, 4.6, 4.96}));
+
+        List<ThermometerStatsDto> result = service.getThermometerStatsList(2, true);
+
+        assertThat(result).extracting(ThermometerStatsDto::getThermometerId, ThermometerStatsDto::getAvg,
+                ThermometerStatsDto::getCount, ThermometerStatsDto::getP90)
+                .containsExactly(tuple(4, 3.0, 3L, 4.6), tuple(5, null, 0L, null));
+        verifyNoInteractions(locationRepo);
+    }
+
+    @Test
+    void getThermometerStatsList_percentilesFromSketches_skipRawReadings() {
+        when(statsRepo.allThermometerStats()).thenReturn(List.<Object[]>of(
+                new Object[]{4, 1.0, 5.0, 9.0, 3L, sketch(1.0, 3.0, 5.0)}));
+
+        List<ThermometerStatsDto> result = service.getThermometerStatsList(null, false);
+
+        assertThat(result).singleElement().satisfies(dto -> {
+            assertThat(dto.getP50()).isCloseTo(3.0, within(0.03));
+            assertThat(dto.getP99()).isCloseTo(3.0, within(0.03));
+        });
+        verifyNoInteractions(readingPercentiles);
+    }
+
+    @Test
+    void getThermometerStatsList_locationNotFound_shouldThrow() {
+        when(statsRepo.thermometerStatsByLocation(777)).thenReturn(List.of());
+        when(locationRepo.findRowById(777)).thenReturn(Optional.empty());
+        assertThatThrownBy(() -> service.getThermometerStatsList(777, false))
+                .isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void getAllLocationStats_groupedRows() {
+        when(statsRepo.allLocationStats()).thenReturn(List.of(
+                new Object[]{1L, 2.0, 7.0, 18.0, 4L, sketch(2.0, 4.0, 5.0, 7.0), 2},
+                new Object[]{0L, null, null, null, null, "{}", 3}));
+        when(readingPercentiles.byLocation(List.of(2))).thenReturn(Map.of(2, new double[]{4.0, 6.5, 6.95}));
+
+        List<LocationStatsDto> result = service.getAllLocationStats(true);
+
+        assertThat(result).extracting(LocationStatsDto::getLocationId, LocationStatsDto::getAvg,
+                LocationStatsDto::getCount, LocationStatsDto::getP50)
+                .containsExactly(tuple(2, 4.5, 4L, 4.0), tuple(3, null, null, null));
     }
 
     @Test
     void getThermometers_locationNotFound_shouldThrow() {
-        when(locationRepo.getReferenceById(42)).thenThrow(new NoSuchElementException("Location not found"));
+        when(locationRepo.findRowById(42)).thenReturn(Optional.empty());
         assertThatThrownBy(() -> service.getThermometers(42))
                 .isInstanceOf(NoSuchElementException.class)
                 .hasMessageContaining("Location not found");
@@ -171,7 +570,7 @@ class TempMonitorServiceTest {
 
     @Test
     void getThermometer_notFound_throws() {
-        when(thermometerRepo.findById(5)).thenReturn(Optional.empty());
+        when(thermometerRepo.findRowById(5)).thenReturn(Optional.empty());
         assertThatThrownBy(() -> service.getThermometer(5))
                 .isInstanceOf(NoSuchElementException.class)
                 .hasMessageContaining("Thermometer not found");
@@ -182,7 +581,7 @@ class TempMonitorServiceTest {
         TemperatureReadingCreateDto dto = new TemperatureReadingCreateDto();
         dto.setThermometerId(123);
         dto.setValue(25.0);
-        when(thermometerRepo.findById(123)).thenReturn(Optional.empty());
+        when(thermometerRepo.findRowById(123)).thenReturn(Optional.empty());
         assertThatThrownBy(() -> service.addReading(dto))
                 .isInstanceOf(NoSuchElementException.class)
                 .hasMessageContaining("Thermometer not found");
@@ -190,7 +589,7 @@ class TempMonitorServiceTest {
 
     @Test
     void getReadingsForThermometer_thermometerNotFound_shouldThrow() {
-        when(thermometerRepo.findById(999)).thenReturn(Optional.empty());
+        when(thermometerRepo.findRowById(999)).thenReturn(Optional.empty());
         assertThatThrownBy(() -> service.getReadingsForThermometer(999, 10))
                 .isInstanceOf(NoSuchElementException.class)
                 .hasMessageContaining("Thermometer not found");
@@ -198,7 +597,7 @@ class TempMonitorServiceTest {
 
     @Test
     void getThermometerStats_thermometerNotFound_shouldThrow() {
-        when(thermometerRepo.findById(888)).thenReturn(Optional.empty());
+        when(thermometerRepo.findRowById(888)).thenReturn(Optional.empty());
         assertThatThrownBy(() -> service.getThermometerStats(888))
                 .isInstanceOf(NoSuchElementException.class)
                 .hasMessageContaining("Thermometer not found");
@@ -206,9 +605,23 @@ class TempMonitorServiceTest {
 
     @Test
     void getLocationStats_locationNotFound_shouldThrow() {
-        when(locationRepo.findById(777)).thenReturn(Optional.empty());
+        when(locationRepo.findRowById(777)).thenReturn(Optional.empty());
         assertThatThrownBy(() -> service.getLocationStats(777))
                 .isInstanceOf(NoSuchElementException.class)
                 .hasMessageContaining("Location not found");
     }
-}
\ No newline at end of file
+
+    private static TemperatureReadingCreateDto reading(int thermometerId, double value, Instant timestamp) {
+        TemperatureReadingCreateDto dto = new TemperatureReadingCreateDto();
+        dto.setThermometerId(thermometerId);
+        dto.setValue(value);
+        dto.setTimestamp(timestamp);
+        return dto;
+    }
+
+    private static String sketch(double... values) {
+        QuantileSketch sketch = new QuantileSketch();
+        for (double value : values) sketch.add(value);
+        return sketch.toJson();
+    }
+}
@@ -0,0 +1,72 @@
+package com.tempmonitor.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+class QuantileSketchTest {
+
+    @Test
+    void quantiles_areWithinTheRelativeAccuracy() {
+        Random random = new Random(42);
+        double[] values = new double[10_000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = -20 + 60 * random.nextDouble();
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double q : new double[]{0, 0.01, 0.5, 0.9, 0.99, 1}) {
+            double exact = values[(int) (q * (values.length - 1))];
+            assertThat(sketch.quantile(q)).isCloseTo(exact, offset(Math.abs(exact) * QuantileSketch.RELATIVE_ACCURACY));
+        }
+    }
+
+    @Test
+    void merge_equalsOneSketchOfAllValues() {
+        QuantileSketch all = new QuantileSketch();
+        QuantileSketch left = new QuantileSketch();
+        QuantileSketch right = new QuantileSketch();
+        for (int i = -50; i < 150; i++) {
+            all.add(i / 3.0);
+            (i % 2 == 0 ? left : right).add(i / 3.0);
+        }
+        left.merge(right);
+
+        assertThat(left.count()).isEqualTo(200);
+        assertThat(left.toJson().length()).isEqualTo(all.toJson().length());
+        assertThat(left.percentiles()).containsExactly(all.percentiles());
+    }
+
+    @Test
+    void json_roundTripsNegativeZeroAndPositiveValues() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(-12.5);
+        sketch.add(0.0);
+        sketch.add(0.2);
+        sketch.add(21.0);
+
+        QuantileSketch read = QuantileSketch.fromJson(sketch.toJson());
+
+        assertThat(read.count()).isEqualTo(4);
+        assertThat(read.quantile(0)).isCloseTo(-12.5, offset(0.125));
+        assertThat(read.quantile(0.34)).isZero();
+        assertThat(read.quantile(1)).isCloseTo(21.0, offset(0.21));
+        // whitespace as Postgres prints jsonb
+        assertThat(QuantileSketch.fromJson("{\"z\": 2, \"p-161\": 1}").count()).isEqualTo(3);
+    }
+
+    @Test
+    void emptyAndInvalidSketches() {
+        assertThat(QuantileSketch.fromJson(null).percentiles()).isNull();
+        assertThat(QuantileSketch.fromJson("{}").quantile(0.5)).isNaN();
+        assertThatThrownBy(() -> QuantileSketch.fromJson("{\"x1\": 3}")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> QuantileSketch.fromJson("[1]")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
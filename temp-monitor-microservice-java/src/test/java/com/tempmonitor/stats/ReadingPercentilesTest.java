@@ -0,0 +1,112 @@
+package com.tempmonitor.stats;
+
+import com.tempmonitor.TempMonitorProperties;
+import com.tempmonitor.repo.ReadingBlockRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReadingPercentilesTest {
+
+    private final Set<String> queryThreads = ConcurrentHashMap.newKeySet();
+    private JdbcTemplate jdbcTemplate;
+    private ReadingPercentiles percentiles;
+
+    @BeforeEach
+    void setup() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        // answers every query with p50/p90/p99 of id, id + 0.5 and id + 0.9
+        doAnswer(invocation -> {
+            queryThreads.add(Thread.currentThread().getName());
+            Object[][] ids = new Object[1][];
+            Connection con = mock(Connection.class);
+            when(con.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+            when(con.createArrayOf(eq("int4"), any())).thenAnswer(call -> {
+                ids[0] = call.getArgument(1);
+                return mock(Array.class);
+            });
+            invocation.<PreparedStatementCreator>getArgument(0).createPreparedStatement(con);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Object id : ids[0]) {
+                int value = (Integer) id;
+                Array array = mock(Array.class);
+                when(array.getArray()).thenReturn(new Double[]{value + 0.0, value + 0.5, value + 0.9});
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getInt(1)).thenReturn(value);
+                when(rs.getArray(2)).thenReturn(array);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        TempMonitorProperties properties = new TempMonitorProperties();
+        properties.getStats().setPercentileParallelism(2);
+        properties.getStats().setPercentileBatchSize(2);
+        ReadingBlockRepository blockRepo = mock(ReadingBlockRepository.class);
+        when(blockRepo.archivedBefore()).thenReturn(Instant.EPOCH);
+        percentiles = new ReadingPercentiles(jdbcTemplate, blockRepo, mock(PlatformTransactionManager.class), properties);
+        percentiles.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        percentiles.stop();
+    }
+
+    @Test
+    void byThermometer_splitsIdsIntoBatchesQueriedOnThePool() {
+        Map<Integer, double[]> result = percentiles.byThermometer(List.of(1, 2, 3, 4, 5));
+
+        assertThat(result).containsOnlyKeys(1, 2, 3, 4, 5);
+        assertThat(result.get(3)).containsExactly(3.0, 3.5, 3.9);
+        verify(jdbcTemplate, times(3)).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        assertThat(queryThreads).allMatch(name -> name.startsWith("stats-percentiles-"));
+    }
+
+    @Test
+    void byLocation_singleBatch_runsOnTheCallingThread() {
+        Map<Integer, double[]> result = percentiles.byLocation(List.of(7));
+
+        assertThat(result.get(7)).containsExactly(7.0, 7.5, 7.9);
+        assertThat(queryThreads).containsExactly(Thread.currentThread().getName());
+    }
+
+    @Test
+    void percentiles_interpolatesBetweenRanksLikePercentileCont() {
+        // 1, 2, 2, 2, 3, 10
+        TreeMap<Double, long[]> counts = new TreeMap<>(Map.of(1.0, new long[]{1}, 2.0, new long[]{3},
+                3.0, new long[]{1}, 10.0, new long[]{1}));
+
+        // positions 2.5, 4.5 and 4.95 of 0..5
+        assertThat(ReadingPercentiles.percentiles(counts)).containsExactly(new double[]{2.0, 6.5, 9.65}, within(1e-9));
+    }
+
+    @Test
+    void percentiles_singleValue() {
+        TreeMap<Double, long[]> counts = new TreeMap<>(Map.of(21.5, new long[]{1}));
+
+        assertThat(ReadingPercentiles.percentiles(counts)).containsExactly(21.5, 21.5, 21.5);
+    }
+}
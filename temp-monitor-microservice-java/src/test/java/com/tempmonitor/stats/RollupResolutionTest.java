@@ -0,0 +1,27 @@
+package com.tempmonitor.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RollupResolutionTest {
+
+    @Test
+    void forRange_picksFinestResolutionWithinMaxPoints() {
+        assertThat(RollupResolution.forRange(Duration.ofMinutes(90), 1000)).isEqualTo(RollupResolution.MINUTE);
+        assertThat(RollupResolution.forRange(Duration.ofDays(30), 1000)).isEqualTo(RollupResolution.HOUR);
+        assertThat(RollupResolution.forRange(Duration.ofDays(365), 1000)).isEqualTo(RollupResolution.DAY);
+        assertThat(RollupResolution.forRange(Duration.ofDays(5000), 1000)).isEqualTo(RollupResolution.DAY);
+    }
+
+    @Test
+    void truncate_alignsToUtcBuckets() {
+        Instant t = Instant.parse("2025-03-04T05:06:07.891Z");
+        assertThat(RollupResolution.MINUTE.truncate(t)).isEqualTo(Instant.parse("2025-03-04T05:06:00Z"));
+        assertThat(RollupResolution.HOUR.truncate(t)).isEqualTo(Instant.parse("2025-03-04T05:00:00Z"));
+        assertThat(RollupResolution.DAY.truncate(t)).isEqualTo(Instant.parse("2025-03-04T00:00:00Z"));
+    }
+}
@@ -0,0 +1,44 @@
+package com.tempmonitor.stats;
+
+import com.tempmonitor.ingest.ReadingsStoredEvent;
+import com.tempmonitor.ingest.StoredReading;
+import com.tempmonitor.repo.ThermometerStatsBatchRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class RunningStatsUpdaterTest {
+
+    @Test
+    void onReadingsStored_preAggregatesPerThermometerInIdOrder() {
+        ThermometerStatsBatchRepository statsBatchRepo = mock(ThermometerStatsBatchRepository.class);
+        RunningStatsUpdater updater = new RunningStatsUpdater(statsBatchRepo);
+        Instant now = Instant.now();
+
+        updater.onReadingsStored(new ReadingsStoredEvent(List.of(
+                new StoredReading(1, 9, 20.0, now),
+                new StoredReading(2, 3, 5.0, now),
+                new StoredReading(3, 9, 24.0, now),
+                new StoredReading(4, 9, -1.5, now))));
+
+        ArgumentCaptor<String[]> sketches = ArgumentCaptor.forClass(String[].class);
+        verify(statsBatchRepo).accumulate(
+                eq(new int[]{3, 9}),
+                eq(new double[]{5.0, -1.5}),
+                eq(new double[]{5.0, 24.0}),
+                eq(new double[]{5.0, 42.5}),
+                eq(new long[]{1, 3}),
+                sketches.capture());
+        assertThat(sketches.getValue()).hasSize(2);
+        assertThat(QuantileSketch.fromJson(sketches.getValue()[0]).count()).isEqualTo(1);
+        assertThat(QuantileSketch.fromJson(sketches.getValue()[1]).quantile(0)).isCloseTo(-1.5, within(0.015));
+    }
+}
@@ -0,0 +1,65 @@
+package com.tempmonitor.stream;
+
+import com.tempmonitor.ingest.StoredReading;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadingSubscriberTest {
+
+    private static final Instant T0 = Instant.parse("2025-03-01T12:00:00Z");
+
+    @Test
+    void take_returnsBufferedReadingsInOrder() throws InterruptedException {
+        ReadingSubscriber subscriber = new ReadingSubscriber(null, null, 4);
+        StoredReading first = reading(1, 7, 0);
+        StoredReading second = reading(2, 7, 1);
+
+        assertThat(subscriber.offer(first)).isZero();
+        assertThat(subscriber.offer(second)).isZero();
+
+        assertThat(subscriber.take(Duration.ZERO)).containsExactly(first, second);
+        assertThat(subscriber.take(Duration.ofMillis(10))).isEmpty();
+    }
+
+    @Test
+    void offer_beyondCapacity_keepsLatestPerThermometer() throws InterruptedException {
+        ReadingSubscriber subscriber = new ReadingSubscriber(null, null, 2);
+        subscriber.offer(reading(1, 7, 0));
+        subscriber.offer(reading(2, 8, 0));
+        int replaced = subscriber.offer(reading(3, 7, 1)) + subscriber.offer(reading(4, 7, 2));
+        // an older reading arriving late must not win
+        replaced += subscriber.offer(reading(5, 8, -1));
+
+        assertThat(replaced).isEqualTo(3);
+        assertThat(subscriber.take(Duration.ZERO)).containsExactly(reading(2, 8, 0), reading(4, 7, 2));
+
+        // caught up, buffering in order again
+        subscriber.offer(reading(6, 7, 3));
+        subscriber.offer(reading(7, 7, 4));
+        assertThat(subscriber.take(Duration.ZERO)).extracting(StoredReading::id).containsExactly(6, 7);
+    }
+
+    @Test
+    void close_wakesWaitingWriter() throws InterruptedException {
+        ReadingSubscriber subscriber = new ReadingSubscriber(1, null, 2);
+        Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            subscriber.close();
+        });
+
+        assertThat(subscriber.take(Duration.ofSeconds(10))).isEmpty();
+        assertThat(subscriber.isClosed()).isTrue();
+        assertThat(subscriber.offer(reading(1, 1, 0))).isZero();
+    }
+
+    private static StoredReading reading(int id, int thermometerId, int seconds) {
+        return new StoredReading(id, thermometerId, 20.0, T0.plusSeconds(seconds));
+    }
+}